@@ -0,0 +1,114 @@
+package de.jepfa.regex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.helper.Printer;
+
+/**
+ * Benchmarks constructing, rendering, indexing, compiling and printing element trees of every {@link TreeShape}.
+ * <p>
+ * Rendered Regular Expressions and group indexes are cached per tree, so the benchmarks {@link #toRegex(NewTree)},
+ * {@link #runGroupIndexer(NewTree)} and {@link #buildPattern(NewTree)} get a new tree for every invocation,
+ * and {@link #buildPattern(NewTree)} bypasses the {@link de.jepfa.regex.helper.PatternCache}.
+ * {@link #toRegexCached(CachedTree)} measures the cache itself.
+ *
+ * @author Jens Pfahl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark {
+
+	@State(Scope.Thread)
+	public abstract static class Tree {
+
+		@Param({"WIDE", "DEEP", "LITERAL_HEAVY", "CLASS_HEAVY"})
+		public TreeShape shape;
+
+		@Param({"16", "256"})
+		public int size;
+
+		protected RegexBuilder builder;
+
+		protected void build() {
+			builder = shape.build(size).usePatternCache(false);
+		}
+	}
+
+	/**
+	 * A tree that is built once, so it is rendered and indexed only once.
+	 */
+	@State(Scope.Thread)
+	public static class CachedTree extends Tree {
+
+		@Setup
+		public void setUp() {
+			build();
+			if (builder.toRegex() != builder.toRegex()) {
+				throw new IllegalStateException("The rendered Regular Expression is not cached");
+			}
+		}
+	}
+
+	/**
+	 * A new tree for every invocation, nothing of it is cached. Building it is not measured.
+	 */
+	@State(Scope.Thread)
+	public static class NewTree extends Tree {
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			build();
+		}
+	}
+
+
+	@Benchmark
+	public RegexBuilder construct(CachedTree tree) {
+		return tree.shape.build(tree.size);
+	}
+
+	@Benchmark
+	public String toRegex(NewTree tree) {
+		return tree.builder.toRegex();
+	}
+
+	@Benchmark
+	public String toRegexCached(CachedTree tree) {
+		return tree.builder.toRegex();
+	}
+
+	@Benchmark
+	public RegexBuilder runGroupIndexer(NewTree tree) {
+		tree.builder.runGroupIndexer();
+		return tree.builder;
+	}
+
+	@Benchmark
+	public Pattern buildPattern(NewTree tree) {
+		return tree.builder.buildPattern();
+	}
+
+	@Benchmark
+	public String printer(CachedTree tree) {
+		return Printer.toString(tree.builder.getElements());
+	}
+
+}
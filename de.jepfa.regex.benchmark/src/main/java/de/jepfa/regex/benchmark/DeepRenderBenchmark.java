@@ -0,0 +1,103 @@
+package de.jepfa.regex.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
+
+/**
+ * Benchmarks the first rendering of deeply nested trees, where every level is an optional {@link Group}
+ * of a Character Set, the level below and a literal. Run it with the {@link BenchmarkRunner},
+ * the bytes allocated per rendering (<code>gc.alloc.rate.norm</code>) show whether rendering
+ * copies the levels below once per level again.
+ *
+ * @author Jens Pfahl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepRenderBenchmark {
+
+	/**
+	 * A new tree for every invocation, so nothing of it is cached. Building it is not measured.
+	 */
+	@State(Scope.Thread)
+	public static class DeepTree {
+
+		@Param({"100", "1000"})
+		public int depth;
+
+		public Element root;
+		public RegexBuilder builder;
+
+		@Setup(Level.Invocation)
+		public void setUp() {
+			Element element = new StringElement("leaf");
+			for (int i = 0; i < depth; i++) {
+				element = new Group(new Chars('a', 'z'), element, new StringElement("x" + i)).optional();
+			}
+			root = element;
+			builder = new RegexBuilder(element).usePatternCache(false);
+		}
+	}
+
+	/**
+	 * Discards all characters, so only the rendering is measured.
+	 */
+	private static final Writer NULL_WRITER = new Writer() {
+
+		@Override
+		public void write(char[] buffer, int offset, int length) throws IOException {
+		}
+
+		@Override
+		public void write(String string) throws IOException {
+		}
+
+		@Override
+		public void flush() throws IOException {
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	};
+
+
+	@Benchmark
+	public String toRegex(DeepTree tree) {
+		return tree.root.toRegex();
+	}
+
+	@Benchmark
+	public String builderToRegex(DeepTree tree) {
+		return tree.builder.toRegex();
+	}
+
+	@Benchmark
+	public RegexBuilder writeTo(DeepTree tree) throws IOException {
+		tree.builder.writeTo(NULL_WRITER);
+		return tree.builder;
+	}
+
+}
@@ -0,0 +1,102 @@
+package de.jepfa.regex.benchmark;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+/**
+ * The shapes of the element trees the benchmarks run on. Every shape builds its tree with the
+ * fluent API, so {@link #build(int)} itself is the construction benchmark.
+ *
+ * @author Jens Pfahl
+ */
+public enum TreeShape {
+
+	/**
+	 * Many small siblings at the top level of the builder.
+	 */
+	WIDE {
+		@Override
+		public RegexBuilder build(int size) {
+			RegexBuilder builder = new RegexBuilder();
+			for (int i = 0; i < size; i++) {
+				builder.add(new StringElement("key" + i), new Chars('a', 'z').many(),
+						new Group(Char.DIGIT.range(0, 3)).optional());
+			}
+			return builder;
+		}
+	},
+	/**
+	 * Groups, non-capturing groups and choices, each nested in the next one.
+	 */
+	DEEP {
+		@Override
+		public RegexBuilder build(int size) {
+			Element element = new StringElement("leaf");
+			for (int i = 0; i < size; i++) {
+				switch (i % 3) {
+				case 0:
+					element = new Group(new StringElement("g" + i), element).optional();
+					break;
+				case 1:
+					element = new NonCapturing(element, Char.WORD_CHAR).arbitrary().strategy(Strategy.LAZY);
+					break;
+				default:
+					element = new Choice(new StringElement("c" + i), element);
+					break;
+				}
+			}
+			return new RegexBuilder(element);
+		}
+	},
+	/**
+	 * Long literals with characters to escape and large alternations of words.
+	 */
+	LITERAL_HEAVY {
+		@Override
+		public RegexBuilder build(int size) {
+			String[] words = new String[size];
+			for (int i = 0; i < size; i++) {
+				words[i] = "word" + i;
+			}
+			RegexBuilder builder = new RegexBuilder().add(new Strings(words));
+			for (int i = 0; i < size; i++) {
+				builder.add(new StringElement("(" + i + ").[x]*?+^$|\\"), Any.ANY_CHAR.optional());
+			}
+			return builder;
+		}
+	},
+	/**
+	 * Character classes built with ranges, set algebra and predefined classes.
+	 */
+	CLASS_HEAVY {
+		@Override
+		public RegexBuilder build(int size) {
+			RegexBuilder builder = new RegexBuilder();
+			for (int i = 0; i < size; i++) {
+				char to = (char) ('a' + i % 26);
+				builder.add(new Chars('a', to).union("0123").subtract('b').optional(),
+						new Chars(Char.HEX_DIGIT.toCharClass()).union('_').intersect('0', 'z').many(),
+						new Chars("+-*/").not(), Char.SPACE_CHAR.optional());
+			}
+			return builder;
+		}
+	};
+
+
+	/**
+	 * @param size the count of repeated parts of the tree, for {@link #DEEP} the nesting depth
+	 *
+	 * @return a new builder with a new element tree, not <code>null</code>
+	 */
+	public abstract RegexBuilder build(int size);
+
+}
@@ -0,0 +1,87 @@
+package de.jepfa.regex;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.elements.Group;
+
+
+/**
+ * The result of {@link RegexBuilder#build()}: the compiled {@link Pattern} together with the indexes
+ * of all {@link Group}s of this build. 
+ * <p>
+ * Unlike {@link Group#getIndex()}, the indexes are not stored in the groups, so the same group 
+ * can be used in several builders and builds can run concurrently. Instances are immutable.
+ *
+ * @author Jens Pfahl
+ */
+public final class CompiledRegex {
+
+	private final Pattern pattern;
+	private final Map<Group, Integer> indexes;
+	
+	
+	CompiledRegex(Pattern pattern, Map<Group, Integer> indexes) {
+		this.pattern = pattern;
+		this.indexes = Collections.unmodifiableMap(indexes);
+	}
+
+	
+	/**
+	 * @return the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+	
+	/**
+	 * @param input the input to match
+	 * @return a new {@link Matcher} of the compiled {@link Pattern}
+	 */
+	public Matcher matcher(CharSequence input) {
+		return pattern.matcher(input);
+	}
+	
+	/**
+	 * Returns the index of the given {@link Group} in this build. 
+	 * Use it to access groups of the {@link Matcher} with {@link Matcher#group(int)}.
+	 *
+	 * @param group not <code>null</code>
+	 * @return the index or <code>null</code> if the group is not indexable or not part of this build.
+	 */
+	public Integer getIndex(Group group) {
+		checkNotNull(group);
+		return indexes.get(group);
+	}
+	
+	/**
+	 * Returns the input subsequence captured by the given {@link Group}.
+	 *
+	 * @param result the result of a match with the {@link #getPattern() Pattern}, not <code>null</code>
+	 * @param group an indexable group of this build, not <code>null</code>
+	 * @return the captured subsequence or <code>null</code> if the group did not participate in the match
+	 */
+	public String group(MatchResult result, Group group) {
+		checkNotNull(result);
+		Integer index = getIndex(group);
+		checkCondition("Group is not indexable or not part of this build: " + group, index == null);
+		return result.group(index);
+	}
+	
+	/**
+	 * @return an unmodifiable identity map from {@link Group} to its index, not <code>null</code>
+	 */
+	public Map<Group, Integer> getIndexes() {
+		return indexes;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledRegex [pattern=" + pattern + ", groups=" + indexes.size() + "]";
+	}
+}
@@ -2,26 +2,43 @@ package de.jepfa.regex;
 
 import static de.jepfa.regex.helper.Checker.*;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import de.jepfa.regex.analysis.RedosAnalyzer;
+import de.jepfa.regex.analysis.RedosPolicy;
+import de.jepfa.regex.analysis.RedosRisk;
+import de.jepfa.regex.analysis.RedosRisk.Severity;
+import de.jepfa.regex.components.Construct;
 import de.jepfa.regex.components.Element;
 import de.jepfa.regex.components.Flags;
 import de.jepfa.regex.components.Regexable;
 import de.jepfa.regex.elements.Group;
 import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.engine.Engine;
+import de.jepfa.regex.engine.EngineType;
+import de.jepfa.regex.helper.PatternCache;
 import de.jepfa.regex.helper.Printer;
+import de.jepfa.regex.optimizer.Optimizer;
 
 
 /**
  * This class is responsible to collect {@link Element}s and to build a complete Regular Expression.
  * <p>
  * Not supported:
- * <li>Named capturing groups (use the index getting from {@link Group#getIndex()})
+ * <li>Named capturing groups (use the index getting from {@link CompiledRegex#getIndex(Group)} or {@link Group#getIndex()})
  *
  * @author Jens Pfahl
  */
@@ -69,10 +86,39 @@ public final class RegexBuilder implements Regexable {
 	
 	private class Root extends Group {
 		
-		public Root() {
+		public Root(Element... elements) {
+			super(elements);
 			setChangeable();
 		}
 		
+		/**
+		 * @return all indexable sub-groups in the order they occur in the Regular Expression
+		 */
+		private List<Group> getIndexableGroups() {
+			List<Group> groups = new ArrayList<>();
+			forEachSubGroup(group -> {
+				if (group.isIndexable()) {
+					groups.add(group);
+				}
+			});
+			return groups;
+		}
+		
+		private long getElementsVersion() {
+			return getVersion();
+		}
+		
+		@Override
+		protected void checkCycle(Element... elements) {
+			// the root is never part of another group
+		}
+		
+		@Override
+		protected Map<Group, Integer> computeIndexes(Predicate<Group> capturing) {
+			// make it visible for the RegexBuilder
+			return super.computeIndexes(capturing);
+		}
+		
 		@Override
 		public void runIndexer() {
 			// make it public for the RegexBuilder
@@ -80,12 +126,25 @@ public final class RegexBuilder implements Regexable {
 		}
 		
 		@Override
-		public String toRegex() {
-			StringBuilder sb = new StringBuilder();
+		protected void appendElementTo(StringBuilder sb) {
+			// the root is no group, and only its own rendering is cached
+			for (Element element : elems) {
+				element.appendTo(sb, null);
+			}
+		}
+		
+		@Override
+		protected void appendElementTo(StringBuilder sb, Predicate<Element> capturing) {
+			for (Element element : elems) {
+				element.appendTo(sb, capturing);
+			}
+		}
+		
+		@Override
+		protected void writeElementTo(Writer writer) throws IOException {
 			for (Element element : elems) {
-				sb.append(element.toRegex());
+				element.writeTo(writer);
 			}
-			return sb.toString();
 		}
 		
 		@Override
@@ -95,8 +154,66 @@ public final class RegexBuilder implements Regexable {
 		
 	}
 	
+	/**
+	 * The optimized elements of the {@link Root}, valid as long as no element is changed in-place.
+	 */
+	private final class Optimization {
+		
+		private final Optimizer optimizer;
+		private final long version;
+		private final Root optimizedRoot;
+		/**
+		 * From the indexable groups of the optimized root to the groups of the root at the same index.
+		 */
+		private final Map<Group, Group> origins = new IdentityHashMap<>();
+		
+		private Optimization(Optimizer optimizer) {
+			this.optimizer = optimizer;
+			this.version = root.getElementsVersion();
+			List<Element> optimized = optimizer.optimize(root.getElements(), enabledFlags);
+			// the optimized root must not become the container of the groups of the root
+			this.optimizedRoot = Group.detached(() -> new Root(optimized.toArray(new Element[optimized.size()])));
+			
+			List<Group> groups = root.getIndexableGroups();
+			List<Group> optimizedGroups = optimizedRoot.getIndexableGroups();
+			if (groups.size() != optimizedGroups.size()) {
+				throw new RegexBuilderException("The capturing groups were changed by " + optimizer);
+			}
+			for (int i = 0; i < groups.size(); i++) {
+				origins.put(optimizedGroups.get(i), groups.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * The {@link RedosRisk}s of the rendered elements, valid as long as no element is changed in-place.
+	 */
+	private static final class RedosCheck {
+		
+		private final Root renderRoot;
+		private final long version;
+		private final List<RedosRisk> risks;
+		private volatile boolean warned;
+		
+		private RedosCheck(Root renderRoot, long version) {
+			this.renderRoot = renderRoot;
+			this.version = version;
+			this.risks = Collections.unmodifiableList(RedosAnalyzer.analyzeSequence(renderRoot.getElements()));
+		}
+	}
+	
+	
+	private static final Logger LOGGER = Logger.getLogger(RegexBuilder.class.getName());
+	
 	private Root root = new Root();
 	private Set<Flag> enabledFlags = new HashSet<>();
+	private boolean usePatternCache = true;
+	private Optimizer optimizer;
+	private volatile Optimization optimization;
+	private RedosPolicy redosPolicy = RedosPolicy.ALLOW;
+	private Severity redosSeverity = Severity.POLYNOMIAL;
+	private volatile RedosCheck redosCheck;
+	private EngineType engineType = EngineType.PATTERN;
 
 
 	/**
@@ -169,12 +286,142 @@ public final class RegexBuilder implements Regexable {
 		return Collections.unmodifiableSet(enabledFlags);
 	}
 	
+	/**
+	 * Controls whether {@link #buildPattern()} shares compiled {@link Pattern}s through the 
+	 * process-wide {@link PatternCache}. The cache is used as default.
+	 *
+	 * @param use <code>false</code> to compile a new {@link Pattern} on every build
+	 */
+	public RegexBuilder usePatternCache(boolean use) {
+		this.usePatternCache = use;
+		return this;
+	}
+	
+	/**
+	 * @return <code>true</code> if {@link #buildPattern()} uses the {@link PatternCache}.
+	 */
+	public boolean isPatternCacheUsed() {
+		return usePatternCache;
+	}
+	
+	/**
+	 * Sets an {@link Optimizer} that rewrites all elements into an equivalent, smaller form 
+	 * before they are rendered. The {@link #getElements() elements} itself are not changed and 
+	 * all {@link Group} indexes are kept. No optimizer is used as default.
+	 *
+	 * @param optimizer the optimizer or <code>null</code> to render the elements as they are
+	 */
+	public RegexBuilder useOptimizer(Optimizer optimizer) {
+		this.optimizer = optimizer;
+		return this;
+	}
+	
+	/**
+	 * @return the {@link Optimizer} or <code>null</code>, see {@link #useOptimizer(Optimizer)}
+	 */
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+	
+	/**
+	 * Like {@link #useRedosPolicy(RedosPolicy, Severity)} for all {@link Severity severities}.
+	 *
+	 * @param policy not <code>null</code>
+	 */
+	public RegexBuilder useRedosPolicy(RedosPolicy policy) {
+		return useRedosPolicy(policy, Severity.POLYNOMIAL);
+	}
+	
+	/**
+	 * Sets the {@link RedosPolicy} that {@link #buildPattern()}, {@link #build()} and {@link #buildCapturing(Group...)} 
+	 * enforce before compiling. The {@link #getRenderedElements() rendered elements} are checked for 
+	 * {@link #getRedosRisks() risks} of catastrophic backtracking. The default is {@link RedosPolicy#ALLOW}, 
+	 * so nothing is checked.
+	 *
+	 * @param policy not <code>null</code>
+	 * @param minSeverity only risks with this or a higher severity are enforced, not <code>null</code>
+	 */
+	public RegexBuilder useRedosPolicy(RedosPolicy policy, Severity minSeverity) {
+		checkNotNull(policy);
+		checkNotNull(minSeverity);
+		this.redosPolicy = policy;
+		this.redosSeverity = minSeverity;
+		return this;
+	}
+	
+	/**
+	 * @return the {@link RedosPolicy}, not <code>null</code>
+	 */
+	public RedosPolicy getRedosPolicy() {
+		return redosPolicy;
+	}
+	
+	/**
+	 * Sets the {@link EngineType} that {@link #buildEngine()} compiles this builder with. 
+	 * The default is {@link EngineType#PATTERN}.
+	 *
+	 * @param engineType not <code>null</code>
+	 */
+	public RegexBuilder useEngine(EngineType engineType) {
+		checkNotNull(engineType);
+		this.engineType = engineType;
+		return this;
+	}
+	
+	/**
+	 * @return the {@link EngineType}, not <code>null</code>
+	 */
+	public EngineType getEngineType() {
+		return engineType;
+	}
+	
+	/**
+	 * Analyzes the {@link #getRenderedElements() rendered elements} with the {@link RedosAnalyzer}, 
+	 * independent of the {@link #useRedosPolicy(RedosPolicy, Severity) policy}. The result is reused 
+	 * until an element is changed in-place.
+	 *
+	 * @return all risks of catastrophic backtracking, not <code>null</code>
+	 */
+	public List<RedosRisk> getRedosRisks() {
+		return getRedosCheck().risks;
+	}
+	
+	/**
+	 * Returns the {@link Element elements} that are rendered, these are the optimized elements 
+	 * if an {@link Optimizer} is used.
+	 *
+	 * @return not <code>null</code>
+	 * @see #useOptimizer(Optimizer)
+	 */
+	public List<Element> getRenderedElements() {
+		return getRenderRoot().getElements();
+	}
+	
 	
 
 
 	@Override
 	public String toRegex() {
-		return root.toRegex();
+		return getRenderRoot().toRegex();
+	}
+	
+	@Override
+	public void appendTo(StringBuilder sb) {
+		getRenderRoot().appendTo(sb);
+	}
+	
+	/**
+	 * Writes the Regular Expression of all {@link #getElements() elements} to the given {@link Writer}.
+	 * The elements and their sub-elements are written one by one, see {@link Element#writeTo(Writer)}, 
+	 * so no String of the whole Regular Expression is created, unless it is already cached by {@link #toRegex()}.
+	 *
+	 * @param writer the writer to write to, not <code>null</code>
+	 * @throws IOException if the writer fails
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		checkNotNull(writer);
+		getRenderRoot().writeTo(writer);
+		writer.flush();
 	}
 	
 	/**
@@ -192,18 +439,68 @@ public final class RegexBuilder implements Regexable {
 	 * Builds an Regular Expression with {@link #getElements() all elements} and
 	 * {@link #getFlags() all match flags} and creates a compiled {@link Pattern}.
 	 * Also runs the {@link #runGroupIndexer()}-method.
+	 * <p>
+	 * Builders with the same Regular Expression and flags share the same compiled {@link Pattern}, 
+	 * see {@link #usePatternCache(boolean)}.
 	 *
 	 * @return not <code>null</code>
+	 * @see #build()
 	 */
 	public Pattern buildPattern() {
-		try {
-			Pattern pattern = Pattern.compile(toRegex(), getFlagsAsInt());
-			runGroupIndexer();
-			return pattern;
+		Pattern pattern = compile(toRegex());
+		runGroupIndexer();
+		return pattern;
+	}
+	
+	/**
+	 * Like {@link #buildPattern()}, but compiles an {@link Engine} of the {@link #useEngine(EngineType) engine type}.
+	 * Also runs the {@link #runGroupIndexer()}-method.
+	 *
+	 * @return not <code>null</code>
+	 * @throws RegexBuilderException if the engine type doesn't support the elements of this builder
+	 */
+	public Engine buildEngine() {
+		Engine engine = engineType.compile(this);
+		runGroupIndexer();
+		return engine;
+	}
+	
+	/**
+	 * Like {@link #buildPattern()}, but the indexes of all {@link Group}s are returned with the 
+	 * {@link Pattern} instead of being set at the groups. No group is changed, so builders 
+	 * can share groups and build concurrently. {@link Group#getIndex()} stays the index in the tree 
+	 * the group was added to last.
+	 *
+	 * @return not <code>null</code>
+	 */
+	public CompiledRegex build() {
+		String regex = toRegex();
+		return new CompiledRegex(compile(regex), root.computeIndexes(null));
+	}
+	
+	/**
+	 * Like {@link #build()}, but only the given {@link Group}s are capturing groups. All other groups, 
+	 * including those created by {@link Construct}s, are compiled as non-capturing groups, 
+	 * so the regex engine doesn't record their offsets. The indexes of the {@link CompiledRegex} 
+	 * are adjusted to that.
+	 *
+	 * @param capturing the groups to retrieve after matching, not <code>null</code>, no <code>null</code>-elements
+	 * @return not <code>null</code>
+	 */
+	public CompiledRegex buildCapturing(Group... capturing) {
+		checkNoNullElements(capturing);
+		Set<Group> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+		retained.addAll(Arrays.asList(capturing));
+		
+		StringBuilder sb = new StringBuilder();
+		Optimization o = getOptimization();
+		if (o == null) {
+			root.appendTo(sb, retained::contains);
 		}
-		catch (Exception e) {
-			throw new RegexBuilderException("Compile fails for regex=" + toRegex(), e);
+		else {
+			o.optimizedRoot.appendTo(sb, group -> retained.contains(o.origins.get(group)));
 		}
+		return new CompiledRegex(compile(sb.toString()), root.computeIndexes(retained::contains));
 	}
 
 	@Override
@@ -218,6 +515,68 @@ public final class RegexBuilder implements Regexable {
 
 	
 	
+	private Root getRenderRoot() {
+		Optimization o = getOptimization();
+		return o != null ? o.optimizedRoot : root;
+	}
+	
+	private Optimization getOptimization() {
+		Optimizer currentOptimizer = optimizer;
+		if (currentOptimizer == null) {
+			return null;
+		}
+		Optimization o = optimization;
+		if (o == null || o.optimizer != currentOptimizer || o.version != root.getElementsVersion()) {
+			o = new Optimization(currentOptimizer);
+			optimization = o;
+		}
+		return o;
+	}
+	
+	private RedosCheck getRedosCheck() {
+		Root renderRoot = getRenderRoot();
+		long version = root.getElementsVersion();
+		RedosCheck check = redosCheck;
+		if (check == null || check.renderRoot != renderRoot || check.version != version) {
+			check = new RedosCheck(renderRoot, version);
+			redosCheck = check;
+		}
+		return check;
+	}
+	
+	private void checkRedos() {
+		RedosPolicy policy = redosPolicy;
+		if (policy == RedosPolicy.ALLOW) {
+			return;
+		}
+		RedosCheck check = getRedosCheck();
+		List<RedosRisk> risks = check.risks.stream()
+				.filter(risk -> risk.getSeverity().compareTo(redosSeverity) >= 0)
+				.collect(Collectors.toList());
+		if (risks.isEmpty()) {
+			return;
+		}
+		if (policy == RedosPolicy.THROW) {
+			throw new RegexBuilderException("Catastrophic backtracking possible: " + risks);
+		}
+		if (!check.warned) {
+			check.warned = true;
+			LOGGER.warning("Catastrophic backtracking possible: " + risks);
+		}
+	}
+	
+	private Pattern compile(String regex) {
+		checkRedos();
+		try {
+			return usePatternCache 
+					? PatternCache.getInstance().compile(regex, getFlagsAsInt()) 
+					: Pattern.compile(regex, getFlagsAsInt());
+		}
+		catch (Exception e) {
+			throw new RegexBuilderException("Compile fails for regex=" + regex, e);
+		}
+	}
+	
 	private int getFlagsAsInt() {
 		int i = 0;
 		for (Flag flag : enabledFlags) {
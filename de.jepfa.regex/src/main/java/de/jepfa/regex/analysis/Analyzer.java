@@ -0,0 +1,227 @@
+package de.jepfa.regex.analysis;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Construct;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.Lookbehind;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.components.CharPredicate;
+
+
+/**
+ * Computes the FIRST and LAST {@link CharSet}s of {@link Element}s, that are all characters a match
+ * of an element can start or end with, and whether an element can match the empty String.
+ * <p>
+ * The analysis is conservative: elements that cannot be analyzed, like {@link de.jepfa.regex.elements.PlainElement}s
+ * or sub-classes of the known {@link Group}s, can start and end with any character and can match
+ * the empty String. {@link Construct}s are analyzed as sequence of their rendered elements. Zero-width elements like {@link Boundary}s and lookarounds don't consume characters,
+ * so they have empty FIRST and LAST sets and are nullable.
+ *
+ * @author Jens Pfahl
+ */
+public final class Analyzer {
+
+	/**
+	 * Predefined classes like <code>\d</code> or <code>\p{Alpha}</code> depend on the flags.
+	 */
+	private static final Pattern CLASS_ESCAPE = Pattern.compile("\\\\[dDwWsShHvVpPXR]");
+	
+	
+	private Analyzer() {
+	}
+
+
+	/**
+	 * @param element not <code>null</code>
+	 * @return all characters a match of the element can start with, not <code>null</code>
+	 */
+	public static CharSet first(Element element) {
+		checkNotNull(element);
+		return analyze(element, true).chars;
+	}
+
+	/**
+	 * @param element not <code>null</code>
+	 * @return all characters a match of the element can end with, not <code>null</code>
+	 */
+	public static CharSet last(Element element) {
+		checkNotNull(element);
+		return analyze(element, false).chars;
+	}
+
+	/**
+	 * @param elements a sequence of elements, not <code>null</code>
+	 * @return all characters a match of the sequence can start with, not <code>null</code>
+	 */
+	public static CharSet firstOfSequence(List<Element> elements) {
+		checkNotNull(elements);
+		return analyzeSequence(elements, true).chars;
+	}
+
+	/**
+	 * @param element not <code>null</code>
+	 * @return <code>true</code> if the element can match the empty String
+	 */
+	public static boolean isNullable(Element element) {
+		checkNotNull(element);
+		return analyze(element, true).nullable;
+	}
+
+	/**
+	 * @param elements a sequence of elements, not <code>null</code>
+	 * @return <code>true</code> if the sequence can match the empty String
+	 */
+	public static boolean isNullableSequence(List<Element> elements) {
+		checkNotNull(elements);
+		return analyzeSequence(elements, true).nullable;
+	}
+
+	/**
+	 * Returns the characters of a single repetition of an element, if every repetition matches exactly
+	 * one character, like {@link Chars}, {@link Char}, {@link Any} or a {@link StringElement} of one character do.
+	 * The {@link Quantifier} of the element is ignored.
+	 *
+	 * @param element not <code>null</code>
+	 * @return the characters or <code>null</code> if a repetition can match more or less than one character
+	 */
+	public static CharSet singleChar(Element element) {
+		checkNotNull(element);
+		if (element instanceof StringElement) {
+			String s = ((StringElement) element).getString();
+			if (s.isEmpty() || s.length() != Character.charCount(s.codePointAt(0))) {
+				return null;
+			}
+			return CharSet.ofLiteral(s.codePointAt(0));
+		}
+		if (element instanceof Chars && ((Chars) element).isEmpty()) {
+			// renders nothing
+			return null;
+		}
+		if (element instanceof Chars || element instanceof Char || element instanceof Any) {
+			String regex = toSingleRegex(element);
+			if (element instanceof Chars && !CLASS_ESCAPE.matcher(regex).find()) {
+				// only literal characters, these are cheaper to compare than evaluated classes
+				CharPredicate chars = ((Chars) element).toPredicate();
+				if (CharSet.count(chars) <= CharSet.MAX_TESTED_LITERALS) {
+					return CharSet.ofLiterals(chars);
+				}
+			}
+			return CharSet.ofRegex(regex);
+		}
+		return null;
+	}
+
+
+	private static final class Result {
+
+		static final Result UNKNOWN = new Result(CharSet.ALL, true);
+		static final Result ZERO_WIDTH = new Result(CharSet.NONE, true);
+
+		final CharSet chars;
+		final boolean nullable;
+
+		Result(CharSet chars, boolean nullable) {
+			this.chars = chars;
+			this.nullable = nullable;
+		}
+	}
+
+
+	private static Result analyze(Element element, boolean first) {
+		Quantifier q = element.getQuantifier();
+		if (q.getMax() == 0) {
+			return Result.ZERO_WIDTH;
+		}
+		Result result = analyzeRepetition(element, first);
+		if (q.getMin() == 0 && !result.nullable) {
+			return new Result(result.chars, true);
+		}
+		return result;
+	}
+
+	private static Result analyzeRepetition(Element element, boolean first) {
+		CharSet single = singleChar(element);
+		if (single != null) {
+			return new Result(single, false);
+		}
+		if (element instanceof StringElement) {
+			String s = ((StringElement) element).getString();
+			if (s.isEmpty()) {
+				return Result.ZERO_WIDTH;
+			}
+			return new Result(CharSet.ofLiteral(first ? s.codePointAt(0) : s.codePointBefore(s.length())), false);
+		}
+		if (element instanceof Boundary) {
+			return Result.ZERO_WIDTH;
+		}
+
+		Class<?> c = element.getClass();
+		if (c == Lookahead.class || c == Lookbehind.class) {
+			return Result.ZERO_WIDTH;
+		}
+		if (c == Choice.class || c == Strings.class) {
+			return analyzeChoice(((Group) element).getElements(), first);
+		}
+		if (c == Group.class || c == NonCapturing.class) {
+			return analyzeSequence(((Group) element).getElements(), first);
+		}
+		if (element instanceof Construct) {
+			return analyzeSequence(((Construct) element).getRenderedElements(), first);
+		}
+		return Result.UNKNOWN;
+	}
+
+	private static Result analyzeChoice(List<Element> alternatives, boolean first) {
+		if (alternatives.isEmpty()) {
+			return Result.ZERO_WIDTH;
+		}
+		CharSet chars = CharSet.NONE;
+		boolean nullable = false;
+		for (Element alternative : alternatives) {
+			Result result = analyze(alternative, first);
+			chars = chars.union(result.chars);
+			nullable |= result.nullable;
+		}
+		return new Result(chars, nullable);
+	}
+
+	private static Result analyzeSequence(List<Element> elements, boolean first) {
+		CharSet chars = CharSet.NONE;
+		for (int i = 0; i < elements.size(); i++) {
+			Result result = analyze(elements.get(first ? i : elements.size() - 1 - i), first);
+			chars = chars.union(result.chars);
+			if (!result.nullable) {
+				return new Result(chars, false);
+			}
+		}
+		return new Result(chars, true);
+	}
+
+	/**
+	 * Renders a single repetition of the element with its own flags.
+	 */
+	private static String toSingleRegex(Element element) {
+		try {
+			return element.clone().count(1).toRegex();
+		}
+		catch (CloneNotSupportedException e) {
+			throw new RegexBuilderException(
+					element.getClass().getName() + " is not cloneable, but should be. Programming error?", e);
+		}
+	}
+}
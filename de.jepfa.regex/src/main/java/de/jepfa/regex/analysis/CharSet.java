@@ -0,0 +1,302 @@
+package de.jepfa.regex.analysis;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.components.CharPredicate;
+import de.jepfa.regex.helper.PatternCache;
+
+
+/**
+ * A set of characters an {@link de.jepfa.regex.components.Element} can match, computed by the {@link Analyzer}.
+ * <p>
+ * The set is an over-approximation: it contains every character that could match under any combination of
+ * the flags {@link Flag#IGNORE_CASE_SENSITIVE}, {@link Flag#UNICODE}, {@link Flag#UNICODE_CHARS} and
+ * {@link Flag#DOTALL}, because an element doesn't know the flags of its surrounding groups and builder.
+ * So two sets that are {@link #isDisjoint(CharSet) disjoint} never match the same character.
+ * <p>
+ * Single characters are held as case-folded {@link CharPredicate}, character classes as Regular Expressions
+ * that are only evaluated if two classes have to be compared.
+ * CharSets are immutable and thread-safe.
+ *
+ * @author Jens Pfahl
+ */
+public final class CharSet {
+
+	/**
+	 * Contains no character.
+	 */
+	public static final CharSet NONE = new CharSet(false, CharPredicate.NONE, Collections.emptySet());
+
+	/**
+	 * Contains all characters, e.g. for elements that cannot be analyzed.
+	 */
+	public static final CharSet ALL = new CharSet(true, CharPredicate.NONE, Collections.emptySet());
+
+	/**
+	 * Up to this count of single characters they are tested one by one against a character class,
+	 * otherwise the class is evaluated.
+	 */
+	static final int MAX_TESTED_LITERALS = 64;
+
+	private final boolean all;
+	private final CharPredicate literals;
+	private final Set<String> classes;
+
+
+	private CharSet(boolean all, CharPredicate literals, Set<String> classes) {
+		this.all = all;
+		this.literals = literals;
+		this.classes = classes;
+	}
+
+
+	/**
+	 * @param codePoint a character that is matched literally
+	 * @return a CharSet with the given character and all characters that match it case-insensitive
+	 * 		or canonical equivalent
+	 */
+	public static CharSet ofLiteral(int codePoint) {
+		return ofLiterals(CharPredicate.range(codePoint, codePoint));
+	}
+
+	/**
+	 * @param codePoints characters that are matched literally, not <code>null</code>
+	 * @return a CharSet with the given characters and all characters that match them case-insensitive
+	 * 		or canonical equivalent
+	 */
+	static CharSet ofLiterals(CharPredicate codePoints) {
+		TreeSet<Integer> closure = new TreeSet<>();
+		int[] ranges = codePoints.getRanges();
+		for (int i = 0; i < ranges.length; i += 2) {
+			for (int codePoint = ranges[i]; codePoint <= ranges[i + 1]; codePoint++) {
+				CaseFolds.addClosure(closure, codePoint);
+			}
+		}
+		if (closure.isEmpty()) {
+			return NONE;
+		}
+		return new CharSet(false, CharPredicate.of(closure::contains, closure.first(), closure.last()), 
+				Collections.emptySet());
+	}
+
+	/**
+	 * @param regex a Regular Expression that matches exactly one character, e.g. <code>[a-z]</code>
+	 * 		or <code>(?i:\d)</code>, not <code>null</code>
+	 * @return a CharSet with all characters the Expression matches under any flags
+	 */
+	public static CharSet ofRegex(String regex) {
+		checkNotNull(regex);
+		return new CharSet(false, CharPredicate.NONE, Collections.singleton(regex));
+	}
+
+
+	/**
+	 * @return a CharSet that contains the characters of this OR the <code>other</code> CharSet.
+	 */
+	public CharSet union(CharSet other) {
+		checkNotNull(other);
+		if (all || other.isEmpty()) {
+			return this;
+		}
+		if (other.all || isEmpty()) {
+			return other;
+		}
+		Set<String> unionClasses = new LinkedHashSet<>(classes);
+		unionClasses.addAll(other.classes);
+		return new CharSet(false, literals.union(other.literals), Collections.unmodifiableSet(unionClasses));
+	}
+
+	/**
+	 * @return <code>true</code> if this CharSet contains no character
+	 */
+	public boolean isEmpty() {
+		return !all && classes.isEmpty() && literals.equals(CharPredicate.NONE);
+	}
+
+	/**
+	 * @return <code>true</code> if this CharSet contains all characters
+	 */
+	public boolean isAll() {
+		return all;
+	}
+
+	/**
+	 * @param codePoint the code point to test
+	 * @return <code>true</code> if the code point is part of this CharSet
+	 */
+	public boolean contains(int codePoint) {
+		if (all || literals.test(codePoint)) {
+			return true;
+		}
+		String s = new String(Character.toChars(codePoint));
+		return classes.stream().anyMatch(c -> compile(c).matcher(s).matches());
+	}
+
+	/**
+	 * Returns <code>true</code> if this and the <code>other</code> CharSet have no character in common.
+	 * Comparing two character classes evaluates them once, which is slow.
+	 *
+	 * @param other not <code>null</code>
+	 * @return <code>true</code> if both CharSets are disjoint
+	 */
+	public boolean isDisjoint(CharSet other) {
+		checkNotNull(other);
+		if (isEmpty() || other.isEmpty()) {
+			return true;
+		}
+		if (all || other.all) {
+			return false;
+		}
+		if (!literals.intersect(other.literals).equals(CharPredicate.NONE)) {
+			return false;
+		}
+		if (!isDisjoint(literals, other.classes) || !isDisjoint(other.literals, classes)) {
+			return false;
+		}
+		for (String c : classes) {
+			for (String otherClass : other.classes) {
+				if (!evaluate(c).intersect(evaluate(otherClass)).equals(CharPredicate.NONE)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates this CharSet into a {@link CharPredicate}. This is slow for character classes.
+	 *
+	 * @return not <code>null</code>
+	 */
+	public CharPredicate toPredicate() {
+		if (all) {
+			return CharPredicate.ALL;
+		}
+		CharPredicate predicate = literals;
+		for (String c : classes) {
+			predicate = predicate.union(evaluate(c));
+		}
+		return predicate;
+	}
+
+	@Override
+	public String toString() {
+		if (all) {
+			return "CharSet [ALL]";
+		}
+		return "CharSet [literals=" + literals + ", classes=" + classes + "]";
+	}
+
+
+	private static boolean isDisjoint(CharPredicate literals, Set<String> classes) {
+		if (classes.isEmpty() || literals.equals(CharPredicate.NONE)) {
+			return true;
+		}
+		int[] ranges = literals.getRanges();
+		for (String c : classes) {
+			if (count(literals) > MAX_TESTED_LITERALS) {
+				if (!literals.intersect(evaluate(c)).equals(CharPredicate.NONE)) {
+					return false;
+				}
+				continue;
+			}
+			Pattern pattern = compile(c);
+			for (int i = 0; i < ranges.length; i += 2) {
+				for (int codePoint = ranges[i]; codePoint <= ranges[i + 1]; codePoint++) {
+					if (pattern.matcher(new String(Character.toChars(codePoint))).matches()) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the count of characters of the predicate
+	 */
+	static int count(CharPredicate predicate) {
+		int[] ranges = predicate.getRanges();
+		int count = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			count += ranges[i + 1] - ranges[i] + 1;
+		}
+		return count;
+	}
+
+	private static Pattern compile(String regex) {
+		return PatternCache.getInstance().compile(withAnyFlags(regex), 0);
+	}
+
+	private static CharPredicate evaluate(String regex) {
+		return CharPredicate.ofRegex(withAnyFlags(regex));
+	}
+
+	/**
+	 * Case folding adds characters to a class but removes them from a negated class, e.g. <code>(?i:[^a])</code>
+	 * doesn't match <code>A</code>, so the case-sensitive variants are needed too. ASCII and Unicode case
+	 * folding as well as ASCII and Unicode classes differ in both directions, so all of them are combined.
+	 * Flags of the Expression itself still apply.
+	 */
+	private static String withAnyFlags(String regex) {
+		return "(?s:" + regex + ")|(?Us:" + regex + ")|(?is:" + regex + ")|(?ius:" + regex + ")|(?iUs:" + regex + ")";
+	}
+
+
+	/**
+	 * All characters grouped by their case folding, built on first use.
+	 */
+	private static final class CaseFolds {
+
+		private static final Map<Integer, int[]> GROUPS = build();
+
+		static void addClosure(Set<Integer> chars, int codePoint) {
+			addCaseVariants(chars, codePoint);
+			String decomposed = Normalizer.normalize(new String(Character.toChars(codePoint)), Normalizer.Form.NFD);
+			addCaseVariants(chars, decomposed.codePointAt(0));
+		}
+
+		private static void addCaseVariants(Set<Integer> chars, int codePoint) {
+			chars.add(codePoint);
+			chars.add(Character.toUpperCase(codePoint));
+			chars.add(Character.toLowerCase(codePoint));
+			chars.add(Character.toTitleCase(codePoint));
+			int[] group = GROUPS.get(fold(codePoint));
+			if (group != null) {
+				for (int ch : group) {
+					chars.add(ch);
+				}
+			}
+		}
+
+		private static int fold(int codePoint) {
+			return Character.toLowerCase(Character.toUpperCase(codePoint));
+		}
+
+		private static Map<Integer, int[]> build() {
+			Map<Integer, List<Integer>> groups = new HashMap<>();
+			// there are no cased characters above the Supplementary Multilingual Plane
+			for (int ch = 0; ch <= 0x1FFFF; ch++) {
+				int folded = fold(ch);
+				if (folded != ch || Character.toUpperCase(ch) != ch) {
+					groups.computeIfAbsent(folded, k -> new ArrayList<>()).add(ch);
+				}
+			}
+			Map<Integer, int[]> result = new HashMap<>(groups.size() * 2);
+			groups.forEach((folded, group) -> result.put(folded, group.stream().mapToInt(Integer::intValue).toArray()));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package de.jepfa.regex.analysis;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.jepfa.regex.analysis.RedosRisk.Severity;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+
+
+/**
+ * Finds subtrees of {@link Element}s, that could backtrack catastrophically (ReDoS).
+ * The Regular Expression is never compiled or matched, so untrusted elements can be checked before.
+ * <p>
+ * These constellations are reported, if the repetitions are neither possessive nor inside an
+ * {@link NonCapturing#independent() independent} group:
+ * <ul>
+ * <li>a repeated group containing a repeated element, and the rest of the group could be matched by
+ * that element too, e.g. <code>(\d+)+</code> or <code>(\w+\s?)*</code>: {@link Severity#EXPONENTIAL}</li>
+ * <li>a repeated {@link Choice} with overlapping alternatives, e.g. <code>(\w|\d)+</code> or <code>(a|aa)*</code>:
+ * {@link Severity#EXPONENTIAL} if the alternatives can start and end with the same character,
+ * otherwise {@link Severity#POLYNOMIAL}</li>
+ * <li>two unbounded repetitions of overlapping characters in a sequence, that could split the same
+ * input, e.g. <code>\d+\d*</code>, <code>.*,?.*</code> or <code>.*(a+b)</code>: {@link Severity#POLYNOMIAL}</li>
+ * </ul>
+ * The analysis is a heuristic based on the {@link Analyzer}, it can report risks that don't exist for
+ * any input, but it recognizes the common causes of catastrophic backtracking.
+ *
+ * @author Jens Pfahl
+ */
+public final class RedosAnalyzer {
+
+	private RedosAnalyzer() {
+	}
+
+
+	/**
+	 * @param elements a sequence of elements, e.g. all elements of a builder, not <code>null</code>
+	 * @return all found risks, inner subtrees first, not <code>null</code>
+	 */
+	public static List<RedosRisk> analyzeSequence(List<Element> elements) {
+		checkNotNull(elements);
+		List<RedosRisk> risks = new ArrayList<>();
+		visitSequence(elements, risks);
+		return risks;
+	}
+
+	/**
+	 * @param elements a sequence of elements, not <code>null</code>, no <code>null</code>-elements
+	 * @return all found risks, inner subtrees first, not <code>null</code>
+	 */
+	public static List<RedosRisk> analyze(Element... elements) {
+		checkNoNullElements(elements);
+		return analyzeSequence(Arrays.asList(elements));
+	}
+
+
+	private static void visitElement(Element element, List<RedosRisk> risks) {
+		if (!(element instanceof Group)) {
+			return;
+		}
+		Group group = (Group) element;
+		if (group instanceof Choice) {
+			for (Element alternative : group.getRenderedElements()) {
+				visitElement(alternative, risks);
+			}
+		}
+		else {
+			visitSequence(group.getRenderedElements(), risks);
+		}
+
+		if (isRepeated(group) && !isIndependent(group)) {
+			RedosRisk risk = findNestedRepetition(group);
+			if (risk == null) {
+				risk = findOverlappingAlternatives(group);
+			}
+			if (risk != null) {
+				risks.add(risk);
+			}
+		}
+	}
+
+	private static void visitSequence(List<Element> elements, List<RedosRisk> risks) {
+		for (int i = 0; i < elements.size(); i++) {
+			visitElement(elements.get(i), risks);
+			RedosRisk risk = findAdjacentRepetition(elements, i);
+			if (risk != null) {
+				risks.add(risk);
+			}
+		}
+	}
+
+	/**
+	 * <code>(\d+)+</code>: every split of a run of digits into iterations of the group is tried.
+	 */
+	private static RedosRisk findNestedRepetition(Group group) {
+		List<List<Element>> bodies = new ArrayList<>();
+		if (group instanceof Choice) {
+			for (Element alternative : group.getRenderedElements()) {
+				bodies.add(inline(Arrays.asList(alternative)));
+			}
+		}
+		else {
+			bodies.add(inline(group.getRenderedElements()));
+		}
+
+		for (List<Element> body : bodies) {
+			for (Element inner : body) {
+				if (!isRepeated(inner) || isIndependent(inner)) {
+					continue;
+				}
+				CharSet chars = Analyzer.singleChar(inner);
+				boolean absorbed = body.stream().allMatch(e -> e == inner || isAbsorbable(e, chars));
+				if (absorbed) {
+					return new RedosRisk(group, Severity.EXPONENTIAL,
+							"nested repetition of " + inner.toRegex());
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <code>(a|aa)+</code>: every combination of alternatives, that matches the same input, is tried.
+	 */
+	private static RedosRisk findOverlappingAlternatives(Group group) {
+		List<Element> alternatives = getAlternatives(group);
+		if (alternatives == null) {
+			return null;
+		}
+		RedosRisk risk = null;
+		for (int i = 0; i < alternatives.size(); i++) {
+			for (int j = i + 1; j < alternatives.size(); j++) {
+				Severity severity = getOverlap(alternatives.get(i), alternatives.get(j));
+				if (severity != null && (risk == null || severity.compareTo(risk.getSeverity()) > 0)) {
+					risk = new RedosRisk(group, severity, "repeated overlapping alternatives "
+							+ alternatives.get(i).toRegex() + " and " + alternatives.get(j).toRegex());
+				}
+			}
+		}
+		return risk;
+	}
+
+	/**
+	 * <code>\d+\d+</code>: every split of a run of digits between both repetitions is tried. 
+	 * This holds also for repetitions at the edges of groups, like <code>.*(a+b)</code>.
+	 */
+	private static RedosRisk findAdjacentRepetition(List<Element> elements, int index) {
+		Element first = elements.get(index);
+		Element repetition = getEdgeRepetition(first, false);
+		CharSet chars = repetition != null ? Analyzer.singleChar(repetition) : null;
+		if (chars == null) {
+			return null;
+		}
+		for (int i = index + 1; i < elements.size(); i++) {
+			Element next = elements.get(i);
+			Element nextRepetition = getEdgeRepetition(next, true);
+			CharSet nextChars = nextRepetition != null ? Analyzer.singleChar(nextRepetition) : null;
+			if (nextChars != null && !nextChars.isDisjoint(chars)) {
+				return new RedosRisk(first, Severity.POLYNOMIAL,
+						"adjacent repetitions " + repetition.toRegex() + " and " + nextRepetition.toRegex());
+			}
+			if (!isAbsorbable(next, chars)) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the unbounded repetition the element starts or ends with. Groups without quantifier 
+	 * are looked into, leading or trailing elements that can match the empty String are skipped.
+	 *
+	 * @param leading <code>true</code> for the first repetition, <code>false</code> for the last one
+	 * @return the element itself, one of its sub-elements or <code>null</code>
+	 */
+	private static Element getEdgeRepetition(Element element, boolean leading) {
+		if (isUnbounded(element)) {
+			return element;
+		}
+		List<Element> content = inline(Arrays.asList(element));
+		if (content.size() == 1 && content.get(0) == element) {
+			return null;
+		}
+		for (int i = 0; i < content.size(); i++) {
+			Element e = content.get(leading ? i : content.size() - 1 - i);
+			if (isUnbounded(e)) {
+				return e;
+			}
+			if (!Analyzer.isNullable(e)) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return <code>null</code> if both alternatives never match the same characters
+	 */
+	private static Severity getOverlap(Element a, Element b) {
+		if (isPlainString(a) && isPlainString(b)) {
+			String s = ((StringElement) a).getString();
+			String t = ((StringElement) b).getString();
+			String shorter = s.length() <= t.length() ? s : t;
+			String longer = s.length() <= t.length() ? t : s;
+			// "ab" and "abab" match "abab" twice, but "a" and "ab" cannot match the same input
+			return !shorter.isEmpty() && isRepetitionOf(longer, shorter) ? Severity.EXPONENTIAL : null;
+		}
+		if (Analyzer.first(a).isDisjoint(Analyzer.first(b))) {
+			return null;
+		}
+		return Analyzer.last(a).isDisjoint(Analyzer.last(b)) ? Severity.POLYNOMIAL : Severity.EXPONENTIAL;
+	}
+
+	/**
+	 * The alternatives of a repeated {@link Choice}, also if the Choice is the only content
+	 * of a repeated group, like <code>(?:(a|b))+</code>.
+	 */
+	private static List<Element> getAlternatives(Group group) {
+		if (group instanceof Choice) {
+			return group.getRenderedElements();
+		}
+		Element choice = null;
+		for (Element e : inline(group.getRenderedElements())) {
+			if (Analyzer.isNullable(e)) {
+				continue;
+			}
+			if (choice != null || !(e instanceof Choice) || !Quantifier.ONE.equals(e.getQuantifier())) {
+				return null;
+			}
+			choice = e;
+		}
+		return choice != null ? ((Group) choice).getRenderedElements() : null;
+	}
+
+	/**
+	 * Replaces all groups without quantifier by their content, because they don't change backtracking.
+	 */
+	private static List<Element> inline(List<Element> elements) {
+		List<Element> inlined = new ArrayList<>();
+		for (Element e : elements) {
+			Class<?> c = e.getClass();
+			if ((c == Group.class || c == NonCapturing.class) && !isIndependent(e)
+					&& Quantifier.ONE.equals(e.getQuantifier())) {
+				inlined.addAll(inline(((Group) e).getRenderedElements()));
+			}
+			else {
+				inlined.add(e);
+			}
+		}
+		return inlined;
+	}
+
+	/**
+	 * @return <code>true</code> if the element can match the empty String or
+	 * 		a character of the given repetition, so both can match the same input
+	 */
+	private static boolean isAbsorbable(Element element, CharSet chars) {
+		if (Analyzer.isNullable(element)) {
+			return true;
+		}
+		CharSet single = chars != null ? Analyzer.singleChar(element) : null;
+		return single != null && !single.isDisjoint(chars);
+	}
+
+	private static boolean isRepeated(Element element) {
+		Quantifier q = element.getQuantifier();
+		return (q.getMax() == Quantifier.UNBOUND || q.getMax() > 1) && q.getStrategy() != Strategy.POSSESSIVE;
+	}
+
+	private static boolean isUnbounded(Element element) {
+		return isRepeated(element) && element.getQuantifier().getMax() == Quantifier.UNBOUND;
+	}
+
+	private static boolean isIndependent(Element element) {
+		return element instanceof NonCapturing && ((NonCapturing) element).isIndependent();
+	}
+
+	private static boolean isPlainString(Element element) {
+		return element instanceof StringElement && Quantifier.ONE.equals(element.getQuantifier());
+	}
+
+	private static boolean isRepetitionOf(String s, String part) {
+		if (s.length() % part.length() != 0) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i += part.length()) {
+			if (!s.regionMatches(true, i, part, 0, part.length())) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
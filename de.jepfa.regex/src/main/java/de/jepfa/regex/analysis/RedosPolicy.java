@@ -0,0 +1,27 @@
+package de.jepfa.regex.analysis;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+
+/**
+ * Tells {@link RegexBuilder#buildPattern()} what to do with {@link RedosRisk}s, 
+ * see {@link RegexBuilder#useRedosPolicy(RedosPolicy, RedosRisk.Severity)}.
+ *
+ * @author Jens Pfahl
+ */
+public enum RedosPolicy {
+	
+	/**
+	 * The elements are not analyzed.
+	 */
+	ALLOW, 
+	/**
+	 * Found risks are logged as warning with {@link java.util.logging}, the Pattern is built anyway.
+	 */
+	WARN, 
+	/**
+	 * Found risks lead to a {@link RegexBuilderException}.
+	 */
+	THROW;
+}
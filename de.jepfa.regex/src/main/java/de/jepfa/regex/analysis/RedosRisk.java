@@ -0,0 +1,65 @@
+package de.jepfa.regex.analysis;
+
+import de.jepfa.regex.components.Element;
+
+
+/**
+ * A subtree of {@link Element}s, that could backtrack catastrophically on non-matching input, 
+ * found by the {@link RedosAnalyzer}.
+ *
+ * @author Jens Pfahl
+ */
+public final class RedosRisk {
+
+	/**
+	 * How fast the matching time can grow with the length of a non-matching input.
+	 */
+	public enum Severity {
+		/**
+		 * The matching time grows polynomially, e.g. <code>\d+\d+x</code>.
+		 */
+		POLYNOMIAL, 
+		/**
+		 * The matching time grows exponentially, e.g. <code>(\d+)+x</code>.
+		 */
+		EXPONENTIAL;
+	}
+	
+	private final Element element;
+	private final Severity severity;
+	private final String description;
+	
+	
+	RedosRisk(Element element, Severity severity, String description) {
+		this.element = element;
+		this.severity = severity;
+		this.description = description;
+	}
+
+
+	/**
+	 * @return the root of the risky subtree, not <code>null</code>
+	 */
+	public Element getElement() {
+		return element;
+	}
+	
+	/**
+	 * @return not <code>null</code>
+	 */
+	public Severity getSeverity() {
+		return severity;
+	}
+	
+	/**
+	 * @return what can backtrack, not <code>null</code>
+	 */
+	public String getDescription() {
+		return description;
+	}
+	
+	@Override
+	public String toString() {
+		return severity + ": " + description + " in " + element.toRegex();
+	}
+}
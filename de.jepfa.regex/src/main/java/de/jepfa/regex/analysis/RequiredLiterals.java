@@ -0,0 +1,160 @@
+package de.jepfa.regex.analysis;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.components.Construct;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+/**
+ * Derives literals from a tree of {@link Element}s, of which every match must contain at least one.
+ * An input that contains none of these literals after a position cannot match after that position,
+ * so it can be rejected with a fast substring search before the Regular Expression is matched.
+ * <p>
+ * Required are the {@link StringElement}s of a sequence, that are not optional, and the alternatives of
+ * a {@link Choice} or {@link Strings} if every alternative has a required literal. If a sequence contains
+ * several of them, the most selective is taken, that is the one with the longest shortest literal.
+ * Literals that must be matched case-insensitive, elements that cannot be analyzed and the content of
+ * negative lookarounds and lookbehinds are never required.
+ *
+ * @author Jens Pfahl
+ */
+public final class RequiredLiterals {
+
+	/**
+	 * More alternatives are rarely selective enough to be worth searching them before the match.
+	 */
+	private static final int MAX_ALTERNATIVES = 64;
+
+
+	private RequiredLiterals() {
+	}
+
+
+	/**
+	 * @param elements a sequence of elements, e.g. all elements of a builder, not <code>null</code>
+	 * @param flags the flags of the sequence, e.g. of the builder, not <code>null</code>
+	 * @return the literals of which every match contains at least one,
+	 * 		empty if there are no such literals, not <code>null</code>
+	 */
+	public static List<String> of(List<Element> elements, Set<Flag> flags) {
+		checkNotNull(elements);
+		checkNotNull(flags);
+		if (flags.contains(Flag.CANON_EQUALS) || flags.contains(Flag.LITERAL)) {
+			return Collections.emptyList();
+		}
+		List<String> literals = ofSequence(elements, flags.contains(Flag.IGNORE_CASE_SENSITIVE));
+		return literals != null ? Collections.unmodifiableList(literals) : Collections.emptyList();
+	}
+
+
+	/**
+	 * @return the required literals or <code>null</code> if there are none
+	 */
+	private static List<String> ofElement(Element element, boolean ignoreCase) {
+		if (element.getFlags().getEnabledFlags().contains(Flag.IGNORE_CASE_SENSITIVE)) {
+			ignoreCase = true;
+		}
+		else if (element.getFlags().getDisabledFlags().contains(Flag.IGNORE_CASE_SENSITIVE)) {
+			ignoreCase = false;
+		}
+		if (element.getQuantifier().getMin() == 0) {
+			return null;
+		}
+
+		if (element instanceof StringElement) {
+			String s = ((StringElement) element).getString();
+			return s.isEmpty() || ignoreCase ? null : Collections.singletonList(s);
+		}
+		Class<?> c = element.getClass();
+		if (c == Choice.class || c == Strings.class) {
+			return ofAlternatives(((Group) element).getElements(), ignoreCase);
+		}
+		if (c == Group.class || c == NonCapturing.class
+				|| (c == Lookahead.class && !((Lookahead) element).isNot())) {
+			// a lookahead reads the input after the match start too
+			return ofSequence(((Group) element).getElements(), ignoreCase);
+		}
+		if (element instanceof Construct) {
+			return ofSequence(((Construct) element).getRenderedElements(), ignoreCase);
+		}
+		return null;
+	}
+
+	private static List<String> ofAlternatives(List<Element> alternatives, boolean ignoreCase) {
+		Set<String> literals = new LinkedHashSet<>();
+		for (Element alternative : alternatives) {
+			List<String> required = ofElement(alternative, ignoreCase);
+			if (required == null) {
+				return null;
+			}
+			literals.addAll(required);
+		}
+		if (literals.isEmpty() || literals.size() > MAX_ALTERNATIVES) {
+			return null;
+		}
+
+		// an input that contains "abc" contains "b" too, so "abc" is redundant
+		List<String> reduced = new ArrayList<>(literals.size());
+		for (String literal : literals) {
+			if (literals.stream().noneMatch(other -> other.length() < literal.length() && literal.contains(other))) {
+				reduced.add(literal);
+			}
+		}
+		return reduced;
+	}
+
+	private static List<String> ofSequence(List<Element> elements, boolean ignoreCase) {
+		List<String> best = null;
+		StringBuilder run = new StringBuilder();
+		for (Element element : elements) {
+			List<String> required = ofElement(element, ignoreCase);
+			if (required != null && element instanceof StringElement && Quantifier.ONE.equals(element.getQuantifier())) {
+				// adjacent strings are required as one literal
+				run.append(required.get(0));
+				continue;
+			}
+			best = select(best, run);
+			run.setLength(0);
+			best = select(best, required);
+		}
+		return select(best, run);
+	}
+
+	private static List<String> select(List<String> best, CharSequence run) {
+		return run.length() > 0 ? select(best, Collections.singletonList(run.toString())) : best;
+	}
+
+	private static List<String> select(List<String> best, List<String> candidate) {
+		if (candidate == null) {
+			return best;
+		}
+		if (best == null) {
+			return candidate;
+		}
+		int bestLength = minLength(best);
+		int candidateLength = minLength(candidate);
+		if (candidateLength > bestLength || (candidateLength == bestLength && candidate.size() < best.size())) {
+			return candidate;
+		}
+		return best;
+	}
+
+	private static int minLength(List<String> literals) {
+		return literals.stream().mapToInt(String::length).min().getAsInt();
+	}
+}
@@ -0,0 +1,585 @@
+package de.jepfa.regex.components;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * A compiled set of characters, that tests code points without {@link java.util.regex}. 
+ * The Basic Multilingual Plane is held as 64K-bit bitmap, that is only built when the first character is tested, 
+ * supplementary code points as sorted range array. So intermediate results of set operations only hold their ranges.
+ * <p>
+ * A CharPredicate is immutable and thread-safe. Usually you get one with {@link de.jepfa.regex.elements.Chars#toPredicate()}.
+ *
+ * @author Jens Pfahl
+ */
+public final class CharPredicate implements IntPredicate {
+
+	/**
+	 * Matches no character.
+	 */
+	public static final CharPredicate NONE = new CharPredicate(new int[0]);
+	
+	/**
+	 * Matches all characters.
+	 */
+	public static final CharPredicate ALL = NONE.negate();
+	
+	private static final int BMP_END = Character.MAX_VALUE;
+	
+	private static final int MAX_EVALUATED_REGEXES = 64;
+
+	/**
+	 * The least recently used evaluated Regular Expressions, access ordered. Guarded by itself.
+	 */
+	private static final Map<String, CharPredicate> evaluatedRegexes = new LinkedHashMap<String, CharPredicate>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CharPredicate> eldest) {
+			return size() > MAX_EVALUATED_REGEXES;
+		}
+	};
+	
+	/**
+	 * Sorted and disjoint ranges, each as pair of first and last code point, both inclusive.
+	 */
+	private final int[] ranges;
+	/**
+	 * Built by {@link #bitmap()}, a racy but idempotent initialization.
+	 */
+	private volatile long[] bmp;
+	private final int[] supplementaryRanges;
+	
+	
+	private CharPredicate(int[] ranges) {
+		this.ranges = ranges;
+		int supplementaryIndex = ranges.length;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i + 1] > BMP_END) {
+				supplementaryIndex = i;
+				break;
+			}
+		}
+		supplementaryRanges = Arrays.copyOfRange(ranges, supplementaryIndex, ranges.length);
+		if (supplementaryRanges.length > 0) {
+			supplementaryRanges[0] = Math.max(supplementaryRanges[0], BMP_END + 1);
+		}
+	}
+
+	
+	/**
+	 * @return a CharPredicate that matches only the given character.
+	 */
+	public static CharPredicate of(char ch) {
+		return range(ch, ch);
+	}
+	
+	/**
+	 * @return a CharPredicate that matches all characters between the given code points, both inclusive.
+	 */
+	public static CharPredicate range(int from, int to) {
+		checkCondition("Illegal character range " + from + "-" + to, 
+				() -> from > to || from < 0 || to > Character.MAX_CODE_POINT);
+		return new CharPredicate(new int[] {from, to});
+	}
+	
+	/**
+	 * Evaluates the given predicate for all code points between <code>from</code> and <code>to</code>, 
+	 * both inclusive. All other code points don't match.
+	 * 
+	 * @param predicate not <code>null</code>
+	 */
+	public static CharPredicate of(IntPredicate predicate, int from, int to) {
+		checkNotNull(predicate);
+		checkCondition("Illegal character range " + from + "-" + to, 
+				() -> from > to || from < 0 || to > Character.MAX_CODE_POINT);
+		int[] result = new int[16];
+		int count = 0;
+		boolean inRange = false;
+		for (int codePoint = from; codePoint <= to; codePoint++) {
+			boolean matches = predicate.test(codePoint);
+			if (matches && !inRange) {
+				if (count + 2 > result.length) {
+					result = Arrays.copyOf(result, result.length * 2);
+				}
+				result[count++] = codePoint;
+				result[count++] = codePoint;
+			}
+			if (matches) {
+				result[count - 1] = codePoint;
+			}
+			inRange = matches;
+		}
+		return new CharPredicate(Arrays.copyOf(result, count));
+	}
+	
+	/**
+	 * Evaluates single characters and character ranges of a character class like {@link Pattern} 
+	 * does with {@link Pattern#CASE_INSENSITIVE}. Only the Basic Multilingual Plane is evaluated.
+	 * 
+	 * @param singles all single characters of the class, not <code>null</code>
+	 * @param ranges all ranges of the class, not <code>null</code>
+	 * @param unicodeCase <code>true</code> for {@link Pattern#UNICODE_CASE}
+	 */
+	public static CharPredicate caseInsensitive(CharPredicate singles, CharPredicate ranges, boolean unicodeCase) {
+		checkNotNull(singles);
+		checkNotNull(ranges);
+		CodePoints closure = new CodePoints();
+		for (int i = 0; i < singles.ranges.length && singles.ranges[i] <= BMP_END; i += 2) {
+			for (int ch = singles.ranges[i]; ch <= Math.min(singles.ranges[i + 1], BMP_END); ch++) {
+				closure.add(ch);
+				if (ch < 256 && !(unicodeCase && isSpecialFold(ch))) {
+					if (ch < 128) {
+						closure.add(toUpperAscii(ch));
+						closure.add(toLowerAscii(ch));
+					}
+					else if (unicodeCase) {
+						closure.add(Character.toUpperCase(ch));
+						closure.add(Character.toLowerCase(ch));
+					}
+				}
+				else if (unicodeCase) {
+					int upper = Character.toUpperCase(ch);
+					int lower = Character.toLowerCase(upper);
+					if (upper != lower && lower <= BMP_END) {
+						// all characters with the same lower case of the upper case
+						if (Character.toLowerCase(Character.toUpperCase(lower)) == lower) {
+							closure.add(lower);
+						}
+						closure.addSources(CaseFolds.LOWER_OF_UPPER, lower, lower);
+					}
+				}
+			}
+		}
+		
+		for (int i = 0; i < ranges.ranges.length && ranges.ranges[i] <= BMP_END; i += 2) {
+			int from = ranges.ranges[i];
+			int to = Math.min(ranges.ranges[i + 1], BMP_END);
+			closure.addRange(from, to);
+			if (unicodeCase) {
+				closure.addSources(CaseFolds.UPPER, from, to);
+				closure.addSources(CaseFolds.LOWER_OF_UPPER, from, to);
+			}
+		}
+		if (!unicodeCase) {
+			for (int ch = 'A'; ch <= 'Z'; ch++) {
+				if (ranges.test(toLowerAscii(ch))) {
+					closure.add(ch);
+				}
+				if (ranges.test(toUpperAscii(ch + 0x20))) {
+					closure.add(ch + 0x20);
+				}
+			}
+		}
+		return closure.toPredicate();
+	}
+	
+	/**
+	 * Evaluates a predefined {@link CharClass}. Every distinct class is evaluated only once.
+	 * 
+	 * @param charClass not <code>null</code>
+	 */
+	public static CharPredicate of(CharClass charClass) {
+		checkNotNull(charClass);
+		return ofRegex("[" + charClass.toRegex() + "]");
+	}
+	
+	/**
+	 * Evaluates a Regular Expression that matches single characters, e.g. a character class with flags 
+	 * like <code>(?i:[a-z])</code>. The Expression is applied to every code point once, so this is slow, 
+	 * but every distinct Expression is evaluated only once.
+	 * 
+	 * @param regex the Regular Expression, not <code>null</code>
+	 */
+	public static CharPredicate ofRegex(String regex) {
+		checkNotNull(regex);
+		CharPredicate predicate;
+		synchronized (evaluatedRegexes) {
+			predicate = evaluatedRegexes.get(regex);
+		}
+		if (predicate == null) {
+			// evaluate outside the lock, it sweeps all code points
+			predicate = evaluate(regex);
+			synchronized (evaluatedRegexes) {
+				evaluatedRegexes.put(regex, predicate);
+			}
+		}
+		return predicate;
+	}
+	
+	
+	/**
+	 * @return a CharPredicate that matches if this OR the <code>other</code> CharPredicate matches.
+	 */
+	public CharPredicate union(CharPredicate other) {
+		checkNotNull(other);
+		int[] result = new int[ranges.length + other.ranges.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < ranges.length || j < other.ranges.length) {
+			int[] next;
+			int index;
+			if (j >= other.ranges.length || (i < ranges.length && ranges[i] <= other.ranges[j])) {
+				next = ranges;
+				index = i;
+				i += 2;
+			}
+			else {
+				next = other.ranges;
+				index = j;
+				j += 2;
+			}
+			if (count > 0 && next[index] <= result[count - 1] + 1) {
+				// overlapping or adjacent
+				result[count - 1] = Math.max(result[count - 1], next[index + 1]);
+			}
+			else {
+				result[count++] = next[index];
+				result[count++] = next[index + 1];
+			}
+		}
+		return new CharPredicate(Arrays.copyOf(result, count));
+	}
+	
+	/**
+	 * @return a CharPredicate that matches if this AND the <code>other</code> CharPredicate matches.
+	 */
+	public CharPredicate intersect(CharPredicate other) {
+		checkNotNull(other);
+		int[] result = new int[ranges.length + other.ranges.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < ranges.length && j < other.ranges.length) {
+			int from = Math.max(ranges[i], other.ranges[j]);
+			int to = Math.min(ranges[i + 1], other.ranges[j + 1]);
+			if (from <= to) {
+				result[count++] = from;
+				result[count++] = to;
+			}
+			if (ranges[i + 1] < other.ranges[j + 1]) {
+				i += 2;
+			}
+			else {
+				j += 2;
+			}
+		}
+		return new CharPredicate(Arrays.copyOf(result, count));
+	}
+	
+	/**
+	 * @return a CharPredicate that matches if this CharPredicate doesn't match.
+	 */
+	@Override
+	public CharPredicate negate() {
+		int[] result = new int[ranges.length + 2];
+		int count = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				result[count++] = next;
+				result[count++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= Character.MAX_CODE_POINT) {
+			result[count++] = next;
+			result[count++] = Character.MAX_CODE_POINT;
+		}
+		return new CharPredicate(Arrays.copyOf(result, count));
+	}
+	
+	
+	/**
+	 * @param ch the character to test
+	 * @return <code>true</code> if the character matches
+	 */
+	public boolean test(char ch) {
+		return (bitmap()[ch >>> 6] & (1L << ch)) != 0;
+	}
+	
+	/**
+	 * @param codePoint the code point to test
+	 * @return <code>true</code> if the code point matches
+	 */
+	@Override
+	public boolean test(int codePoint) {
+		if (codePoint <= BMP_END) {
+			return codePoint >= 0 && (bitmap()[codePoint >>> 6] & (1L << codePoint)) != 0;
+		}
+		int index = Arrays.binarySearch(supplementaryRanges, codePoint);
+		// found a bound or between the first and last code point of a range
+		return index >= 0 || (-index - 1) % 2 == 1;
+	}
+	
+	
+	/**
+	 * Returns the index of the first matching code point in <code>seq</code> at or after <code>from</code>.
+	 *
+	 * @return the index or <code>-1</code>
+	 */
+	public int indexIn(CharSequence seq, int from) {
+		return indexIn(seq, from, true);
+	}
+	
+	/**
+	 * Returns the index of the first NOT matching code point in <code>seq</code> at or after <code>from</code>, 
+	 * e.g. to skip a token.
+	 *
+	 * @return the index or <code>-1</code>
+	 */
+	public int indexNotIn(CharSequence seq, int from) {
+		return indexIn(seq, from, false);
+	}
+	
+	/**
+	 * @return the count of matching code points in <code>seq</code>
+	 */
+	public int countIn(CharSequence seq) {
+		checkNotNull(seq);
+		int count = 0;
+		for (int i = 0; i < seq.length(); i += charCount(seq, i)) {
+			if (testAt(seq, i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Removes all matching code points from the start and the end of <code>seq</code>.
+	 *
+	 * @return the trimmed sequence, not <code>null</code>
+	 */
+	public String trim(CharSequence seq) {
+		checkNotNull(seq);
+		int start = indexNotIn(seq, 0);
+		if (start < 0) {
+			return "";
+		}
+		int end = seq.length();
+		while (end > start) {
+			int codePoint = Character.codePointBefore(seq, end);
+			if (!test(codePoint)) {
+				break;
+			}
+			end -= Character.charCount(codePoint);
+		}
+		return seq.subSequence(start, end).toString();
+	}
+	
+	
+	/**
+	 * @return all matching code points as sorted and disjoint ranges, each as pair of the first and 
+	 * the last code point, both inclusive. Not <code>null</code>.
+	 */
+	public int[] getRanges() {
+		return ranges.clone();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CharPredicate && Arrays.equals(ranges, ((CharPredicate) obj).ranges);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ranges);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("CharPredicate [");
+		for (int i = 0; i < ranges.length; i += 2) {
+			sb.append(i > 0 ? ", " : "").append(Integer.toHexString(ranges[i]));
+			if (ranges[i + 1] != ranges[i]) {
+				sb.append("-").append(Integer.toHexString(ranges[i + 1]));
+			}
+		}
+		return sb.append("]").toString();
+	}
+	
+	
+	private long[] bitmap() {
+		long[] bitmap = bmp;
+		if (bitmap == null) {
+			bitmap = new long[(BMP_END + 1) / 64];
+			for (int i = 0; i < ranges.length && ranges[i] <= BMP_END; i += 2) {
+				int to = Math.min(ranges[i + 1], BMP_END);
+				for (int ch = ranges[i]; ch <= to; ch++) {
+					if ((ch & 63) == 0 && ch + 63 <= to) {
+						bitmap[ch >>> 6] = -1L;
+						ch += 63;
+					}
+					else {
+						bitmap[ch >>> 6] |= 1L << ch;
+					}
+				}
+			}
+			bmp = bitmap;
+		}
+		return bitmap;
+	}
+	
+	private int indexIn(CharSequence seq, int from, boolean matching) {
+		checkNotNull(seq);
+		for (int i = Math.max(from, 0); i < seq.length(); i += charCount(seq, i)) {
+			if (testAt(seq, i) == matching) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private boolean testAt(CharSequence seq, int index) {
+		char ch = seq.charAt(index);
+		if (Character.isHighSurrogate(ch)) {
+			return test(Character.codePointAt(seq, index));
+		}
+		return test(ch);
+	}
+	
+	private static int charCount(CharSequence seq, int index) {
+		return Character.isHighSurrogate(seq.charAt(index)) ? Character.charCount(Character.codePointAt(seq, index)) : 1;
+	}
+	
+	/**
+	 * Characters below 256 with a case-insensitive match above 255, java.util.regex doesn't evaluate
+	 * them in its bit class.
+	 */
+	private static boolean isSpecialFold(int ch) {
+		return ch == 0xff || ch == 0xb5 || ch == 0x49 || ch == 0x69 || ch == 0x53 || ch == 0x73 
+				|| ch == 0x4b || ch == 0x6b || ch == 0xc5 || ch == 0xe5;
+	}
+	
+	private static int toUpperAscii(int ch) {
+		return ch >= 'a' && ch <= 'z' ? ch - 0x20 : ch;
+	}
+	
+	private static int toLowerAscii(int ch) {
+		return ch >= 'A' && ch <= 'Z' ? ch + 0x20 : ch;
+	}
+	
+	private static void set(long[] bitmap, int ch) {
+		if (ch <= BMP_END) {
+			bitmap[ch >>> 6] |= 1L << ch;
+		}
+	}
+	
+	private static boolean isSet(long[] bitmap, int ch) {
+		return (bitmap[ch >>> 6] & (1L << ch)) != 0;
+	}
+	
+	/**
+	 * The case mappings of all characters of the Basic Multilingual Plane, that are changed by the mapping, 
+	 * as pairs of mapped character and character, each pair as one <code>long</code> sorted by the mapped character.
+	 * Only built once, when the first case-insensitive CharPredicate is evaluated.
+	 */
+	private static final class CaseFolds {
+		
+		private static final long[] UPPER;
+		private static final long[] LOWER_OF_UPPER;
+		
+		static {
+			long[] upper = new long[BMP_END + 1];
+			long[] lowerOfUpper = new long[BMP_END + 1];
+			int upperCount = 0;
+			int lowerOfUpperCount = 0;
+			for (int ch = 0; ch <= BMP_END; ch++) {
+				int mapped = Character.toUpperCase(ch);
+				if (mapped != ch) {
+					upper[upperCount++] = (long) mapped << 32 | ch;
+				}
+				mapped = Character.toLowerCase(mapped);
+				if (mapped != ch) {
+					lowerOfUpper[lowerOfUpperCount++] = (long) mapped << 32 | ch;
+				}
+			}
+			UPPER = Arrays.copyOf(upper, upperCount);
+			LOWER_OF_UPPER = Arrays.copyOf(lowerOfUpper, lowerOfUpperCount);
+			Arrays.sort(UPPER);
+			Arrays.sort(LOWER_OF_UPPER);
+		}
+	}
+	
+	/**
+	 * Collects code points and ranges of code points in any order.
+	 */
+	private static final class CodePoints {
+		
+		/**
+		 * Pairs of first and last code point, each pair as one <code>long</code>.
+		 */
+		private long[] pairs = new long[16];
+		private int count;
+		
+		private void add(int codePoint) {
+			if (codePoint <= BMP_END) {
+				addRange(codePoint, codePoint);
+			}
+		}
+		
+		private void addRange(int from, int to) {
+			if (count == pairs.length) {
+				pairs = Arrays.copyOf(pairs, count * 2);
+			}
+			pairs[count++] = (long) from << 32 | to;
+		}
+		
+		/**
+		 * Adds all characters, that are mapped into the given range by the given case mapping.
+		 */
+		private void addSources(long[] mapping, int from, int to) {
+			int index = Arrays.binarySearch(mapping, (long) from << 32);
+			for (index = index < 0 ? -index - 1 : index; index < mapping.length && (mapping[index] >>> 32) <= to; index++) {
+				add((int) mapping[index]);
+			}
+		}
+		
+		private CharPredicate toPredicate() {
+			Arrays.sort(pairs, 0, count);
+			int[] result = new int[count * 2];
+			int resultCount = 0;
+			for (int i = 0; i < count; i++) {
+				int from = (int) (pairs[i] >>> 32);
+				int to = (int) pairs[i];
+				if (resultCount > 0 && from <= result[resultCount - 1] + 1) {
+					// overlapping or adjacent
+					result[resultCount - 1] = Math.max(result[resultCount - 1], to);
+				}
+				else {
+					result[resultCount++] = from;
+					result[resultCount++] = to;
+				}
+			}
+			return new CharPredicate(Arrays.copyOf(result, resultCount));
+		}
+	}
+	
+	private static CharPredicate evaluate(String regex) {
+		Matcher matcher;
+		try {
+			matcher = Pattern.compile(regex).matcher("");
+		} catch (Exception e) {
+			throw new RegexBuilderException("Cannot evaluate regex=" + regex, e);
+		}
+		
+		StringBuilder sb = new StringBuilder(2);
+		return of(codePoint -> {
+			sb.setLength(0);
+			sb.appendCodePoint(codePoint);
+			return matcher.reset(sb).matches();
+		}, 0, Character.MAX_CODE_POINT);
+	}
+	
+}
@@ -1,5 +1,6 @@
 package de.jepfa.regex.components;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -16,6 +17,12 @@ import de.jepfa.regex.elements.Group;
  */
 public abstract class Construct extends Group {
 
+	/**
+	 * The elements filled by {@link #fillConstruct(List, Element...)}, created once when this construct 
+	 * is built or changed. No initializer, because it is already set by the constructor of {@link Group}.
+	 */
+	private volatile List<Element> construction;
+
 	/**
 	 * Create a new {@link Construct} with a set of {@link Element Elements}.
 	 * You can use {@link #add(Element...)} instead.
@@ -29,14 +36,38 @@ public abstract class Construct extends Group {
 	
 	@Override
 	protected List<Element> getElemsForRegex() {
+		return construction;
+	}
+	
+	@Override
+	public Construct clone() throws CloneNotSupportedException {
+		Construct clone = (Construct) super.clone();
+		clone.construct();
+		return clone;
+	}
+	
+	@Override
+	protected void addInternal(Element... elements) {
+		super.addInternal(elements);
+		construct();
+	}
+	
+	@Override
+	protected void afterChange() {
+		construct();
+	}
+	
+	private void construct() {
 		List<Element> list = new LinkedList<>();
 		
 		List<Element> elemsForRegex = super.getElemsForRegex();
 		Element[] content = elemsForRegex.toArray(new Element[elemsForRegex.size()]);
 		
 		fillConstruct(list, content);
-				
-		return list;
+		// the content is added to new groups, that report their indexes in this Construct
+		adopt(list.toArray(new Element[list.size()]));
+		
+		construction = Collections.unmodifiableList(list);
 	}
 
 
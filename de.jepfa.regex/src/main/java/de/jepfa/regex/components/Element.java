@@ -2,7 +2,16 @@ package de.jepfa.regex.components;
 
 import static de.jepfa.regex.helper.Checker.*;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import de.jepfa.regex.RegexBuilder;
 import de.jepfa.regex.RegexBuilder.Flag;
@@ -23,8 +32,76 @@ import de.jepfa.regex.components.Quantifier.Strategy;
  */
 public abstract class Element implements Regexable, Cloneable {
 
-	private Quantifier q = new Quantifier();
-	private Flags flags = new Flags();
+	/**
+	 * The source of the versions of in-place changes. Every change takes a greater version than all before, 
+	 * so the version of an element grows with any change of itself or one of its sub-elements, see {@link #getVersion()}.
+	 */
+	private static final AtomicLong versions = new AtomicLong();
+	
+	/**
+	 * Weak references to the objects that have to take over the version of an in-place change of an element. 
+	 * The references are weak, so an element doesn't keep the trees alive it was used in, and no clone keeps 
+	 * the element alive it was cloned from. Thread-safe, because immutable elements can be used in several threads.
+	 */
+	private static final class Dependents<T> {
+		
+		private final List<WeakReference<T>> refs = new ArrayList<>(2);
+		/**
+		 * Cleared references are removed when the list reaches this size, so adding takes constant amortized time.
+		 */
+		private int purgeAt = 8;
+		
+		private synchronized void add(T dependent) {
+			if (refs.size() == purgeAt) {
+				refs.removeIf(ref -> ref.get() == null);
+				purgeAt = Math.max(8, refs.size() * 2);
+			}
+			refs.add(new WeakReference<>(dependent));
+		}
+		
+		private synchronized void forEach(Consumer<T> consumer) {
+			for (WeakReference<T> ref : refs) {
+				T dependent = ref.get();
+				if (dependent != null) {
+					consumer.accept(dependent);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A rendered Regular Expression together with the {@link #getVersion() version} it was rendered at.
+	 */
+	private static final class Rendering {
+		
+		private final String regex;
+		private final long version;
+		
+		private Rendering(String regex, long version) {
+			this.regex = regex;
+			this.version = version;
+		}
+	}
+	
+	private Quantifier q = Quantifier.ONE;
+	private Flags flags = Flags.EMPTY;
+	private Rendering rendering;
+	/**
+	 * The version of the last in-place change of this element or one of its sub-elements, 
+	 * <code>0</code> if none was ever changed in-place.
+	 */
+	private volatile long version;
+	/**
+	 * The {@link #sharing sharings} of the groups this element was added to. 
+	 * Only {@link ChangeableElement}s can be changed in-place, so only they get containers.
+	 */
+	private Dependents<Dependents<Element>> containers;
+	/**
+	 * This element and all its clones, that share its sub-elements. A sub-element passes its in-place changes 
+	 * on to this common set and not to the single elements, so it reaches the clones even if the element 
+	 * they were cloned from was collected. Created when it is needed first.
+	 */
+	private volatile Dependents<Element> sharing;
 	
 	/**
 	 * Implementors of {@link Element} can access this flag to control the mode of {@link #cloneAndCall(Consumer...)}. 
@@ -50,7 +127,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 */
 	public <T extends Element> T strategy(Quantifier.Strategy strategy) {
 		checkNotNull(strategy);
-		return cloneAndCall(e -> e.getQuantifier().setStrategy(strategy));
+		return cloneAndCall(e -> e.setQuantifier(e.getQuantifier().withStrategy(strategy)));
 	}
 
 	/**
@@ -65,7 +142,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 * @see Quantifier#getMax()
 	 */
 	public <T extends Element> T least(int least) {
-		return cloneAndCall(e -> e.getQuantifier().setLeast(least));
+		return cloneAndCall(e -> e.setQuantifier(e.getQuantifier().withLeast(least)));
 	}
 
 	/**
@@ -80,7 +157,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 * @see Quantifier#getMax()
 	 */
 	public <T extends Element> T most(int most) {
-		return cloneAndCall(e -> e.getQuantifier().setMost(most));
+		return cloneAndCall(e -> e.setQuantifier(e.getQuantifier().withMost(most)));
 	}
 
 	/**
@@ -96,7 +173,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 * @see Quantifier#getMax()
 	 */
 	public <T extends Element> T range(int min, int max) {
-		return cloneAndCall(e -> e.getQuantifier().setMin(min), e -> e.getQuantifier().setMax(max));
+		return cloneAndCall(e -> e.setQuantifier(Quantifier.of(min, max, e.getQuantifier().getStrategy())));
 	}
 
 	/**
@@ -167,7 +244,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 */
 	public <T extends Element> T switchOn(Flag... flags) {
 		checkNotNull(flags);
-		return cloneAndCall(e -> e.getFlags().switchOn(flags));
+		return cloneAndCall(e -> e.changeFlags().switchOn(flags));
 	}
 
 	/**
@@ -182,7 +259,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 */
 	public <T extends Element> T switchOff(Flag... flags) {
 		checkNotNull(flags);
-		return cloneAndCall(e -> e.getFlags().switchOff(flags));
+		return cloneAndCall(e -> e.changeFlags().switchOff(flags));
 	}
 	
 	/**
@@ -198,7 +275,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 */
 	public <T extends Element> T restoreFlags(Flag... flags) {
 		checkNotNull(flags);
-		return cloneAndCall(e -> e.getFlags().restoreDefaults(flags));
+		return cloneAndCall(e -> e.changeFlags().restoreDefaults(flags));
 	}
 	
 	/**
@@ -211,7 +288,7 @@ public abstract class Element implements Regexable, Cloneable {
 	 * @see RegexBuilder#getFlags()
 	 */
 	public <T extends Element> T restoreAllFlags() {
-		return cloneAndCall(e -> e.getFlags().restoreAll());
+		return cloneAndCall(e -> e.changeFlags().restoreAll());
 	}
 
 
@@ -223,6 +300,10 @@ public abstract class Element implements Regexable, Cloneable {
 	public Quantifier getQuantifier() {
 		return q;
 	}
+	
+	void setQuantifier(Quantifier q) {
+		this.q = q;
+	}
 
 	/**
 	 * Returns the match flags of this element.
@@ -233,6 +314,16 @@ public abstract class Element implements Regexable, Cloneable {
 		return flags;
 	}
 	
+	/**
+	 * Elements without own flags share {@link Flags#EMPTY}, so it is replaced before the first change.
+	 */
+	Flags changeFlags() {
+		if (flags == Flags.EMPTY) {
+			flags = new Flags();
+		}
+		return flags;
+	}
+	
 
 	/**
 	 * Helper to change the state of an Element "stateless".
@@ -247,6 +338,7 @@ public abstract class Element implements Regexable, Cloneable {
 	@SafeVarargs
 	final protected <T extends Element> T cloneAndCall(Consumer<T>... consumers) {
 		checkNotNull(consumers);
+		boolean inPlace = !cloneMode;
 		try {
 			T e = (T)this;
 			if (cloneMode) {
@@ -255,31 +347,244 @@ public abstract class Element implements Regexable, Cloneable {
 			for (Consumer<T> c : consumers) {
 				c.accept(e);
 			}
+			e.afterChange();
 			return e;
 		}
 		catch (CloneNotSupportedException e) {
 			throw new RegexBuilderException(
 					this.getClass().getName() + " is not cloneable, but should be. Programming error?", e);
 		}
+		finally {
+			if (inPlace) {
+				changed();
+			}
+		}
+	}
+	
+	/**
+	 * Called by {@link #cloneAndCall(Consumer...)} after the changes were applied, at the clone or in-place. 
+	 * Implementors of {@link Element} can overwrite this method to derive state from the changed element.
+	 */
+	protected void afterChange() {
+	}
+	
+	/**
+	 * Invalidates the cached Regular Expressions of this element and of all elements that contain it. 
+	 * Implementors of {@link Element} have to call this method, if they change the state of an element 
+	 * without using {@link #cloneAndCall(Consumer...)}.
+	 */
+	protected final void changed() {
+		long newVersion = versions.incrementAndGet();
+		version = newVersion;
+		// every dependent is visited once, even if it contains this element several times
+		Deque<Element> stack = new ArrayDeque<>();
+		Consumer<Element> pushOlder = dependent -> {
+			if (dependent.version < newVersion) {
+				dependent.version = newVersion;
+				stack.push(dependent);
+			}
+		};
+		stack.push(this);
+		Dependents<Element> s = sharing;
+		if (s != null) {
+			s.forEach(pushOlder);
+		}
+		while (!stack.isEmpty()) {
+			Dependents<Dependents<Element>> c = stack.pop().containers;
+			if (c != null) {
+				c.forEach(containerSharing -> containerSharing.forEach(pushOlder));
+			}
+		}
+	}
+	
+	/**
+	 * Registers this element as container of the given sub-element, so {@link #changed()} of the sub-element 
+	 * passes the new version on to this element. Implementors of {@link Element} that contain other elements 
+	 * have to call this method for every added sub-element.
+	 *
+	 * @param subElement the element this element contains, not <code>null</code>
+	 */
+	protected final void contain(Element subElement) {
+		checkNotNull(subElement);
+		if (subElement instanceof ChangeableElement) {
+			subElement.addContainer(getSharing());
+		}
+	}
+	
+	private void addContainer(Dependents<Element> containerSharing) {
+		Dependents<Dependents<Element>> c;
+		synchronized (this) {
+			if (containers == null) {
+				containers = new Dependents<>();
+			}
+			c = containers;
+		}
+		c.add(containerSharing);
+	}
+	
+	private synchronized Dependents<Element> getSharing() {
+		Dependents<Element> s = sharing;
+		if (s == null) {
+			s = new Dependents<>();
+			s.add(this);
+			sharing = s;
+		}
+		return s;
 	}
 	
+	/**
+	 * Returns the version of the last in-place change of this element or one of its sub-elements. 
+	 * A change is passed on to all groups the element was added to and to all its clones, so reading 
+	 * the version takes constant time. Trees of immutable elements always have the version <code>0</code>. 
+	 *
+	 * @return the version, not negative
+	 * @see #changed()
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns the Regular Expression of the current element. The result is cached until this element 
+	 * or one of its sub-elements is changed in-place, see {@link ChangeableElement}.
+	 */
 	@Override
 	public String toRegex() {
-		StringBuilder sb = new StringBuilder();
+		long currentVersion = getVersion();
+		Rendering r = rendering;
+		if (r != null && r.version == currentVersion) {
+			return r.regex;
+		}
 		
+		StringBuilder sb = new StringBuilder();
+		render(sb);
+		String regex = sb.toString();
+		rendering = new Rendering(regex, currentVersion);
+		return regex;
+	}
+	
+	/**
+	 * Appends the Regular Expression of the current element to the given buffer. Sub-elements are
+	 * rendered directly into the same buffer, and the appended part is cached like {@link #toRegex()}.
+	 * Only this element caches its rendering, the sub-elements just use their cached renderings, 
+	 * otherwise every level of a deep tree would keep a copy of the levels below.
+	 */
+	@Override
+	public void appendTo(StringBuilder sb) {
+		long currentVersion = getVersion();
+		Rendering r = rendering;
+		if (r != null && r.version == currentVersion) {
+			sb.append(r.regex);
+		}
+		else {
+			int mark = sb.length();
+			render(sb);
+			rendering = new Rendering(sb.substring(mark), currentVersion);
+		}
+	}
+	
+	/**
+	 * Appends the Reguler Expression of the current element without {@link Quantifier} and {@link Flags}
+	 * to the given buffer. Overwrite this method to avoid the intermediate String of {@link #elementToRegex()}.
+	 *
+	 * @param sb the buffer to append to, not <code>null</code>
+	 */
+	protected void appendElementTo(StringBuilder sb) {
+		sb.append(elementToRegex());
+	}
+	
+	/**
+	 * Appends the Regular Expression of the current element like {@link #appendTo(StringBuilder)}, 
+	 * but only {@link de.jepfa.regex.elements.Group}s accepted by <code>capturing</code> are rendered as capturing groups, 
+	 * all other groups are rendered as non-capturing groups. The result is not cached. 
+	 * Elements append their sub-elements with this method.
+	 *
+	 * @param sb the buffer to append to, not <code>null</code>
+	 * @param capturing decides which indexable groups keep capturing, <code>null</code> means all 
+	 * 		and a cached rendering is used if there is one
+	 */
+	public void appendTo(StringBuilder sb, Predicate<Element> capturing) {
+		Rendering r = rendering;
+		if (capturing == null && r != null && r.version == getVersion()) {
+			sb.append(r.regex);
+		}
+		else {
+			render(sb, capturing);
+		}
+	}
+	
+	/**
+	 * Writes the Regular Expression of the current element to the given writer. Sub-elements are
+	 * written one by one, so no String of the whole element is created. A cached rendering is written 
+	 * as it is, but nothing is cached by this method.
+	 *
+	 * @param writer the writer to write to, not <code>null</code>
+	 * @throws IOException if the writer fails
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		Rendering r = rendering;
+		if (r != null && r.version == getVersion()) {
+			writer.write(r.regex);
+			return;
+		}
+		if (!getFlags().isEmpty()) {
+			// pseudo Non-capturing-group
+			writer.write("(?");
+			writer.write(getFlags().toRegex());
+			writer.write(":");
+		}
+		writeElementTo(writer);
+		writer.write(getQuantifier().toRegex());
+		if (!getFlags().isEmpty()) {
+			writer.write(")");
+		}
+	}
+	
+	/**
+	 * Writes the Reguler Expression of the current element without {@link Quantifier} and {@link Flags}
+	 * to the given writer. Elements with sub-elements overwrite this method to write them one by one.
+	 *
+	 * @param writer the writer to write to, not <code>null</code>
+	 * @throws IOException if the writer fails
+	 */
+	protected void writeElementTo(Writer writer) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		appendElementTo(sb);
+		writer.append(sb);
+	}
+	
+	/**
+	 * Like {@link #appendElementTo(StringBuilder)}, but for {@link #appendTo(StringBuilder, Predicate)}.
+	 * Elements that contain {@link de.jepfa.regex.elements.Group}s have to overwrite this method.
+	 *
+	 * @param sb the buffer to append to, not <code>null</code>
+	 * @param capturing decides which indexable groups keep capturing, <code>null</code> means all
+	 */
+	protected void appendElementTo(StringBuilder sb, Predicate<Element> capturing) {
+		appendElementTo(sb);
+	}
+	
+	private void render(StringBuilder sb) {
+		render(sb, null);
+	}
+	
+	private void render(StringBuilder sb, Predicate<Element> capturing) {
 		if (!getFlags().isEmpty()) {
 			// pseudo Non-capturing-group
 			sb.append("(?");
-			sb.append(getFlags().toRegex());
+			getFlags().appendTo(sb);
 			sb.append(":");
 		}
-		sb.append(elementToRegex());
-		sb.append(getQuantifier().toRegex());
+		if (capturing == null) {
+			appendElementTo(sb);
+		}
+		else {
+			appendElementTo(sb, capturing);
+		}
+		getQuantifier().appendTo(sb);
 		if (!getFlags().isEmpty()) {
 			sb.append(")");
 		}
-		
-		return sb.toString();
 	}
 
 
@@ -287,9 +592,16 @@ public abstract class Element implements Regexable, Cloneable {
 	@Override
 	public Element clone() throws CloneNotSupportedException {
 		Element clone = (Element) super.clone();
-		clone.q = q.clone();
-		clone.flags = flags.clone();
+		clone.flags = flags == Flags.EMPTY ? flags : flags.clone();
 		clone.cloneMode = true;
+		clone.rendering = null;
+		clone.containers = null;
+		clone.sharing = null;
+		// the clone shares the sub-elements of this element
+		if (this instanceof ChangeableElement) {
+			clone.sharing = getSharing();
+			clone.sharing.add(clone);
+		}
 		return clone;
 	}
 
@@ -2,14 +2,12 @@ package de.jepfa.regex.components;
 
 import static de.jepfa.regex.helper.Checker.*;
 
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.EnumSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
 import de.jepfa.regex.RegexBuilder.Flag;
 
 
@@ -22,7 +20,38 @@ import de.jepfa.regex.RegexBuilder.Flag;
  */
 public class Flags implements Regexable, Cloneable {
 
-	private Map<Flag, Boolean> flags = new HashMap<>();
+	private static final Flag[] ALL_FLAGS = Flag.values();
+	
+	/**
+	 * The rendered flags and the set of flags for every combination of flags, indexed by their mask.
+	 */
+	private static final String[] RENDERINGS = new String[1 << ALL_FLAGS.length];
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static final Set<Flag>[] SETS = new Set[1 << ALL_FLAGS.length];
+	
+	static {
+		for (int mask = 0; mask < RENDERINGS.length; mask++) {
+			StringBuilder sb = new StringBuilder();
+			Set<Flag> set = EnumSet.noneOf(Flag.class);
+			for (Flag flag : ALL_FLAGS) {
+				if ((mask & maskOf(flag)) != 0) {
+					flag.appendTo(sb);
+					set.add(flag);
+				}
+			}
+			RENDERINGS[mask] = sb.toString();
+			SETS[mask] = Collections.unmodifiableSet(set);
+		}
+	}
+	
+	/**
+	 * The flags of all elements without own flags. It is shared, so it must never be changed.
+	 */
+	static final Flags EMPTY = new Flags();
+	
+
+	private int enabled;
+	private int disabled;
 
 
 	/**
@@ -37,14 +66,14 @@ public class Flags implements Regexable, Cloneable {
 	 * @return a list of all switched on flags, not <code>null</code>
 	 */
 	public Set<Flag> getEnabledFlags() {
-		return getFlagsFor(Boolean.TRUE);
+		return SETS[enabled];
 	}
 
 	/**
 	 * @return a list of all switched off flags, not <code>null</code>
 	 */
 	public Set<Flag> getDisabledFlags() {
-		return getFlagsFor(Boolean.FALSE);
+		return SETS[disabled];
 	}
 	
 	/**
@@ -52,75 +81,87 @@ public class Flags implements Regexable, Cloneable {
 	 * Neither switched on flags nor switched off flags. 
 	 */
 	public boolean isEmpty() {
-		return flags.isEmpty();
+		return enabled == 0 && disabled == 0;
 	}
 
 	@Override
 	public String toRegex() {
-
-		StringBuffer sb = new StringBuffer();
-
-		if (!flags.isEmpty()) {
-			getFlagsAsRegex(sb);
+		if (disabled == 0) {
+			return RENDERINGS[enabled];
 		}
-
+		StringBuilder sb = new StringBuilder();
+		appendTo(sb);
 		return sb.toString();
 	}
 	
+	@Override
+	public void appendTo(StringBuilder sb) {
+		sb.append(RENDERINGS[enabled]);
+		if (disabled != 0) {
+			sb.append("-").append(RENDERINGS[disabled]);
+		}
+	}
+	
 	
 	
 	@Override
 	public String toString() {
-		return flags.toString();
+		StringBuilder sb = new StringBuilder("{");
+		for (Flag flag : ALL_FLAGS) {
+			if (((enabled | disabled) & maskOf(flag)) != 0) {
+				sb.append(sb.length() > 1 ? ", " : "").append(flag).append("=").append((enabled & maskOf(flag)) != 0);
+			}
+		}
+		return sb.append("}").toString();
 	}
 
 	@Override
 	protected Flags clone() throws CloneNotSupportedException {
-		Flags clone = (Flags) super.clone();
-		clone.flags = new HashMap<>(flags);
-		return clone;
+		return (Flags) super.clone();
 	}
 	
 	void switchOn(Flag ...flags) {
 		checkNotNull(flags);
-		Arrays.asList(flags).forEach(e -> this.flags.put(e, true));
+		int mask = maskOf(flags);
+		checkChangeable(mask);
+		enabled |= mask;
+		disabled &= ~mask;
 	}
 
 	void switchOff(Flag ...flags) {
 		checkNotNull(flags);
-		Arrays.asList(flags).forEach(e -> this.flags.put(e, false));
+		int mask = maskOf(flags);
+		checkChangeable(mask);
+		disabled |= mask;
+		enabled &= ~mask;
 	}
 	
 	void restoreDefaults(Flag ...flags) {
 		checkNotNull(flags);
-		Arrays.asList(flags).forEach(e -> this.flags.remove(e));
+		int mask = maskOf(flags);
+		enabled &= ~mask;
+		disabled &= ~mask;
 	}
 	
 	void restoreAll() {
-		flags.clear();
+		enabled = 0;
+		disabled = 0;
 	}
 	
-
-	private void getFlagsAsRegex(StringBuffer sb) {
-		sb.append(getFlagsAsRegex(getFlagsFor(Boolean.TRUE)));
-		Set<Flag> disabledFlags = getFlagsFor(Boolean.FALSE);
-		if (!disabledFlags.isEmpty()) {
-			sb.append("-");
-			sb.append(getFlagsAsRegex(disabledFlags));
+	
+	private void checkChangeable(int mask) {
+		if (this == EMPTY && mask != 0) {
+			throw new RegexBuilderException("The shared empty flags cannot be changed. Programming error?");
 		}
 	}
 
-	private String getFlagsAsRegex(Set<Flag> flags) {
-		StringBuilder sb = new StringBuilder();
+	private static int maskOf(Flag... flags) {
+		int mask = 0;
 		for (Flag flag : flags) {
-			sb.append(flag.toRegex());
+			checkNotNull(flag);
+			mask |= 1 << flag.ordinal();
 		}
-		return sb.toString();
+		return mask;
 	}
-	
-	private Set<Flag> getFlagsFor(Boolean b) {
-		return Collections.unmodifiableSet(flags.entrySet().stream().filter(e->e.getValue()==b).map(e->e.getKey()).collect(Collectors.toSet()));
-	}
-	
 
 }
\ No newline at end of file
@@ -8,11 +8,13 @@ import de.jepfa.regex.RegexBuilderException;
 /**
  * This class describes the quantification of an {@link Element}. 
  * The default quantification is "there is precise one", the default strategy is {@link Strategy#GREEDY}.
- * 
+ * <p>
+ * Quantifiers are immutable, use {@link #of(int, int, Strategy)} or the <code>with</code>-methods 
+ * to get another one. Common quantifiers are shared instances.
  *
  * @author Jens Pfahl
  */
-public class Quantifier implements Regexable, Cloneable {
+public final class Quantifier implements Regexable, Cloneable {
 	
 	/**
 	 * Constant of unlimited cardinality.
@@ -38,11 +40,72 @@ public class Quantifier implements Regexable, Cloneable {
 		 */
 		POSSESSIVE
 	};
+	
+	/**
+	 * Quantifiers with a min and max (or {@link #UNBOUND}) up to this value are shared.
+	 */
+	private static final int MAX_SHARED = 16;
+	private static final Strategy[] STRATEGIES = Strategy.values();
+	private static final Quantifier[] SHARED = new Quantifier[(MAX_SHARED + 1) * (MAX_SHARED + 2) * STRATEGIES.length];
+	
+	static {
+		for (int min = 0; min <= MAX_SHARED; min++) {
+			for (int max = UNBOUND; max <= MAX_SHARED; max++) {
+				for (Strategy strategy : STRATEGIES) {
+					SHARED[sharedIndex(min, max, strategy)] = new Quantifier(min, max, strategy);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Exact one, the default.
+	 */
+	public static final Quantifier ONE = of(1, 1, Strategy.GREEDY);
+	/**
+	 * Zero or one, rendered as <code>?</code>.
+	 */
+	public static final Quantifier OPTIONAL = of(0, 1, Strategy.GREEDY);
+	/**
+	 * Zero or more, rendered as <code>*</code>.
+	 */
+	public static final Quantifier ARBITRARY = of(0, UNBOUND, Strategy.GREEDY);
+	/**
+	 * One or more, rendered as <code>+</code>.
+	 */
+	public static final Quantifier MANY = of(1, UNBOUND, Strategy.GREEDY);
 
 
-	private int min = 1, max = 1;
-	private Quantifier.Strategy strategy = Strategy.GREEDY;
+	private final int min, max;
+	private final Quantifier.Strategy strategy;
+	private final String regex;
 
+	
+	private Quantifier(int min, int max, Strategy strategy) {
+		this.min = min;
+		this.max = max;
+		this.strategy = strategy;
+		this.regex = renderRegex();
+	}
+	
+	/**
+	 * Returns a {@link Quantifier} with the given values.
+	 *
+	 * @param min the minimal cardinality, not less than zero
+	 * @param max the maximal cardinality, not less than zero or {@link #UNBOUND}
+	 * @param strategy not <code>null</code>
+	 * 
+	 * @return not <code>null</code>
+	 */
+	public static Quantifier of(int min, int max, Strategy strategy) {
+		checkCondition("min should not be less than zero", min < 0);
+		checkCondition("max should not be less than zero", max < 0 && max != UNBOUND);
+		checkNotNull(strategy);
+		if (min <= MAX_SHARED && max <= MAX_SHARED) {
+			return SHARED[sharedIndex(min, max, strategy)];
+		}
+		return new Quantifier(min, max, strategy);
+	}
 
 
 	/**
@@ -71,9 +134,123 @@ public class Quantifier implements Regexable, Cloneable {
 	public Quantifier.Strategy getStrategy() {
 		return strategy;
 	}
+	
+	/**
+	 * @param strategy not <code>null</code>
+	 * @return a {@link Quantifier} like this but with the given strategy
+	 */
+	public Quantifier withStrategy(Quantifier.Strategy strategy) {
+		return of(min, max, strategy);
+	}
+	
+	/**
+	 * @param min the minimal cardinality
+	 * @return a {@link Quantifier} like this but with the given minimum
+	 */
+	public Quantifier withMin(int min) {
+		return of(min, max, strategy);
+	}
+	
+	/**
+	 * @param max the maximal cardinality
+	 * @return a {@link Quantifier} like this but with the given maximum
+	 */
+	public Quantifier withMax(int max) {
+		return of(min, max, strategy);
+	}
+	
+	/**
+	 * @param least the minimal cardinality
+	 * @return a {@link Quantifier} like this but with the given minimum and an {@link #UNBOUND} maximum
+	 */
+	public Quantifier withLeast(int least) {
+		return of(least, UNBOUND, strategy);
+	}
+	
+	/**
+	 * @param most the maximal cardinality
+	 * @return a {@link Quantifier} like this but with the given maximum and a minimum of <code>0</code>
+	 */
+	public Quantifier withMost(int most) {
+		return of(0, most, strategy);
+	}
 
 	@Override
 	public String toRegex() {
+		checkRegex();
+		return regex;
+	}
+	
+	@Override
+	public void appendTo(StringBuilder sb) {
+		checkRegex();
+		sb.append(regex);
+	}
+
+
+	/**
+	 * Quantifiers are immutable, so this returns the same instance.
+	 */
+	@Override
+	public Quantifier clone() throws CloneNotSupportedException {
+		return this;
+	}
+	
+	@Override
+	public int hashCode() {
+		return (31 * min + max) * 31 + strategy.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Quantifier)) {
+			return false;
+		}
+		Quantifier other = (Quantifier) obj;
+		return min == other.min && max == other.max && strategy == other.strategy;
+	}
+
+	@Override
+	public String toString() {
+		return "[strategy=" + strategy + ", min=" + min + ", max=" + getMaxAsString() + "]";
+	}
+
+	
+	
+	private static int sharedIndex(int min, int max, Strategy strategy) {
+		return (min * (MAX_SHARED + 2) + max + 1) * STRATEGIES.length + strategy.ordinal();
+	}
+	
+	private void checkRegex() {
+		if (regex == null) {
+			throw new RegexBuilderException("unsupported constellation: min=" + min + 
+					", max=" + getMaxAsString());
+		}
+	}
+	
+	private String renderRegex() {
+		String s = getCardinalityAsRegex();
+		if (s == null) {
+			return null;
+		}
+		if (!s.isEmpty()) {
+			switch (strategy) {
+				case LAZY:
+					return s + '?';
+				case POSSESSIVE:
+					return s + '+';
+
+				default:
+					break;
+			}
+		}
+		return s;
+	}
+	
+	private String getCardinalityAsRegex() {
 		String s = null;
 
 		if (min == 0 && max == 1) { // ?
@@ -100,65 +277,8 @@ public class Quantifier implements Regexable, Cloneable {
 		if (min > 1 && max == UNBOUND) { // {0,max}
 			s = "{" + min + ",}";
 		}
-		if (s == null) {
-			throw new RegexBuilderException("unsupported constellation: min=" + min + 
-					", max=" + getMaxAsString());
-		}
-		if (!s.isEmpty()) {
-			switch (strategy) {
-				case LAZY:
-					s = s + "?";
-					break;
-				case POSSESSIVE:
-					s = s + "+";
-					break;
-
-				default:
-					break;
-			}
-		}
-
 		return s;
 	}
-
-
-	@Override
-	public Quantifier clone() throws CloneNotSupportedException {
-		return (Quantifier) super.clone();
-	}
-
-	@Override
-	public String toString() {
-		return "[strategy=" + strategy + ", min=" + min + ", max=" + getMaxAsString() + "]";
-	}
-
-	
-	
-	void setStrategy(Quantifier.Strategy strategy) {
-		this.strategy = strategy;
-	}
-
-	void setMin(int min) {
-		checkCondition("min should not be less than zero", () -> (min < 0));
-		this.min = min;
-	}
-	
-	void setMax(int max) {
-		checkCondition("max should not be less than zero", () -> (max < 0 && max != Quantifier.UNBOUND));
-		this.max = max;
-	}
-	
-	void setLeast(int least) {
-		setMin(least);
-		this.max = UNBOUND;
-	}
-	
-	void setMost(int most) {
-		this.min = 0;
-		setMax(most);
-	}
-	
-	
 	
 	private Object getMaxAsString() {
 		return max == UNBOUND ? "unbound" : max;
@@ -13,4 +13,15 @@ public interface Regexable {
 	 * @return not <code>null</code>, but an empty String is possible
 	 */
 	public String toRegex();
-}
\ No newline at end of file
+	
+	/**
+	 * Appends the Regular Expression of this object to the given buffer. 
+	 * Composed objects should append their parts directly to the same buffer instead of 
+	 * concatenating the results of {@link #toRegex()}.
+	 *
+	 * @param sb the buffer to append to, not <code>null</code>
+	 */
+	public default void appendTo(StringBuilder sb) {
+		sb.append(toRegex());
+	}
+}
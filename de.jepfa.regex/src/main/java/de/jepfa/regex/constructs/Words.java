@@ -2,6 +2,7 @@ package de.jepfa.regex.constructs;
 
 import java.util.List;
 
+import de.jepfa.regex.components.ChangeableElement;
 import de.jepfa.regex.components.Element;
 import de.jepfa.regex.elements.StringElement;
 import de.jepfa.regex.elements.Strings;
@@ -15,6 +16,8 @@ import de.jepfa.regex.helper.Checker;
  */
 public class Words extends Word {
 
+	protected boolean factorized;
+
 
 	public Words(Element... elem) {
 		super(elem);
@@ -35,10 +38,29 @@ public class Words extends Word {
 		});
 	}
 
+	/**
+	 * Renders all words as a prefix tree, see {@link Strings#factorize()}.
+	 *
+	 * @return a changed clone, see {@link ChangeableElement}
+	 */
+	public <T extends Words> T factorize() {
+		return cloneAndCall(e -> e.factorized = true);
+	}
+
+	/**
+	 * @return <code>true</code> if the words are rendered as prefix tree.
+	 * 
+	 * @see #factorize()
+	 */
+	public boolean isFactorized() {
+		return factorized;
+	}
+
 	@Override
 	protected void fillConstruct(List<Element> list, Element... content) {
 		addBoundary(list);
-		list.add(new Strings(content));
+		Strings strings = new Strings(content);
+		list.add(factorized ? strings.factorize() : strings);
 		addBoundary(list);
 	}
 
@@ -2,13 +2,19 @@ package de.jepfa.regex.elements;
 
 import static de.jepfa.regex.helper.Checker.*;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
 import de.jepfa.regex.RegexBuilderException;
 import de.jepfa.regex.components.ChangeableElement;
 import de.jepfa.regex.components.CharClass;
+import de.jepfa.regex.components.Quantifier;
 import de.jepfa.regex.components.Regexable;
+import de.jepfa.regex.components.CharPredicate;
+import de.jepfa.regex.helper.SharedList;
 
 
 /**
@@ -55,45 +61,80 @@ public class Chars extends ChangeableElement {
 		@Override
 		public String toRegex() {
 			StringBuilder sb = new StringBuilder();
+			appendTo(sb);
+			return sb.toString();
+		}
+		
+		@Override
+		public void appendTo(StringBuilder sb) {
 			if (charClass != null) {
-				sb.append(charClass.toRegex());
+				charClass.appendTo(sb);
 			}
 			else if (ch != null) {
-				sb.append(getQuotedChar(ch));
+				appendQuotedChar(sb, ch);
 			}
 			else if (cfrom != null && cto != null) {
-				sb.append(getQuotedChar(cfrom));
+				appendQuotedChar(sb, cfrom);
 				sb.append('-');
-				sb.append(getQuotedChar(cto));
+				appendQuotedChar(sb, cto);
+			}
+			else {
+				throw new RegexBuilderException("Empty or incorrect CharData:" + this + " Programming error?");
+			}
+		}
+		
+		private CharPredicate toPredicate() {
+			if (charClass != null) {
+				return CharPredicate.of(charClass);
+			}
+			else if (ch != null) {
+				return CharPredicate.of(ch);
+			}
+			else if (cfrom != null && cto != null) {
+				return CharPredicate.range(cfrom, cto);
 			}
 			else {
 				throw new RegexBuilderException("Empty or incorrect CharData:" + this + " Programming error?");
 			}
-			
-			return sb.toString();
 		}
 		
-		private String getQuotedChar(char ch) {
+		private void appendQuotedChar(StringBuilder sb, char ch) {
 			if ((ch >= 'a' && ch <= 'z')
 					|| (ch >= 'A' && ch <= 'Z')
 					|| (ch >= '0' && ch <= '9')) {
-				return String.valueOf(ch);
+				sb.append(ch);
 			}
 			else {
-				return "\\" + String.valueOf(ch);
+				sb.append('\\').append(ch);
 			}
 		}
 
 	}
+	
+	/**
+	 * The result of {@link Chars#flatten()} together with the {@link #getVersion() version} it was computed at.
+	 */
+	private static final class Flattening {
+		
+		private final Chars flattened;
+		private final long version;
+		
+		private Flattening(Chars flattened, long version) {
+			this.flattened = flattened;
+			this.version = version;
+		}
+	}
 
+	
 
-	protected List<Chars.CharSet> charSet = new LinkedList<>();
+	protected List<Chars.CharSet> charSet = new SharedList<>();
 	protected boolean not;
 	protected boolean and;
 	/**
 	 * With this list you can combine Chars into Chars.
 	 */
-	protected List<Chars> otherChars = new LinkedList<>();
+	protected List<Chars> otherChars = new SharedList<>();
+	private Flattening flattening;
 
 
 	/**
@@ -211,7 +252,7 @@ public class Chars extends ChangeableElement {
 	 */
 	public <T extends Chars> T union(Chars other) {
 		checkNotNull(other);
-		return cloneAndCall(e -> e.otherChars.add(other));
+		return cloneAndCall(e -> e.addOtherChars(other));
 	}
 	
 	/**
@@ -265,7 +306,7 @@ public class Chars extends ChangeableElement {
 	 * @return a changed clone, see {@link ChangeableElement}
 	 */
 	public <T extends Chars> T intersect(Chars other) {
-		return cloneAndCall(e -> e.otherChars.add(other.and()));
+		return cloneAndCall(e -> e.addOtherChars(other.and()));
 	}
 	
 	/**
@@ -319,7 +360,7 @@ public class Chars extends ChangeableElement {
 	 * @return a changed clone, see {@link ChangeableElement}
 	 */
 	public <T extends Chars> T subtract(Chars other) {
-		return cloneAndCall(e -> e.otherChars.add(other.and().not()));
+		return cloneAndCall(e -> e.addOtherChars(other.and().not()));
 	}
 	
 	/**
@@ -370,32 +411,88 @@ public class Chars extends ChangeableElement {
 	public boolean isNot() {
 		return not;
 	}
+	
+	/**
+	 * @return <code>true</code> if this Character Set contains no characters, so nothing is rendered.
+	 */
+	public boolean isEmpty() {
+		return charSet.isEmpty();
+	}
 
+	/**
+	 * Compiles this Character Set into a {@link CharPredicate}, that tests single characters without 
+	 * {@link java.util.regex}, e.g. for tokenizing or trimming loops. The {@link Quantifier} of this 
+	 * Character Set and the flags of the {@link RegexBuilder} are ignored.
+	 *
+	 * @return not <code>null</code>
+	 */
+	public CharPredicate toPredicate() {
+		if (charSet.isEmpty()) {
+			return CharPredicate.NONE;
+		}
+		if (!isCompilable(false)) {
+			// evaluate the rendered Character Set instead
+			StringBuilder sb = new StringBuilder();
+			if (!getFlags().isEmpty()) {
+				sb.append("(?");
+				getFlags().appendTo(sb);
+				sb.append(":");
+			}
+			appendElementTo(sb);
+			if (!getFlags().isEmpty()) {
+				sb.append(")");
+			}
+			return CharPredicate.ofRegex(sb.toString());
+		}
+		
+		return evaluate(0);
+	}
 	
 	@Override
 	protected String elementToRegex() {
+		StringBuilder sb = new StringBuilder();
+		appendElementTo(sb);
+		return sb.toString();
+	}
+	
+	@Override
+	protected void appendElementTo(StringBuilder sb) {
 		if (charSet.isEmpty()) {
-			return "";
+			return;
 		}
-
-		StringBuilder sb = new StringBuilder();
+		
+		long version = getVersion();
+		Flattening f = flattening;
+		if (f == null || f.version != version) {
+			f = new Flattening(flatten(), version);
+			flattening = f;
+		}
+		Chars flattened = f.flattened;
+		if (flattened != null) {
+			flattened.appendCharSetTo(sb);
+		}
+		else {
+			appendCharSetTo(sb);
+		}
+	}
+	
+	private void appendCharSetTo(StringBuilder sb) {
 		sb.append("[");
 		if (not) {
 			sb.append("^");
 		}
 		for (Chars.CharSet c : charSet) {
-			sb.append(c.toRegex());
+			c.appendTo(sb);
 		}
 
 		for (Chars other : otherChars) {
 			if (other.and) {
 				sb.append("&&");
 			}
-			sb.append(other.toRegex());
+			other.appendTo(sb, null);
 		}
 
 		sb.append("]");
-		return sb.toString();
 	}
 	
 	
@@ -403,11 +500,17 @@ public class Chars extends ChangeableElement {
 	public Chars clone() throws CloneNotSupportedException {
 		Chars clone = (Chars) super.clone();
 		//Do not clone the elements of this list! All is functional, so it makes no sense.
-		clone.charSet = new LinkedList<>(charSet);
-		clone.otherChars = new LinkedList<>(otherChars);
+		clone.charSet = SharedList.copyOf(charSet);
+		clone.otherChars = SharedList.copyOf(otherChars);
+		clone.flattening = null;
 		return clone;
 	}
 	
+	protected void addOtherChars(Chars other) {
+		otherChars.add(other);
+		contain(other);
+	}
+	
 	/**
 	 * Defines the current Character Set as <i>Intersection</i>.
 	 * This has only an effect for {@link #otherChars}-members.
@@ -416,6 +519,185 @@ public class Chars extends ChangeableElement {
 		return cloneAndCall(e -> e.and = true);
 	}
 
+	/**
+	 * Evaluates all members and nested Character Sets like java.util.regex: 
+	 * all members up to the next intersection are one operand.
+	 * 
+	 * @param flags <code>0</code> or {@link Pattern#CASE_INSENSITIVE} optionally with {@link Pattern#UNICODE_CASE}
+	 */
+	private CharPredicate evaluate(int flags) {
+		CharPredicate operand = CharPredicate.NONE;
+		if ((flags & Pattern.CASE_INSENSITIVE) == 0) {
+			for (Chars.CharSet c : charSet) {
+				operand = operand.union(c.toPredicate());
+			}
+		}
+		else {
+			CharPredicate singles = CharPredicate.NONE;
+			CharPredicate ranges = CharPredicate.NONE;
+			for (Chars.CharSet c : charSet) {
+				if (c.ch != null) {
+					singles = singles.union(c.toPredicate());
+				}
+				else {
+					ranges = ranges.union(c.toPredicate());
+				}
+			}
+			operand = CharPredicate.caseInsensitive(singles, ranges, (flags & Pattern.UNICODE_CASE) != 0);
+		}
+		
+		CharPredicate intersection = null;
+		for (Chars other : otherChars) {
+			if (other.and) {
+				intersection = intersection == null ? operand : intersection.intersect(operand);
+				operand = CharPredicate.NONE;
+			}
+			operand = operand.union(other.evaluate(flags));
+		}
+		intersection = intersection == null ? operand : intersection.intersect(operand);
+		
+		return not ? intersection.negate() : intersection;
+	}
+	
+	/**
+	 * Evaluates the set algebra at build time into one sorted list of merged ranges, 
+	 * e.g. <code>[a-z&&[^y]]</code> becomes <code>[a-xz]</code>.
+	 * <p>
+	 * Flags of the {@link RegexBuilder} are unknown here, so this is only done, if the flattened Character Set
+	 * also matches the same characters with {@link Flag#IGNORE_CASE_SENSITIVE}. 
+	 * Character classes are never flattened, their content depends on the flags. Neither are illegal ranges
+	 * like <code>z-a</code>, so they still fail when the pattern is compiled.
+	 * <p>
+	 * The result is cached until this Character Set is changed in-place, see {@link #appendElementTo(StringBuilder)}.
+	 *
+	 * @return the flattened Character Set or <code>null</code> if it isn't possible or not shorter
+	 */
+	private Chars flatten() {
+		if (hasCharClass() || hasIllegalRange() || (otherChars.isEmpty() && !hasMergeableMembers())) {
+			return null;
+		}
+		for (Chars other : otherChars) {
+			if (!other.isCompilable(true)) {
+				return null;
+			}
+		}
+		
+		CharPredicate predicate = evaluate(0);
+		boolean negated = isSupplementary(predicate);
+		if (negated) {
+			predicate = predicate.negate();
+		}
+		int[] ranges = predicate.getRanges();
+		if (ranges.length == 0 || isSupplementary(predicate)) {
+			return null;
+		}
+		
+		Chars flattened = new Chars("");
+		flattened.not = negated;
+		for (int i = 0; i < ranges.length; i += 2) {
+			char from = (char) ranges[i];
+			char to = (char) ranges[i + 1];
+			if (to - from > 1) {
+				flattened.charSet.add(new CharSet(from, to));
+			}
+			else {
+				flattened.charSet.add(new CharSet(from));
+				if (to != from) {
+					flattened.charSet.add(new CharSet(to));
+				}
+			}
+		}
+		
+		if (otherChars.isEmpty()) {
+			// only overlapping or adjacent members could be merged
+			StringBuilder original = new StringBuilder();
+			appendCharSetTo(original);
+			StringBuilder merged = new StringBuilder();
+			flattened.appendCharSetTo(merged);
+			if (flattened.charSet.size() >= charSet.size() || merged.length() >= original.length()) {
+				return null;
+			}
+		}
+		for (int flags : new int[] {Pattern.CASE_INSENSITIVE, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE}) {
+			if (!evaluate(flags).equals(flattened.evaluate(flags))) {
+				return null;
+			}
+		}
+		return flattened;
+	}
+	
+	/**
+	 * @return <code>true</code> if at least two members overlap or are adjacent, so they could be merged
+	 */
+	private boolean hasMergeableMembers() {
+		long[] members = new long[charSet.size()];
+		for (int i = 0; i < members.length; i++) {
+			Chars.CharSet c = charSet.get(i);
+			char from = c.ch != null ? c.ch : c.cfrom;
+			char to = c.ch != null ? c.ch : c.cto;
+			members[i] = (long) from << 32 | to;
+		}
+		Arrays.sort(members);
+		for (int i = 1; i < members.length; i++) {
+			if ((members[i] >>> 32) <= (int) members[i - 1] + 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean hasIllegalRange() {
+		for (Chars.CharSet c : charSet) {
+			if (c.cfrom != null && c.cto != null && c.cfrom > c.cto) {
+				return true;
+			}
+		}
+		for (Chars other : otherChars) {
+			if (other.hasIllegalRange()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean hasCharClass() {
+		for (Chars.CharSet c : charSet) {
+			if (c.charClass != null) {
+				return true;
+			}
+		}
+		for (Chars other : otherChars) {
+			if (other.hasCharClass()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isSupplementary(CharPredicate predicate) {
+		int[] ranges = predicate.getRanges();
+		return ranges.length > 0 && ranges[ranges.length - 1] > Character.MAX_VALUE;
+	}
+	
+	/**
+	 * Flags and quantifiers of nested Character Sets are rendered as plain characters, 
+	 * so only a Character Set without them can be compiled member by member.
+	 */
+	private boolean isCompilable(boolean nested) {
+		if (!getFlags().isEmpty()) {
+			return false;
+		}
+		if (nested && (charSet.isEmpty() || getQuantifier().getMin() != 1 || getQuantifier().getMax() != 1)) {
+			return false;
+		}
+		for (Chars other : otherChars) {
+			if (!other.isCompilable(true)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 
 
 }
\ No newline at end of file
@@ -2,9 +2,19 @@ package de.jepfa.regex.elements;
 
 import static de.jepfa.regex.helper.Checker.*;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 
 import de.jepfa.regex.RegexBuilder;
@@ -12,6 +22,7 @@ import de.jepfa.regex.RegexBuilderException;
 import de.jepfa.regex.components.ChangeableElement;
 import de.jepfa.regex.components.Element;
 import de.jepfa.regex.helper.Changer;
+import de.jepfa.regex.helper.SharedList;
 
 
 /**
@@ -22,9 +33,34 @@ import de.jepfa.regex.helper.Changer;
  */
 public class Group extends ChangeableElement {
 
-	protected List<Element> elems = new LinkedList<>();
-	private Integer index = isIndexable() ? 0 : null;
-	private int lastIndex = 0;
+	/**
+	 * Set while trees are derived from other trees, see {@link #detached(Supplier)}.
+	 */
+	private static final ThreadLocal<Boolean> detached = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	protected List<Element> elems = new SharedList<>();
+	/**
+	 * The group this group was added to last. The index of this group is its index in the tree of that group.
+	 */
+	private Group container;
+	/**
+	 * The indexes of all sub-groups, if this group is the root of a tree.
+	 */
+	private volatile Indexing indexing;
+	
+	/**
+	 * The unmodifiable indexes of all sub-groups together with the {@link #getVersion() version} they were computed at.
+	 */
+	private static final class Indexing {
+		
+		private final Map<Group, Integer> indexes;
+		private final long version;
+		
+		private Indexing(Map<Group, Integer> indexes, long version) {
+			this.indexes = Collections.unmodifiableMap(indexes);
+			this.version = version;
+		}
+	}
 
 	/**
 	 * Create a new {@link Group} with a set of {@link Element Elements}.
@@ -48,6 +84,18 @@ public class Group extends ChangeableElement {
 		return cloneAndCall(e -> e.addInternal(elements));
 	}
 	
+	/**
+	 * Removes all {@link Element elements} of this group.
+	 *
+	 * @return a changed clone, see {@link ChangeableElement}
+	 */
+	public <T extends Group> T clear() {
+		return cloneAndCall(e -> {
+			((Group) e).releaseElements();
+			e.elems = new SharedList<>();
+		});
+	}
+	
 	/**
 	 * Returns all {@link Element elements} of this group.<br>
 	 * It is not intended to modify already added elements!
@@ -59,6 +107,17 @@ public class Group extends ChangeableElement {
 	}
 	
 	
+	/**
+	 * Returns the {@link Element elements} that are rendered. These are the same as {@link #getElements()}, 
+	 * except for {@link de.jepfa.regex.components.Construct}s, that render their content within further elements.
+	 * 
+	 * @return not <code>null</code>
+	 */
+	public List<Element> getRenderedElements() {
+		return Collections.unmodifiableList(getElemsForRegex());
+	}
+	
+	
 	/**
 	 * Returns <code>true</code>, if this {@link Group} is indexable, means it is a <i>Capturing-Group</i>.
 	 * Returns <code>false</code>, if this {@link Group} is NOT indexable, means it is a <i>Non-Capturing-Group</i>.
@@ -80,19 +139,35 @@ public class Group extends ChangeableElement {
 	 * If you use {@link Group#setChangeable()} or the {@link Changer} it is recommend to 
 	 * use this method after {@link RegexBuilder#buildPattern()} or {@link RegexBuilder#runGroupIndexer()} 
 	 * was running.
+	 * <p>
+	 * The index is the one in the tree this group was added to last. The indexes of a tree are computed 
+	 * once, when the first index is read, and again only after an element of the tree was changed in-place.
 	 *
 	 * @return the index or <code>null</code>
 	 * @see #isIndexable()
 	 */
 	public Integer getIndex() {
-		return index;
+		if (!isIndexable()) {
+			return null;
+		}
+		Group root = this;
+		while (root.container != null && root.container != this) {
+			root = root.container;
+		}
+		if (root == this) {
+			return 0;
+		}
+		Integer index = root.getIndexes().get(this);
+		return index != null ? index : 0;
 	}
 	
 
 	@Override
 	public Group clone() throws CloneNotSupportedException {
 		Group clone = (Group) super.clone();
-		clone.elems = new LinkedList<>(elems);
+		clone.elems = SharedList.copyOf(elems);
+		clone.container = null;
+		clone.indexing = null;
 		//clone.index = 0; // TODO reset index to be on the safe side to avoid duplicate indexes.
 		//clone.lastIndex = 0;
 		
@@ -107,18 +182,54 @@ public class Group extends ChangeableElement {
 	@Override
 	protected String elementToRegex() {
 		StringBuilder sb = new StringBuilder();
+		appendElementTo(sb);
+		return sb.toString();
+	}
+	
+	@Override
+	protected void appendElementTo(StringBuilder sb) {
+		appendElementTo(sb, null);
+	}
+	
+	@Override
+	protected void appendElementTo(StringBuilder sb, Predicate<Element> capturing) {
 		sb.append("(");
-		sb.append(getPrefix());
+		appendPrefixTo(sb, capturing);
 		boolean firstDone = false;
 		for (Element element : getElemsForRegex()) {
 			if (firstDone) {
 				sb.append(getOperator());
 			}
-			sb.append(element.toRegex());
+			element.appendTo(sb, capturing);
 			firstDone = true;
 		}
 		sb.append(")");
-		return sb.toString();
+	}
+	
+	@Override
+	protected void writeElementTo(Writer writer) throws IOException {
+		writer.write("(");
+		writer.write(getPrefix());
+		boolean firstDone = false;
+		for (Element element : getElemsForRegex()) {
+			if (firstDone) {
+				writer.write(getOperator());
+			}
+			element.writeTo(writer);
+			firstDone = true;
+		}
+		writer.write(")");
+	}
+	
+	/**
+	 * Appends the {@link #getPrefix() prefix}. If this group is indexable but not accepted 
+	 * by <code>capturing</code>, it is turned into a non-capturing group.
+	 */
+	protected final void appendPrefixTo(StringBuilder sb, Predicate<Element> capturing) {
+		if (capturing != null && isIndexable() && !capturing.test(this)) {
+			sb.append("?:");
+		}
+		sb.append(getPrefix());
 	}
 
 	/**
@@ -133,7 +244,7 @@ public class Group extends ChangeableElement {
 
 	@Override
 	public String toString() {
-		return this.getClass().getSimpleName() + " [index=" + index + ", q=" + getQuantifier() + ", flags=" + getFlags() + "] = " + toRegex();
+		return this.getClass().getSimpleName() + " [index=" + getIndex() + ", q=" + getQuantifier() + ", flags=" + getFlags() + "] = " + toRegex();
 	}
 
 	
@@ -153,58 +264,149 @@ public class Group extends ChangeableElement {
 	}
 	
 	protected void addInternal(Element... elements) {
+		if (!cloneMode) {
+			// only an in-place change can add this group to one of its own children
+			checkCycle(elements);
+		}
+		for (Element e : elements) {
+			elems.add(e);
+			contain(e);
+		}
+		adopt(elements);
+	}
+	
+	/**
+	 * Runs the given supplier in the current thread, without making the groups it creates the containers 
+	 * of their elements. Use it to derive trees from other trees, e.g. optimized ones, 
+	 * so the {@link #getIndex() indexes} of the original groups are not changed.
+	 *
+	 * @param supplier not <code>null</code>
+	 * @return the result of the supplier
+	 */
+	public static <T> T detached(Supplier<T> supplier) {
+		checkNotNull(supplier);
+		Boolean outer = detached.get();
+		detached.set(Boolean.TRUE);
+		try {
+			return supplier.get();
+		}
+		finally {
+			detached.set(outer);
+		}
+	}
+	
+	/**
+	 * Makes this group the container of the given elements, whose indexes they report. 
+	 * A clone takes the place of its origin, so the elements of an adopted group are adopted by it as well.
+	 * Only the elements of the adopted groups are visited, not the whole tree. 
+	 * Nothing is adopted within {@link #detached(Supplier)}.
+	 */
+	protected final void adopt(Element... elements) {
+		if (detached.get()) {
+			return;
+		}
 		for (Element e : elements) {
 			if (e instanceof Group) {
 				Group group = (Group) e;
-				check(this, group);
-				setIndex(this, group);
+				group.container = this;
+				for (Element child : group.elems) {
+					if (child instanceof Group) {
+						((Group) child).container = group;
+					}
+				}
 			}
-			elems.add(e);
 		}
 	}
-
-	protected void runIndexer() {
-		lastIndex = 0;
+	
+	private void releaseElements() {
 		for (Element e : elems) {
-			if (e instanceof Group) {
-				setIndex(this, (Group) e);
+			if (e instanceof Group && ((Group) e).container == this) {
+				((Group) e).container = null;
 			}
 		}
 	}
 
-	private static void setIndex(Group root, Group subGroup) {
-		
-		if (subGroup.isIndexable()) {
-		
-			int rootIndex = root.index != null ? root.index : 0;
-			int newIndex = root.lastIndex + rootIndex + 1;
-			
-			subGroup.index = newIndex;
-			root.lastIndex = newIndex;
-			
-		}
-		else {
-			subGroup.index = null;
+	/**
+	 * Indexes all sub-groups in the order they occur in the Regular Expression, 
+	 * and makes this group the container of its elements again, if they were added to another group since. 
+	 * The indexes are computed only once as long as no element of this tree is changed in-place.
+	 */
+	protected void runIndexer() {
+		adopt(elems.toArray(new Element[elems.size()]));
+		getIndexes();
+	}
+	
+	private Map<Group, Integer> getIndexes() {
+		long version = getVersion();
+		Indexing i = indexing;
+		if (i == null || i.version != version) {
+			i = new Indexing(computeIndexes(null), version);
+			indexing = i;
 		}
-		
-		for (Element e : subGroup.getElements()) {
+		return i.indexes;
+	}
+	
+	/**
+	 * Computes the indexes of all indexable sub-groups like {@link #runIndexer()} does, 
+	 * but without changing any group. If a group occurs several times, the last index wins.
+	 *
+	 * @param capturing only these groups are counted, see {@link #appendTo(StringBuilder, Predicate)}, 
+	 * 		<code>null</code> means all
+	 * @return a new identity map from group to index, not <code>null</code>
+	 */
+	protected Map<Group, Integer> computeIndexes(Predicate<Group> capturing) {
+		Map<Group, Integer> indexes = new IdentityHashMap<>();
+		int[] lastIndex = {0};
+		forEachSubGroup(group -> {
+			if (group.isIndexable() && (capturing == null || capturing.test(group))) {
+				indexes.put(group, ++lastIndex[0]);
+			}
+		});
+		return indexes;
+	}
+	
+	/**
+	 * Visits all sub-groups iteratively in the order they occur in the Regular Expression.
+	 */
+	protected final void forEachSubGroup(Consumer<Group> visitor) {
+		Deque<Iterator<Element>> stack = new ArrayDeque<>();
+		stack.push(getElemsForRegex().iterator());
+		while (!stack.isEmpty()) {
+			Iterator<Element> it = stack.peek();
+			if (!it.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Element e = it.next();
 			if (e instanceof Group) {
-				setIndex(root, (Group) e);
+				Group group = (Group) e;
+				visitor.accept(group);
+				stack.push(group.getElemsForRegex().iterator());
 			}
 		}
 	}
 
 
-	private void check(Group search, Group other) {
-		for (Element otherElement : other.getElements()) {
-			if (otherElement == search) {
+	/**
+	 * Throws a {@link RegexBuilderException} if this group is part of one of the given elements.
+	 * Every group is visited only once.
+	 */
+	protected void checkCycle(Element... elements) {
+		Set<Group> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Element> stack = new ArrayDeque<>();
+		for (Element e : elements) {
+			stack.push(e);
+		}
+		while (!stack.isEmpty()) {
+			Element e = stack.pop();
+			if (e == this) {
 				throw new RegexBuilderException("Cycle detected! Cannot add a group that contains This to This.");
 			}
-			if (otherElement instanceof Group) {
-				check(search, (Group)otherElement);
+			if (e instanceof Group && visited.add((Group) e)) {
+				for (Element child : ((Group) e).elems) {
+					stack.push(child);
+				}
 			}
 		}
-
-		
 	}
 }
\ No newline at end of file
@@ -21,6 +21,13 @@ public class StringElement extends ChangeableElement {
 		this.s = s;
 	}
 
+	/**
+	 * @return the String to match, not <code>null</code>
+	 */
+	public String getString() {
+		return s;
+	}
+
 	@Override
 	protected String elementToRegex() {
 		return Pattern.quote(s);
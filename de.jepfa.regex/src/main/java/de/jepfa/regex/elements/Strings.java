@@ -1,6 +1,19 @@
 package de.jepfa.regex.elements;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.components.ChangeableElement;
 import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
 
 /**
  * This class defines many {@link StringElement}s. All elements in this class are combined with logical ORs. 
@@ -10,6 +23,9 @@ import de.jepfa.regex.components.Element;
  */
 public class Strings extends Choice {
 	
+	protected boolean factorized;
+	
+	
 	public Strings(String... strings) {
 		for (String s : strings) {
 			elems.add(new StringElement(s));
@@ -29,4 +45,164 @@ public class Strings extends Choice {
 		});
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Renders all strings as a prefix tree, so strings with a common prefix share one branch, 
+	 * e.g. <code>(foo(?:bar|baz)|qux)</code> instead of <code>(foobar|foobaz|qux)</code>. 
+	 * The Regex engine then doesn't try every string at every position.
+	 * <p>
+	 * The order of strings that are a prefix of each other is kept, so the same string matches as
+	 * without factorization. The Strings-element stays the only capturing group. 
+	 * If not all elements are plain {@link StringElement}s without {@link Quantifier} and flags, 
+	 * this has no effect. 
+	 *
+	 * @return a changed clone, see {@link ChangeableElement}
+	 */
+	public <T extends Strings> T factorize() {
+		return cloneAndCall(e -> e.factorized = true);
+	}
+	
+	/**
+	 * @return <code>true</code> if this Strings-element is rendered as prefix tree.
+	 * 
+	 * @see #factorize()
+	 */
+	public boolean isFactorized() {
+		return factorized;
+	}
+	
+	
+	@Override
+	protected void writeElementTo(Writer writer) throws IOException {
+		if (!factorized) {
+			super.writeElementTo(writer);
+			return;
+		}
+		// the prefix tree is rendered at once
+		StringBuilder sb = new StringBuilder();
+		appendElementTo(sb, null);
+		writer.append(sb);
+	}
+	
+	@Override
+	protected void appendElementTo(StringBuilder sb, Predicate<Element> capturing) {
+		List<String> strings = factorized ? getPlainStrings() : null;
+		if (strings == null) {
+			super.appendElementTo(sb, capturing);
+			return;
+		}
+		
+		sb.append("(");
+		appendPrefixTo(sb, capturing);
+		appendFactorized(sb, strings);
+		sb.append(")");
+	}
+	
+
+	private List<String> getPlainStrings() {
+		Set<String> strings = new LinkedHashSet<>(); // a repeated string never matches before its first occurrence 
+		for (Element element : getElemsForRegex()) {
+			if (!(element instanceof StringElement) || !element.getFlags().isEmpty() 
+					|| element.getQuantifier().getMin() != 1 || element.getQuantifier().getMax() != 1) {
+				return null;
+			}
+			strings.add(((StringElement) element).getString());
+		}
+		return new ArrayList<>(strings);
+	}
+	
+	/**
+	 * Strings are collected in branches by their first code point. A string may only join an earlier branch, 
+	 * if it doesn't pass another string that could match at the same position. That are strings with a 
+	 * case-insensitive equal first character and the empty string, because it is a prefix of all strings.
+	 */
+	private static void appendFactorized(StringBuilder sb, List<String> strings) {
+		List<List<String>> branches = new ArrayList<>();
+		Map<Integer, List<String>> openBranches = new HashMap<>();
+		
+		for (String s : strings) {
+			if (s.isEmpty()) {
+				List<String> branch = new ArrayList<>();
+				branch.add(s);
+				branches.add(branch);
+				openBranches.clear();
+				continue;
+			}
+			
+			int first = s.codePointAt(0);
+			Integer key = fold(first);
+			List<String> branch = openBranches.get(key);
+			if (branch == null || branch.get(0).codePointAt(0) != first) {
+				branch = new ArrayList<>();
+				branches.add(branch);
+				openBranches.put(key, branch);
+			}
+			branch.add(s);
+		}
+		
+		boolean firstDone = false;
+		for (List<String> branch : branches) {
+			if (firstDone) {
+				sb.append("|");
+			}
+			appendBranch(sb, branch);
+			firstDone = true;
+		}
+	}
+
+	private static void appendBranch(StringBuilder sb, List<String> branch) {
+		if (branch.size() == 1) {
+			appendLiteral(sb, branch.get(0));
+			return;
+		}
+		
+		int prefixLength = getCommonPrefixLength(branch);
+		List<String> suffixes = new ArrayList<>(branch.size());
+		for (String s : branch) {
+			suffixes.add(s.substring(prefixLength));
+		}
+		
+		appendLiteral(sb, branch.get(0).substring(0, prefixLength));
+		sb.append("(?:");
+		appendFactorized(sb, suffixes);
+		sb.append(")");
+	}
+
+	private static int getCommonPrefixLength(List<String> strings) {
+		String first = strings.get(0);
+		int length = first.length();
+		for (String s : strings) {
+			length = Math.min(length, s.length());
+			for (int i = 0; i < length; i++) {
+				if (s.charAt(i) != first.charAt(i)) {
+					length = i;
+					break;
+				}
+			}
+		}
+		if (Character.isHighSurrogate(first.charAt(length - 1))) {
+			for (String s : strings) {
+				if (length < s.length() && Character.isLowSurrogate(s.charAt(length))) {
+					length--; // don't split a surrogate pair, a lone high surrogate is kept as a single character
+					break;
+				}
+			}
+		}
+		return length;
+	}
+	
+	private static void appendLiteral(StringBuilder sb, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (!((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9'))) {
+				sb.append(Pattern.quote(s));
+				return;
+			}
+		}
+		sb.append(s);
+	}
+	
+	private static Integer fold(int codePoint) {
+		return Character.toLowerCase(Character.toUpperCase(codePoint));
+	}
+	
+}
@@ -0,0 +1,150 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+/**
+ * Base class for {@link EngineMatcher}s that computes the position of the next search 
+ * like {@link java.util.regex.Matcher}. Subclasses only search the leftmost match from a given index.
+ * <p>
+ * All capturing groups span the whole match, as long as a subclass doesn't overwrite 
+ * {@link #start(int)} and {@link #end(int)}.
+ *
+ * @author Jens Pfahl
+ */
+abstract class AbstractEngineMatcher implements EngineMatcher {
+
+	protected CharSequence input;
+	
+	private final int groupCount;
+	private int start = -1;
+	private int end = -1;
+	private int next = 0;
+	
+	
+	protected AbstractEngineMatcher(CharSequence input, int groupCount) {
+		checkNotNull(input);
+		this.input = input;
+		this.groupCount = groupCount;
+	}
+	
+	
+	/**
+	 * Searches the leftmost match starting at <code>from</code> and reports it with {@link #setMatch(int, int)}.
+	 *
+	 * @param from the index to start, between zero and the length of the input
+	 * 
+	 * @return <code>true</code> if a match was found
+	 */
+	protected abstract boolean search(int from);
+	
+	/**
+	 * Reports the match found by {@link #search(int)}.
+	 */
+	protected final void setMatch(int start, int end) {
+		this.start = start;
+		this.end = end;
+	}
+	
+	
+	@Override
+	public boolean find() {
+		if (next > input.length()) {
+			setMatch(-1, -1);
+			return false;
+		}
+		return searchFrom(next);
+	}
+	
+	@Override
+	public boolean find(int start) {
+		if (start < 0 || start > input.length()) {
+			throw new IndexOutOfBoundsException("Illegal start index");
+		}
+		reset();
+		return searchFrom(start);
+	}
+	
+	@Override
+	public EngineMatcher reset() {
+		setMatch(-1, -1);
+		next = 0;
+		return this;
+	}
+	
+	@Override
+	public EngineMatcher reset(CharSequence input) {
+		checkNotNull(input);
+		this.input = input;
+		return reset();
+	}
+	
+
+	@Override
+	public int start() {
+		checkMatch();
+		return start;
+	}
+
+	@Override
+	public int start(int group) {
+		checkGroup(group);
+		return start();
+	}
+
+	@Override
+	public int end() {
+		checkMatch();
+		return end;
+	}
+
+	@Override
+	public int end(int group) {
+		checkGroup(group);
+		return end();
+	}
+
+	@Override
+	public String group() {
+		return group(0);
+	}
+
+	@Override
+	public String group(int group) {
+		int groupStart = start(group);
+		int groupEnd = end(group);
+		if (groupStart < 0) {
+			return null;
+		}
+		return input.subSequence(groupStart, groupEnd).toString();
+	}
+
+	@Override
+	public int groupCount() {
+		return groupCount;
+	}
+	
+	
+	protected void checkMatch() {
+		if (start < 0) {
+			throw new IllegalStateException("No match available");
+		}
+	}
+	
+	protected void checkGroup(int group) {
+		if (group < 0 || group > groupCount) {
+			throw new IndexOutOfBoundsException("No group " + group);
+		}
+	}
+	
+	
+	private boolean searchFrom(int from) {
+		if (search(from)) {
+			next = start == end ? end + 1 : end;
+			return true;
+		}
+		setMatch(-1, -1);
+		next = input.length() + 1;
+		return false;
+	}
+	
+}
@@ -0,0 +1,398 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.constructs.Word;
+import de.jepfa.regex.constructs.Words;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+/**
+ * An {@link Engine} that finds a set of literals with an Aho-Corasick automaton in linear time. 
+ * The automaton is a flat <code>int</code> transition table over the characters used by the literals,
+ * so no backtracking happens at all.
+ * <p>
+ * Only pure literal {@link RegexBuilder}s can be compiled, that are builders with exactly one of 
+ * these elements:
+ * <li>a {@link StringElement} or {@link Strings} (also nested), optionally enclosed by {@link Boundary#WORD}
+ * <li>a {@link Word} or {@link Words} with such content
+ * <p>
+ * No element may have a {@link de.jepfa.regex.components.Quantifier} or flags. 
+ * Every capturing group of such a builder either spans the whole match or didn't participate, 
+ * depending on the matched literal, so {@link EngineMatcher#group(int)} returns the same as 
+ * the {@link java.util.regex.Matcher} of {@link RegexBuilder#buildPattern()}.
+ *
+ * @author Jens Pfahl
+ */
+public final class AhoCorasick implements Engine {
+
+	/**
+	 * Decides which literal matches if more than one literal matches at the leftmost position.
+	 */
+	public enum MatchKind {
+		/**
+		 * The first added literal wins, like an alternation of {@link java.util.regex.Pattern}.
+		 */
+		LEFTMOST_FIRST,
+		/**
+		 * The longest literal wins.
+		 */
+		LEFTMOST_LONGEST
+	}
+	
+	
+	private class AhoCorasickMatcher extends AbstractEngineMatcher {
+
+		private int matchLiteral = -1;
+		
+		private AhoCorasickMatcher(CharSequence input) {
+			super(input, groupCount);
+		}
+		
+		@Override
+		public int start(int group) {
+			return isEnclosing(group) ? start() : -1;
+		}
+		
+		@Override
+		public int end(int group) {
+			return isEnclosing(group) ? end() : -1;
+		}
+
+		@Override
+		protected boolean search(int from) {
+			int length = input.length();
+			int state = ROOT;
+			int bestStart = -1;
+			int bestEnd = -1;
+			int bestLiteral = -1;
+			
+			for (int i = from; i < length; i++) {
+				char ch = input.charAt(i);
+				state = transitions[state * classCount + (ch < charClasses.length ? charClasses[ch] : 0)];
+				int end = i + 1;
+				if (bestStart >= 0 && end - depths[state] > bestStart) {
+					// no current or future match can start before the best one
+					break;
+				}
+				
+				for (int s = literals[state] >= 0 ? state : outputLinks[state]; s >= 0; s = outputLinks[s]) {
+					int literal = literals[s];
+					int start = end - lengths[literal];
+					if (bestStart >= 0 && start > bestStart) {
+						break;
+					}
+					if (wordBoundaries && !(Program.isWordBoundary(input, start) && Program.isWordBoundary(input, end))) {
+						continue;
+					}
+					if (bestStart < 0 || start < bestStart 
+							|| matchKind == MatchKind.LEFTMOST_LONGEST || literal < bestLiteral) {
+						bestStart = start;
+						bestEnd = end;
+						bestLiteral = literal;
+					}
+				}
+			}
+			
+			if (bestStart < 0) {
+				return false;
+			}
+			matchLiteral = bestLiteral;
+			setMatch(bestStart, bestEnd);
+			return true;
+		}
+		
+		private boolean isEnclosing(int group) {
+			checkGroup(group);
+			checkMatch();
+			return group == 0 || Arrays.binarySearch(literalGroups[matchLiteral], group) >= 0;
+		}
+		
+	}
+	
+
+	private static final int ROOT = 0;
+	
+	private final MatchKind matchKind;
+	private final boolean wordBoundaries;
+	private final int groupCount;
+	/**
+	 * The sorted capturing groups enclosing each literal.
+	 */
+	private final int[][] literalGroups;
+	
+	/**
+	 * Maps each character to its equivalence class, all characters not used by a literal are in class 0.
+	 */
+	private final int[] charClasses;
+	private final int classCount;
+	
+	/**
+	 * The next state is <code>transitions[state * classCount + charClass]</code>.
+	 */
+	private final int[] transitions;
+	/**
+	 * The literal ending in a state or <code>-1</code>.
+	 */
+	private final int[] literals;
+	/**
+	 * The next shorter suffix state with a literal or <code>-1</code>.
+	 */
+	private final int[] outputLinks;
+	private final int[] depths;
+	private final int[] lengths;
+	
+	
+	private AhoCorasick(List<String> literalList, boolean wordBoundaries, MatchKind matchKind, 
+			int groupCount, int[][] literalGroups) {
+		this.matchKind = matchKind;
+		this.wordBoundaries = wordBoundaries;
+		this.groupCount = groupCount;
+		this.literalGroups = literalGroups;
+		
+		int maxChar = 0;
+		int stateCount = 1;
+		for (String literal : literalList) {
+			checkCondition("Empty literals are not supported", () -> literal.isEmpty());
+			for (int i = 0; i < literal.length(); i++) {
+				maxChar = Math.max(maxChar, literal.charAt(i));
+			}
+			stateCount += literal.length();
+		}
+		
+		charClasses = new int[maxChar + 1];
+		int classes = 1;
+		for (String literal : literalList) {
+			for (int i = 0; i < literal.length(); i++) {
+				char ch = literal.charAt(i);
+				if (charClasses[ch] == 0) {
+					charClasses[ch] = classes++;
+				}
+			}
+		}
+		classCount = classes;
+		
+		// build the trie, transition 0 means 'no child' because nothing leads back to the root
+		int[] trie = new int[stateCount * classCount];
+		int[] trieLiterals = new int[stateCount];
+		int[] trieDepths = new int[stateCount];
+		Arrays.fill(trieLiterals, -1);
+		lengths = new int[literalList.size()];
+		int states = 1;
+		for (int l = 0; l < literalList.size(); l++) {
+			String literal = literalList.get(l);
+			lengths[l] = literal.length();
+			int state = ROOT;
+			for (int i = 0; i < literal.length(); i++) {
+				int index = state * classCount + charClasses[literal.charAt(i)];
+				if (trie[index] == 0) {
+					trieDepths[states] = i + 1;
+					trie[index] = states++;
+				}
+				state = trie[index];
+			}
+			if (trieLiterals[state] < 0) {
+				trieLiterals[state] = l;
+			}
+		}
+		
+		transitions = Arrays.copyOf(trie, states * classCount);
+		literals = Arrays.copyOf(trieLiterals, states);
+		depths = Arrays.copyOf(trieDepths, states);
+		outputLinks = new int[states];
+		
+		// resolve all failure transitions breadth-first, so the table becomes a complete DFA
+		int[] failures = new int[states];
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		outputLinks[ROOT] = -1;
+		queue[tail++] = ROOT;
+		while (head < tail) {
+			int state = queue[head++];
+			for (int c = 0; c < classCount; c++) {
+				int index = state * classCount + c;
+				int child = transitions[index];
+				if (child == 0) {
+					transitions[index] = state == ROOT ? ROOT : transitions[failures[state] * classCount + c];
+				}
+				else {
+					int failure = state == ROOT ? ROOT : transitions[failures[state] * classCount + c];
+					failures[child] = failure;
+					outputLinks[child] = literals[failure] >= 0 ? failure : outputLinks[failure];
+					queue[tail++] = child;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Compiles all literals of a pure literal {@link RegexBuilder}. 
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 * @param matchKind which literal should match, not <code>null</code>
+	 * 
+	 * @return not <code>null</code>
+	 * 
+	 * @throws RegexBuilderException if the builder is not pure literal, see {@link AhoCorasick}
+	 */
+	public static AhoCorasick compile(RegexBuilder builder, MatchKind matchKind) {
+		checkNotNull(builder);
+		checkNotNull(matchKind);
+		for (Flag flag : builder.getFlags()) {
+			checkCondition("Flag " + flag + " is not supported", () -> !isSupported(flag));
+		}
+		
+		List<Element> elements = builder.getElements();
+		boolean wordBoundaries = false;
+		Element element;
+		if (elements.size() == 3 && elements.get(0) == Boundary.WORD && elements.get(2) == Boundary.WORD) {
+			wordBoundaries = true;
+			element = elements.get(1);
+		}
+		else if (elements.size() == 1) {
+			element = elements.get(0);
+		}
+		else {
+			throw new RegexBuilderException("Not a pure literal builder: " + builder.toRegex());
+		}
+		
+		checkPlain(element);
+		List<String> literals = new ArrayList<>();
+		if (element instanceof Words) {
+			Words words = (Words) element;
+			checkCondition("Negated words are not supported", () -> words.isNot());
+			wordBoundaries = true;
+			for (Element e : words.getElements()) {
+				collectLiterals(e, literals);
+			}
+		}
+		else if (element instanceof Word) {
+			Word word = (Word) element;
+			checkCondition("Negated words are not supported", () -> word.isNot());
+			checkCondition("Not a pure literal word: " + word.toRegex(), () -> word.getElements().size() != 1);
+			wordBoundaries = true;
+			collectLiterals(word.getElements().get(0), literals);
+		}
+		else {
+			collectLiterals(element, literals);
+		}
+		checkCondition("No literals found", () -> literals.isEmpty());
+		
+		List<int[]> literalGroups = new ArrayList<>();
+		int groupCount = collectGroups(elements, 0, new ArrayDeque<>(), literalGroups);
+		checkCondition("Not a pure literal builder: " + builder.toRegex(), () -> literalGroups.size() != literals.size());
+		return new AhoCorasick(literals, wordBoundaries, matchKind, groupCount, literalGroups.toArray(new int[0][]));
+	}
+	
+	/**
+	 * Compiles the given literals without any capturing group.
+	 *
+	 * @param matchKind which literal should match, not <code>null</code>
+	 * @param literals the literals in order of their priority, not <code>null</code> and not empty
+	 * 
+	 * @return not <code>null</code>
+	 */
+	public static AhoCorasick compile(MatchKind matchKind, String... literals) {
+		checkNotNull(matchKind);
+		checkNoNullElements(literals);
+		checkCondition("No literals found", () -> literals.length == 0);
+		return new AhoCorasick(Arrays.asList(literals), false, matchKind, 0, new int[literals.length][0]);
+	}
+	
+	
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		return new AhoCorasickMatcher(input);
+	}
+	
+	/**
+	 * @return the count of states of the automaton
+	 */
+	public int getStateCount() {
+		return literals.length;
+	}
+	
+	public MatchKind getMatchKind() {
+		return matchKind;
+	}
+	
+	@Override
+	public String toString() {
+		return "AhoCorasick [matchKind=" + matchKind + ", wordBoundaries=" + wordBoundaries 
+				+ ", literals=" + lengths.length + ", states=" + getStateCount() + "]";
+	}
+	
+	
+	private static boolean isSupported(Flag flag) {
+		switch (flag) {
+		case IGNORE_CASE_SENSITIVE:
+		case UNICODE_CHARS:
+		case CANON_EQUALS:
+		case LITERAL:
+			return false;
+		default:
+			return true;
+		}
+	}
+	
+	private static void checkPlain(Element element) {
+		checkCondition("Flags are not supported: " + element.toRegex(), () -> !element.getFlags().isEmpty());
+		checkCondition("Quantifiers are not supported: " + element.toRegex(), 
+				() -> element.getQuantifier().getMin() != 1 || element.getQuantifier().getMax() != 1);
+	}
+	
+	private static void collectLiterals(Element element, List<String> literals) {
+		checkPlain(element);
+		if (element instanceof StringElement) {
+			literals.add(((StringElement) element).getString());
+		}
+		else if (element instanceof Strings) {
+			for (Element e : ((Strings) element).getElements()) {
+				collectLiterals(e, literals);
+			}
+		}
+		else {
+			throw new RegexBuilderException("Not a literal: " + element.toRegex());
+		}
+	}
+	
+	/**
+	 * Collects the capturing groups enclosing each literal in the order the literals occur in the 
+	 * Regular Expression. The groups are counted like {@link java.util.regex.Pattern} does.
+	 *
+	 * @return the count of all capturing groups
+	 */
+	private static int collectGroups(List<Element> elements, int groupCount, Deque<Integer> open, List<int[]> literalGroups) {
+		for (Element element : elements) {
+			if (element instanceof StringElement) {
+				literalGroups.add(open.stream().mapToInt(Integer::intValue).sorted().toArray());
+			}
+			else if (element instanceof Group) {
+				Group group = (Group) element;
+				if (group.isIndexable()) {
+					open.push(++groupCount);
+				}
+				groupCount = collectGroups(group.getRenderedElements(), groupCount, open, literalGroups);
+				if (group.isIndexable()) {
+					open.pop();
+				}
+			}
+		}
+		return groupCount;
+	}
+	
+}
@@ -0,0 +1,416 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * Runs a {@link Program} like a backtracking engine: the alternatives are tried one after the other in the
+ * order of their priority, so the matches and groups are those of {@link java.util.regex.Pattern}. Unlike
+ * the Pike VM it can match atomic groups and lookarounds.
+ * <p>
+ * The backtracking is bounded by memoization: if all alternatives of an instruction with alternatives
+ * failed at a position, this is noted and the instruction fails at once, whenever it is reached there again.
+ * So every such instruction is tried at most once per position and nesting level of a {@link Program#REPEAT},
+ * and the time is polynomial instead of exponential in the length of the input. Memoization starts
+ * only after about as many backtracks as it costs bits of memory, so searches without much backtracking
+ * don't pay for it. The bodies of lookbehinds are not memoized, because their result depends on where they
+ * have to end, but their length is bounded.
+ * <p>
+ * If the bitmap of all states would be larger than {@link #MAX_MEMO_BITS}, only the failed states are noted 
+ * in a hash set. If more than {@link #MAX_SPARSE_MEMO_STATES} states failed, the search is aborted with a 
+ * {@link RegexBuilderException}, instead of running in exponential time without memoization.
+ * <p>
+ * A Backtracker is not thread-safe.
+ *
+ * @author Jens Pfahl
+ */
+final class Backtracker {
+
+	/**
+	 * The maximum size of the bitmap of all states, that is 8MB.
+	 */
+	static final long MAX_MEMO_BITS = 1L << 26;
+	/**
+	 * The maximum count of failed states in the hash set, that is at most 32MB.
+	 */
+	static final int MAX_SPARSE_MEMO_STATES = 1 << 21;
+
+	private static final int FRAME = 5;
+	/**
+	 * Another alternative: pc, position and level.
+	 */
+	private static final int CHOICE = 0;
+	/**
+	 * The previous value of a slot: slot and value.
+	 */
+	private static final int RESTORE = 1;
+	/**
+	 * All alternatives of a memoized instruction failed: memo id, level and position.
+	 */
+	private static final int FAILED = 2;
+	/**
+	 * A body is matched: pc of the instruction with the body, position and level where it started,
+	 * the frame of the enclosing body.
+	 */
+	private static final int BODY = 3;
+
+
+	private final Program program;
+	private final CharClasses classes;
+	private final boolean[][] accepts;
+	private final int slotCount;
+	private final int levels;
+	/**
+	 * The memo id of every memoized instruction, <code>-1</code> for others.
+	 */
+	private final int[] memoIds;
+	private final int memoCount;
+	private final long maxMemoBits;
+	private final int maxSparseMemoStates;
+
+	private CharSequence input = "";
+	private long[] memo;
+	/**
+	 * The failed states plus one, open addressing with linear probing, <code>0</code> for empty slots.
+	 */
+	private long[] sparseMemo;
+	private int sparseMemoStates;
+	private long backtracks;
+
+	private final int[] slots;
+	private int[] stack = new int[16 * FRAME];
+	private int top;
+
+
+	Backtracker(Program program, CharClasses classes) {
+		this(program, classes, MAX_MEMO_BITS, MAX_SPARSE_MEMO_STATES);
+	}
+
+	Backtracker(Program program, CharClasses classes, long maxMemoBits, int maxSparseMemoStates) {
+		this.maxMemoBits = maxMemoBits;
+		this.maxSparseMemoStates = maxSparseMemoStates;
+		this.program = program;
+		this.classes = classes;
+		this.accepts = classes.accepts(program);
+		this.slotCount = 2 * (program.groupCount + 1);
+		this.levels = program.levels + 1;
+		this.slots = new int[slotCount];
+
+		memoIds = new int[program.size()];
+		int count = 0;
+		int behindEnd = -1;
+		for (int pc = 0; pc < program.size(); pc++) {
+			memoIds[pc] = -1;
+			if (pc < behindEnd) {
+				continue;
+			}
+			switch (program.ops[pc]) {
+			case Program.BEHIND:
+			case Program.NOT_BEHIND:
+				behindEnd = program.args[pc];
+				memoIds[pc] = count++;
+				break;
+			case Program.SPLIT:
+			case Program.ATOMIC:
+			case Program.AHEAD:
+			case Program.NOT_AHEAD:
+				memoIds[pc] = count++;
+				break;
+			default:
+				break;
+			}
+		}
+		memoCount = count;
+	}
+
+
+	/**
+	 * Sets a new input and forgets all memoized states of the previous one.
+	 */
+	void reset(CharSequence input) {
+		this.input = input;
+		memo = null;
+		sparseMemo = null;
+		sparseMemoStates = 0;
+		backtracks = 0;
+	}
+
+	/**
+	 * Searches the leftmost match that starts at <code>from</code> or later.
+	 *
+	 * @param result receives the slots of the match, <code>-1</code> for groups that didn't participate
+	 * @return <code>true</code> if a match was found
+	 */
+	boolean search(int from, int[] result) {
+		int start = from;
+		while (!run(start, result)) {
+			if (start == input.length()) {
+				return false;
+			}
+			start += Character.charCount(Character.codePointAt(input, start));
+		}
+		return true;
+	}
+
+
+	private boolean run(int start, int[] result) {
+		int length = input.length();
+		int pc = 0;
+		int pos = start;
+		int level = program.noLevel();
+		int body = -1;
+		boolean backtrack = false;
+		top = 0;
+		Arrays.fill(slots, -1);
+		slots[0] = start;
+
+		while (true) {
+			if (backtrack) {
+				if (top == 0) {
+					return false;
+				}
+				top -= FRAME;
+				switch (stack[top]) {
+				case CHOICE:
+					pc = stack[top + 1];
+					pos = stack[top + 2];
+					level = stack[top + 3];
+					backtrack = false;
+					if (memo == null && sparseMemo == null && ++backtracks > (long) memoCount * levels * (length + 1)) {
+						startMemo();
+					}
+					break;
+				case RESTORE:
+					slots[stack[top + 1]] = stack[top + 2];
+					break;
+				case FAILED:
+					if (memo != null || sparseMemo != null) {
+						setFailed(memoBit(stack[top + 1], stack[top + 2], stack[top + 3]));
+					}
+					break;
+				case BODY:
+					body = stack[top + 4];
+					int owner = stack[top + 1];
+					if (program.ops[owner] == Program.NOT_AHEAD || program.ops[owner] == Program.NOT_BEHIND) {
+						// the body didn't match
+						pc = program.args[owner];
+						pos = stack[top + 2];
+						level = stack[top + 3];
+						backtrack = false;
+					}
+					break;
+				default:
+					throw new IllegalStateException("Unknown frame " + stack[top]);
+				}
+				continue;
+			}
+
+			switch (program.ops[pc]) {
+			case Program.CHARS:
+				if (pos < length) {
+					int codePoint = Character.codePointAt(input, pos);
+					if (accepts[pc][classes.classOf(codePoint)]) {
+						pos += Character.charCount(codePoint);
+						level = program.noLevel();
+						pc++;
+						break;
+					}
+				}
+				backtrack = true;
+				break;
+			case Program.SPLIT:
+				if (!enter(pc, level, pos)) {
+					backtrack = true;
+					break;
+				}
+				push(CHOICE, program.alternatives[pc], pos, level, 0);
+				pc = program.args[pc];
+				break;
+			case Program.JUMP:
+				pc = program.args[pc];
+				break;
+			case Program.SAVE:
+				int slot = program.args[pc];
+				push(RESTORE, slot, slots[slot], 0, 0);
+				slots[slot] = pos;
+				pc++;
+				break;
+			case Program.ASSERT:
+				if (Program.holds(program.args[pc], input, pos)) {
+					pc++;
+				}
+				else {
+					backtrack = true;
+				}
+				break;
+			case Program.ITERATE:
+				level = Math.min(level, program.args[pc]);
+				pc++;
+				break;
+			case Program.REPEAT:
+				pc = program.args[pc] >= level ? program.alternatives[pc] : pc + 1;
+				break;
+			case Program.MATCH:
+				System.arraycopy(slots, 0, result, 0, slotCount);
+				result[1] = pos;
+				return true;
+			case Program.ATOMIC:
+			case Program.AHEAD:
+			case Program.NOT_AHEAD:
+			case Program.BEHIND:
+			case Program.NOT_BEHIND:
+				if (!enter(pc, level, pos)) {
+					backtrack = true;
+					break;
+				}
+				push(BODY, pc, pos, level, body);
+				body = top - FRAME;
+				if (program.ops[pc] == Program.BEHIND || program.ops[pc] == Program.NOT_BEHIND) {
+					// the shortest part first, like Pattern
+					for (int from = Math.max(0, pos - program.alternatives[pc]); from < pos; from++) {
+						push(CHOICE, pc + 1, from, level, 0);
+					}
+				}
+				pc++;
+				break;
+			case Program.SUCCEED:
+				int owner = stack[body + 1];
+				int op = program.ops[owner];
+				int bodyStart = stack[body + 2];
+				int bodyLevel = stack[body + 3];
+				int enclosing = stack[body + 4];
+				if ((op == Program.BEHIND || op == Program.NOT_BEHIND) && pos != bodyStart) {
+					backtrack = true;
+				}
+				else if (op == Program.NOT_AHEAD || op == Program.NOT_BEHIND) {
+					cut(body, false);
+					body = enclosing;
+					backtrack = true;
+				}
+				else {
+					cut(body, true);
+					body = enclosing;
+					pc = program.args[owner];
+					if (op != Program.ATOMIC) {
+						pos = bodyStart;
+						level = bodyLevel;
+					}
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown instruction " + program.ops[pc]);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the memoized instruction already failed at the position
+	 */
+	private boolean enter(int pc, int level, int pos) {
+		int id = memoIds[pc];
+		if (id < 0 || (memo == null && sparseMemo == null)) {
+			return true;
+		}
+		if (isFailed(memoBit(id, level, pos))) {
+			return false;
+		}
+		push(FAILED, id, level, pos, 0);
+		return true;
+	}
+
+	private long memoBit(int id, int level, int pos) {
+		return ((long) id * levels + level) * (input.length() + 1) + pos;
+	}
+
+	private void startMemo() {
+		long bits = (long) memoCount * levels * (input.length() + 1);
+		if (bits > maxMemoBits) {
+			sparseMemo = new long[1024];
+			return;
+		}
+		memo = new long[(int) ((bits + 63) >>> 6)];
+	}
+
+	private boolean isFailed(long bit) {
+		if (memo != null) {
+			return (memo[(int) (bit >>> 6)] & (1L << bit)) != 0;
+		}
+		return sparseMemo[indexOf(sparseMemo, bit)] != 0;
+	}
+
+	private void setFailed(long bit) {
+		if (memo != null) {
+			memo[(int) (bit >>> 6)] |= 1L << bit;
+			return;
+		}
+		int index = indexOf(sparseMemo, bit);
+		if (sparseMemo[index] != 0) {
+			return;
+		}
+		if (sparseMemoStates >= maxSparseMemoStates) {
+			throw new RegexBuilderException("Backtracking failed in more than " + maxSparseMemoStates 
+					+ " states, the input of " + input.length() + " characters is too long to memoize them");
+		}
+		sparseMemo[index] = bit + 1;
+		if (++sparseMemoStates * 2 > sparseMemo.length) {
+			long[] old = sparseMemo;
+			sparseMemo = new long[old.length * 2];
+			for (long state : old) {
+				if (state != 0) {
+					sparseMemo[indexOf(sparseMemo, state - 1)] = state;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the slot of the given state or the empty slot where it belongs
+	 */
+	private static int indexOf(long[] set, long bit) {
+		int mask = set.length - 1;
+		int index = (int) ((bit * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while (set[index] != 0 && set[index] != bit + 1) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	/**
+	 * Removes the frame of a body and all frames above it, because the body matched. The previous values
+	 * of the slots are kept, so they are restored if the match backtracks before the body, or restored now.
+	 */
+	private void cut(int body, boolean keepSlots) {
+		if (keepSlots) {
+			int write = body;
+			for (int frame = body + FRAME; frame < top; frame += FRAME) {
+				if (stack[frame] == RESTORE) {
+					System.arraycopy(stack, frame, stack, write, FRAME);
+					write += FRAME;
+				}
+			}
+			top = write;
+		}
+		else {
+			for (int frame = top - FRAME; frame > body; frame -= FRAME) {
+				if (stack[frame] == RESTORE) {
+					slots[stack[frame + 1]] = stack[frame + 2];
+				}
+			}
+			top = body;
+		}
+	}
+
+	private void push(int type, int a, int b, int c, int d) {
+		if (top + FRAME > stack.length) {
+			stack = Arrays.copyOf(stack, 2 * stack.length);
+		}
+		stack[top] = type;
+		stack[top + 1] = a;
+		stack[top + 2] = b;
+		stack[top + 3] = c;
+		stack[top + 4] = d;
+		top += FRAME;
+	}
+
+}
@@ -0,0 +1,128 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * An {@link Engine} that backtracks like {@link java.util.regex.Pattern}, but memoizes the failures of its
+ * alternatives, so no input can make a search take exponential time. Its matches are the same as those
+ * of {@link java.util.regex.Matcher#find()} and the group indexes are those of
+ * {@link de.jepfa.regex.elements.Group#getIndex()}.
+ * <p>
+ * The groups are the same as those of {@link java.util.regex.Matcher#find()}, except for groups inside repeated
+ * elements: they hold the capture of the last iteration that is part of the match, even if that iteration matched
+ * the empty string. {@link java.util.regex.Pattern} ignores empty iterations, so e.g. <code>(?m)($)*</code>
+ * leaves group 1 unset where this engine reports the empty capture at the line end, and it can keep a capture of
+ * an iteration it gave back while backtracking, e.g. group 2 of <code>(([^a])*.){2}</code> on <code>"bbaAa"</code>.
+ * <p>
+ * Unlike the {@link DfaEngine} and the {@link PikeVmEngine} it supports {@link de.jepfa.regex.elements.Lookahead}s,
+ * {@link de.jepfa.regex.elements.Lookbehind}s, independent {@link de.jepfa.regex.elements.NonCapturing} groups and
+ * possessive quantifiers. The other supported elements are those of the {@link PikeVmEngine}.
+ * {@link #compile(RegexBuilder)} rejects builders with other elements, e.g. {@link de.jepfa.regex.elements.PlainElement}s,
+ * and the flags {@link RegexBuilder.Flag#CANON_EQUALS} and {@link RegexBuilder.Flag#LITERAL}.
+ * <p>
+ * Memoization needs one bit per position of the input for every alternative of the elements, but only
+ * when a search backtracks a lot. For long inputs only the failed states are noted, and a search that fails 
+ * in too many states throws a {@link RegexBuilderException} instead of taking exponential time.
+ * Captures in negative lookarounds never participate in a match.
+ *
+ * @author Jens Pfahl
+ */
+public final class BacktrackingEngine implements Engine {
+
+	private class BacktrackingMatcher extends AbstractEngineMatcher {
+
+		private final Backtracker backtracker = new Backtracker(program, classes);
+		private final int[] slots = new int[2 * (program.groupCount + 1)];
+
+		private BacktrackingMatcher(CharSequence input) {
+			super(input, program.groupCount);
+			backtracker.reset(input);
+		}
+
+		@Override
+		protected boolean search(int from) {
+			if (!backtracker.search(from, slots)) {
+				return false;
+			}
+			setMatch(slots[0], slots[1]);
+			return true;
+		}
+
+		@Override
+		public EngineMatcher reset(CharSequence input) {
+			super.reset(input);
+			backtracker.reset(input);
+			return this;
+		}
+
+		@Override
+		public int start(int group) {
+			checkGroup(group);
+			checkMatch();
+			return slots[2 * group];
+		}
+
+		@Override
+		public int end(int group) {
+			checkGroup(group);
+			checkMatch();
+			return slots[2 * group + 1];
+		}
+	}
+
+
+	private final Program program;
+	private final CharClasses classes;
+	private final String regex;
+
+
+	private BacktrackingEngine(Program program, String regex) {
+		this.program = program;
+		this.classes = new CharClasses(program);
+		this.regex = regex;
+	}
+
+	/**
+	 * Compiles the builder into a program for the backtracking interpreter.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 *
+	 * @throws RegexBuilderException if the builder contains elements that are not supported, see {@link BacktrackingEngine}
+	 */
+	public static BacktrackingEngine compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		Program program;
+		try {
+			program = ProgramCompiler.compileForBacktracking(builder.getRenderedElements(), builder.getFlags());
+		}
+		catch (RegexBuilderException e) {
+			throw new RegexBuilderException("Not supported by the backtracking engine: " + e.getMessage(), e);
+		}
+		return new BacktrackingEngine(program, builder.toRegex());
+	}
+
+
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		checkNotNull(input);
+		return new BacktrackingMatcher(input);
+	}
+
+	/**
+	 * @return the count of capturing groups
+	 */
+	public int getGroupCount() {
+		return program.groupCount;
+	}
+
+	@Override
+	public String toString() {
+		return "BacktrackingEngine [regex=" + regex + ", instructions=" + program.size() + ", groups=" + program.groupCount + "]";
+	}
+
+}
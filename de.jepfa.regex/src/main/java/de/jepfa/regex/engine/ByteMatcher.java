@@ -0,0 +1,266 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.jepfa.regex.engine.LazyDfa.State;
+
+/**
+ * A ByteMatcher searches the matches of a {@link Utf8Engine} in UTF-8 encoded bytes. The methods behave
+ * like the corresponding methods of {@link java.util.regex.Matcher}, but all indexes are byte indexes
+ * of the {@link ByteBuffer}, between the position and the limit it had when it was set. The buffer
+ * itself is never changed, only read.
+ * <p>
+ * A ByteMatcher is not thread-safe.
+ *
+ * @author Jens Pfahl
+ */
+public final class ByteMatcher {
+
+	private final CharClasses classes;
+	private final LazyDfa forward;
+	private final LazyDfa backward;
+
+	private ByteBuffer input;
+	private int from;
+	private int limit;
+
+	private int start = -1;
+	private int end = -1;
+	private int next;
+
+	/**
+	 * The state of a search that didn't start a match yet and the ASCII bytes it skips,
+	 * see {@link #skipsOf(State)}.
+	 */
+	private State idle;
+	private final boolean[] skips = new boolean[0x80];
+
+
+	ByteMatcher(Utf8Engine engine, ByteBuffer input) {
+		this.classes = engine.classes;
+		this.forward = new LazyDfa(engine.program, classes, true);
+		this.backward = new LazyDfa(engine.reverseProgram, classes, false);
+		reset(input);
+	}
+
+
+	/**
+	 * Attempts to find the next match, starting at the end of the previous match.
+	 *
+	 * @return <code>true</code> if a match was found
+	 *
+	 * @see java.util.regex.Matcher#find()
+	 */
+	public boolean find() {
+		if (next > limit) {
+			start = -1;
+			end = -1;
+			return false;
+		}
+		return searchFrom(next);
+	}
+
+	/**
+	 * Resets this matcher and attempts to find the next match, starting at the given index.
+	 *
+	 * @param start the byte index to start searching for a match, should be the start of a code point
+	 *
+	 * @return <code>true</code> if a match was found
+	 *
+	 * @throws IndexOutOfBoundsException if start is less than the position or greater than the limit of the input
+	 *
+	 * @see java.util.regex.Matcher#find(int)
+	 */
+	public boolean find(int start) {
+		if (start < from || start > limit) {
+			throw new IndexOutOfBoundsException("Illegal start index");
+		}
+		reset();
+		return searchFrom(start);
+	}
+
+	/**
+	 * Resets this matcher, so the next {@link #find()} starts at the position of the input.
+	 *
+	 * @return this matcher
+	 */
+	public ByteMatcher reset() {
+		start = -1;
+		end = -1;
+		next = from;
+		return this;
+	}
+
+	/**
+	 * Resets this matcher with a new input.
+	 *
+	 * @param input the new UTF-8 encoded input, not <code>null</code>
+	 *
+	 * @return this matcher
+	 */
+	public ByteMatcher reset(byte[] input) {
+		checkNotNull(input);
+		return reset(ByteBuffer.wrap(input));
+	}
+
+	/**
+	 * Resets this matcher with a new input. The bytes between the current position and limit of the buffer
+	 * are searched, later changes of its position or limit are ignored.
+	 *
+	 * @param input the new UTF-8 encoded input, not <code>null</code>
+	 *
+	 * @return this matcher
+	 */
+	public ByteMatcher reset(ByteBuffer input) {
+		checkNotNull(input);
+		this.input = input;
+		this.from = input.position();
+		this.limit = input.limit();
+		return reset();
+	}
+
+
+	/**
+	 * @return the byte index of the first byte of the match
+	 *
+	 * @throws IllegalStateException if there is no match
+	 */
+	public int start() {
+		checkMatch();
+		return start;
+	}
+
+	/**
+	 * @return the byte index after the last byte of the match
+	 *
+	 * @throws IllegalStateException if there is no match
+	 */
+	public int end() {
+		checkMatch();
+		return end;
+	}
+
+	/**
+	 * Decodes only the bytes of the match.
+	 *
+	 * @return the match as a string
+	 *
+	 * @throws IllegalStateException if there is no match
+	 */
+	public String group() {
+		checkMatch();
+		ByteBuffer match = input.duplicate();
+		match.limit(end).position(start);
+		return StandardCharsets.UTF_8.decode(match).toString();
+	}
+
+
+	private void checkMatch() {
+		if (start < 0) {
+			throw new IllegalStateException("No match available");
+		}
+	}
+
+	private boolean searchFrom(int index) {
+		if (search(index)) {
+			next = start != end ? end : end < limit ? end + Utf8.length(Utf8.decode(input, end, limit)) : end + 1;
+			return true;
+		}
+		start = -1;
+		end = -1;
+		next = limit + 1;
+		return false;
+	}
+
+	private boolean search(int searchFrom) {
+		int matchEnd = -1;
+		State other = forward.start(Program.OTHER_CHAR);
+		if (other != idle) {
+			skipsOf(other);
+		}
+		State state = forward.start(searchFrom > from ? kindBefore(searchFrom) : Program.NO_CHAR);
+		int i = searchFrom;
+		while (true) {
+			if (state == idle) {
+				while (i < limit) {
+					int b = input.get(i);
+					if (b < 0 || !skips[b]) {
+						break;
+					}
+					i++;
+				}
+			}
+			int cls;
+			int length;
+			if (i == limit) {
+				cls = classes.count();
+				length = 0;
+			}
+			else {
+				int b = input.get(i);
+				if (b >= 0) {
+					cls = classes.classOf(b);
+					length = 1;
+				}
+				else {
+					int decoded = Utf8.decode(input, i, limit);
+					cls = classes.classOf(Utf8.codePoint(decoded));
+					length = Utf8.length(decoded);
+				}
+			}
+			State nextState = forward.next(state, cls);
+			if (state.matchesBefore(cls)) {
+				matchEnd = i;
+			}
+			if (forward.isDead(nextState)) {
+				break;
+			}
+			state = nextState;
+			i += length;
+		}
+		if (matchEnd < 0) {
+			return false;
+		}
+
+		int matchStart = matchEnd;
+		state = backward.start(matchEnd < limit ? Program.kindOf(Utf8.codePoint(Utf8.decode(input, matchEnd, limit))) : Program.NO_CHAR);
+		i = matchEnd;
+		while (true) {
+			// the match can't start before searchFrom, but the character before it decides on boundaries there
+			int decoded = i > from ? Utf8.decodeBefore(input, i, from) : -1;
+			int cls = decoded < 0 ? classes.count() : classes.classOf(Utf8.codePoint(decoded));
+			State nextState = backward.next(state, cls);
+			if (state.matchesBefore(cls)) {
+				matchStart = i;
+			}
+			if (i <= searchFrom || backward.isDead(nextState)) {
+				break;
+			}
+			state = nextState;
+			i -= Utf8.length(decoded);
+		}
+		start = matchStart;
+		end = matchEnd;
+		return true;
+	}
+
+	/**
+	 * Notes the ASCII bytes that leave the state as it is, without ending a match, so the search can skip them
+	 * without computing transitions, e.g. all bytes that can't start a match.
+	 */
+	private void skipsOf(State state) {
+		idle = state;
+		for (int b = 0; b < skips.length; b++) {
+			int cls = classes.classOf(b);
+			skips[b] = forward.next(state, cls) == state && !state.matchesBefore(cls);
+		}
+	}
+
+	private int kindBefore(int index) {
+		return Program.kindOf(Utf8.codePoint(Utf8.decodeBefore(input, index, from)));
+	}
+
+}
@@ -0,0 +1,145 @@
+package de.jepfa.regex.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import de.jepfa.regex.components.CharPredicate;
+
+/**
+ * Partitions all code points into classes of characters that no instruction of some {@link Program}s can
+ * distinguish, so an automaton needs one transition per class instead of one per character.
+ * Line terminators get classes of their own, because assertions distinguish them.
+ * <p>
+ * The class {@link #count()} is reserved for the missing character at the start or the end of the input.
+ * CharClasses are immutable.
+ *
+ * @author Jens Pfahl
+ */
+final class CharClasses {
+
+	private static final int LATIN_END = 256;
+
+	/**
+	 * The sorted first code points of the intervals of the same class.
+	 */
+	private final int[] starts;
+	private final int[] classes;
+	private final int[] latinClasses = new int[LATIN_END];
+	private final int[] kinds;
+	private final int[] representatives;
+
+
+	CharClasses(Program... programs) {
+		Map<CharPredicate, Integer> distinct = new LinkedHashMap<>();
+		TreeSet<Integer> bounds = new TreeSet<>();
+		bounds.add(0);
+		for (Program program : programs) {
+			for (CharPredicate predicate : program.predicates) {
+				if (predicate == null || distinct.putIfAbsent(predicate, distinct.size()) != null) {
+					continue;
+				}
+				int[] ranges = predicate.getRanges();
+				for (int i = 0; i < ranges.length; i += 2) {
+					addRange(bounds, ranges[i], ranges[i + 1]);
+				}
+			}
+		}
+		for (int terminator : new int[] {'\n', '\r', '\u0085', '\u2028', '\u2029'}) {
+			addRange(bounds, terminator, terminator);
+		}
+
+		List<CharPredicate> predicates = new ArrayList<>(distinct.keySet());
+		Map<BitSet, Integer> signatures = new HashMap<>();
+		List<Integer> kindList = new ArrayList<>();
+		List<Integer> representativeList = new ArrayList<>();
+		int[] intervalStarts = new int[bounds.size()];
+		int[] intervalClasses = new int[bounds.size()];
+		int count = 0;
+		for (int start : bounds) {
+			int kind = Program.kindOf(start);
+			BitSet signature = new BitSet();
+			signature.set(kind);
+			for (int p = 0; p < predicates.size(); p++) {
+				if (predicates.get(p).test(start)) {
+					signature.set(Program.KIND_COUNT + p);
+				}
+			}
+			Integer cls = signatures.get(signature);
+			if (cls == null) {
+				cls = signatures.size();
+				signatures.put(signature, cls);
+				kindList.add(kind);
+				representativeList.add(start);
+			}
+			if (count == 0 || intervalClasses[count - 1] != cls) {
+				intervalStarts[count] = start;
+				intervalClasses[count] = cls;
+				count++;
+			}
+		}
+		starts = Arrays.copyOf(intervalStarts, count);
+		classes = Arrays.copyOf(intervalClasses, count);
+		kinds = kindList.stream().mapToInt(Integer::intValue).toArray();
+		representatives = representativeList.stream().mapToInt(Integer::intValue).toArray();
+		for (int ch = 0; ch < LATIN_END; ch++) {
+			latinClasses[ch] = lookup(ch);
+		}
+	}
+
+
+	/**
+	 * @return the count of classes, not including the class of the missing character
+	 */
+	int count() {
+		return kinds.length;
+	}
+
+	int classOf(int codePoint) {
+		return codePoint < LATIN_END ? latinClasses[codePoint] : lookup(codePoint);
+	}
+
+	/**
+	 * @param cls a class or {@link #count()}
+	 * @return the {@link Program#kindOf(int) kind} of the characters of the class
+	 */
+	int kindOf(int cls) {
+		return cls == kinds.length ? Program.NO_CHAR : kinds[cls];
+	}
+
+	/**
+	 * @return for every {@link Program#CHARS} instruction, which classes it accepts, <code>null</code> for others
+	 */
+	boolean[][] accepts(Program program) {
+		boolean[][] accepts = new boolean[program.size()][];
+		for (int pc = 0; pc < program.size(); pc++) {
+			if (program.ops[pc] != Program.CHARS) {
+				continue;
+			}
+			accepts[pc] = new boolean[count()];
+			for (int cls = 0; cls < count(); cls++) {
+				accepts[pc][cls] = program.predicates[pc].test(representatives[cls]);
+			}
+		}
+		return accepts;
+	}
+
+
+	private int lookup(int codePoint) {
+		int index = Arrays.binarySearch(starts, codePoint);
+		return classes[index >= 0 ? index : -index - 2];
+	}
+
+	private static void addRange(TreeSet<Integer> bounds, int from, int to) {
+		bounds.add(from);
+		if (to < Character.MAX_CODE_POINT) {
+			bounds.add(to + 1);
+		}
+	}
+
+}
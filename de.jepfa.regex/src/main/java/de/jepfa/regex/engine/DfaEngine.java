@@ -0,0 +1,183 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.engine.LazyDfa.State;
+
+/**
+ * An {@link Engine} that matches in linear time with a lazily built DFA. The element tree of a {@link RegexBuilder}
+ * is compiled directly into an NFA, without parsing the Regular Expression, and the DFA states are built
+ * from it while the input is read. The transitions are indexed by classes of characters that the elements
+ * can't distinguish, so the transition table stays small also for large character classes.
+ * <p>
+ * A search runs the DFA forward to find the end of the leftmost match and a DFA of the reversed elements
+ * backward from there to find its start. The matches are the same as those of {@link java.util.regex.Matcher#find()},
+ * but there is no backtracking, so no input can make a search slower than linear in its length.
+ * A DFA knows only where a match starts and ends, so the {@link EngineMatcher} has no capturing groups.
+ * <p>
+ * Only the regular elements can be compiled, see {@link #isSupported(RegexBuilder)}: {@link de.jepfa.regex.elements.StringElement},
+ * {@link de.jepfa.regex.elements.Strings}, {@link de.jepfa.regex.elements.Chars}, {@link de.jepfa.regex.elements.Char},
+ * {@link de.jepfa.regex.elements.Any}, {@link de.jepfa.regex.elements.Choice}, {@link de.jepfa.regex.elements.Group},
+ * {@link de.jepfa.regex.elements.NonCapturing} and {@link de.jepfa.regex.components.Construct}s of them,
+ * with greedy or lazy quantifiers. Of the {@link de.jepfa.regex.elements.Boundary}s only <code>^</code>, <code>\A</code>
+ * and <code>$</code> with {@link RegexBuilder.Flag#MULTILINE} are supported, but not inside a repetition that can
+ * match the empty String, like <code>(?:.*$)+</code>. {@link #compile(RegexBuilder)} falls back
+ * to a {@link PatternEngine} for all other builders, e.g. with lookarounds or word boundaries.
+ * <p>
+ * Every matcher builds its own DFA states, so reuse a matcher with {@link EngineMatcher#reset(CharSequence)}
+ * instead of creating a new one for every input.
+ *
+ * @author Jens Pfahl
+ */
+public final class DfaEngine implements Engine {
+
+	private class DfaMatcher extends AbstractEngineMatcher {
+
+		private final LazyDfa forward = new LazyDfa(program, classes, true);
+		private final LazyDfa backward = new LazyDfa(reverseProgram, classes, false);
+
+		private DfaMatcher(CharSequence input) {
+			super(input, 0);
+		}
+
+		@Override
+		protected boolean search(int from) {
+			int length = input.length();
+			int end = -1;
+			State state = forward.start(from > 0 ? Program.kindOf(input.charAt(from - 1)) : Program.NO_CHAR);
+			int i = from;
+			while (true) {
+				int codePoint = i < length ? Character.codePointAt(input, i) : -1;
+				int cls = codePoint < 0 ? classes.count() : classes.classOf(codePoint);
+				State next = forward.next(state, cls);
+				if (state.matchesBefore(cls)) {
+					end = i;
+				}
+				if (forward.isDead(next)) {
+					break;
+				}
+				state = next;
+				i += Character.charCount(codePoint);
+			}
+			if (end < 0) {
+				return false;
+			}
+
+			int start = end;
+			state = backward.start(end < length ? Program.kindOf(input.charAt(end)) : Program.NO_CHAR);
+			i = end;
+			while (true) {
+				int codePoint = i > 0 ? codePointBefore(i, from) : -1;
+				int cls = codePoint < 0 ? classes.count() : classes.classOf(codePoint);
+				State next = backward.next(state, cls);
+				if (state.matchesBefore(cls)) {
+					start = i;
+				}
+				if (i <= from || backward.isDead(next)) {
+					break;
+				}
+				state = next;
+				i -= Character.charCount(codePoint);
+			}
+			setMatch(start, end);
+			return true;
+		}
+
+		/**
+		 * @return the code point before the index, but no surrogate pair that starts before <code>from</code>
+		 */
+		private int codePointBefore(int index, int from) {
+			char low = input.charAt(index - 1);
+			if (Character.isLowSurrogate(low) && index - 2 >= from && Character.isHighSurrogate(input.charAt(index - 2))) {
+				return Character.toCodePoint(input.charAt(index - 2), low);
+			}
+			return low;
+		}
+	}
+
+
+	private final Program program;
+	private final Program reverseProgram;
+	private final CharClasses classes;
+	private final String regex;
+
+
+	private DfaEngine(RegexBuilder builder) {
+		program = compile(builder, false);
+		reverseProgram = compile(builder, true);
+		classes = new CharClasses(program, reverseProgram);
+		regex = builder.toRegex();
+	}
+
+	/**
+	 * Compiles the builder into a DFA, if it only contains supported elements, see {@link DfaEngine}.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return a DfaEngine or a {@link PatternEngine} if the builder is not supported, not <code>null</code>
+	 */
+	public static Engine compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		try {
+			return new DfaEngine(builder);
+		}
+		catch (RegexBuilderException e) {
+			return new PatternEngine(builder.buildPattern());
+		}
+	}
+
+	/**
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return <code>true</code> if {@link #compile(RegexBuilder)} returns a DfaEngine for the builder
+	 */
+	public static boolean isSupported(RegexBuilder builder) {
+		checkNotNull(builder);
+		try {
+			compile(builder, false);
+			return true;
+		}
+		catch (RegexBuilderException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * @throws RegexBuilderException if the builder contains elements that a DFA can't match
+	 */
+	static Program compile(RegexBuilder builder, boolean reverse) {
+		Program program = ProgramCompiler.compile(builder.getRenderedElements(), builder.getFlags(), reverse);
+		if (!program.isLocal()) {
+			throw new RegexBuilderException("Unsupported boundaries: " + builder.toRegex());
+		}
+		if (program.hasAssertionInEmptyIteration()) {
+			// the backward DFA would leave the repetition after other iterations than Pattern does
+			throw new RegexBuilderException("Unsupported boundaries in a repetition that can match the empty String: "
+					+ builder.toRegex());
+		}
+		return program;
+	}
+
+
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		checkNotNull(input);
+		return new DfaMatcher(input);
+	}
+
+	/**
+	 * @return the count of character classes of the transition table
+	 */
+	public int getClassCount() {
+		return classes.count();
+	}
+
+	@Override
+	public String toString() {
+		return "DfaEngine [regex=" + regex + ", instructions=" + program.size() + ", classes=" + classes.count() + "]";
+	}
+
+}
@@ -0,0 +1,27 @@
+package de.jepfa.regex.engine;
+
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder;
+
+/**
+ * An Engine searches the matches of a compiled {@link RegexBuilder} in an input. 
+ * It is the counterpart of a {@link Pattern}, so different matching algorithms can be used 
+ * for the same Regular Expression. 
+ * <p>
+ * An Engine is immutable and thread-safe, its {@link EngineMatcher}s are not.
+ *
+ * @author Jens Pfahl
+ */
+public interface Engine {
+
+	/**
+	 * Creates a new {@link EngineMatcher} that will match the given input against this Engine.
+	 *
+	 * @param input the character sequence to be matched, not <code>null</code>
+	 * 
+	 * @return not <code>null</code>
+	 */
+	public EngineMatcher matcher(CharSequence input);
+	
+}
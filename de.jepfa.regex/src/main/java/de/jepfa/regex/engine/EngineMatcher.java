@@ -0,0 +1,57 @@
+package de.jepfa.regex.engine;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ * An EngineMatcher performs match operations of an {@link Engine} on a character sequence. 
+ * The methods behave like the corresponding methods of {@link Matcher}, so an EngineMatcher can 
+ * replace a {@link Matcher} for searching.
+ *
+ * @author Jens Pfahl
+ */
+public interface EngineMatcher extends MatchResult {
+
+	/**
+	 * Attempts to find the next match, starting at the end of the previous match.
+	 *
+	 * @return <code>true</code> if a match was found
+	 * 
+	 * @see Matcher#find()
+	 */
+	public boolean find();
+	
+	/**
+	 * Resets this matcher and attempts to find the next match, starting at the given index.
+	 *
+	 * @param start the index to start searching for a match
+	 * 
+	 * @return <code>true</code> if a match was found
+	 * 
+	 * @throws IndexOutOfBoundsException if start is less than zero or greater than the length of the input
+	 * 
+	 * @see Matcher#find(int)
+	 */
+	public boolean find(int start);
+	
+	/**
+	 * Resets this matcher, so the next {@link #find()} starts at the beginning of the input.
+	 *
+	 * @return this matcher
+	 * 
+	 * @see Matcher#reset()
+	 */
+	public EngineMatcher reset();
+	
+	/**
+	 * Resets this matcher with a new input.
+	 *
+	 * @param input the new input, not <code>null</code>
+	 * 
+	 * @return this matcher
+	 * 
+	 * @see Matcher#reset(CharSequence)
+	 */
+	public EngineMatcher reset(CharSequence input);
+	
+}
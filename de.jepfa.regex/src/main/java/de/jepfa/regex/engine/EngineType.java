@@ -0,0 +1,73 @@
+package de.jepfa.regex.engine;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+
+/**
+ * The {@link Engine}s that {@link RegexBuilder#buildEngine()} can compile a builder into,
+ * see {@link RegexBuilder#useEngine(EngineType)}.
+ *
+ * @author Jens Pfahl
+ */
+public enum EngineType {
+
+	/**
+	 * A {@link PatternEngine} with the {@link java.util.regex.Pattern} of {@link RegexBuilder#buildPattern()},
+	 * for all builders.
+	 */
+	PATTERN {
+		@Override
+		public Engine compile(RegexBuilder builder) {
+			return new PatternEngine(builder.buildPattern());
+		}
+	},
+	/**
+	 * A {@link PrefilterEngine}, for all builders.
+	 */
+	PREFILTER {
+		@Override
+		public Engine compile(RegexBuilder builder) {
+			return PrefilterEngine.compile(builder);
+		}
+	},
+	/**
+	 * A {@link DfaEngine} without capturing groups, for all builders, because it falls back to a {@link PatternEngine}.
+	 */
+	DFA {
+		@Override
+		public Engine compile(RegexBuilder builder) {
+			return DfaEngine.compile(builder);
+		}
+	},
+	/**
+	 * A {@link PikeVmEngine}, only for regular elements.
+	 */
+	PIKE_VM {
+		@Override
+		public Engine compile(RegexBuilder builder) {
+			return PikeVmEngine.compile(builder);
+		}
+	},
+	/**
+	 * A {@link BacktrackingEngine}, also for lookarounds and independent groups.
+	 * Its memoization is bounded, so a search on a long input with a lot of backtracking may throw 
+	 * a {@link RegexBuilderException}.
+	 */
+	BACKTRACKING {
+		@Override
+		public Engine compile(RegexBuilder builder) {
+			return BacktrackingEngine.compile(builder);
+		}
+	};
+
+
+	/**
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 *
+	 * @throws RegexBuilderException if the engine doesn't support the builder
+	 */
+	public abstract Engine compile(RegexBuilder builder);
+}
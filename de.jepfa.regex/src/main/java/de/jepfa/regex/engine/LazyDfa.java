@@ -0,0 +1,262 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A DFA of a {@link Program}, whose states are built lazily when the input needs them. A state is the ordered
+ * list of NFA threads before their epsilon closure, the {@link Program#kindOf(int) kind} of the character
+ * consumed last and whether new threads are still started. The closure is computed with the following character,
+ * so every transition knows if a match ends before that character.
+ * <p>
+ * A forward DFA searches like {@link java.util.regex.Pattern}: it starts a thread at every position until
+ * the first match, and threads with a lower priority than a match are dropped. So the last match
+ * found before the DFA dies is the end of the leftmost match. A backward DFA runs a reversed program
+ * from that end, keeps all threads and so finds the leftmost start.
+ * <p>
+ * A LazyDfa is not thread-safe. At most {@link #MAX_STATES} states are cached, then the cache is cleared.
+ *
+ * @author Jens Pfahl
+ */
+final class LazyDfa {
+
+	static final int MAX_STATES = 10_000;
+
+
+	static final class State {
+
+		private final int[] threads;
+		private final int kind;
+		private final boolean searching;
+		private final int hash;
+
+		private final State[] next;
+		private final boolean[] matches;
+
+		private State(int[] threads, int kind, boolean searching, int classCount) {
+			this.threads = threads;
+			this.kind = kind;
+			this.searching = searching;
+			this.hash = 31 * (31 * Arrays.hashCode(threads) + kind) + (searching ? 1 : 0);
+			this.next = new State[classCount + 1];
+			this.matches = new boolean[classCount + 1];
+		}
+
+		/**
+		 * @return <code>true</code> if a match ends before a character of the class,
+		 * 		valid after {@link LazyDfa#next(State, int)} was called for the class
+		 */
+		boolean matchesBefore(int cls) {
+			return matches[cls];
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof State)) {
+				return false;
+			}
+			State other = (State) obj;
+			return kind == other.kind && searching == other.searching && Arrays.equals(threads, other.threads);
+		}
+	}
+
+
+	private final Program program;
+	private final CharClasses classes;
+	private final boolean[][] accepts;
+	private final boolean forward;
+	private final int eoi;
+
+	private final Map<State, State> states = new HashMap<>();
+	private final State[] starts = new State[Program.KIND_COUNT];
+	private final State dead;
+
+	private final int[] stack;
+	private final int[] marks;
+	private final int[] collected;
+	private final int[] consuming;
+	private final int[] threads;
+	private int generation = 0;
+
+
+	/**
+	 * @param forward <code>true</code> for a searching DFA with the priorities of {@link java.util.regex.Pattern},
+	 * 		<code>false</code> for an anchored DFA that reports all matches of a reversed program
+	 */
+	LazyDfa(Program program, CharClasses classes, boolean forward) {
+		this.program = program;
+		this.classes = classes;
+		this.accepts = classes.accepts(program);
+		this.forward = forward;
+		this.eoi = classes.count();
+		this.dead = new State(new int[0], Program.NO_CHAR, false, eoi);
+		Arrays.fill(dead.next, dead);
+
+		int size = program.size();
+		int levels = program.levels + 1;
+		stack = new int[2 * (2 * size * levels + 1)];
+		marks = new int[size * levels];
+		collected = new int[size];
+		consuming = new int[size];
+		threads = new int[size + 1];
+	}
+
+
+	/**
+	 * @param kind the kind of the character before the start, in the direction of the DFA
+	 * @return the start state
+	 */
+	State start(int kind) {
+		State start = starts[kind];
+		if (start == null) {
+			start = intern(new int[] {0}, kind, forward);
+			starts[kind] = start;
+		}
+		return start;
+	}
+
+	/**
+	 * @param cls the class of the next character or {@link CharClasses#count()} at the end of the input
+	 * @return the state after the character, {@link #isDead(State) dead} at the end of the input
+	 */
+	State next(State state, int cls) {
+		State next = state.next[cls];
+		if (next != null) {
+			return next;
+		}
+		if (states.size() >= MAX_STATES) {
+			clear(state);
+		}
+
+		int nextKind = classes.kindOf(cls);
+		int left = forward ? state.kind : nextKind;
+		int right = forward ? nextKind : state.kind;
+		int count = closure(state.threads, left, right);
+		boolean match = count < 0;
+		count = match ? -count - 1 : count;
+
+		if (cls == eoi) {
+			next = dead;
+		}
+		else {
+			int threadCount = 0;
+			for (int i = 0; i < count; i++) {
+				int pc = consuming[i];
+				if (accepts[pc][cls]) {
+					threads[threadCount++] = pc + 1;
+				}
+			}
+			boolean searching = state.searching && !match;
+			if (searching) {
+				threads[threadCount++] = 0;
+			}
+			next = threadCount == 0 ? dead : intern(Arrays.copyOf(threads, threadCount), nextKind, searching);
+		}
+		state.matches[cls] = match;
+		state.next[cls] = next;
+		return next;
+	}
+
+	boolean isDead(State state) {
+		return state == dead;
+	}
+
+
+	/**
+	 * Follows all epsilon transitions of the threads in the order of their priority and collects the
+	 * {@link Program#CHARS} instructions in {@link #consuming}. A thread is visited once per outermost level of
+	 * a started iteration, because that decides where a {@link Program#REPEAT} continues.
+	 *
+	 * @return the count of collected instructions or <code>-count - 1</code> if a match was reached
+	 */
+	private int closure(int[] threads, int left, int right) {
+		generation++;
+		int size = program.size();
+		int count = 0;
+		boolean match = false;
+		for (int thread : threads) {
+			int top = 0;
+			stack[top++] = thread;
+			stack[top++] = program.noLevel();
+			while (top > 0) {
+				int level = stack[--top];
+				int pc = stack[--top];
+				int mark = level * size + pc;
+				if (marks[mark] == generation) {
+					continue;
+				}
+				marks[mark] = generation;
+				switch (program.ops[pc]) {
+				case Program.CHARS:
+					// all levels continue as the same thread after the character
+					if (collected[pc] != generation) {
+						collected[pc] = generation;
+						consuming[count++] = pc;
+					}
+					break;
+				case Program.SPLIT:
+					stack[top++] = program.alternatives[pc];
+					stack[top++] = level;
+					stack[top++] = program.args[pc];
+					stack[top++] = level;
+					break;
+				case Program.JUMP:
+					stack[top++] = program.args[pc];
+					stack[top++] = level;
+					break;
+				case Program.SAVE:
+					stack[top++] = pc + 1;
+					stack[top++] = level;
+					break;
+				case Program.ITERATE:
+					stack[top++] = pc + 1;
+					stack[top++] = Math.min(level, program.args[pc]);
+					break;
+				case Program.REPEAT:
+					stack[top++] = program.args[pc] >= level ? program.alternatives[pc] : pc + 1;
+					stack[top++] = level;
+					break;
+				case Program.ASSERT:
+					if (Program.holds(program.args[pc], left, right)) {
+						stack[top++] = pc + 1;
+						stack[top++] = level;
+					}
+					break;
+				case Program.MATCH:
+					if (forward) {
+						// all remaining threads have a lower priority
+						return -count - 1;
+					}
+					match = true;
+					break;
+				default:
+					throw new IllegalStateException("Unknown instruction " + program.ops[pc]);
+				}
+			}
+		}
+		return match ? -count - 1 : count;
+	}
+
+	private State intern(int[] threads, int kind, boolean searching) {
+		State state = new State(threads, kind, searching, eoi);
+		State existing = states.putIfAbsent(state, state);
+		return existing != null ? existing : state;
+	}
+
+	/**
+	 * Forgets all states but the current one, so the cache doesn't grow without limit.
+	 */
+	private void clear(State current) {
+		states.clear();
+		Arrays.fill(starts, null);
+		Arrays.fill(current.next, null);
+		states.put(current, current);
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link Engine} that uses a compiled {@link Pattern}, so it supports all Regular Expressions.
+ *
+ * @author Jens Pfahl
+ */
+public class PatternEngine implements Engine {
+
+	private static class PatternMatcher implements EngineMatcher {
+		
+		private final Matcher matcher;
+		
+		private PatternMatcher(Matcher matcher) {
+			this.matcher = matcher;
+		}
+		
+		@Override
+		public boolean find() {
+			return matcher.find();
+		}
+
+		@Override
+		public boolean find(int start) {
+			return matcher.find(start);
+		}
+
+		@Override
+		public EngineMatcher reset() {
+			matcher.reset();
+			return this;
+		}
+
+		@Override
+		public EngineMatcher reset(CharSequence input) {
+			checkNotNull(input);
+			matcher.reset(input);
+			return this;
+		}
+
+		@Override
+		public int start() {
+			return matcher.start();
+		}
+
+		@Override
+		public int start(int group) {
+			return matcher.start(group);
+		}
+
+		@Override
+		public int end() {
+			return matcher.end();
+		}
+
+		@Override
+		public int end(int group) {
+			return matcher.end(group);
+		}
+
+		@Override
+		public String group() {
+			return matcher.group();
+		}
+
+		@Override
+		public String group(int group) {
+			return matcher.group(group);
+		}
+
+		@Override
+		public int groupCount() {
+			return matcher.groupCount();
+		}
+		
+	}
+	
+	
+	private final Pattern pattern;
+
+	
+	/**
+	 * @param pattern the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public PatternEngine(Pattern pattern) {
+		checkNotNull(pattern);
+		this.pattern = pattern;
+	}
+	
+	/**
+	 * @return the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+	
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		checkNotNull(input);
+		return new PatternMatcher(pattern.matcher(input));
+	}
+
+	@Override
+	public String toString() {
+		return "PatternEngine [pattern=" + pattern + "]";
+	}
+	
+}
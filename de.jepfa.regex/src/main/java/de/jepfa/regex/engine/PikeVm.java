@@ -0,0 +1,195 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link Program} like a Pike VM: all threads advance together over the input, one code point at a time,
+ * and every thread has its own capture slots. Threads are kept in the order of their priority, and a thread
+ * that reaches an instruction which a thread of higher priority already reached at the same position is dropped,
+ * because it can't change the result anymore. So a search visits every instruction at most once per position
+ * and nesting level of a {@link Program#REPEAT}, which makes it linear in the length of the input.
+ * <p>
+ * The reported match and groups are the same as those of {@link java.util.regex.Pattern}, because the first
+ * thread that reaches {@link Program#MATCH} is the one a backtracking engine would have taken.
+ * <p>
+ * A PikeVm is not thread-safe.
+ *
+ * @author Jens Pfahl
+ */
+final class PikeVm {
+
+	private static final int RESTORE = -1;
+
+
+	private final Program program;
+	private final CharClasses classes;
+	private final boolean[][] accepts;
+	private final int slotCount;
+
+	/**
+	 * The threads that arrived at the current position.
+	 */
+	private final int[] runPcs;
+	private final int[][] runSlots;
+	private int runCount = 0;
+	/**
+	 * The threads that wait for the next character at a {@link Program#CHARS}.
+	 */
+	private final int[] waitPcs;
+	private final int[][] waitSlots;
+	private int waitCount = 0;
+
+	private final int[] slots;
+	private final int[] stack;
+	private final int[] marks;
+	private final int[] collected;
+	private int generation = 0;
+
+
+	PikeVm(Program program, CharClasses classes) {
+		this.program = program;
+		this.classes = classes;
+		this.accepts = classes.accepts(program);
+		this.slotCount = 2 * (program.groupCount + 1);
+
+		int size = program.size();
+		int levels = program.levels + 1;
+		runPcs = new int[size];
+		runSlots = new int[size][slotCount];
+		waitPcs = new int[size];
+		waitSlots = new int[size][slotCount];
+		slots = new int[slotCount];
+		// every visit pushes at most two entries of three values
+		stack = new int[3 * (2 * size * levels + 1)];
+		marks = new int[size * levels];
+		collected = new int[size];
+	}
+
+
+	/**
+	 * Searches the leftmost match that starts at <code>from</code> or later.
+	 *
+	 * @param result receives the slots of the match, <code>-1</code> for groups that didn't participate
+	 * @return <code>true</code> if a match was found
+	 */
+	boolean search(CharSequence input, int from, int[] result) {
+		int length = input.length();
+		boolean matched = false;
+		runCount = 0;
+		int i = from;
+		while (true) {
+			generation++;
+			waitCount = 0;
+			boolean cut = false;
+			for (int t = 0; t < runCount && !cut; t++) {
+				cut = closure(runPcs[t], runSlots[t], input, i, result);
+			}
+			if (!cut && !matched) {
+				// a new thread at every position until the first match, with the lowest priority
+				Arrays.fill(slots, -1);
+				slots[0] = i;
+				cut = closure(0, slots, input, i, result);
+			}
+			matched |= cut;
+			if (i == length || (matched && waitCount == 0)) {
+				return matched;
+			}
+
+			int codePoint = Character.codePointAt(input, i);
+			int cls = classes.classOf(codePoint);
+			runCount = 0;
+			for (int t = 0; t < waitCount; t++) {
+				int pc = waitPcs[t];
+				if (accepts[pc][cls]) {
+					// the slots move with the thread
+					int[] swap = runSlots[runCount];
+					runSlots[runCount] = waitSlots[t];
+					waitSlots[t] = swap;
+					runPcs[runCount++] = pc + 1;
+				}
+			}
+			i += Character.charCount(codePoint);
+		}
+	}
+
+
+	/**
+	 * Follows all epsilon transitions of a thread and adds the reached {@link Program#CHARS} instructions
+	 * to the waiting threads.
+	 *
+	 * @return <code>true</code> if a match was reached, so all threads of lower priority are dropped
+	 */
+	private boolean closure(int start, int[] threadSlots, CharSequence input, int index, int[] result) {
+		if (threadSlots != slots) {
+			System.arraycopy(threadSlots, 0, slots, 0, slotCount);
+		}
+		int size = program.size();
+		int top = 0;
+		top = push(top, start, program.noLevel());
+		while (top > 0) {
+			top -= 3;
+			int pc = stack[top];
+			int level = stack[top + 1];
+			if (stack[top + 2] == RESTORE) {
+				slots[pc] = level;
+				continue;
+			}
+			int mark = level * size + pc;
+			if (marks[mark] == generation) {
+				continue;
+			}
+			marks[mark] = generation;
+			switch (program.ops[pc]) {
+			case Program.CHARS:
+				// all levels continue as the same thread after the character
+				if (collected[pc] != generation) {
+					collected[pc] = generation;
+					System.arraycopy(slots, 0, waitSlots[waitCount], 0, slotCount);
+					waitPcs[waitCount++] = pc;
+				}
+				break;
+			case Program.SPLIT:
+				top = push(top, program.alternatives[pc], level);
+				top = push(top, program.args[pc], level);
+				break;
+			case Program.JUMP:
+				top = push(top, program.args[pc], level);
+				break;
+			case Program.SAVE:
+				int slot = program.args[pc];
+				stack[top++] = slot;
+				stack[top++] = slots[slot];
+				stack[top++] = RESTORE;
+				slots[slot] = index;
+				top = push(top, pc + 1, level);
+				break;
+			case Program.ITERATE:
+				top = push(top, pc + 1, Math.min(level, program.args[pc]));
+				break;
+			case Program.REPEAT:
+				top = push(top, program.args[pc] >= level ? program.alternatives[pc] : pc + 1, level);
+				break;
+			case Program.ASSERT:
+				if (Program.holds(program.args[pc], input, index)) {
+					top = push(top, pc + 1, level);
+				}
+				break;
+			case Program.MATCH:
+				System.arraycopy(slots, 0, result, 0, slotCount);
+				result[1] = index;
+				return true;
+			default:
+				throw new IllegalStateException("Unknown instruction " + program.ops[pc]);
+			}
+		}
+		return false;
+	}
+
+	private int push(int top, int pc, int level) {
+		stack[top] = pc;
+		stack[top + 1] = level;
+		stack[top + 2] = 0;
+		return top + 3;
+	}
+
+}
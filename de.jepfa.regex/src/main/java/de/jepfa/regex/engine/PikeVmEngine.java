@@ -0,0 +1,122 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * An {@link Engine} that matches in linear time and reports capturing groups. The element tree of a
+ * {@link RegexBuilder} is compiled directly into the instructions of a Thompson NFA, which a Pike VM runs
+ * over the input with capture slots per thread. So a search takes <code>O(n * m)</code> time for an input
+ * of length <code>n</code> and a program of <code>m</code> instructions, whatever the input is, and its
+ * matches are the same as those of {@link java.util.regex.Matcher#find()}. The group indexes are
+ * those of {@link de.jepfa.regex.elements.Group#getIndex()}.
+ * <p>
+ * The groups are the same as those of {@link java.util.regex.Matcher#find()}, except for groups inside repeated
+ * elements: they hold the capture of the last iteration that is part of the match, even if that iteration matched
+ * the empty string. {@link java.util.regex.Matcher} ignores the captures of empty iterations and can keep a capture
+ * of an iteration it gave back while backtracking, e.g. for <code>(([^a])*.){2}</code> on <code>"bbaAa"</code>
+ * it reports group 2 at <code>1-2</code>, while this engine reports it at <code>3-4</code>.
+ * <p>
+ * Only the regular elements can be compiled: {@link de.jepfa.regex.elements.StringElement},
+ * {@link de.jepfa.regex.elements.Strings}, {@link de.jepfa.regex.elements.Chars}, {@link de.jepfa.regex.elements.Char},
+ * {@link de.jepfa.regex.elements.Any}, {@link de.jepfa.regex.elements.Choice}, {@link de.jepfa.regex.elements.Group},
+ * {@link de.jepfa.regex.elements.NonCapturing} and {@link de.jepfa.regex.components.Construct}s of them, with greedy
+ * or lazy quantifiers, and all {@link de.jepfa.regex.elements.Boundary}s, word boundaries only without
+ * {@link RegexBuilder.Flag#UNICODE_CHARS}. Unlike {@link DfaEngine#compile(RegexBuilder)},
+ * {@link #compile(RegexBuilder)} rejects other builders instead of falling back to a backtracking engine.
+ * <p>
+ * Every matcher allocates its own thread lists, so reuse a matcher with {@link EngineMatcher#reset(CharSequence)}
+ * instead of creating a new one for every input.
+ *
+ * @author Jens Pfahl
+ */
+public final class PikeVmEngine implements Engine {
+
+	private class PikeVmMatcher extends AbstractEngineMatcher {
+
+		private final PikeVm vm = new PikeVm(program, classes);
+		private final int[] slots = new int[2 * (program.groupCount + 1)];
+
+		private PikeVmMatcher(CharSequence input) {
+			super(input, program.groupCount);
+		}
+
+		@Override
+		protected boolean search(int from) {
+			if (!vm.search(input, from, slots)) {
+				return false;
+			}
+			setMatch(slots[0], slots[1]);
+			return true;
+		}
+
+		@Override
+		public int start(int group) {
+			checkGroup(group);
+			checkMatch();
+			return slots[2 * group];
+		}
+
+		@Override
+		public int end(int group) {
+			checkGroup(group);
+			checkMatch();
+			return slots[2 * group + 1];
+		}
+	}
+
+
+	private final Program program;
+	private final CharClasses classes;
+	private final String regex;
+
+
+	private PikeVmEngine(Program program, String regex) {
+		this.program = program;
+		this.classes = new CharClasses(program);
+		this.regex = regex;
+	}
+
+	/**
+	 * Compiles the builder into a Pike VM program.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 *
+	 * @throws RegexBuilderException if the builder contains elements that are not supported, see {@link PikeVmEngine}
+	 */
+	public static PikeVmEngine compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		Program program;
+		try {
+			program = ProgramCompiler.compile(builder.getRenderedElements(), builder.getFlags(), false);
+		}
+		catch (RegexBuilderException e) {
+			throw new RegexBuilderException("Not supported by the Pike VM: " + e.getMessage(), e);
+		}
+		return new PikeVmEngine(program, builder.toRegex());
+	}
+
+
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		checkNotNull(input);
+		return new PikeVmMatcher(input);
+	}
+
+	/**
+	 * @return the count of capturing groups
+	 */
+	public int getGroupCount() {
+		return program.groupCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PikeVmEngine [regex=" + regex + ", instructions=" + program.size() + ", groups=" + program.groupCount + "]";
+	}
+
+}
@@ -0,0 +1,242 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.analysis.RequiredLiterals;
+import de.jepfa.regex.engine.AhoCorasick.MatchKind;
+
+/**
+ * An {@link Engine} that searches the {@link RequiredLiterals required literals} of a Regular Expression
+ * with {@link String#indexOf(String, int)} or an {@link AhoCorasick} automaton, before the compiled
+ * {@link Pattern} is matched. If no required literal occurs after the search position, the input is rejected
+ * without running the Regex engine.
+ * <p>
+ * This pays off if most inputs don't match, e.g. when filtering lines of a log. The matches are the same
+ * as those of the {@link Pattern}, including all capturing groups.
+ *
+ * @author Jens Pfahl
+ */
+public final class PrefilterEngine implements Engine {
+
+	private class PrefilterMatcher implements EngineMatcher {
+
+		private final Matcher matcher;
+		private final EngineMatcher finder;
+		private CharSequence input;
+
+		/**
+		 * The start of the next {@link #find()}, like the {@link Matcher} computes it.
+		 */
+		private int next = 0;
+		/**
+		 * The last found occurrence of a literal, valid for all searches up to this index.
+		 */
+		private int literalAt = -1;
+
+		private PrefilterMatcher(CharSequence input) {
+			this.input = input;
+			this.matcher = pattern.matcher(input);
+			this.finder = literalEngine != null ? literalEngine.matcher(input) : null;
+		}
+
+		@Override
+		public boolean find() {
+			if (next > input.length() || !containsLiteral(next)) {
+				matcher.reset();
+				next = input.length() + 1;
+				return false;
+			}
+			return update(matcher.find());
+		}
+
+		@Override
+		public boolean find(int start) {
+			if (start < 0 || start > input.length()) {
+				throw new IndexOutOfBoundsException("Illegal start index");
+			}
+			reset();
+			if (!containsLiteral(start)) {
+				next = input.length() + 1;
+				return false;
+			}
+			return update(matcher.find(start));
+		}
+
+		@Override
+		public EngineMatcher reset() {
+			matcher.reset();
+			next = 0;
+			return this;
+		}
+
+		@Override
+		public EngineMatcher reset(CharSequence input) {
+			checkNotNull(input);
+			this.input = input;
+			matcher.reset(input);
+			if (finder != null) {
+				finder.reset(input);
+			}
+			literalAt = -1;
+			next = 0;
+			return this;
+		}
+
+		@Override
+		public int start() {
+			return matcher.start();
+		}
+
+		@Override
+		public int start(int group) {
+			return matcher.start(group);
+		}
+
+		@Override
+		public int end() {
+			return matcher.end();
+		}
+
+		@Override
+		public int end(int group) {
+			return matcher.end(group);
+		}
+
+		@Override
+		public String group() {
+			return matcher.group();
+		}
+
+		@Override
+		public String group(int group) {
+			return matcher.group(group);
+		}
+
+		@Override
+		public int groupCount() {
+			return matcher.groupCount();
+		}
+
+
+		private boolean update(boolean found) {
+			if (found) {
+				next = matcher.start() == matcher.end() ? matcher.end() + 1 : matcher.end();
+			}
+			else {
+				next = input.length() + 1;
+			}
+			return found;
+		}
+
+		private boolean containsLiteral(int from) {
+			if (literals.isEmpty()) {
+				return true;
+			}
+			if (literalAt >= from) {
+				return true;
+			}
+			if (finder != null) {
+				literalAt = finder.find(from) ? finder.start() : -1;
+			}
+			else {
+				literalAt = indexOf(input, literals.get(0), from);
+			}
+			return literalAt >= 0;
+		}
+
+	}
+
+
+	private final Pattern pattern;
+	private final List<String> literals;
+	private final AhoCorasick literalEngine;
+
+
+	/**
+	 * @param pattern the compiled {@link Pattern}, not <code>null</code>
+	 * @param literals literals of which every match of the pattern contains at least one,
+	 * 		not <code>null</code>, no <code>null</code>-elements. If it is empty, no input is rejected.
+	 */
+	public PrefilterEngine(Pattern pattern, List<String> literals) {
+		checkNotNull(pattern);
+		checkNotNull(literals);
+		checkNoNullElements(literals.toArray());
+		checkCondition("Empty literals are not allowed", () -> literals.stream().anyMatch(String::isEmpty));
+		this.pattern = pattern;
+		this.literals = Collections.unmodifiableList(new ArrayList<>(literals));
+		this.literalEngine = literals.size() > 1
+				? AhoCorasick.compile(MatchKind.LEFTMOST_FIRST, literals.toArray(new String[literals.size()])) : null;
+	}
+
+	/**
+	 * Compiles the builder and derives its {@link RequiredLiterals required literals}.
+	 * If the builder has no required literals, the engine behaves like a {@link PatternEngine}.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 */
+	public static PrefilterEngine compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		Pattern pattern = builder.buildPattern();
+		return new PrefilterEngine(pattern, RequiredLiterals.of(builder.getRenderedElements(), builder.getFlags()));
+	}
+
+
+	@Override
+	public EngineMatcher matcher(CharSequence input) {
+		checkNotNull(input);
+		return new PrefilterMatcher(input);
+	}
+
+	/**
+	 * @return the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return the literals that are searched before matching, empty if no input is rejected, not <code>null</code>
+	 */
+	public List<String> getRequiredLiterals() {
+		return literals;
+	}
+
+	@Override
+	public String toString() {
+		return "PrefilterEngine [pattern=" + pattern + ", literals=" + literals + "]";
+	}
+
+
+	private static int indexOf(CharSequence input, String literal, int from) {
+		if (input instanceof String) {
+			return ((String) input).indexOf(literal, from);
+		}
+		char first = literal.charAt(0);
+		int last = input.length() - literal.length();
+		for (int i = from; i <= last; i++) {
+			if (input.charAt(i) == first && regionMatches(input, i, literal)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean regionMatches(CharSequence input, int offset, String literal) {
+		for (int j = 1; j < literal.length(); j++) {
+			if (input.charAt(offset + j) != literal.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
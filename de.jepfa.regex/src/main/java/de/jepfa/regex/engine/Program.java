@@ -0,0 +1,320 @@
+package de.jepfa.regex.engine;
+
+import de.jepfa.regex.components.CharPredicate;
+
+/**
+ * The instructions of a Thompson NFA, compiled from {@link de.jepfa.regex.components.Element}s by the
+ * {@link ProgramCompiler}. The program starts at instruction <code>0</code>, its last instruction is {@link #MATCH}.
+ * <p>
+ * A thread at a {@link #SPLIT} continues at both targets, the first one has the higher priority.
+ * So the priority of the threads is the order in which a backtracking engine like {@link java.util.regex.Pattern}
+ * tries the alternatives.
+ * <p>
+ * A Program is immutable.
+ *
+ * @author Jens Pfahl
+ */
+final class Program {
+
+	/**
+	 * Consumes one code point that matches <code>predicates[pc]</code> and continues at <code>pc + 1</code>.
+	 */
+	static final int CHARS = 0;
+	/**
+	 * Continues at <code>args[pc]</code> and with lower priority at <code>alternatives[pc]</code>.
+	 */
+	static final int SPLIT = 1;
+	/**
+	 * Continues at <code>args[pc]</code>.
+	 */
+	static final int JUMP = 2;
+	/**
+	 * Stores the current position in the slot <code>args[pc]</code> and continues at <code>pc + 1</code>.
+	 * The slots <code>2 * g</code> and <code>2 * g + 1</code> are the start and end of group <code>g</code>.
+	 */
+	static final int SAVE = 3;
+	/**
+	 * Continues at <code>pc + 1</code> if the assertion <code>args[pc]</code> holds at the current position.
+	 */
+	static final int ASSERT = 4;
+	/**
+	 * A match is found.
+	 */
+	static final int MATCH = 5;
+	/**
+	 * Starts an iteration of the repetition at the nesting level <code>args[pc]</code> and continues at <code>pc + 1</code>.
+	 */
+	static final int ITERATE = 6;
+	/**
+	 * Ends an iteration of the repetition at the nesting level <code>args[pc]</code>. If the iteration matched the
+	 * empty String, the repetition is left at <code>alternatives[pc]</code> like {@link java.util.regex.Pattern}
+	 * does, otherwise it continues at <code>pc + 1</code>.
+	 * <p>
+	 * So a thread has to know the outermost level whose iteration started at the current position. Engines
+	 * track it from {@link #ITERATE} to the next consumed character, {@link #noLevel()} means no such level.
+	 */
+	static final int REPEAT = 7;
+	/**
+	 * Matches the body from <code>pc + 1</code> to the next {@link #SUCCEED} atomically: the first match of the body
+	 * is taken and never given back. Then it continues at <code>args[pc]</code>, the instruction after the body.
+	 * <p>
+	 * This and the following instructions with a body are only compiled for backtracking engines.
+	 */
+	static final int ATOMIC = 8;
+	/**
+	 * A positive lookahead with a body like {@link #ATOMIC}, that continues at <code>args[pc]</code> at the
+	 * position where the body started.
+	 */
+	static final int AHEAD = 9;
+	/**
+	 * A negative lookahead with a body like {@link #AHEAD}, that continues if the body doesn't match.
+	 */
+	static final int NOT_AHEAD = 10;
+	/**
+	 * A positive lookbehind with a body like {@link #AHEAD}. The body has to match a part of the input that ends
+	 * at the current position and has at most <code>alternatives[pc]</code> chars.
+	 */
+	static final int BEHIND = 11;
+	/**
+	 * A negative lookbehind with a body like {@link #BEHIND}, that continues if the body doesn't match.
+	 */
+	static final int NOT_BEHIND = 12;
+	/**
+	 * The end of a body: the body matched.
+	 */
+	static final int SUCCEED = 13;
+
+
+	/**
+	 * <code>^</code> without {@link java.util.regex.Pattern#MULTILINE} or <code>\A</code>.
+	 */
+	static final int BEGIN = 0;
+	/**
+	 * <code>^</code> with {@link java.util.regex.Pattern#MULTILINE}.
+	 */
+	static final int LINE_START = 1;
+	/**
+	 * <code>^</code> with {@link java.util.regex.Pattern#MULTILINE} and {@link java.util.regex.Pattern#UNIX_LINES}.
+	 */
+	static final int UNIX_LINE_START = 2;
+	/**
+	 * <code>$</code> with {@link java.util.regex.Pattern#MULTILINE}.
+	 */
+	static final int LINE_END = 3;
+	/**
+	 * <code>$</code> with {@link java.util.regex.Pattern#MULTILINE} and {@link java.util.regex.Pattern#UNIX_LINES}.
+	 */
+	static final int UNIX_LINE_END = 4;
+	/**
+	 * <code>$</code> without {@link java.util.regex.Pattern#MULTILINE} or <code>\Z</code>.
+	 * This and the following assertions depend on more than the adjacent characters, see {@link #isLocal(int)}.
+	 */
+	static final int FINAL_LINE_END = 5;
+	/**
+	 * <code>$</code> without {@link java.util.regex.Pattern#MULTILINE} or <code>\Z</code>,
+	 * with {@link java.util.regex.Pattern#UNIX_LINES}.
+	 */
+	static final int UNIX_FINAL_LINE_END = 6;
+	/**
+	 * <code>\b</code> without {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}.
+	 */
+	static final int WORD_BOUNDARY = 7;
+	/**
+	 * <code>\B</code> without {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}.
+	 */
+	static final int NOT_WORD_BOUNDARY = 8;
+
+
+	/**
+	 * The kind of a missing character before the start or after the end of the input.
+	 */
+	static final int NO_CHAR = 0;
+	static final int LF = 1;
+	static final int CR = 2;
+	/**
+	 * <code>\u0085</code>, <code>\u2028</code> or <code>\u2029</code>.
+	 */
+	static final int OTHER_LINE_TERMINATOR = 3;
+	static final int OTHER_CHAR = 4;
+	static final int KIND_COUNT = 5;
+
+
+	final int[] ops;
+	final int[] args;
+	final int[] alternatives;
+	final CharPredicate[] predicates;
+	final int groupCount;
+	/**
+	 * The count of nesting levels of repetitions with {@link #ITERATE}, which is also {@link #noLevel()}.
+	 */
+	final int levels;
+
+
+	Program(int[] ops, int[] args, int[] alternatives, CharPredicate[] predicates, int groupCount, int levels) {
+		this.ops = ops;
+		this.args = args;
+		this.alternatives = alternatives;
+		this.predicates = predicates;
+		this.groupCount = groupCount;
+		this.levels = levels;
+	}
+
+
+	/**
+	 * @return the level of no started iteration, that is the level of every thread after a consumed character
+	 */
+	int noLevel() {
+		return levels;
+	}
+
+	/**
+	 * @return <code>true</code> if all assertions of the program are {@link #isLocal(int) local}
+	 */
+	boolean isLocal() {
+		for (int pc = 0; pc < ops.length; pc++) {
+			if (ops[pc] == ASSERT && !isLocal(args[pc])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns <code>true</code> if an assertion is part of a repetition that can match the empty String. 
+	 * Whether such a repetition is left after an empty iteration depends on the position of the iteration, 
+	 * and a reversed program reads the iterations in the opposite order, so it can't decide that like 
+	 * {@link java.util.regex.Pattern}.
+	 *
+	 * @return <code>true</code> if an {@link #ASSERT} is between an {@link #ITERATE} and its {@link #REPEAT}
+	 */
+	boolean hasAssertionInEmptyIteration() {
+		int depth = 0;
+		for (int pc = 0; pc < ops.length; pc++) {
+			if (ops[pc] == ITERATE) {
+				depth++;
+			}
+			else if (ops[pc] == REPEAT) {
+				depth--;
+			}
+			else if (ops[pc] == ASSERT && depth > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the count of instructions
+	 */
+	int size() {
+		return ops.length;
+	}
+
+	/**
+	 * @return the kind of a character for the assertions
+	 */
+	static int kindOf(int codePoint) {
+		switch (codePoint) {
+		case '\n':
+			return LF;
+		case '\r':
+			return CR;
+		case '\u0085':
+		case '\u2028':
+		case '\u2029':
+			return OTHER_LINE_TERMINATOR;
+		default:
+			return OTHER_CHAR;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the assertion depends only on the {@link #kindOf(int) kinds} of the
+	 * 		characters before and after the position, see {@link #holds(int, int, int)}
+	 */
+	static boolean isLocal(int assertion) {
+		return assertion < FINAL_LINE_END;
+	}
+
+	/**
+	 * Evaluates an assertion at a position of the input like {@link java.util.regex.Pattern#matcher(CharSequence)}
+	 * does without a region.
+	 */
+	static boolean holds(int assertion, CharSequence input, int index) {
+		int length = input.length();
+		switch (assertion) {
+		case FINAL_LINE_END:
+			if (index == length - 2) {
+				return input.charAt(index) == '\r' && input.charAt(index + 1) == '\n';
+			}
+			return index == length || (index == length - 1 && kindOf(input.charAt(index)) != OTHER_CHAR
+					&& !(input.charAt(index) == '\n' && index > 0 && input.charAt(index - 1) == '\r'));
+		case UNIX_FINAL_LINE_END:
+			return index == length || (index == length - 1 && input.charAt(index) == '\n');
+		case WORD_BOUNDARY:
+			return isWordBoundary(input, index);
+		case NOT_WORD_BOUNDARY:
+			return !isWordBoundary(input, index);
+		default:
+			return holds(assertion, index > 0 ? kindOf(input.charAt(index - 1)) : NO_CHAR,
+					index < length ? kindOf(input.charAt(index)) : NO_CHAR);
+		}
+	}
+
+	/**
+	 * A word boundary like <code>\b</code> of {@link java.util.regex.Pattern} without
+	 * {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}.
+	 */
+	static boolean isWordBoundary(CharSequence input, int index) {
+		boolean left = index > 0 && isWordChar(input, Character.codePointBefore(input, index), index - 1);
+		boolean right = index < input.length() && isWordChar(input, Character.codePointAt(input, index), index);
+		return left != right;
+	}
+
+	/**
+	 * Evaluates an assertion like {@link java.util.regex.Pattern} does, e.g. <code>\r\n</code> is one
+	 * line terminator and <code>^</code> doesn't match at the end of the input.
+	 *
+	 * @param assertion the assertion
+	 * @param left the kind of the character before the position
+	 * @param right the kind of the character after the position
+	 */
+	static boolean holds(int assertion, int left, int right) {
+		switch (assertion) {
+		case BEGIN:
+			return left == NO_CHAR;
+		case LINE_START:
+			return right != NO_CHAR
+					&& (left == NO_CHAR || (left != OTHER_CHAR && !(left == CR && right == LF)));
+		case UNIX_LINE_START:
+			return right != NO_CHAR && (left == NO_CHAR || left == LF);
+		case LINE_END:
+			return right != OTHER_CHAR && !(left == CR && right == LF);
+		case UNIX_LINE_END:
+			return right == NO_CHAR || right == LF;
+		default:
+			throw new IllegalArgumentException("Unknown assertion " + assertion);
+		}
+	}
+
+	private static boolean isWordChar(CharSequence input, int codePoint, int index) {
+		if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+			return true;
+		}
+		if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+			return false;
+		}
+		// a non spacing mark belongs to its base character
+		for (int i = index; i >= 0; i--) {
+			int ch = Character.codePointAt(input, i);
+			if (Character.isLetterOrDigit(ch)) {
+				return true;
+			}
+			if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,558 @@
+package de.jepfa.regex.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.analysis.Analyzer;
+import de.jepfa.regex.components.CharPredicate;
+import de.jepfa.regex.components.Construct;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Flags;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.Lookbehind;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+/**
+ * Compiles {@link Element}s directly into a {@link Program}, without rendering and parsing a Regular Expression.
+ * Character classes are evaluated with the flags in effect, so the program matches the same characters as
+ * the {@link Pattern} of the elements. Counted repetitions are expanded. Repetitions that can match the empty
+ * String are left after an empty iteration, like {@link Pattern} does.
+ * <p>
+ * These elements are supported: {@link StringElement}, {@link Strings}, {@link Chars}, {@link Char}, {@link Any},
+ * {@link Choice}, {@link Group}, {@link NonCapturing} groups that are not independent, {@link Construct}s of
+ * such elements and all {@link Boundary}s, word boundaries only without {@link Flag#UNICODE_CHARS}.
+ * Possessive quantifiers, lookarounds and independent groups only for backtracking engines, see
+ * {@link #compileForBacktracking(List, Set)}. The flags {@link Flag#CANON_EQUALS} and {@link Flag#LITERAL}
+ * are not supported.
+ * Engines that only know the adjacent characters have to reject programs that are not {@link Program#isLocal() local}.
+ * Engines that search backward with a reversed program have to reject programs with
+ * {@link Program#hasAssertionInEmptyIteration() assertions in repetitions that can match the empty String}.
+ *
+ * @author Jens Pfahl
+ */
+final class ProgramCompiler {
+
+	/**
+	 * Larger programs are rejected, e.g. because of large counted repetitions.
+	 */
+	static final int MAX_SIZE = 100_000;
+
+	/**
+	 * The flags that change the characters of a class.
+	 */
+	private static final int CLASS_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+			| Pattern.UNICODE_CHARACTER_CLASS | Pattern.COMMENTS;
+
+	private static final int UNSUPPORTED_FLAGS = Pattern.CANON_EQ | Pattern.LITERAL;
+
+	/**
+	 * The maximum count of cached case-insensitive literals.
+	 */
+	private static final int MAX_LITERALS = 256;
+
+	/**
+	 * The case-insensitive literals with {@link Pattern#UNICODE_CASE}, each of them takes a scan of all code points.
+	 * Access ordered and bounded like the {@link de.jepfa.regex.helper.PatternCache}, so the least recently used
+	 * literal is evicted. Guarded by itself.
+	 */
+	private static final Map<Integer, CharPredicate> literals = new LinkedHashMap<Integer, CharPredicate>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, CharPredicate> eldest) {
+			return size() > MAX_LITERALS;
+		}
+	};
+
+
+	private final boolean reverse;
+	private final boolean backtracking;
+
+	private int[] ops = new int[16];
+	private int[] args = new int[16];
+	private int[] alternatives = new int[16];
+	private CharPredicate[] predicates = new CharPredicate[16];
+	private int size = 0;
+	private int groupCount = 0;
+	private int depth = 0;
+	private int levels = 0;
+
+
+	private ProgramCompiler(boolean reverse, boolean backtracking) {
+		this.reverse = reverse;
+		this.backtracking = backtracking;
+	}
+
+
+	/**
+	 * @param elements the sequence to compile, not <code>null</code>
+	 * @param flags the flags of the {@link de.jepfa.regex.RegexBuilder}, not <code>null</code>
+	 * @param reverse <code>true</code> to compile a program that matches the reversed input, e.g. to search
+	 * 		the start of a match from its end
+	 * @return not <code>null</code>
+	 * @throws RegexBuilderException if an element or flag is not supported
+	 */
+	static Program compile(List<Element> elements, Set<Flag> flags, boolean reverse) {
+		return compile(elements, flags, new ProgramCompiler(reverse, false));
+	}
+
+	/**
+	 * Like {@link #compile(List, Set, boolean)}, but also compiles the elements that need a backtracking engine:
+	 * {@link Lookahead}s, {@link Lookbehind}s with a maximum length, independent {@link NonCapturing} groups and
+	 * possessive quantifiers, into {@link Program#ATOMIC} and the lookaround instructions.
+	 *
+	 * @param elements the sequence to compile, not <code>null</code>
+	 * @param flags the flags of the {@link de.jepfa.regex.RegexBuilder}, not <code>null</code>
+	 * @return not <code>null</code>
+	 * @throws RegexBuilderException if an element or flag is not supported
+	 */
+	static Program compileForBacktracking(List<Element> elements, Set<Flag> flags) {
+		return compile(elements, flags, new ProgramCompiler(false, true));
+	}
+
+	private static Program compile(List<Element> elements, Set<Flag> flags, ProgramCompiler compiler) {
+		int mask = 0;
+		for (Flag flag : flags) {
+			mask |= flag.getId();
+		}
+		if ((mask & UNSUPPORTED_FLAGS) != 0) {
+			throw new RegexBuilderException("Unsupported flags: " + flags);
+		}
+
+		compiler.emitSequence(elements, mask);
+		compiler.emit(Program.MATCH, 0, 0, null);
+		int size = compiler.size;
+		return new Program(Arrays.copyOf(compiler.ops, size), Arrays.copyOf(compiler.args, size),
+				Arrays.copyOf(compiler.alternatives, size), Arrays.copyOf(compiler.predicates, size), compiler.groupCount,
+				compiler.levels);
+	}
+
+
+	private void emitSequence(List<Element> elements, int flags) {
+		for (int i = 0; i < elements.size(); i++) {
+			emitElement(elements.get(reverse ? elements.size() - 1 - i : i), flags);
+		}
+	}
+
+	private void emitAlternatives(List<Element> alternatives, int flags) {
+		List<Integer> jumps = new ArrayList<>();
+		for (int i = 0; i < alternatives.size(); i++) {
+			int split = -1;
+			if (i < alternatives.size() - 1) {
+				split = emit(Program.SPLIT, size + 1, 0, null);
+			}
+			emitElement(alternatives.get(i), flags);
+			if (split >= 0) {
+				jumps.add(emit(Program.JUMP, 0, 0, null));
+				this.alternatives[split] = size;
+			}
+		}
+		for (int jump : jumps) {
+			args[jump] = size;
+		}
+	}
+
+	private void emitElement(Element element, int outerFlags) {
+		int flags = applyFlags(element.getFlags(), outerFlags);
+		Quantifier q = element.getQuantifier();
+		boolean possessive = q.getStrategy() == Quantifier.Strategy.POSSESSIVE;
+		if (possessive && !backtracking) {
+			throw unsupported(element);
+		}
+		boolean lazy = q.getStrategy() == Quantifier.Strategy.LAZY;
+		int min = q.getMin();
+		int max = q.getMax();
+		if (element instanceof StringElement && !q.equals(Quantifier.ONE)) {
+			String s = ((StringElement) element).getString();
+			if (s.isEmpty()) {
+				// renders nothing, so the quantifier would belong to the element before
+				throw unsupported(element);
+			}
+			int last = s.offsetByCodePoints(s.length(), -1);
+			if (last > 0) {
+				// the quantifier of a quoted String belongs only to its last code point, like in \Qab\E+
+				emitSequence(Arrays.asList(new StringElement(s.substring(0, last)),
+						new StringElement(s.substring(last)).range(min, max).strategy(q.getStrategy())), flags);
+				return;
+			}
+		}
+		int firstGroup = groupCount;
+
+		if (max == 0) {
+			// nothing to match, but the groups are counted
+			int mark = size;
+			emitOnce(element, flags, outerFlags);
+			size = mark;
+			return;
+		}
+		// Pattern matches every iteration of a possessive repetition atomically and never gives one back
+		int atomic = possessive ? emit(Program.ATOMIC, 0, 0, null) : -1;
+		// Pattern leaves a repetition after an iteration that matched the empty String
+		int level = (max == Quantifier.UNBOUND || max > 1) && Analyzer.isNullable(single(element)) ? depth++ : -1;
+		levels = Math.max(levels, depth);
+		List<Integer> exits = new ArrayList<>();
+		for (int i = 0; i < min - (max == Quantifier.UNBOUND ? 1 : 0); i++) {
+			groupCount = firstGroup;
+			emitIteration(element, flags, outerFlags, level, possessive, exits);
+		}
+		if (max == Quantifier.UNBOUND) {
+			groupCount = firstGroup;
+			if (min > 0) {
+				// x+ as x followed by a loop back to it
+				int body = size;
+				emitIteration(element, flags, outerFlags, level, possessive, exits);
+				exits.add(emitSplit(body, 0, lazy));
+			}
+			else {
+				int split = emitSplit(size + 1, 0, lazy);
+				emitIteration(element, flags, outerFlags, level, possessive, exits);
+				emit(Program.JUMP, split, 0, null);
+				exits.add(split);
+			}
+		}
+		else {
+			for (int i = min; i < max; i++) {
+				groupCount = firstGroup;
+				exits.add(emitSplit(size + 1, 0, lazy));
+				emitIteration(element, flags, outerFlags, level, possessive, exits);
+			}
+		}
+		for (int exit : exits) {
+			setExit(exit, size, lazy);
+		}
+		if (level >= 0) {
+			depth--;
+		}
+		if (possessive) {
+			endBody(atomic);
+		}
+	}
+
+	/**
+	 * Emits one repetition of the element, enclosed by {@link Program#ITERATE} and {@link Program#REPEAT}
+	 * if the level is not negative, and by {@link Program#ATOMIC} if it is possessive. The REPEAT instruction
+	 * is added to the exits.
+	 */
+	private void emitIteration(Element element, int flags, int outerFlags, int level, boolean possessive,
+			List<Integer> exits) {
+		if (level >= 0) {
+			emit(Program.ITERATE, level, 0, null);
+		}
+		int atomic = possessive ? emit(Program.ATOMIC, 0, 0, null) : -1;
+		emitOnce(element, flags, outerFlags);
+		if (possessive) {
+			endBody(atomic);
+		}
+		if (level >= 0) {
+			exits.add(emit(Program.REPEAT, level, 0, null));
+		}
+	}
+
+	private void emitOnce(Element element, int flags, int outerFlags) {
+		if (element instanceof StringElement) {
+			String s = ((StringElement) element).getString();
+			int[] codePoints = s.codePoints().toArray();
+			for (int i = 0; i < codePoints.length; i++) {
+				emit(Program.CHARS, 0, 0, literal(codePoints[reverse ? codePoints.length - 1 - i : i], flags));
+			}
+		}
+		else if (element instanceof Chars) {
+			Chars chars = (Chars) element;
+			if (chars.isEmpty()) {
+				// renders nothing, so the quantifier would belong to the element before
+				throw unsupported(element);
+			}
+			emit(Program.CHARS, 0, 0, (flags & CLASS_FLAGS) == 0 ? chars.toPredicate() : evaluate(element, outerFlags));
+		}
+		else if (element instanceof Char) {
+			emit(Program.CHARS, 0, 0, evaluate(element, outerFlags));
+		}
+		else if (element instanceof Any) {
+			emit(Program.CHARS, 0, 0, dot(flags));
+		}
+		else if (element instanceof Boundary) {
+			emit(Program.ASSERT, assertion(element, flags), 0, null);
+		}
+		else if (element instanceof Construct) {
+			emitGroup(((Group) element).getRenderedElements(), flags, true, false);
+		}
+		else if (element.getClass() == Group.class) {
+			emitGroup(((Group) element).getRenderedElements(), flags, true, false);
+		}
+		else if (element.getClass() == Choice.class || element.getClass() == Strings.class) {
+			emitGroup(((Group) element).getRenderedElements(), flags, true, true);
+		}
+		else if (element.getClass() == NonCapturing.class && !((NonCapturing) element).isIndependent()) {
+			emitGroup(((Group) element).getRenderedElements(), flags, false, false);
+		}
+		else if (backtracking && element.getClass() == NonCapturing.class) {
+			int atomic = emit(Program.ATOMIC, 0, 0, null);
+			emitSequence(((Group) element).getRenderedElements(), flags);
+			endBody(atomic);
+		}
+		else if (backtracking && element.getClass() == Lookahead.class) {
+			int look = emit(((Lookahead) element).isNot() ? Program.NOT_AHEAD : Program.AHEAD, 0, 0, null);
+			emitSequence(((Group) element).getRenderedElements(), flags);
+			endBody(look);
+		}
+		else if (backtracking && element.getClass() == Lookbehind.class) {
+			List<Element> elements = ((Group) element).getRenderedElements();
+			int maxLength = maxLength(elements);
+			if (maxLength < 0) {
+				throw new RegexBuilderException("Lookbehind without a maximum length: " + element.toRegex());
+			}
+			int look = emit(((Lookbehind) element).isNot() ? Program.NOT_BEHIND : Program.BEHIND, 0, maxLength, null);
+			emitSequence(elements, flags);
+			endBody(look);
+		}
+		else {
+			throw unsupported(element);
+		}
+	}
+
+	private void emitGroup(List<Element> elements, int flags, boolean capturing, boolean choice) {
+		int group = capturing ? ++groupCount : 0;
+		if (capturing) {
+			emit(Program.SAVE, 2 * group + (reverse ? 1 : 0), 0, null);
+		}
+		if (choice) {
+			emitAlternatives(elements, flags);
+		}
+		else {
+			emitSequence(elements, flags);
+		}
+		if (capturing) {
+			emit(Program.SAVE, 2 * group + (reverse ? 0 : 1), 0, null);
+		}
+	}
+
+	/**
+	 * Ends the body of an {@link Program#ATOMIC} or a lookaround instruction with {@link Program#SUCCEED}.
+	 */
+	private void endBody(int start) {
+		emit(Program.SUCCEED, 0, 0, null);
+		args[start] = size;
+	}
+
+	private int emitSplit(int preferred, int other, boolean lazy) {
+		return emit(Program.SPLIT, lazy ? other : preferred, lazy ? preferred : other, null);
+	}
+
+	/**
+	 * Sets the target of an instruction that leaves a repetition, which is the preferred one of a split
+	 * for lazy quantifiers.
+	 */
+	private void setExit(int pc, int exit, boolean lazy) {
+		if (lazy && ops[pc] == Program.SPLIT) {
+			args[pc] = exit;
+		}
+		else {
+			alternatives[pc] = exit;
+		}
+	}
+
+	private int emit(int op, int arg, int alternative, CharPredicate predicate) {
+		if (size == MAX_SIZE) {
+			throw new RegexBuilderException("The program is too large, more than " + MAX_SIZE + " instructions");
+		}
+		if (size == ops.length) {
+			ops = Arrays.copyOf(ops, 2 * size);
+			args = Arrays.copyOf(args, 2 * size);
+			alternatives = Arrays.copyOf(alternatives, 2 * size);
+			predicates = Arrays.copyOf(predicates, 2 * size);
+		}
+		ops[size] = op;
+		args[size] = arg;
+		alternatives[size] = alternative;
+		predicates[size] = predicate;
+		return size++;
+	}
+
+
+	private static int applyFlags(Flags elementFlags, int flags) {
+		int result = flags;
+		for (Flag flag : elementFlags.getEnabledFlags()) {
+			result |= flag.getId();
+		}
+		for (Flag flag : elementFlags.getDisabledFlags()) {
+			result &= ~flag.getId();
+		}
+		return result;
+	}
+
+	private static int assertion(Element element, int flags) {
+		boolean multiline = (flags & Pattern.MULTILINE) != 0;
+		boolean unixLines = (flags & Pattern.UNIX_LINES) != 0;
+		String regex = single(element).restoreAllFlags().toRegex();
+		if (regex.equals(Boundary.INPUT_START.toRegex()) || (regex.equals(Boundary.LINE_START.toRegex()) && !multiline)) {
+			return Program.BEGIN;
+		}
+		if (regex.equals(Boundary.LINE_START.toRegex())) {
+			return unixLines ? Program.UNIX_LINE_START : Program.LINE_START;
+		}
+		if (regex.equals(Boundary.LINE_END.toRegex()) && multiline) {
+			return unixLines ? Program.UNIX_LINE_END : Program.LINE_END;
+		}
+		if (regex.equals(Boundary.LINE_END.toRegex()) || regex.equals(Boundary.INPUT_END.toRegex())) {
+			return unixLines ? Program.UNIX_FINAL_LINE_END : Program.FINAL_LINE_END;
+		}
+		if ((flags & Pattern.UNICODE_CHARACTER_CLASS) == 0) {
+			if (regex.equals(Boundary.WORD.toRegex())) {
+				return Program.WORD_BOUNDARY;
+			}
+			if (regex.equals(Boundary.NOT_A_WORD.toRegex())) {
+				return Program.NOT_WORD_BOUNDARY;
+			}
+		}
+		throw unsupported(element);
+	}
+
+	/**
+	 * @return the maximum count of chars a match of the sequence can have, <code>-1</code> if unbounded
+	 */
+	private static int maxLength(List<Element> elements) {
+		int sum = 0;
+		for (Element element : elements) {
+			int length = maxLength(element);
+			if (length < 0) {
+				return -1;
+			}
+			sum += length;
+		}
+		return sum;
+	}
+
+	private static int maxLength(Element element) {
+		int max = element.getQuantifier().getMax();
+		if (max == 0) {
+			return 0;
+		}
+		int once;
+		if (element instanceof StringElement) {
+			// a case insensitive code point may match a supplementary character
+			String s = ((StringElement) element).getString();
+			once = 2 * s.codePointCount(0, s.length());
+		}
+		else if (element instanceof Chars || element instanceof Char || element instanceof Any) {
+			once = 2;
+		}
+		else if (element instanceof Boundary || element instanceof Lookahead || element instanceof Lookbehind) {
+			once = 0;
+		}
+		else if (element.getClass() == Choice.class || element.getClass() == Strings.class) {
+			once = 0;
+			for (Element alternative : ((Group) element).getRenderedElements()) {
+				int length = maxLength(alternative);
+				if (length < 0) {
+					return -1;
+				}
+				once = Math.max(once, length);
+			}
+		}
+		else if (element instanceof Group) {
+			once = maxLength(((Group) element).getRenderedElements());
+		}
+		else {
+			return -1;
+		}
+		if (max == Quantifier.UNBOUND) {
+			return once == 0 ? 0 : -1;
+		}
+		return once < 0 ? -1 : once * max;
+	}
+
+	/**
+	 * Evaluates a single repetition of a character class with the flags of its enclosing elements.
+	 */
+	private static CharPredicate evaluate(Element element, int outerFlags) {
+		StringBuilder sb = new StringBuilder("(?");
+		for (Flag flag : Flag.values()) {
+			if ((outerFlags & flag.getId()) != 0) {
+				flag.appendTo(sb);
+			}
+		}
+		sb.append(":");
+		single(element).appendTo(sb);
+		return CharPredicate.ofRegex(sb.append(")").toString());
+	}
+
+	/**
+	 * @return a copy of the element that matches only once
+	 */
+	private static Element single(Element element) {
+		// a cloned Construct must not become the container of the groups of the element
+		return Group.detached(() -> {
+			try {
+				return element.clone().count(1);
+			}
+			catch (CloneNotSupportedException e) {
+				throw new RegexBuilderException(
+						element.getClass().getName() + " is not cloneable, but should be. Programming error?", e);
+			}
+		});
+	}
+
+	private static CharPredicate dot(int flags) {
+		if ((flags & Pattern.DOTALL) != 0) {
+			return CharPredicate.ALL;
+		}
+		if ((flags & Pattern.UNIX_LINES) != 0) {
+			return CharPredicate.of('\n').negate();
+		}
+		return CharPredicate.of(cp -> Program.kindOf(cp) != Program.OTHER_CHAR, 0, '\u2029').negate();
+	}
+
+	/**
+	 * A literal character like {@link Pattern} matches it: with {@link Pattern#CASE_INSENSITIVE} only US-ASCII
+	 * letters are folded, with {@link Pattern#UNICODE_CASE} all characters with the same lower case of their upper case.
+	 */
+	private static CharPredicate literal(int codePoint, int flags) {
+		boolean ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+		boolean unicodeCase = (flags & (Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS)) != 0;
+		if (ignoreCase && unicodeCase) {
+			int lower = Character.toLowerCase(Character.toUpperCase(codePoint));
+			if (lower != Character.toUpperCase(codePoint)) {
+				CharPredicate literal;
+				synchronized (literals) {
+					literal = literals.get(lower);
+				}
+				if (literal == null) {
+					// scanned outside the lock, so other compilers are not blocked
+					literal = CharPredicate.of(
+							cp -> Character.toLowerCase(Character.toUpperCase(cp)) == lower, 0, Character.MAX_CODE_POINT);
+					synchronized (literals) {
+						literals.put(lower, literal);
+					}
+				}
+				return literal;
+			}
+		}
+		else if (ignoreCase && codePoint < 128 && Character.isLetter(codePoint)) {
+			return CharPredicate.of((char) Character.toLowerCase(codePoint))
+					.union(CharPredicate.of((char) Character.toUpperCase(codePoint)));
+		}
+		return CharPredicate.range(codePoint, codePoint);
+	}
+
+	private static RegexBuilderException unsupported(Element element) {
+		return new RegexBuilderException("Unsupported element: " + element.toRegex());
+	}
+
+}
@@ -0,0 +1,103 @@
+package de.jepfa.regex.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes single code points of UTF-8 encoded bytes, so a matcher can read bytes without decoding
+ * the whole input. A byte that doesn't start a well-formed sequence, including overlong forms and
+ * surrogates, is decoded as {@link #REPLACEMENT} of one byte, so every byte belongs to exactly one
+ * code point, read forward or backward.
+ * <p>
+ * A decoded code point is returned together with the count of its bytes in one <code>int</code>,
+ * see {@link #codePoint(int)} and {@link #length(int)}.
+ *
+ * @author Jens Pfahl
+ */
+final class Utf8 {
+
+	static final int REPLACEMENT = 0xfffd;
+
+	private static final int SHIFT = 21;
+	private static final int INVALID = REPLACEMENT | 1 << SHIFT;
+
+
+	private Utf8() {
+	}
+
+
+	/**
+	 * @param index the index of the first byte, less than <code>limit</code>
+	 * @param limit the index after the last byte that may be read
+	 * @return the code point that starts at the index and its length
+	 */
+	static int decode(ByteBuffer bytes, int index, int limit) {
+		int lead = bytes.get(index) & 0xff;
+		if (lead < 0x80) {
+			return lead | 1 << SHIFT;
+		}
+		int length;
+		int codePoint;
+		int min;
+		if (lead >= 0xc2 && lead <= 0xdf) {
+			length = 2;
+			codePoint = lead & 0x1f;
+			min = 0x80;
+		}
+		else if (lead >= 0xe0 && lead <= 0xef) {
+			length = 3;
+			codePoint = lead & 0x0f;
+			min = 0x800;
+		}
+		else if (lead >= 0xf0 && lead <= 0xf4) {
+			length = 4;
+			codePoint = lead & 0x07;
+			min = 0x10000;
+		}
+		else {
+			return INVALID;
+		}
+		if (limit - index < length) {
+			return INVALID;
+		}
+		for (int i = 1; i < length; i++) {
+			int b = bytes.get(index + i) & 0xff;
+			if ((b & 0xc0) != 0x80) {
+				return INVALID;
+			}
+			codePoint = codePoint << 6 | b & 0x3f;
+		}
+		if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+				|| (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+			return INVALID;
+		}
+		return codePoint | length << SHIFT;
+	}
+
+	/**
+	 * @param index the index after the last byte, greater than <code>from</code>
+	 * @param from the index of the first byte that may be read
+	 * @return the code point that ends before the index and its length
+	 */
+	static int decodeBefore(ByteBuffer bytes, int index, int from) {
+		int start = index - 1;
+		while (start > from && index - start < 4 && (bytes.get(start) & 0xc0) == 0x80) {
+			start--;
+		}
+		if (start < index - 1) {
+			int decoded = decode(bytes, start, index);
+			if (length(decoded) == index - start) {
+				return decoded;
+			}
+		}
+		return decode(bytes, index - 1, index);
+	}
+
+	static int codePoint(int decoded) {
+		return decoded & (1 << SHIFT) - 1;
+	}
+
+	static int length(int decoded) {
+		return decoded >>> SHIFT;
+	}
+
+}
@@ -0,0 +1,95 @@
+package de.jepfa.regex.engine;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.nio.ByteBuffer;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * Matches UTF-8 encoded bytes without decoding them into a {@link String} first. The elements are compiled
+ * into the lazily built DFAs of the {@link DfaEngine}, which read one code point at a time, and a
+ * {@link ByteMatcher} decodes only the code point it reads next. ASCII bytes are read as they are.
+ * The matches are those of {@link java.util.regex.Matcher#find()} on the decoded input, but their
+ * offsets are byte offsets.
+ * <p>
+ * Only the elements that the {@link DfaEngine} supports can be compiled, see {@link DfaEngine#isSupported(RegexBuilder)}.
+ * Malformed input never fails a search: every byte that doesn't start a well-formed sequence is read
+ * as the replacement character <code>U+FFFD</code>, like a {@link java.nio.charset.CharsetDecoder} would replace it.
+ * <p>
+ * Every matcher builds its own DFA states, so reuse a matcher with {@link ByteMatcher#reset(ByteBuffer)}
+ * instead of creating a new one for every input.
+ *
+ * @author Jens Pfahl
+ */
+public final class Utf8Engine {
+
+	final Program program;
+	final Program reverseProgram;
+	final CharClasses classes;
+	private final String regex;
+
+
+	private Utf8Engine(Program program, Program reverseProgram, String regex) {
+		this.program = program;
+		this.reverseProgram = reverseProgram;
+		this.classes = new CharClasses(program, reverseProgram);
+		this.regex = regex;
+	}
+
+	/**
+	 * Compiles the builder into DFAs over UTF-8 encoded bytes.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 *
+	 * @throws RegexBuilderException if the builder contains elements that are not supported, see {@link Utf8Engine}
+	 */
+	public static Utf8Engine compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		try {
+			return new Utf8Engine(DfaEngine.compile(builder, false), DfaEngine.compile(builder, true), builder.toRegex());
+		}
+		catch (RegexBuilderException e) {
+			throw new RegexBuilderException("Not supported by the UTF-8 engine: " + e.getMessage(), e);
+		}
+	}
+
+
+	/**
+	 * @param input the UTF-8 encoded input, not <code>null</code>
+	 *
+	 * @return a matcher of the whole array, not <code>null</code>
+	 */
+	public ByteMatcher matcher(byte[] input) {
+		checkNotNull(input);
+		return matcher(ByteBuffer.wrap(input));
+	}
+
+	/**
+	 * @param input the UTF-8 encoded input between its position and its limit, not <code>null</code>
+	 *
+	 * @return not <code>null</code>
+	 *
+	 * @see ByteMatcher#reset(ByteBuffer)
+	 */
+	public ByteMatcher matcher(ByteBuffer input) {
+		checkNotNull(input);
+		return new ByteMatcher(this, input);
+	}
+
+	/**
+	 * @return the count of character classes of the transition table
+	 */
+	public int getClassCount() {
+		return classes.count();
+	}
+
+	@Override
+	public String toString() {
+		return "Utf8Engine [regex=" + regex + ", instructions=" + program.size() + ", classes=" + classes.count() + "]";
+	}
+
+}
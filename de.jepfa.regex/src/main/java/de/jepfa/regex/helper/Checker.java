@@ -17,6 +17,13 @@ public class Checker {
 			throw new RegexBuilderException(msg);
 		}
 	}
+	
+	public static void checkCondition(String msg, boolean failed) {
+		if (failed) {
+			throw new RegexBuilderException(msg);
+		}
+	}
+	
 	public static void checkNotNull(Object o) {
 		if (Objects.isNull(o)) {
 			throw new RegexBuilderException(" should not be null");
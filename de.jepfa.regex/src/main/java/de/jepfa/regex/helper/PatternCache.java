@@ -0,0 +1,208 @@
+package de.jepfa.regex.helper;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder;
+
+/**
+ * A process-wide, thread-safe and size-bounded cache of compiled {@link Pattern}s.
+ * A Pattern is identified by its Regular Expression and its flags, so identical {@link RegexBuilder}s
+ * share one compiled Pattern. If the cache exceeds its maximum size, the least recently used Pattern
+ * will be evicted.
+ * <p>
+ * A maximum size of <code>0</code> disables the cache. To bypass the cache for a single builder,
+ * use {@link RegexBuilder#usePatternCache(boolean)}.
+ *
+ * @author Jens Pfahl
+ */
+public final class PatternCache {
+
+	/**
+	 * The default maximum count of cached {@link Pattern}s.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	private static final PatternCache INSTANCE = new PatternCache(DEFAULT_MAX_SIZE);
+
+
+	private static final class Key {
+
+		private final String regex;
+		private final int flags;
+
+		private Key(String regex, int flags) {
+			this.regex = regex;
+			this.flags = flags;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * regex.hashCode() + flags;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return flags == other.flags && regex.equals(other.regex);
+		}
+	}
+
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private volatile int maxSize;
+
+	/**
+	 * Access ordered, so the eldest entry is the least recently used one. Guarded by <code>this</code>.
+	 */
+	private final Map<Key, Pattern> patterns = new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+			if (size() > maxSize) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+
+
+	/**
+	 * Creates a new cache. Usually you should use the shared {@link #getInstance() instance}.
+	 *
+	 * @param maxSize the maximum count of cached {@link Pattern}s, <code>0</code> disables the cache.
+	 */
+	public PatternCache(int maxSize) {
+		checkCondition("maxSize should not be less than zero", () -> maxSize < 0);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the process-wide instance used by the {@link RegexBuilder}, not <code>null</code>
+	 */
+	public static PatternCache getInstance() {
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Returns a cached {@link Pattern} for the given Regular Expression and flags or compiles and caches
+	 * a new one.
+	 *
+	 * @param regex the Regular Expression, not <code>null</code>
+	 * @param flags the match flags, see {@link Pattern#flags()}
+	 *
+	 * @return not <code>null</code>
+	 */
+	public Pattern compile(String regex, int flags) {
+		checkNotNull(regex);
+		if (maxSize == 0) {
+			misses.increment();
+			return Pattern.compile(regex, flags);
+		}
+
+		Key key = new Key(regex, flags);
+		Pattern pattern;
+		synchronized (this) {
+			pattern = patterns.get(key);
+		}
+		if (pattern != null) {
+			hits.increment();
+			return pattern;
+		}
+
+		// compile outside the lock, so other threads are not blocked by an expensive compilation
+		misses.increment();
+		Pattern compiled = Pattern.compile(regex, flags);
+		synchronized (this) {
+			pattern = patterns.putIfAbsent(key, compiled);
+		}
+		return pattern != null ? pattern : compiled;
+	}
+
+
+	/**
+	 * @return the count of requests served from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the count of requests that compiled a new {@link Pattern}
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the count of {@link Pattern}s removed because the cache exceeded its maximum size
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the current count of cached {@link Pattern}s
+	 */
+	public synchronized int size() {
+		return patterns.size();
+	}
+
+	/**
+	 * @return the maximum count of cached {@link Pattern}s
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Changes the maximum count of cached {@link Pattern}s. Exceeding Patterns are evicted immediately.
+	 *
+	 * @param maxSize the new maximum size, <code>0</code> disables the cache.
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		checkCondition("maxSize should not be less than zero", () -> maxSize < 0);
+		this.maxSize = maxSize;
+		Iterator<Key> eldestFirst = patterns.keySet().iterator();
+		while (patterns.size() > maxSize) {
+			eldestFirst.next();
+			eldestFirst.remove();
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Removes all cached {@link Pattern}s and resets all counters.
+	 */
+	public synchronized void clear() {
+		patterns.clear();
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "PatternCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+}
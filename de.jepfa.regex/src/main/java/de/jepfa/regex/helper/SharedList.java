@@ -0,0 +1,205 @@
+package de.jepfa.regex.helper;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list that shares its content with its copies. {@link #copyOf(List)} takes constant time, 
+ * because the copy uses the same buffer as the original. 
+ * <p>
+ * All lists on one buffer see the same items up to their own size. The first list that appends behind 
+ * the common items claims the next slots of the buffer, so the typical fluent usage of 
+ * {@link de.jepfa.regex.components.Element Elements}, clone and add, is done in constant time. 
+ * Every other change first copies the items into an own buffer, as long as the buffer is shared.
+ * <p>
+ * Like most lists this one is not thread-safe, but lists sharing a buffer can be changed concurrently.
+ *
+ * @author Jens Pfahl
+ */
+public final class SharedList<E> extends AbstractList<E> implements RandomAccess {
+
+	private static final int INITIAL_CAPACITY = 8;
+	
+	private static final class Buffer {
+		
+		private volatile Object[] items;
+		/**
+		 * The count of slots used by any list of this buffer. Guarded by <code>this</code>.
+		 */
+		private int claimed;
+		/**
+		 * <code>true</code> if the buffer was ever used by more than one list. Guarded by <code>this</code>.
+		 */
+		private boolean shared;
+		
+		private Buffer(Object[] items, int claimed) {
+			this.items = items;
+			this.claimed = claimed;
+		}
+	}
+	
+	
+	private Buffer buffer;
+	private int size;
+	
+	
+	public SharedList() {
+		buffer = new Buffer(new Object[INITIAL_CAPACITY], 0);
+	}
+	
+	private SharedList(Buffer buffer, int size) {
+		this.buffer = buffer;
+		this.size = size;
+	}
+	
+	
+	/**
+	 * Returns a copy of the given list. If it is a {@link SharedList}, the copy shares its content 
+	 * with the given list.
+	 *
+	 * @param list the list to copy, not <code>null</code>
+	 * 
+	 * @return a new list, not <code>null</code>
+	 */
+	public static <E> SharedList<E> copyOf(List<E> list) {
+		if (list instanceof SharedList) {
+			SharedList<E> sharedList = (SharedList<E>) list;
+			Buffer buffer = sharedList.buffer;
+			synchronized (buffer) {
+				buffer.shared = true;
+			}
+			return new SharedList<>(buffer, sharedList.size);
+		}
+		SharedList<E> copy = new SharedList<>();
+		copy.addAll(list);
+		return copy;
+	}
+	
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index, size);
+		return (E) buffer.items[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean add(E e) {
+		if (!append(e)) {
+			copyToOwnBuffer(size + 1);
+			append(e);
+		}
+		modCount++;
+		return true;
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		for (E e : c) {
+			add(e);
+		}
+		return !c.isEmpty();
+	}
+	
+	@Override
+	public void add(int index, E element) {
+		checkIndex(index, size + 1);
+		if (index == size) {
+			add(element);
+			return;
+		}
+		ensureOwnBuffer(size + 1);
+		Object[] items = buffer.items;
+		System.arraycopy(items, index, items, index + 1, size - index);
+		items[index] = element;
+		size++;
+		buffer.claimed = size;
+		modCount++;
+	}
+	
+	@Override
+	public E set(int index, E element) {
+		E old = get(index);
+		ensureOwnBuffer(size);
+		buffer.items[index] = element;
+		return old;
+	}
+	
+	@Override
+	public E remove(int index) {
+		E old = get(index);
+		ensureOwnBuffer(size);
+		Object[] items = buffer.items;
+		System.arraycopy(items, index + 1, items, index, size - index - 1);
+		items[--size] = null;
+		buffer.claimed = size;
+		modCount++;
+		return old;
+	}
+	
+	@Override
+	public void clear() {
+		buffer = new Buffer(new Object[INITIAL_CAPACITY], 0);
+		size = 0;
+		modCount++;
+	}
+	
+	
+	/**
+	 * Appends to the buffer, if no other list has claimed the next slot.
+	 */
+	private boolean append(E e) {
+		Buffer b = buffer;
+		synchronized (b) {
+			if (b.claimed != size) {
+				return false;
+			}
+			Object[] items = b.items;
+			if (size == items.length) {
+				// other lists only read their own slots, so they can keep the old array
+				items = Arrays.copyOf(items, size * 2);
+			}
+			items[size] = e;
+			b.items = items;
+			b.claimed = ++size;
+			return true;
+		}
+	}
+	
+	/**
+	 * Copies all items into a new buffer, if the current buffer is shared or too small.
+	 */
+	private void ensureOwnBuffer(int minCapacity) {
+		Buffer b = buffer;
+		synchronized (b) {
+			if (!b.shared && b.items.length >= minCapacity) {
+				return;
+			}
+		}
+		copyToOwnBuffer(minCapacity);
+	}
+	
+	/**
+	 * Copies all items into a new buffer, that is not shared with any other list.
+	 */
+	private void copyToOwnBuffer(int minCapacity) {
+		Object[] items = Arrays.copyOf(buffer.items, Math.max(minCapacity, Math.max(size * 2, INITIAL_CAPACITY)));
+		Arrays.fill(items, size, items.length, null);
+		buffer = new Buffer(items, size);
+	}
+	
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package de.jepfa.regex.optimizer;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.optimizer.Rule.Context;
+
+
+/**
+ * The optimizer rewrites a tree of {@link Element}s into an equivalent, smaller form before rendering, 
+ * see {@link RegexBuilder#useOptimizer(Optimizer)}. The tree is rewritten bottom up, every {@link Rule} 
+ * is applied to every element in the configured order. The given elements are never changed.
+ * <p>
+ * Optimizers are immutable, use {@link #with(Rule...)} and {@link #without(Rule...)} to switch rules on or off.
+ *
+ * @author Jens Pfahl
+ */
+public final class Optimizer {
+
+	/**
+	 * An optimizer with all {@link StandardRule}s.
+	 */
+	public static final Optimizer DEFAULT = new Optimizer(StandardRule.values());
+	
+	private final List<Rule> rules;
+	
+
+	/**
+	 * @param rules the rules to apply in the given order, not <code>null</code>, no <code>null</code>-elements
+	 */
+	public Optimizer(Rule... rules) {
+		checkNoNullElements(rules);
+		this.rules = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(rules)));
+	}
+	
+	
+	/**
+	 * @return all rules in the order they are applied, not <code>null</code>
+	 */
+	public List<Rule> getRules() {
+		return rules;
+	}
+	
+	/**
+	 * @param rule not <code>null</code>
+	 * @return <code>true</code> if the given rule is applied
+	 */
+	public boolean isEnabled(Rule rule) {
+		checkNotNull(rule);
+		return rules.contains(rule);
+	}
+	
+	/**
+	 * @param rules the rules to append, if not yet enabled, not <code>null</code>
+	 * @return a new optimizer
+	 */
+	public Optimizer with(Rule... rules) {
+		checkNoNullElements(rules);
+		List<Rule> list = new ArrayList<>(this.rules);
+		for (Rule rule : rules) {
+			if (!list.contains(rule)) {
+				list.add(rule);
+			}
+		}
+		return new Optimizer(list.toArray(new Rule[list.size()]));
+	}
+	
+	/**
+	 * @param rules the rules to remove, not <code>null</code>
+	 * @return a new optimizer
+	 */
+	public Optimizer without(Rule... rules) {
+		checkNoNullElements(rules);
+		List<Rule> list = new ArrayList<>(this.rules);
+		list.removeAll(Arrays.asList(rules));
+		return new Optimizer(list.toArray(new Rule[list.size()]));
+	}
+	
+	
+	/**
+	 * Optimizes the given element and all of its sub-elements.
+	 *
+	 * @param element not <code>null</code>
+	 * @return the optimized element or the given one if there is nothing to optimize, not <code>null</code>
+	 */
+	public Element optimize(Element element) {
+		checkNotNull(element);
+		return optimize(element, Context.of(null));
+	}
+	
+	/**
+	 * Optimizes the given sequence of elements, e.g. all elements of a {@link RegexBuilder}.
+	 *
+	 * @param elements not <code>null</code>
+	 * @return the optimized elements or the given list if there is nothing to optimize, not <code>null</code>
+	 */
+	public List<Element> optimize(List<Element> elements) {
+		return optimize(elements, null);
+	}
+	
+	/**
+	 * Optimizes the given sequence of elements of a {@link RegexBuilder} with the given flags. 
+	 * Rules can rewrite more elements, if they know which flags are switched off.
+	 *
+	 * @param elements not <code>null</code>
+	 * @param flags the flags of the builder or <code>null</code> if they are unknown
+	 * @return the optimized elements or the given list if there is nothing to optimize, not <code>null</code>
+	 */
+	public List<Element> optimize(List<Element> elements, Set<Flag> flags) {
+		checkNotNull(elements);
+		// the rewritten groups must not become the containers of the original ones
+		return Group.detached(() -> optimizeDetached(elements, flags));
+	}
+	
+	@Override
+	public String toString() {
+		return "Optimizer " + rules;
+	}
+
+
+	private List<Element> optimizeDetached(List<Element> elements, Set<Flag> flags) {
+		List<Element> optimized = optimizeAll(elements, Context.of(flags));
+		if (isEnabled(StandardRule.FLATTEN_NON_CAPTURING) 
+				&& optimized.stream().anyMatch(StandardRule::isFlattenable)) {
+			optimized = StandardRule.flatten(optimized);
+		}
+		if (isEnabled(StandardRule.AUTO_ATOMIC)) {
+			optimized = StandardRule.atomic(optimized);
+		}
+		return optimized;
+	}
+	
+	/**
+	 * Returns a copy of the given group with the given elements instead of its own. 
+	 * The group is not changed, even if it is changeable.
+	 */
+	static Group withElements(Group group, Element... elements) {
+		try {
+			return group.clone().clear().add(elements);
+		}
+		catch (CloneNotSupportedException e) {
+			throw new RegexBuilderException(
+					group.getClass().getName() + " is not cloneable, but should be. Programming error?", e);
+		}
+	}
+	
+	private Element optimize(Element element, Context context) {
+		Context elementContext = context.enter(element);
+		Element optimized = element;
+		if (element instanceof Group) {
+			Group group = (Group) element;
+			List<Element> elements = group.getElements();
+			List<Element> optimizedElements = optimizeAll(elements, elementContext);
+			if (optimizedElements != elements) {
+				optimized = withElements(group, optimizedElements.toArray(new Element[optimizedElements.size()]));
+			}
+		}
+		for (Rule rule : rules) {
+			optimized = rule.apply(optimized, elementContext);
+			checkNotNull(optimized);
+		}
+		return optimized;
+	}
+	
+	private List<Element> optimizeAll(List<Element> elements, Context context) {
+		List<Element> optimized = null;
+		for (int i = 0; i < elements.size(); i++) {
+			Element element = elements.get(i);
+			Element optimizedElement = optimize(element, context);
+			if (optimized == null && optimizedElement != element) {
+				optimized = new ArrayList<>(elements.subList(0, i));
+			}
+			if (optimized != null) {
+				optimized.add(optimizedElement);
+			}
+		}
+		return optimized != null ? optimized : elements;
+	}
+	
+}
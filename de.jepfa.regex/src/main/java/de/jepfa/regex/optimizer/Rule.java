@@ -0,0 +1,132 @@
+package de.jepfa.regex.optimizer;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.elements.Group;
+
+
+/**
+ * A rule of the {@link Optimizer} rewrites an {@link Element} into an equivalent, smaller form.
+ * <p>
+ * A rule must not change any element, it has to return a new one instead. It also must keep 
+ * all indexable {@link Group}s in the same order, so the group indexes don't change. 
+ * Non-indexable groups can be removed.
+ *
+ * @author Jens Pfahl
+ */
+@FunctionalInterface
+public interface Rule {
+	
+	/**
+	 * Where an element occurs in the tree of the {@link Optimizer}: whether it is repeated and which 
+	 * {@link Flag}s are known to be switched on or off for it, by the {@link RegexBuilder}, 
+	 * an enclosing element or the element itself.
+	 */
+	final class Context {
+		
+		/**
+		 * The context of an element without any knowledge: it could be repeated and every flag could be 
+		 * switched on or off.
+		 */
+		public static final Context UNKNOWN = new Context(true, EnumSet.noneOf(Flag.class), EnumSet.noneOf(Flag.class));
+		
+		private final boolean repeated;
+		private final Set<Flag> enabledFlags;
+		private final Set<Flag> disabledFlags;
+		
+		private Context(boolean repeated, Set<Flag> enabledFlags, Set<Flag> disabledFlags) {
+			this.repeated = repeated;
+			this.enabledFlags = Collections.unmodifiableSet(enabledFlags);
+			this.disabledFlags = Collections.unmodifiableSet(disabledFlags);
+		}
+		
+		/**
+		 * @param flags the flags of the {@link RegexBuilder} or <code>null</code> if they are unknown
+		 * @return the context of a top-level element, that is not repeated
+		 */
+		static Context of(Set<Flag> flags) {
+			if (flags == null) {
+				return new Context(false, EnumSet.noneOf(Flag.class), EnumSet.noneOf(Flag.class));
+			}
+			EnumSet<Flag> enabled = EnumSet.noneOf(Flag.class);
+			enabled.addAll(flags);
+			return new Context(false, enabled, EnumSet.complementOf(enabled));
+		}
+		
+		/**
+		 * @return the context of the given element, including its own quantifier and flags
+		 */
+		Context enter(Element element) {
+			boolean elementRepeated = repeated || !Quantifier.ONE.equals(element.getQuantifier());
+			Set<Flag> on = element.getFlags().getEnabledFlags();
+			Set<Flag> off = element.getFlags().getDisabledFlags();
+			if (elementRepeated == repeated && on.isEmpty() && off.isEmpty()) {
+				return this;
+			}
+			EnumSet<Flag> enabled = EnumSet.noneOf(Flag.class);
+			enabled.addAll(enabledFlags);
+			enabled.removeAll(off);
+			enabled.addAll(on);
+			EnumSet<Flag> disabled = EnumSet.noneOf(Flag.class);
+			disabled.addAll(disabledFlags);
+			disabled.removeAll(on);
+			disabled.addAll(off);
+			return new Context(elementRepeated, enabled, disabled);
+		}
+		
+		/**
+		 * {@link java.util.regex.Pattern} doesn't restore the captures of all repeated groups when it backtracks, 
+		 * so a rule that changes how a capturing group is matched has to leave repeated ones as they are.
+		 * 
+		 * @return <code>true</code> if the element or an enclosing element has another {@link Quantifier} 
+		 * 		than {@link Quantifier#ONE}
+		 */
+		public boolean isRepeated() {
+			return repeated;
+		}
+		
+		/**
+		 * @param flag not <code>null</code>
+		 * @return <code>true</code> if the flag is known to be switched on
+		 */
+		public boolean isEnabled(Flag flag) {
+			return enabledFlags.contains(flag);
+		}
+		
+		/**
+		 * @param flag not <code>null</code>
+		 * @return <code>true</code> if the flag is known to be switched off
+		 */
+		public boolean isDisabled(Flag flag) {
+			return disabledFlags.contains(flag);
+		}
+	}
+	
+
+	/**
+	 * Rewrites the given element. All sub-elements are already optimized.
+	 *
+	 * @param element the element to rewrite, not <code>null</code>
+	 * @return the rewritten element or the given one if there is nothing to do, not <code>null</code>
+	 */
+	Element apply(Element element);
+	
+	/**
+	 * Rewrites the given element in the given {@link Context}, for rules that depend on where the element occurs.
+	 * The default implementation calls {@link #apply(Element)}.
+	 *
+	 * @param element the element to rewrite, not <code>null</code>
+	 * @param context the context of the element, including its own quantifier and flags, not <code>null</code>
+	 * @return the rewritten element or the given one if there is nothing to do, not <code>null</code>
+	 */
+	default Element apply(Element element, Context context) {
+		return apply(element);
+	}
+	
+}
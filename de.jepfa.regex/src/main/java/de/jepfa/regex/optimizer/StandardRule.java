@@ -0,0 +1,333 @@
+package de.jepfa.regex.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.analysis.Analyzer;
+import de.jepfa.regex.analysis.CharSet;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.components.SystemElement;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.constructs.LineEndsWith;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.Lookbehind;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.optimizer.Rule.Context;
+
+
+/**
+ * The {@link Rule}s of the {@link Optimizer#DEFAULT default optimizer} in the order they are applied.
+ *
+ * @author Jens Pfahl
+ */
+public enum StandardRule implements Rule {
+	
+	/**
+	 * Rewrites the constructs {@link LineContains} and {@link LineEndsWith} into equivalent forms, 
+	 * that backtrack less on long lines that don't match:
+	 * <ul>
+	 * <li>the negative <code>(^((?!x).)*$)</code> to <code>(^(?!.*x)(?:.*(.))?$)</code>: one lookahead per line 
+	 * instead of one per character. Only if x contains no capturing groups, cannot match at the end of a line and 
+	 * {@link Flag#DOTALL} is known to be switched off in the {@link Context} of the construct, 
+	 * otherwise the lookahead would see the following lines.</li>
+	 * <li>the negative <code>(^.*(?&lt;!x)$)</code> to <code>(^.*$(?&lt;!x))</code>: the cheap line end is tested 
+	 * before the lookbehind at every position the engine backtracks to. Only if x contains no capturing groups, 
+	 * otherwise the lookbehind could capture other parts of the line.</li>
+	 * </ul>
+	 * Sub-classes of these constructs are left as they are, because they could render another form.
+	 * {@link de.jepfa.regex.constructs.LineStartsWith} needs no rewrite, it never backtracks into its content. 
+	 * The positive {@link LineContains} is left as it is too, a lookahead that searches x first would search it twice.
+	 */
+	LINE_CONSTRUCTS {
+		@Override
+		public Element apply(Element element) {
+			return apply(element, Context.UNKNOWN.enter(element));
+		}
+		
+		@Override
+		public Element apply(Element element, Context context) {
+			Class<?> c = element.getClass();
+			if (c != LineContains.class && c != LineEndsWith.class) {
+				return element;
+			}
+			List<Element> content = ((Group) element).getElements();
+			Group rewritten = null;
+			if (c == LineEndsWith.class) {
+				if (((LineEndsWith) element).isNot() && !hasCapturingGroups(content)) {
+					rewritten = new Group(Boundary.LINE_START, Any.ANY, Boundary.LINE_END, 
+							new Lookbehind(content.toArray(new Element[content.size()])).not());
+				}
+			}
+			else if (((LineContains) element).isNot() && context.isDisabled(Flag.DOTALL) 
+					&& !hasCapturingGroups(content) && !canMatchAtLineEnd(content)) {
+				rewritten = new Group(Boundary.LINE_START, 
+						new Lookahead(prepend(Any.ANY, content)).not(), 
+						new NonCapturing(Any.ANY, new Group(Any.ANY_CHAR)).optional(), 
+						Boundary.LINE_END);
+			}
+			return rewritten != null ? copyQuantifierAndFlags(element, rewritten) : element;
+		}
+	},
+	
+	/**
+	 * Replaces a {@link Choice} or {@link Strings} of single characters with a {@link Chars}-element, 
+	 * e.g. <code>(a|b|c)</code> with <code>([abc])</code>. The Regex engine matches a Character Set without 
+	 * backtracking into alternatives.
+	 * <p>
+	 * A capturing group is only rewritten, if it isn't {@link Context#isRepeated() repeated}: 
+	 * {@link java.util.regex.Pattern} loops over a group of a Character Set without restoring its capture 
+	 * on backtracking, e.g. on <code>aaa</code> group 1 of <code>(?:(a|b){0,2})+</code> is <code>2-3</code>, 
+	 * but of <code>(?:([ab]){0,2})+</code> it is <code>1-2</code>. Without that context every element 
+	 * is treated as repeated.
+	 */
+	SINGLE_CHARS {
+		@Override
+		public Element apply(Element element) {
+			return apply(element, Context.UNKNOWN);
+		}
+		
+		@Override
+		public Element apply(Element element, Context context) {
+			if (!isChoice(element) || ((Group) element).getElements().size() < 2 
+					|| (context.isRepeated() && ((Group) element).isIndexable())) {
+				return element;
+			}
+			StringBuilder chars = new StringBuilder();
+			for (Element e : ((Group) element).getElements()) {
+				if (!(e instanceof StringElement) || !isPlain(e) || ((StringElement) e).getString().length() != 1 
+						|| Character.isSurrogate(((StringElement) e).getString().charAt(0))) {
+					return element;
+				}
+				chars.append(((StringElement) e).getString());
+			}
+			return Optimizer.withElements((Group) element, new Chars(chars.toString()));
+		}
+	},
+	
+	/**
+	 * Replaces a {@link Choice} or {@link Strings} with one alternative with a {@link Group}, 
+	 * so other rules can treat it as a sequence.
+	 */
+	SINGLE_ALTERNATIVE {
+		@Override
+		public Element apply(Element element) {
+			if (!isChoice(element) || ((Group) element).getElements().size() != 1) {
+				return element;
+			}
+			Group group = new Group(((Group) element).getElements().get(0));
+			return copyQuantifierAndFlags(element, group);
+		}
+	},
+	
+	/**
+	 * Inlines the content of a {@link NonCapturing} group without {@link Quantifier} and flags 
+	 * into the surrounding sequence, e.g. <code>(a(?:bc)d)</code> to <code>(abcd)</code>.
+	 */
+	FLATTEN_NON_CAPTURING {
+		@Override
+		public Element apply(Element element) {
+			if (!isSequence(element)) {
+				return element;
+			}
+			List<Element> elements = ((Group) element).getElements();
+			if (elements.stream().noneMatch(StandardRule::isFlattenable)) {
+				return element;
+			}
+			return Optimizer.withElements((Group) element, flatten(elements).toArray(new Element[0]));
+		}
+	},
+	
+	/**
+	 * Replaces a {@link NonCapturing} group without {@link Quantifier} and flags that contains 
+	 * only one element with that element, e.g. <code>(?:[ab])</code> with <code>[ab]</code>.
+	 */
+	UNWRAP_NON_CAPTURING {
+		@Override
+		public Element apply(Element element) {
+			if (!isPlainNonCapturing(element) || ((Group) element).getElements().size() != 1) {
+				return element;
+			}
+			Element child = ((Group) element).getElements().get(0);
+			return isAtomic(child) ? child : element;
+		}
+	},
+	
+	/**
+	 * Makes a greedy quantified element of a sequence possessive, if every repetition matches one character 
+	 * and the following elements can never start with one of these characters, e.g. <code>(\d+,)</code> 
+	 * to <code>((?>\d+),)</code>. Giving back characters cannot lead to a match then, so the Regex engine 
+	 * doesn't need to backtrack into the element. 
+	 * <p>
+	 * The element is wrapped into an {@link NonCapturing#independent() independent} group instead of using 
+	 * {@link Strategy#POSSESSIVE}, because {@link java.util.regex.Pattern} runs greedy character loops in 
+	 * a faster way than possessive ones. The {@link Analyzer} assumes the worst case for all flags, a sequence 
+	 * that ends with the element or that could match the empty String after it is left as it is.
+	 */
+	AUTO_ATOMIC {
+		@Override
+		public Element apply(Element element) {
+			if (!isSequence(element)) {
+				return element;
+			}
+			List<Element> elements = ((Group) element).getElements();
+			List<Element> atomic = atomic(elements);
+			if (atomic == elements) {
+				return element;
+			}
+			return Optimizer.withElements((Group) element, atomic.toArray(new Element[atomic.size()]));
+		}
+	};
+	
+	
+	
+	/**
+	 * Inlines the content of all {@link #isFlattenable(Element) flattenable} elements. 
+	 */
+	static List<Element> flatten(List<Element> elements) {
+		List<Element> flattened = new ArrayList<>(elements.size());
+		for (Element e : elements) {
+			if (isFlattenable(e)) {
+				flattened.addAll(((Group) e).getElements());
+			}
+			else {
+				flattened.add(e);
+			}
+		}
+		return flattened;
+	}
+	
+	/**
+	 * @return <code>true</code> if the element is a {@link NonCapturing} group without quantifier and flags, 
+	 * 		that contains only elements that can be inlined into a sequence.
+	 */
+	static boolean isFlattenable(Element element) {
+		return isPlainNonCapturing(element) 
+				&& ((Group) element).getElements().stream().allMatch(StandardRule::isAtomic);
+	}
+	
+	/**
+	 * Makes all elements of the sequence atomic, that cannot overlap the elements after them, 
+	 * see {@link #AUTO_ATOMIC}. 
+	 */
+	static List<Element> atomic(List<Element> elements) {
+		List<Element> atomic = null;
+		CharSet tailFirst = CharSet.NONE;
+		boolean tailNullable = true;
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			Element e = elements.get(i);
+			if (!tailNullable && isBacktracking(e)) {
+				CharSet chars = Analyzer.singleChar(e);
+				if (chars != null && chars.isDisjoint(tailFirst)) {
+					if (atomic == null) {
+						atomic = new ArrayList<>(elements);
+					}
+					atomic.set(i, new NonCapturing(e).independent());
+				}
+			}
+			
+			CharSet first = Analyzer.first(e);
+			if (Analyzer.isNullable(e)) {
+				tailFirst = first.union(tailFirst);
+			}
+			else {
+				tailFirst = first;
+				tailNullable = false;
+			}
+		}
+		return atomic != null ? atomic : elements;
+	}
+	
+	/**
+	 * Unknown elements like {@link de.jepfa.regex.elements.PlainElement}s could contain capturing groups too.
+	 */
+	private static boolean hasCapturingGroups(List<Element> elements) {
+		for (Element e : elements) {
+			if (e instanceof Group) {
+				if (((Group) e).isIndexable() || hasCapturingGroups(((Group) e).getRenderedElements())) {
+					return true;
+				}
+			}
+			else if (!(e instanceof StringElement || e instanceof Chars || e instanceof SystemElement)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The end of a line is the end of the input or a line terminator, which <code>.</code> doesn't match 
+	 * without {@link Flag#DOTALL}.
+	 */
+	private static boolean canMatchAtLineEnd(List<Element> elements) {
+		CharSet terminators = CharSet.NONE;
+		for (char terminator : "\n\r\u0085\u2028\u2029".toCharArray()) {
+			terminators = terminators.union(CharSet.ofLiteral(terminator));
+		}
+		return Analyzer.isNullableSequence(elements) || !Analyzer.firstOfSequence(elements).isDisjoint(terminators);
+	}
+	
+	private static Element[] prepend(Element first, List<Element> elements) {
+		Element[] result = new Element[elements.size() + 1];
+		result[0] = first;
+		for (int i = 0; i < elements.size(); i++) {
+			result[i + 1] = elements.get(i);
+		}
+		return result;
+	}
+	
+	private static boolean isBacktracking(Element element) {
+		Quantifier q = element.getQuantifier();
+		return q.getStrategy() == Strategy.GREEDY && q.getMin() != q.getMax();
+	}
+	
+	private static boolean isPlainNonCapturing(Element element) {
+		return element.getClass() == NonCapturing.class 
+				&& !((NonCapturing) element).isIndependent() 
+				&& isPlain(element);
+	}
+	
+	private static boolean isPlain(Element element) {
+		return Quantifier.ONE.equals(element.getQuantifier()) && element.getFlags().isEmpty();
+	}
+	
+	private static boolean isChoice(Element element) {
+		return element.getClass() == Choice.class || element.getClass() == Strings.class;
+	}
+	
+	private static boolean isSequence(Element element) {
+		Class<?> c = element.getClass();
+		return c == Group.class || c == NonCapturing.class || c == Lookahead.class || c == Lookbehind.class;
+	}
+	
+	/**
+	 * An atomic element renders as one unit, so it can be moved into another sequence or alternative.
+	 * A raw Regular Expression could contain an alternative itself.
+	 */
+	private static boolean isAtomic(Element element) {
+		return element instanceof Group || element instanceof Chars 
+				|| element instanceof StringElement || element instanceof SystemElement;
+	}
+	
+	private static Element copyQuantifierAndFlags(Element from, Element to) {
+		Quantifier q = from.getQuantifier();
+		Element copy = to.range(q.getMin(), q.getMax()).strategy(q.getStrategy());
+		if (!from.getFlags().getEnabledFlags().isEmpty()) {
+			copy = copy.switchOn(from.getFlags().getEnabledFlags().toArray(new Flag[0]));
+		}
+		if (!from.getFlags().getDisabledFlags().isEmpty()) {
+			copy = copy.switchOff(from.getFlags().getDisabledFlags().toArray(new Flag[0]));
+		}
+		return copy;
+	}
+	
+}
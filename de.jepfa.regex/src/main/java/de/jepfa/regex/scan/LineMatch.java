@@ -0,0 +1,127 @@
+package de.jepfa.regex.scan;
+
+import java.util.regex.MatchResult;
+
+import de.jepfa.regex.engine.EngineMatcher;
+
+/**
+ * The first match in a line of a file, found by a {@link LineScanner}. The offsets of {@link MatchResult}
+ * are indexes in the {@link #getLine() line}, the position of the line in the file is given by
+ * its {@link #getLineNumber() number} and {@link #getOffset() byte offset}.
+ * <p>
+ * Instances are immutable.
+ *
+ * @author Jens Pfahl
+ */
+public final class LineMatch implements MatchResult {
+
+	private final long lineNumber;
+	private final long offset;
+	private final String line;
+	private final int[] starts;
+	private final int[] ends;
+
+
+	/**
+	 * Copies the current match of the matcher, whose input is the given line.
+	 */
+	LineMatch(long lineNumber, long offset, String line, EngineMatcher matcher) {
+		this.lineNumber = lineNumber;
+		this.offset = offset;
+		this.line = line;
+		int count = matcher.groupCount() + 1;
+		starts = new int[count];
+		ends = new int[count];
+		for (int i = 0; i < count; i++) {
+			starts[i] = matcher.start(i);
+			ends[i] = matcher.end(i);
+		}
+	}
+
+	private LineMatch(LineMatch match, long lineNumber) {
+		this.lineNumber = lineNumber;
+		this.offset = match.offset;
+		this.line = match.line;
+		this.starts = match.starts;
+		this.ends = match.ends;
+	}
+
+
+	/**
+	 * @return the number of the line, the first line has number 1
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return the offset of the first byte of the line in the file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the line without its line terminator, not <code>null</code>
+	 */
+	public String getLine() {
+		return line;
+	}
+
+	@Override
+	public int start() {
+		return starts[0];
+	}
+
+	@Override
+	public int start(int group) {
+		checkGroup(group);
+		return starts[group];
+	}
+
+	@Override
+	public int end() {
+		return ends[0];
+	}
+
+	@Override
+	public int end(int group) {
+		checkGroup(group);
+		return ends[group];
+	}
+
+	@Override
+	public String group() {
+		return group(0);
+	}
+
+	@Override
+	public String group(int group) {
+		checkGroup(group);
+		return starts[group] < 0 ? null : line.substring(starts[group], ends[group]);
+	}
+
+	@Override
+	public int groupCount() {
+		return starts.length - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "LineMatch [line=" + lineNumber + ", offset=" + offset + "] = " + group();
+	}
+
+
+	/**
+	 * @return a copy with the line number moved by the count of lines before the segment of this match
+	 */
+	LineMatch shift(long linesBefore) {
+		return new LineMatch(this, lineNumber + linesBefore);
+	}
+
+	private void checkGroup(int group) {
+		if (group < 0 || group >= starts.length) {
+			throw new IndexOutOfBoundsException("No group " + group);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package de.jepfa.regex.scan;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.engine.Engine;
+import de.jepfa.regex.engine.EngineMatcher;
+import de.jepfa.regex.engine.PrefilterEngine;
+
+/**
+ * Searches the lines of a file in parallel. The file is memory-mapped in segments that end at a line end,
+ * every segment is scanned by a task of a {@link ForkJoinPool}, and the results are returned in the order
+ * of the lines.
+ * <p>
+ * Every line is matched on its own, without its line terminator <code>\n</code> or <code>\r\n</code>,
+ * so matches cannot span lines. This is how the constructs {@link de.jepfa.regex.constructs.LineContains},
+ * {@link de.jepfa.regex.constructs.LineStartsWith} and {@link de.jepfa.regex.constructs.LineEndsWith} match anyway.
+ * Only the first match of a line is reported.
+ * <p>
+ * The charset must encode <code>\n</code> and <code>\r</code> as single bytes that don't occur in other
+ * characters, like UTF-8 or ISO-8859-1 do. Scanners are immutable and thread-safe.
+ *
+ * @author Jens Pfahl
+ */
+public final class LineScanner {
+
+	/**
+	 * The default count of bytes of a segment.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+	private static final int BOUNDARY_BUFFER_SIZE = 8 * 1024;
+
+
+	/**
+	 * The matches and the count of lines of a segment, the line numbers are counted from the segment start.
+	 */
+	private static final class SegmentResult {
+
+		private final List<LineMatch> matches;
+		private final long lineCount;
+
+		private SegmentResult(List<LineMatch> matches, long lineCount) {
+			this.matches = matches;
+			this.lineCount = lineCount;
+		}
+	}
+
+
+	private final Engine engine;
+	private final Charset charset;
+	private final int segmentSize;
+	private final ForkJoinPool pool;
+
+
+	/**
+	 * @param engine the engine to match every line, not <code>null</code>
+	 */
+	public LineScanner(Engine engine) {
+		this(engine, StandardCharsets.UTF_8, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+	}
+
+	private LineScanner(Engine engine, Charset charset, int segmentSize, ForkJoinPool pool) {
+		checkNotNull(engine);
+		checkNotNull(charset);
+		checkNotNull(pool);
+		checkCondition("Segment size must be positive", segmentSize < 1);
+		checkCondition("Line terminators are not single bytes in " + charset,
+				!Arrays.equals("\n".getBytes(charset), new byte[] {'\n'})
+				|| !Arrays.equals("\r".getBytes(charset), new byte[] {'\r'}));
+		this.engine = engine;
+		this.charset = charset;
+		this.segmentSize = segmentSize;
+		this.pool = pool;
+	}
+
+	/**
+	 * Compiles the builder to a {@link PrefilterEngine}, so lines without a required literal are skipped fast.
+	 *
+	 * @param builder the builder, not <code>null</code>
+	 * @return not <code>null</code>
+	 */
+	public static LineScanner compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		return new LineScanner(PrefilterEngine.compile(builder));
+	}
+
+
+	/**
+	 * @param charset the encoding of the file, UTF-8 as default, not <code>null</code>
+	 * @return a new scanner
+	 */
+	public LineScanner withCharset(Charset charset) {
+		return new LineScanner(engine, charset, segmentSize, pool);
+	}
+
+	/**
+	 * @param segmentSize the count of bytes a task scans at least, unless the file ends before, greater than zero
+	 * @return a new scanner
+	 */
+	public LineScanner withSegmentSize(int segmentSize) {
+		return new LineScanner(engine, charset, segmentSize, pool);
+	}
+
+	/**
+	 * @param pool the pool to run the tasks, the common pool as default, not <code>null</code>
+	 * @return a new scanner
+	 */
+	public LineScanner withPool(ForkJoinPool pool) {
+		return new LineScanner(engine, charset, segmentSize, pool);
+	}
+
+	/**
+	 * @return the engine to match every line, not <code>null</code>
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+
+
+	/**
+	 * @param file the file to scan, not <code>null</code>
+	 * @return the first match of every matching line in the order of the lines, not <code>null</code>
+	 * @throws IOException if reading fails
+	 * @throws RegexBuilderException if a line is longer than 2 GB
+	 */
+	public List<LineMatch> scan(Path file) throws IOException {
+		checkNotNull(file);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			List<ForkJoinTask<SegmentResult>> tasks = new ArrayList<>();
+			long size = channel.size();
+			long start = 0;
+			while (start < size) {
+				long end = nextLineStart(channel, Math.min(size, start + segmentSize));
+				checkCondition("Line too long at offset " + start, end - start > Integer.MAX_VALUE);
+				long segmentStart = start;
+				tasks.add(pool.submit(() -> scanSegment(channel, segmentStart, end)));
+				start = end;
+			}
+
+			List<LineMatch> matches = new ArrayList<>();
+			long linesBefore = 0;
+			for (ForkJoinTask<SegmentResult> task : tasks) {
+				SegmentResult result = join(task);
+				for (LineMatch match : result.matches) {
+					matches.add(match.shift(linesBefore));
+				}
+				linesBefore += result.lineCount;
+			}
+			return matches;
+		}
+	}
+
+
+	private SegmentResult scanSegment(FileChannel channel, long segmentStart, long segmentEnd) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart);
+		EngineMatcher matcher = engine.matcher("");
+		List<LineMatch> matches = new ArrayList<>();
+		byte[] bytes = new byte[256];
+		long lineCount = 0;
+		int limit = buffer.limit();
+		int position = 0;
+		while (position < limit) {
+			int lineEnd = position;
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			int length = lineEnd - position;
+			if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+				length--;
+			}
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			}
+			// Buffer.position(int) returns a ByteBuffer since Java 9
+			((Buffer) buffer).position(position);
+			buffer.get(bytes, 0, length);
+			String line = new String(bytes, 0, length, charset);
+
+			lineCount++;
+			if (matcher.reset(line).find()) {
+				matches.add(new LineMatch(lineCount, segmentStart + position, line, matcher));
+			}
+			position = lineEnd + 1;
+		}
+		return new SegmentResult(matches, lineCount);
+	}
+
+	/**
+	 * @return the offset after the first line terminator at or after <code>offset - 1</code> or the size of the file
+	 */
+	private static long nextLineStart(FileChannel channel, long offset) throws IOException {
+		long size = channel.size();
+		if (offset >= size) {
+			return size;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+		long position = offset - 1;
+		while (position < size) {
+			((Buffer) buffer).clear();
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private static SegmentResult join(ForkJoinTask<SegmentResult> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Scan was interrupted", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RegexBuilderException("Scan failed", cause);
+		}
+	}
+}
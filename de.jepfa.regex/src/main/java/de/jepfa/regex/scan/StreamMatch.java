@@ -0,0 +1,109 @@
+package de.jepfa.regex.scan;
+
+import java.util.regex.Matcher;
+
+/**
+ * A match found by a {@link StreamScanner}. The offsets are absolute in the whole stream,
+ * so they are <code>long</code> and not <code>int</code> like in {@link java.util.regex.MatchResult}.
+ * The matched text of all groups is copied, so a StreamMatch stays valid after the scanner has moved on.
+ * <p>
+ * Instances are immutable.
+ *
+ * @author Jens Pfahl
+ */
+public final class StreamMatch {
+
+	private final long[] starts;
+	private final long[] ends;
+	private final String[] groups;
+
+
+	/**
+	 * Copies the current match of the matcher, whose input starts at the offset <code>base</code> of the stream.
+	 */
+	StreamMatch(Matcher matcher, long base) {
+		int count = matcher.groupCount() + 1;
+		starts = new long[count];
+		ends = new long[count];
+		groups = new String[count];
+		for (int i = 0; i < count; i++) {
+			int start = matcher.start(i);
+			starts[i] = start < 0 ? -1 : base + start;
+			ends[i] = start < 0 ? -1 : base + matcher.end(i);
+			groups[i] = matcher.group(i);
+		}
+	}
+
+
+	/**
+	 * @return the offset of the first matched character in the stream
+	 */
+	public long start() {
+		return starts[0];
+	}
+
+	/**
+	 * @param group the index of a capturing group
+	 * @return the offset of the first character captured by the group or <code>-1</code> if the group
+	 * 		did not participate in the match
+	 * @throws IndexOutOfBoundsException if there is no such group
+	 */
+	public long start(int group) {
+		checkGroup(group);
+		return starts[group];
+	}
+
+	/**
+	 * @return the offset after the last matched character in the stream
+	 */
+	public long end() {
+		return ends[0];
+	}
+
+	/**
+	 * @param group the index of a capturing group
+	 * @return the offset after the last character captured by the group or <code>-1</code> if the group
+	 * 		did not participate in the match
+	 * @throws IndexOutOfBoundsException if there is no such group
+	 */
+	public long end(int group) {
+		checkGroup(group);
+		return ends[group];
+	}
+
+	/**
+	 * @return the matched text, not <code>null</code>
+	 */
+	public String group() {
+		return groups[0];
+	}
+
+	/**
+	 * @param group the index of a capturing group
+	 * @return the text captured by the group or <code>null</code> if the group did not participate in the match
+	 * @throws IndexOutOfBoundsException if there is no such group
+	 */
+	public String group(int group) {
+		checkGroup(group);
+		return groups[group];
+	}
+
+	/**
+	 * @return the count of capturing groups
+	 */
+	public int groupCount() {
+		return groups.length - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamMatch [" + start() + "-" + end() + "] = " + group();
+	}
+
+
+	private void checkGroup(int group) {
+		if (group < 0 || group >= groups.length) {
+			throw new IndexOutOfBoundsException("No group " + group);
+		}
+	}
+}
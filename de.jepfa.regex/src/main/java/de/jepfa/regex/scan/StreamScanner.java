@@ -0,0 +1,243 @@
+package de.jepfa.regex.scan;
+
+import static de.jepfa.regex.helper.Checker.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilderException;
+
+/**
+ * Searches all matches of a compiled {@link Pattern} in a stream, that is read in buffers of a fixed size.
+ * So inputs larger than 2 GB can be scanned with constant memory.
+ * <p>
+ * A match near the end of a buffer is only reported when {@link Matcher#hitEnd()} and {@link Matcher#requireEnd()}
+ * tell that more input can't change it, otherwise the next buffer is read and the search is repeated.
+ * The matches are the same as those of {@link Matcher#find()} on the whole input, as long as no match
+ * and no lookbehind is longer than the {@link #getMaxMatchLength() maximum match length}. A match attempt that
+ * still runs at the end of the buffered input and started more than this length before it causes a 
+ * {@link RegexBuilderException}, because its match could exceed it.
+ * <p>
+ * Offsets are counted in characters of the decoded stream. Scanners are immutable and thread-safe,
+ * use {@link #withBufferSize(int)} and {@link #withMaxMatchLength(int)} to change the sizes.
+ *
+ * @author Jens Pfahl
+ */
+public final class StreamScanner {
+
+	/**
+	 * The default count of characters to read at once.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The default length of the longest supported match.
+	 */
+	public static final int DEFAULT_MAX_MATCH_LENGTH = 8 * 1024;
+
+	private final Pattern pattern;
+	private final int bufferSize;
+	private final int maxMatchLength;
+
+
+	/**
+	 * @param pattern the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public StreamScanner(Pattern pattern) {
+		this(pattern, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_MATCH_LENGTH);
+	}
+
+	private StreamScanner(Pattern pattern, int bufferSize, int maxMatchLength) {
+		checkNotNull(pattern);
+		checkCondition("Buffer size must be positive", bufferSize < 1);
+		checkCondition("Maximum match length must be positive", maxMatchLength < 1);
+		this.pattern = pattern;
+		this.bufferSize = bufferSize;
+		this.maxMatchLength = maxMatchLength;
+	}
+
+	/**
+	 * @param builder the builder to compile with {@link RegexBuilder#buildPattern()}, not <code>null</code>
+	 * @return not <code>null</code>
+	 */
+	public static StreamScanner compile(RegexBuilder builder) {
+		checkNotNull(builder);
+		return new StreamScanner(builder.buildPattern());
+	}
+
+
+	/**
+	 * @param bufferSize the count of characters to read at once, greater than zero
+	 * @return a new scanner
+	 */
+	public StreamScanner withBufferSize(int bufferSize) {
+		return new StreamScanner(pattern, bufferSize, maxMatchLength);
+	}
+
+	/**
+	 * @param maxMatchLength the length of the longest supported match and lookbehind, greater than zero
+	 * @return a new scanner
+	 */
+	public StreamScanner withMaxMatchLength(int maxMatchLength) {
+		return new StreamScanner(pattern, bufferSize, maxMatchLength);
+	}
+
+	/**
+	 * @return the compiled {@link Pattern}, not <code>null</code>
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return the count of characters to read at once
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return the length of the longest supported match and lookbehind
+	 */
+	public int getMaxMatchLength() {
+		return maxMatchLength;
+	}
+
+
+	/**
+	 * Decodes the channel and scans it, see {@link #scan(Reader, Consumer)}.
+	 *
+	 * @param channel the channel to read until its end, it is not closed, not <code>null</code>
+	 * @param charset the encoding of the channel, not <code>null</code>
+	 * @param consumer receives all matches in order, not <code>null</code>
+	 * @return the count of matches
+	 * @throws IOException if reading fails
+	 */
+	public long scan(ReadableByteChannel channel, Charset charset, Consumer<? super StreamMatch> consumer)
+			throws IOException {
+		checkNotNull(channel);
+		checkNotNull(charset);
+		return scan(Channels.newReader(channel, charset.newDecoder(), -1), consumer);
+	}
+
+	/**
+	 * Reads the reader until its end and reports every match to the consumer as soon as it is final.
+	 *
+	 * @param reader the reader to read until its end, it is not closed, not <code>null</code>
+	 * @param consumer receives all matches in order, not <code>null</code>
+	 * @return the count of matches
+	 * @throws IOException if reading fails
+	 * @throws RegexBuilderException if a match could be longer than the {@link #getMaxMatchLength() maximum match length}
+	 */
+	public long scan(Reader reader, Consumer<? super StreamMatch> consumer) throws IOException {
+		checkNotNull(reader);
+		checkNotNull(consumer);
+
+		// the search window of at most maxMatchLength characters, the context for lookbehinds before it and a new buffer
+		char[] buffer = new char[2 * maxMatchLength + bufferSize];
+		Matcher matcher = pattern.matcher("");
+		// the start of the input is only at the start of the first buffer
+		matcher.useAnchoringBounds(false);
+		matcher.useTransparentBounds(true);
+
+		long base = 0;
+		int length = 0;
+		int searchStart = 0;
+		long count = 0;
+		while (true) {
+			int read = fill(reader, buffer, length);
+			boolean eof = read < 0;
+			length += Math.max(read, 0);
+
+			matcher.reset(CharBuffer.wrap(buffer, 0, length));
+			if (searchStart <= length) {
+				matcher.region(searchStart, length);
+			}
+			boolean pending = false;
+			while (searchStart <= length && matcher.find()) {
+				if (!eof && (matcher.hitEnd() || matcher.requireEnd())) {
+					// the match or an earlier attempt could change with more input
+					int limit = length - maxMatchLength;
+					if (findFinal(matcher, searchStart, limit, length, base) < 0) {
+						searchStart = Math.max(searchStart, limit);
+						pending = true;
+						break;
+					}
+				}
+				consumer.accept(new StreamMatch(matcher, base));
+				count++;
+				searchStart = matcher.start() == matcher.end() ? matcher.end() + 1 : matcher.end();
+			}
+			if (eof) {
+				return count;
+			}
+			if (!pending && searchStart <= length) {
+				if (matcher.hitEnd()) {
+					// an attempt hit the end, it must start in the last characters
+					int limit = length - maxMatchLength;
+					findFinal(matcher, searchStart, limit, length, base);
+					searchStart = Math.max(searchStart, limit);
+				}
+				else {
+					// without hitting the end no match starts before it
+					searchStart = length;
+				}
+			}
+
+			int keep = Math.max(0, Math.min(searchStart, length) - maxMatchLength);
+			System.arraycopy(buffer, keep, buffer, 0, length - keep);
+			base += keep;
+			length -= keep;
+			searchStart -= keep;
+		}
+	}
+
+
+	/**
+	 * Repeats the match attempts that start before the limit one by one, because {@link Matcher#hitEnd()} 
+	 * of {@link Matcher#find()} doesn't tell which attempt hit the end. Every character is repeated at most once, 
+	 * because the search continues behind the limit afterwards.
+	 * 
+	 * @return the start of the first match before the limit, that can't change with more input, the matcher holds it,
+	 * 		or <code>-1</code> if no attempt before the limit matches
+	 * @throws RegexBuilderException if an attempt before the limit hit the end, so its match could be longer 
+	 * 		than the maximum match length
+	 */
+	private int findFinal(Matcher matcher, int from, int limit, int length, long base) {
+		for (int start = from; start < limit; start++) {
+			matcher.region(start, length);
+			boolean found = matcher.lookingAt();
+			if (matcher.hitEnd() || found && matcher.requireEnd()) {
+				throw new RegexBuilderException("A match could be longer than " + maxMatchLength
+						+ " characters at offset " + (base + start));
+			}
+			if (found) {
+				return start;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the count of characters read or <code>-1</code> if the end of the stream was reached before any character
+	 */
+	private static int fill(Reader reader, char[] buffer, int offset) throws IOException {
+		int position = offset;
+		while (position < buffer.length) {
+			int read = reader.read(buffer, position, buffer.length - position);
+			if (read < 0) {
+				return position > offset ? position - offset : -1;
+			}
+			position += read;
+		}
+		return position - offset;
+	}
+}
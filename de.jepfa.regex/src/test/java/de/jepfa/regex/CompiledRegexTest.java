@@ -0,0 +1,200 @@
+package de.jepfa.regex;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.constructs.Words;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.optimizer.Optimizer;
+
+
+
+public class CompiledRegexTest {
+
+	@Test
+	public final void testBuild() throws Exception {
+		Group inner = new Group(new StringElement("b"));
+		Group outer = new Group(new StringElement("a"), inner);
+		Group other = new Group(new StringElement("c"));
+		
+		CompiledRegex compiled = new RegexBuilder().add(outer, new NonCapturing(other)).build();
+		Matcher matcher = compiled.matcher("abc");
+		
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals(3, compiled.getIndexes().size());
+		Assert.assertEquals(Integer.valueOf(1), compiled.getIndex(outer));
+		Assert.assertEquals(Integer.valueOf(2), compiled.getIndex(inner));
+		Assert.assertEquals(Integer.valueOf(3), compiled.getIndex(other));
+		Assert.assertEquals("ab", compiled.group(matcher, outer));
+		Assert.assertEquals("b", compiled.group(matcher, inner));
+		Assert.assertEquals("c", compiled.group(matcher, other));
+	}
+	
+	@Test
+	public final void testBuild_DoesNotChangeGroups() throws Exception {
+		Group inner = new Group(new StringElement("b"));
+		Group outer = new Group(new StringElement("a"), inner);
+		
+		RegexBuilder builder = new RegexBuilder(outer);
+		new RegexBuilder().add(new Group(), outer);
+		builder.build();
+		
+		// the indexes in the builder outer was added to last
+		Assert.assertEquals(Integer.valueOf(2), outer.getIndex());
+		Assert.assertEquals(Integer.valueOf(3), inner.getIndex());
+	}
+	
+	@Test
+	public final void testBuild_NotIndexable() throws Exception {
+		Group group = new Group(new StringElement("a"));
+		Lookahead lookahead = new Lookahead(group);
+		
+		CompiledRegex compiled = new RegexBuilder().add(lookahead, new StringElement("a")).build();
+		
+		Assert.assertNull(compiled.getIndex(lookahead));
+		Assert.assertEquals(Integer.valueOf(1), compiled.getIndex(group));
+		Assert.assertNull(compiled.getIndex(new Group()));
+	}
+	
+	@Test(expected=RegexBuilderException.class)
+	public final void testGroup_NotPartOfBuild() throws Exception {
+		CompiledRegex compiled = new RegexBuilder().add(new Group(new StringElement("a"))).build();
+		Matcher matcher = compiled.matcher("a");
+		
+		Assert.assertTrue(matcher.matches());
+		compiled.group(matcher, new Group());
+	}
+	
+	@Test
+	public final void testBuild_Construct() throws Exception {
+		Words words = new Words("foo", "bar");
+		Group after = new Group(new StringElement("!"));
+		
+		CompiledRegex compiled = new RegexBuilder().add(words, after).build();
+		Matcher matcher = compiled.matcher("bar!");
+		
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals("bar", compiled.group(matcher, words));
+		Assert.assertEquals("!", compiled.group(matcher, after));
+	}
+	
+	@Test
+	public final void testBuild_SharedGroupConcurrently() throws Exception {
+		Group shared = new Group(new StringElement("x"));
+		
+		List<String> results = IntStream.range(0, 1000).parallel().mapToObj(i -> {
+			RegexBuilder builder = new RegexBuilder();
+			for (int j = 0; j < i % 10; j++) {
+				builder.add(new Group(new StringElement(String.valueOf(j))));
+			}
+			CompiledRegex compiled = builder.add(shared).build();
+			Assert.assertEquals(Integer.valueOf(i % 10 + 1), compiled.getIndex(shared));
+			
+			Matcher matcher = compiled.matcher("0123456789".substring(0, i % 10) + "x");
+			Assert.assertTrue(matcher.matches());
+			return compiled.group(matcher, shared);
+		}).collect(Collectors.toList());
+		
+		Assert.assertTrue(results.stream().allMatch("x"::equals));
+	}
+
+	@Test
+	public final void testBuild_SharedGroupInBuildersConcurrently() throws Exception {
+		Group inner = new Group(new StringElement("x"));
+		Group shared = new Group(new StringElement("<"), inner, new StringElement(">"));
+		RegexBuilder second = new RegexBuilder().add(new Words("b"), shared).useOptimizer(new Optimizer());
+		RegexBuilder first = new RegexBuilder().add(new LineContains(new Group(new StringElement("a")), shared));
+		Assert.assertEquals(Integer.valueOf(4), shared.getIndex());
+		Assert.assertEquals(Integer.valueOf(5), inner.getIndex());
+		
+		List<CompiledRegex> results = IntStream.range(0, 1000).parallel()
+				.mapToObj(i -> i % 2 == 0 ? first.build() : second.build())
+				.collect(Collectors.toList());
+		
+		for (int i = 0; i < results.size(); i++) {
+			CompiledRegex compiled = results.get(i);
+			Matcher matcher = compiled.matcher(i % 2 == 0 ? "a<x>" : "b<x>");
+			Assert.assertTrue(matcher.find());
+			Assert.assertEquals(Integer.valueOf(i % 2 == 0 ? 4 : 3), compiled.getIndex(shared));
+			Assert.assertEquals(Integer.valueOf(i % 2 == 0 ? 5 : 4), compiled.getIndex(inner));
+			Assert.assertEquals("<x>", compiled.group(matcher, shared));
+			Assert.assertEquals("x", compiled.group(matcher, inner));
+		}
+		// the indexes in the builder shared was added to last
+		Assert.assertEquals(Integer.valueOf(4), shared.getIndex());
+		Assert.assertEquals(Integer.valueOf(5), inner.getIndex());
+	}
+
+	@Test
+	public final void testBuildCapturing() throws Exception {
+		Group inner = new Group(new StringElement("b"));
+		Group outer = new Group(new StringElement("a"), inner);
+		Group other = new Group(new StringElement("c")).optional();
+		
+		CompiledRegex compiled = new RegexBuilder().add(outer, other).buildCapturing(other);
+		Matcher matcher = compiled.matcher("abc");
+		
+		Assert.assertEquals("(?:\\Qa\\E(?:\\Qb\\E))(\\Qc\\E)?", compiled.getPattern().pattern());
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals(1, matcher.groupCount());
+		Assert.assertEquals(1, compiled.getIndexes().size());
+		Assert.assertEquals(Integer.valueOf(1), compiled.getIndex(other));
+		Assert.assertNull(compiled.getIndex(outer));
+		Assert.assertNull(compiled.getIndex(inner));
+		Assert.assertEquals("c", compiled.group(matcher, other));
+	}
+	
+	@Test
+	public final void testBuildCapturing_Construct() throws Exception {
+		Words words = new Words("foo", "bar").factorize();
+		Group after = new Group(new StringElement("!"));
+		
+		CompiledRegex compiled = new RegexBuilder().add(words, after).buildCapturing(after, words);
+		Matcher matcher = compiled.matcher("bar!");
+		
+		Assert.assertEquals("(\\b(?:foo|bar)\\b)(\\Q!\\E)", compiled.getPattern().pattern());
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals(2, matcher.groupCount());
+		Assert.assertEquals("bar", compiled.group(matcher, words));
+		Assert.assertEquals("!", compiled.group(matcher, after));
+	}
+	
+	@Test
+	public final void testBuildCapturing_None() throws Exception {
+		Group group = new Group(new StringElement("a"), new NonCapturing(new StringElement("b")));
+		RegexBuilder builder = new RegexBuilder().add(group);
+		
+		CompiledRegex compiled = builder.buildCapturing();
+		
+		Assert.assertEquals("(?:\\Qa\\E(?:\\Qb\\E))", compiled.getPattern().pattern());
+		Assert.assertTrue(compiled.getIndexes().isEmpty());
+		Assert.assertEquals("(\\Qa\\E(?:\\Qb\\E))", builder.toRegex());
+	}
+	
+	@Test
+	public final void testBuildCapturing_SameMatches() throws Exception {
+		Group group = new Group(new Words("foo", "bar"), new StringElement("-"), 
+				new Group(new StringElement("x")).many()).optional();
+		RegexBuilder builder = new RegexBuilder().add(group, new Group(new StringElement("!")));
+		
+		Matcher all = builder.build().matcher("foo-xx! bar-x! -x!");
+		Matcher none = builder.buildCapturing().matcher("foo-xx! bar-x! -x!");
+		
+		while (all.find()) {
+			Assert.assertTrue(none.find());
+			Assert.assertEquals(all.group(), none.group());
+		}
+		Assert.assertFalse(none.find());
+		Assert.assertEquals(0, none.groupCount());
+	}
+
+}
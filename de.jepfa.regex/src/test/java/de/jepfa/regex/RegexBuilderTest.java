@@ -3,9 +3,16 @@ package de.jepfa.regex;
 import static de.jepfa.regex.TestHelper.*;
 import static org.junit.Assert.*;
 
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,6 +21,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.analysis.RedosPolicy;
+import de.jepfa.regex.analysis.RedosRisk.Severity;
 import de.jepfa.regex.components.ChangeableElement;
 import de.jepfa.regex.components.Element;
 import de.jepfa.regex.components.Quantifier;
@@ -31,7 +40,13 @@ import de.jepfa.regex.elements.Lookbehind;
 import de.jepfa.regex.elements.NonCapturing;
 import de.jepfa.regex.elements.StringElement;
 import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.engine.BacktrackingEngine;
+import de.jepfa.regex.engine.Engine;
+import de.jepfa.regex.engine.EngineMatcher;
+import de.jepfa.regex.engine.EngineType;
+import de.jepfa.regex.engine.PatternEngine;
 import de.jepfa.regex.helper.Changer;
+import de.jepfa.regex.helper.PatternCache;
 import de.jepfa.regex.helper.Printer;
 
 
@@ -134,6 +149,17 @@ public class RegexBuilderTest {
 		
 	}
 	
+	@Test
+	public final void testToRegex_Cached() {
+		RegexBuilder builder = new RegexBuilder().add(new StringElement("a"), new Chars('b', 'c').many());
+		String regex = builder.toRegex();
+		
+		assertSame(regex, builder.toRegex());
+		builder.add(Char.DIGIT);
+		assertEquals("\\Qa\\E[b-c]+\\d", builder.toRegex());
+		assertSame(builder.toRegex(), builder.toRegex());
+	}
+	
 	@Test
 	public final void testExamples_0() {
 		ChangeableElement changeableChar = Char.SPACE.changeable();
@@ -369,6 +395,189 @@ public class RegexBuilderTest {
 	}
 	
 	
+	@Test
+	public final void testBuildPattern_SharesCachedPattern() {
+		Pattern first = new RegexBuilder(Flag.MULTILINE).add(new Strings("foo", "bar")).buildPattern();
+		Pattern second = new RegexBuilder(Flag.MULTILINE).add(new Strings("foo", "bar")).buildPattern();
+		Pattern third = new RegexBuilder().add(new Strings("foo", "bar")).buildPattern();
+		
+		assertSame(first, second);
+		assertNotSame(first, third);
+		assertEquals(Pattern.MULTILINE, first.flags());
+		assertEquals(0, third.flags());
+		assertTrue(PatternCache.getInstance().getHitCount() > 0);
+	}
+	
+	@Test
+	public final void testBuildPattern_WithoutPatternCache() {
+		Pattern first = new RegexBuilder(new Strings("foo")).usePatternCache(false).buildPattern();
+		Pattern second = new RegexBuilder(new Strings("foo")).usePatternCache(false).buildPattern();
+		
+		assertNotSame(first, second);
+		assertEquals(first.pattern(), second.pattern());
+	}
+	
+	
+	@Test
+	public final void testWriteTo() throws Exception {
+		builder.add(Boundary.LINE_START, new Group(new Strings("foo", "bar"), Char.DIGIT.many()), new Chars("ab").not());
+		StringWriter writer = new StringWriter();
+		
+		builder.writeTo(writer);
+		
+		assertEquals("^((\\Qfoo\\E|\\Qbar\\E)\\d+)[^ab]", writer.toString());
+		assertEquals(builder.toRegex(), writer.toString());
+	}
+	
+	@Test
+	public final void testWriteTo_ConstructsAndFlags() throws Exception {
+		builder.add(new Words("Je", "Ha").switchOn(Flag.IGNORE_CASE_SENSITIVE), new Strings("foo", "fob").factorize().many());
+		StringWriter writer = new StringWriter();
+		
+		builder.writeTo(writer);
+		
+		assertEquals(builder.toRegex(), writer.toString());
+	}
+	
+	@Test
+	public final void testWriteTo_ChildByChild() throws Exception {
+		Element element = new StringElement("a");
+		for (int i = 0; i < 100; i++) {
+			element = new Group(element, Char.DIGIT).optional();
+		}
+		builder.add(element);
+		StringBuilder written = new StringBuilder();
+		int[] longestWrite = {0};
+		Writer writer = new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+				written.append(cbuf, off, len);
+				longestWrite[0] = Math.max(longestWrite[0], len);
+			}
+			
+			@Override
+			public void flush() {
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		
+		builder.writeTo(writer);
+		
+		assertEquals(builder.toRegex(), written.toString());
+		assertTrue(String.valueOf(longestWrite[0]), longestWrite[0] <= "\\Qa\\E".length());
+	}
+	
+	@Test
+	public final void testAppendTo() throws Exception {
+		builder.add(new StringElement("foo"), Char.DIGIT.optional());
+		StringBuilder sb = new StringBuilder("prefix:");
+		
+		builder.appendTo(sb);
+		
+		assertEquals("prefix:\\Qfoo\\E\\d?", sb.toString());
+	}
+	
+	@Test
+	public final void testRedosPolicy_Throw() throws Exception {
+		builder.add(new Group(Char.DIGIT.many()).many(), new StringElement("x"));
+		
+		assertEquals(RedosPolicy.ALLOW, builder.getRedosPolicy());
+		assertNotNull(builder.buildPattern());
+		assertEquals(1, builder.getRedosRisks().size());
+		assertEquals(Severity.EXPONENTIAL, builder.getRedosRisks().get(0).getSeverity());
+		
+		builder.useRedosPolicy(RedosPolicy.THROW);
+		
+		try {
+			builder.buildPattern();
+			fail("RegexBuilderException expected");
+		} catch (RegexBuilderException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("nested repetition of \\d+"));
+		}
+		try {
+			builder.build();
+			fail("RegexBuilderException expected");
+		} catch (RegexBuilderException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public final void testRedosPolicy_MinSeverity() throws Exception {
+		builder.add(Char.DIGIT.many(), Char.DIGIT.arbitrary(), new StringElement("x"))
+				.useRedosPolicy(RedosPolicy.THROW, Severity.EXPONENTIAL);
+		
+		assertEquals(Severity.POLYNOMIAL, builder.getRedosRisks().get(0).getSeverity());
+		assertNotNull(builder.buildPattern());
+	}
+	
+	@Test
+	public final void testRedosPolicy_Warn() throws Exception {
+		List<LogRecord> records = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				records.add(record);
+			}
+			@Override
+			public void flush() {
+			}
+			@Override
+			public void close() {
+			}
+		};
+		Logger logger = Logger.getLogger(RegexBuilder.class.getName());
+		logger.addHandler(handler);
+		try {
+			builder.add(new Choice(Char.WORD_CHAR, Char.DIGIT).arbitrary()).useRedosPolicy(RedosPolicy.WARN);
+			
+			assertNotNull(builder.buildPattern());
+			assertNotNull(builder.buildPattern());
+			assertEquals(1, records.size());
+			assertEquals(Level.WARNING, records.get(0).getLevel());
+			
+			builder.add(new StringElement("x"));
+			builder.buildPattern();
+			assertEquals(2, records.size());
+		} finally {
+			logger.removeHandler(handler);
+		}
+	}
+	
+	@Test
+	public final void testRedosPolicy_Safe() throws Exception {
+		builder.add(Char.DIGIT.many(), new StringElement(","), new Group(Char.DIGIT.many(), new StringElement(";")).many())
+				.useRedosPolicy(RedosPolicy.THROW);
+		
+		assertTrue(builder.getRedosRisks().isEmpty());
+		assertNotNull(builder.buildPattern());
+	}
+	
+	@Test
+	public final void testBuildEngine() throws Exception {
+		Group digits = new Group(Char.DIGIT.many());
+		builder.add(new Lookbehind(new StringElement("#")), digits);
+		assertEquals(EngineType.PATTERN, builder.getEngineType());
+		assertTrue(builder.buildEngine() instanceof PatternEngine);
+		
+		Engine engine = builder.useEngine(EngineType.BACKTRACKING).buildEngine();
+		EngineMatcher matcher = engine.matcher("1 #23");
+		
+		assertTrue(engine instanceof BacktrackingEngine);
+		assertEquals(Integer.valueOf(1), digits.getIndex());
+		assertTrue(matcher.find());
+		assertEquals("23", matcher.group(digits.getIndex()));
+	}
+	
+	@Test(expected = RegexBuilderException.class)
+	public final void testBuildEngine_Unsupported() throws Exception {
+		builder.add(new Lookahead(new StringElement("a"))).useEngine(EngineType.PIKE_VM).buildEngine();
+	}
+	
+	
 	private void doIt(String expectedRegex, Element ...elems) {
 		doIt(Collections.singletonList(expectedRegex), elems);
 	}
@@ -0,0 +1,101 @@
+package de.jepfa.regex.analysis;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.constructs.Word;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.PlainElement;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class AnalyzerTest {
+
+	@Test
+	public final void testFirstLast_String() throws Exception {
+		StringElement s = new StringElement("abc");
+		
+		Assert.assertTrue(Analyzer.first(s).contains('a'));
+		Assert.assertTrue(Analyzer.first(s).contains('A'));
+		Assert.assertFalse(Analyzer.first(s).contains('b'));
+		Assert.assertTrue(Analyzer.last(s).contains('C'));
+		Assert.assertFalse(Analyzer.last(s).contains('a'));
+		Assert.assertFalse(Analyzer.isNullable(s));
+		Assert.assertTrue(Analyzer.isNullable(new StringElement("")));
+		Assert.assertTrue(Analyzer.isNullable(s.optional()));
+	}
+	
+	@Test
+	public final void testSingleChar() throws Exception {
+		Assert.assertTrue(Analyzer.singleChar(Char.DIGIT.many()).contains('7'));
+		Assert.assertFalse(Analyzer.singleChar(Char.NUMBER).contains(','));
+		Assert.assertTrue(Analyzer.singleChar(new Chars("xy").switchOn(Flag.IGNORE_CASE_SENSITIVE)).contains('Y'));
+		Assert.assertTrue(Analyzer.singleChar(Any.ANY).contains('\n'));
+		Assert.assertTrue(Analyzer.singleChar(new StringElement("\uD83D\uDE00")).contains(0x1F600));
+		
+		Assert.assertNull(Analyzer.singleChar(new StringElement("ab")));
+		Assert.assertNull(Analyzer.singleChar(new Chars("")));
+		Assert.assertNull(Analyzer.singleChar(Boundary.WORD));
+		Assert.assertNull(Analyzer.singleChar(new Group(new Chars("ab"))));
+	}
+	
+	@Test
+	public final void testFirst_Sequence() throws Exception {
+		Group group = new Group(Boundary.WORD, new Lookahead(new StringElement("q")), 
+				new StringElement("x").optional(), new Chars("yz"), new StringElement("!"));
+		CharSet first = Analyzer.first(group);
+		
+		Assert.assertTrue(first.contains('x'));
+		Assert.assertTrue(first.contains('z'));
+		Assert.assertFalse(first.contains('q'));
+		Assert.assertFalse(first.contains('!'));
+		Assert.assertFalse(Analyzer.isNullable(group));
+		Assert.assertTrue(Analyzer.isNullable(group.arbitrary()));
+		Assert.assertTrue(Analyzer.last(group).contains('!'));
+		Assert.assertFalse(Analyzer.last(group).contains('z'));
+	}
+	
+	@Test
+	public final void testFirst_Choice() throws Exception {
+		Choice choice = new Choice(new StringElement("ab"), new NonCapturing(new Chars("cd")));
+		Strings strings = new Strings("one", "two", "").factorize();
+		
+		Assert.assertTrue(Analyzer.first(choice).contains('a'));
+		Assert.assertTrue(Analyzer.first(choice).contains('d'));
+		Assert.assertFalse(Analyzer.first(choice).contains('b'));
+		Assert.assertFalse(Analyzer.isNullable(choice));
+		Assert.assertTrue(Analyzer.first(strings).contains('t'));
+		Assert.assertTrue(Analyzer.isNullable(strings));
+	}
+	
+	@Test
+	public final void testFirst_Construct() throws Exception {
+		Word word = new Word("abc");
+		
+		Assert.assertTrue(Analyzer.first(word).contains('a'));
+		Assert.assertFalse(Analyzer.first(word).contains('b'));
+		Assert.assertTrue(Analyzer.last(word).contains('c'));
+		Assert.assertFalse(Analyzer.isNullable(word));
+	}
+	
+	@Test
+	public final void testUnknown() throws Exception {
+		Assert.assertTrue(Analyzer.first(new PlainElement("a|b")).isAll());
+		Assert.assertTrue(Analyzer.isNullable(new PlainElement("a")));
+		Assert.assertTrue(Analyzer.firstOfSequence(Arrays.asList(new StringElement("a").optional(), new PlainElement("b"))).isAll());
+		Assert.assertFalse(Analyzer.isNullableSequence(Arrays.asList(new PlainElement("b"), new StringElement("a"))));
+	}
+
+}
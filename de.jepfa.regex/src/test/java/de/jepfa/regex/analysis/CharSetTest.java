@@ -0,0 +1,63 @@
+package de.jepfa.regex.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+public class CharSetTest {
+
+	@Test
+	public final void testOfLiteral_CaseFolds() throws Exception {
+		CharSet k = CharSet.ofLiteral('k');
+		
+		Assert.assertTrue(k.contains('k'));
+		Assert.assertTrue(k.contains('K'));
+		Assert.assertTrue(k.contains('\u212A')); // Kelvin sign
+		Assert.assertFalse(k.contains('l'));
+		Assert.assertTrue(CharSet.ofLiteral('\u00E9').contains('e')); // canonical equivalent to e + accent
+	}
+	
+	@Test
+	public final void testIsDisjoint_LiteralAndClass() throws Exception {
+		CharSet digit = CharSet.ofRegex("\\d");
+		
+		Assert.assertTrue(digit.isDisjoint(CharSet.ofLiteral(',')));
+		Assert.assertFalse(digit.isDisjoint(CharSet.ofLiteral('5')));
+		Assert.assertFalse(CharSet.ofLiteral('K').isDisjoint(CharSet.ofRegex("[a-z]")));
+		Assert.assertFalse(CharSet.ofLiteral('\u0663').isDisjoint(digit)); // Arabic-Indic digit three
+		Assert.assertTrue(CharSet.ofLiteral('\u0663').isDisjoint(CharSet.ofRegex("(?-U:\\d)")));
+		Assert.assertTrue(CharSet.ofLiteral('a').union(CharSet.ofLiteral('-')).isDisjoint(digit));
+	}
+	
+	@Test
+	public final void testIsDisjoint_Classes() throws Exception {
+		Assert.assertTrue(CharSet.ofRegex("\\d").isDisjoint(CharSet.ofRegex("\\s")));
+		Assert.assertFalse(CharSet.ofRegex("\\w").isDisjoint(CharSet.ofRegex("\\d")));
+		Assert.assertFalse(CharSet.ofRegex("[a-z]").isDisjoint(CharSet.ofRegex("[A-Z]")));
+	}
+	
+	@Test
+	public final void testIsDisjoint_NegatedClasses() throws Exception {
+		Assert.assertFalse(CharSet.ofRegex("[^a]").isDisjoint(CharSet.ofLiteral('A')));
+		Assert.assertFalse(CharSet.ofRegex("[^k]").isDisjoint(CharSet.ofLiteral('\u212A'))); // Kelvin sign
+		Assert.assertFalse(CharSet.ofRegex("[^a\\-]").isDisjoint(CharSet.ofRegex("[A]")));
+		Assert.assertFalse(CharSet.ofRegex("\\W").isDisjoint(CharSet.ofLiteral('\u00E9')));
+		Assert.assertTrue(CharSet.ofRegex("[^a]").contains('A'));
+		Assert.assertTrue(CharSet.ofRegex("[^\\w]").isDisjoint(CharSet.ofLiteral('a')));
+	}
+	
+	@Test
+	public final void testAllNone() throws Exception {
+		CharSet a = CharSet.ofLiteral('a');
+		
+		Assert.assertTrue(CharSet.NONE.isEmpty());
+		Assert.assertTrue(CharSet.NONE.isDisjoint(CharSet.ALL));
+		Assert.assertFalse(CharSet.ALL.isDisjoint(a));
+		Assert.assertSame(CharSet.ALL, a.union(CharSet.ALL));
+		Assert.assertSame(a, a.union(CharSet.NONE));
+		Assert.assertTrue(CharSet.ALL.contains(0x10FFFF));
+		Assert.assertEquals(a.toPredicate(), CharSet.NONE.union(a).toPredicate());
+	}
+
+}
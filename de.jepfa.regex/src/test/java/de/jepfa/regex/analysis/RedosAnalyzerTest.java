@@ -0,0 +1,111 @@
+package de.jepfa.regex.analysis;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.analysis.RedosRisk.Severity;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class RedosAnalyzerTest {
+
+	@Test
+	public final void testNestedRepetition() throws Exception {
+		Group group = new Group(Char.DIGIT.many()).many();
+		
+		assertRisk(Severity.EXPONENTIAL, group, RedosAnalyzer.analyze(group));
+		assertRisk(Severity.EXPONENTIAL, null, RedosAnalyzer.analyze(
+				new NonCapturing(Char.WORD_CHAR.many(), Char.SPACE_CHAR.optional()).arbitrary(), new StringElement("!")));
+		assertRisk(Severity.EXPONENTIAL, null, RedosAnalyzer.analyze(
+				new Group(new NonCapturing(new Chars('a', 'z').many()), new StringElement("x")).many()));
+		assertRisk(Severity.EXPONENTIAL, null, RedosAnalyzer.analyze(
+				new Choice(new StringElement("a").many(), new StringElement("b")).many()));
+	}
+	
+	@Test
+	public final void testNestedRepetition_Safe() throws Exception {
+		Assert.assertTrue(RedosAnalyzer.analyze(new Group(Char.DIGIT.many(), new StringElement(",")).many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Group(Char.DIGIT.many().strategy(Strategy.POSSESSIVE)).many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Group(new NonCapturing(Char.DIGIT.many()).independent()).many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Group(Char.DIGIT.many()).many().strategy(Strategy.POSSESSIVE)).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Group(Char.DIGIT.many()).optional()).isEmpty());
+	}
+	
+	@Test
+	public final void testOverlappingAlternatives() throws Exception {
+		Choice overlapping = new Choice(Char.WORD_CHAR, Char.DIGIT).many();
+		
+		assertRisk(Severity.EXPONENTIAL, overlapping, RedosAnalyzer.analyze(overlapping));
+		assertRisk(Severity.EXPONENTIAL, null, RedosAnalyzer.analyze(new Strings("ab", "abab").arbitrary()));
+		assertRisk(Severity.EXPONENTIAL, null, RedosAnalyzer.analyze(
+				new NonCapturing(new Choice(new StringElement("a"), new StringElement("A").many())).many()));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(
+				new Choice(new Group(new StringElement("a"), Char.DIGIT), new Group(new StringElement("a"), new StringElement("x"))).many()));
+	}
+	
+	@Test
+	public final void testOverlappingAlternatives_Safe() throws Exception {
+		Assert.assertTrue(RedosAnalyzer.analyze(new Strings("GET", "POST", "PUT").many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Strings("a", "ab").many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Choice(Char.DIGIT, Char.SPACE_CHAR).many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new Choice(Char.WORD_CHAR, Char.DIGIT)).isEmpty());
+	}
+	
+	@Test
+	public final void testAdjacentRepetition() throws Exception {
+		Element digits = Char.DIGIT.many();
+		
+		assertRisk(Severity.POLYNOMIAL, digits, RedosAnalyzer.analyze(digits, Char.DIGIT.arbitrary(), new StringElement("x")));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(Any.ANY, new StringElement(",").optional(), Any.ANY));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(new Group(Char.DIGIT.many(), new StringElement("0"), Char.DIGIT.many())));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(new Chars("a").not().many(), new StringElement("A").arbitrary(), new StringElement("!")));
+		
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many(), new StringElement(","), Char.DIGIT.many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many(), Char.SPACE_CHAR.many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many().strategy(Strategy.POSSESSIVE), Char.DIGIT.many()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new LineContains(new StringElement("x"))).isEmpty());
+	}
+	
+	@Test
+	public final void testAdjacentRepetition_InGroup() throws Exception {
+		Element digits = Char.DIGIT.many();
+		
+		assertRisk(Severity.POLYNOMIAL, digits, RedosAnalyzer.analyze(digits, new Group(Char.DIGIT.many())));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(new Group(Char.DIGIT.many()), Char.DIGIT.many()));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(
+				Any.ANY, new Group(new StringElement("a").many(), new StringElement("b"))));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(
+				Any.ANY, new NonCapturing(new StringElement(",").optional(), new Group(Char.DIGIT.many()))));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(new LineContains(Char.DIGIT.many(), new StringElement("x"))));
+		assertRisk(Severity.POLYNOMIAL, null, RedosAnalyzer.analyze(
+				Boundary.LINE_START, Any.ANY, new Group(new StringElement("a").many(), new StringElement("b")), Any.ANY, Boundary.LINE_END));
+		
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many(), new Group(new StringElement(","), Char.DIGIT.many())).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many(), new Group(Char.SPACE_CHAR.many())).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(Char.DIGIT.many(), new NonCapturing(Char.DIGIT.many()).independent()).isEmpty());
+		Assert.assertTrue(RedosAnalyzer.analyze(new LineContains(new StringElement("x"), Char.DIGIT.many(), new StringElement("y"))).isEmpty());
+	}
+	
+	private static void assertRisk(Severity severity, Element element, List<RedosRisk> risks) {
+		Assert.assertEquals(risks.toString(), 1, risks.size());
+		Assert.assertEquals(severity, risks.get(0).getSeverity());
+		if (element != null) {
+			Assert.assertSame(element, risks.get(0).getElement());
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.jepfa.regex.analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.constructs.LineStartsWith;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.Lookbehind;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.PlainElement;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class RequiredLiteralsTest {
+
+	private static final Set<Flag> NO_FLAGS = EnumSet.noneOf(Flag.class);
+	
+	
+	@Test
+	public final void testOf() throws Exception {
+		Assert.assertEquals(Arrays.asList("ERROR"), of(new LineContains(new StringElement("ERROR"), Char.DIGIT.many())));
+		Assert.assertEquals(Arrays.asList("abc"), of(new StringElement("a"), new StringElement("bc"), Char.DIGIT));
+		Assert.assertEquals(Arrays.asList("long"), of(new StringElement("x"), Char.DIGIT, 
+				new NonCapturing(new StringElement("long")).many(), new Group(new StringElement("no")).optional()));
+		Assert.assertEquals(Arrays.asList("ab"), of(new Lookahead(Any.ANY, new StringElement("ab")), Char.DIGIT));
+	}
+	
+	@Test
+	public final void testOf_Alternatives() throws Exception {
+		Assert.assertEquals(Arrays.asList("WARN", "ERROR"), of(new Strings("WARN", "ERROR")));
+		Assert.assertEquals(Arrays.asList("b", "x"), 
+				of(new Choice(new StringElement("abc"), new StringElement("b"), new Group(Char.DIGIT, new StringElement("x")))));
+		Assert.assertEquals(Arrays.asList("long"), of(new Strings("a", "b"), new StringElement("long")));
+		Assert.assertEquals(Arrays.asList("ab", "cd"), of(new Strings("ab", "cd"), new StringElement("x")));
+	}
+	
+	@Test
+	public final void testOf_None() throws Exception {
+		Assert.assertEquals(Collections.emptyList(), of(new StringElement("a").optional()));
+		Assert.assertEquals(Collections.emptyList(), of(new Choice(new StringElement("a"), Char.DIGIT)));
+		Assert.assertEquals(Collections.emptyList(), of(new PlainElement("ab")));
+		Assert.assertEquals(Collections.emptyList(), of(new Lookahead(new StringElement("ab")).not()));
+		Assert.assertEquals(Collections.emptyList(), of(new Lookbehind(new StringElement("ab"))));
+		Assert.assertEquals(Collections.emptyList(), of(new LineContains(new StringElement("ab")).not()));
+		Assert.assertEquals(Collections.emptyList(), of(new LineStartsWith(new StringElement("ab")).not()));
+		Assert.assertEquals(Collections.emptyList(), of(new StringElement("")));
+	}
+	
+	@Test
+	public final void testOf_Flags() throws Exception {
+		List<Element> elements = Arrays.asList(new StringElement("ab"), 
+				new StringElement("cd").switchOff(Flag.IGNORE_CASE_SENSITIVE));
+		
+		Assert.assertEquals(Arrays.asList("abcd"), RequiredLiterals.of(elements, NO_FLAGS));
+		Assert.assertEquals(Arrays.asList("cd"), RequiredLiterals.of(elements, EnumSet.of(Flag.IGNORE_CASE_SENSITIVE)));
+		Assert.assertEquals(Arrays.asList("ab"), RequiredLiterals.of(
+				Arrays.asList(new StringElement("ab"), new StringElement("cd").switchOn(Flag.IGNORE_CASE_SENSITIVE)), NO_FLAGS));
+		Assert.assertEquals(Collections.emptyList(), RequiredLiterals.of(elements, EnumSet.of(Flag.CANON_EQUALS)));
+	}
+	
+	
+	private static List<String> of(Element... elements) {
+		return RequiredLiterals.of(Arrays.asList(elements), NO_FLAGS);
+	}
+}
@@ -0,0 +1,123 @@
+package de.jepfa.regex.components;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+
+
+
+public class CharPredicateTest {
+
+	@Test
+	public final void testToPredicate_SameAsPattern() throws Exception {
+		assertSameAsPattern(new Chars("abc"));
+		assertSameAsPattern(new Chars('a', 'z').add('_').not());
+		assertSameAsPattern(new Chars(Char.LETTER.toCharClass()).add(Char.DIGIT.toCharClass()));
+		assertSameAsPattern(new Chars(Char.SPACE_CHAR.toCharClass()).not());
+		assertSameAsPattern(new Chars('a', 'z').union('0', '9').union("-_"));
+		assertSameAsPattern(new Chars('a', 'z').intersect("aeiouxyz").subtract('x', 'y'));
+		assertSameAsPattern(new Chars('a', 'z').subtract("aeiou").union('A', 'Z').not());
+		assertSameAsPattern(new Chars('a', 'z').union(new Chars('0', '9').not()).intersect(new Chars(Char.ASCII_CHAR.toCharClass())));
+		assertSameAsPattern(new Chars(Char.LETTER.toCharClass()).subtract(Char.UPPER_LETTER.toCharClass().toRegex()));
+		assertSameAsPattern(new Chars("abc").switchOn(Flag.IGNORE_CASE_SENSITIVE));
+		assertSameAsPattern(new Chars("a").union(new Chars("b").many()));
+		assertSameAsPattern(new Chars('a', 'c').union(new Chars("xyz").switchOn(Flag.IGNORE_CASE_SENSITIVE)));
+	}
+	
+	@Test
+	public final void testToPredicate_Empty() throws Exception {
+		Assert.assertEquals(CharPredicate.NONE, new Chars("").toPredicate());
+		Assert.assertEquals(CharPredicate.ALL, CharPredicate.NONE.negate());
+		Assert.assertFalse(CharPredicate.NONE.test(0x10FFFF));
+		Assert.assertTrue(CharPredicate.ALL.test(0x10FFFF));
+	}
+	
+	@Test
+	public final void testSetOperations() throws Exception {
+		CharPredicate ab = CharPredicate.range('a', 'b');
+		CharPredicate bc = CharPredicate.range('b', 'c');
+		
+		Assert.assertEquals(CharPredicate.range('a', 'c'), ab.union(bc));
+		Assert.assertEquals(CharPredicate.range('a', 'c'), ab.union(CharPredicate.of('c')));
+		Assert.assertEquals(CharPredicate.of('b'), ab.intersect(bc));
+		Assert.assertEquals(ab, ab.negate().negate());
+		Assert.assertEquals(CharPredicate.NONE, ab.intersect(ab.negate()));
+		Assert.assertEquals(CharPredicate.ALL, ab.union(ab.negate()));
+	}
+	
+	@Test
+	public final void testSupplementary() throws Exception {
+		CharPredicate letters = new Chars(Char.LETTER.toCharClass()).toPredicate();
+		String text = "\uD835\uDC00x1";
+		
+		Assert.assertTrue(letters.test(0x1D400));
+		Assert.assertFalse(letters.test(0x1F600));
+		Assert.assertEquals(0, letters.indexIn(text, 0));
+		Assert.assertEquals(3, letters.indexNotIn(text, 0));
+		Assert.assertEquals(2, letters.countIn(text));
+	}
+	
+	@Test
+	public final void testCaseInsensitive_SameAsPattern() throws Exception {
+		String singles = "aKz\u00e4\u00ff\u00b5\u017f\u0130s\u212a\u03c2\u1e9e";
+		int[] ranges = {'a', 'f', 'P', 'R', 0xc0, 0xde, 0x390, 0x3a9, 0x2160, 0x216f};
+		CharPredicate singlesPredicate = CharPredicate.NONE;
+		StringBuilder regex = new StringBuilder("[");
+		for (char ch : singles.toCharArray()) {
+			singlesPredicate = singlesPredicate.union(CharPredicate.of(ch));
+			regex.append(ch);
+		}
+		CharPredicate rangesPredicate = CharPredicate.NONE;
+		for (int i = 0; i < ranges.length; i += 2) {
+			rangesPredicate = rangesPredicate.union(CharPredicate.range(ranges[i], ranges[i + 1]));
+			regex.appendCodePoint(ranges[i]).append('-').appendCodePoint(ranges[i + 1]);
+		}
+		regex.append("]");
+		
+		for (boolean unicodeCase : new boolean[] {false, true}) {
+			CharPredicate predicate = CharPredicate.caseInsensitive(singlesPredicate, rangesPredicate, unicodeCase);
+			int flags = Pattern.CASE_INSENSITIVE | (unicodeCase ? Pattern.UNICODE_CASE : 0);
+			Matcher matcher = Pattern.compile(regex.toString(), flags).matcher("");
+			for (int ch = Character.MIN_VALUE; ch <= Character.MAX_VALUE; ch++) {
+				boolean expected = matcher.reset(String.valueOf((char) ch)).matches();
+				if (expected != predicate.test((char) ch)) {
+					Assert.fail(regex + " with flags=" + flags + " for U+" + Integer.toHexString(ch) + " expected " + expected);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public final void testTrim() throws Exception {
+		CharPredicate space = new Chars(Char.SPACE_CHAR.toCharClass()).toPredicate();
+		
+		Assert.assertEquals("a b", space.trim(" \t a b\n"));
+		Assert.assertEquals("", space.trim("  "));
+		Assert.assertEquals("", space.trim(""));
+		Assert.assertEquals(-1, space.indexIn("ab", 0));
+		Assert.assertEquals(2, space.indexIn("ab c", 1));
+	}
+	
+	
+	private static void assertSameAsPattern(Chars chars) {
+		CharPredicate predicate = chars.toPredicate();
+		Matcher matcher = Pattern.compile(chars.toRegex()).matcher("");
+		for (int ch = Character.MIN_VALUE; ch <= Character.MAX_VALUE; ch++) {
+			boolean expected = matcher.reset(String.valueOf((char) ch)).matches();
+			if (expected != predicate.test((char) ch)) {
+				Assert.fail(chars.toRegex() + " for U+" + Integer.toHexString(ch) + " expected " + expected);
+			}
+		}
+		for (int codePoint : new int[] {0x10000, 0x1D400, 0x1F600, 0x10FFFF}) {
+			boolean expected = matcher.reset(new String(Character.toChars(codePoint))).matches();
+			Assert.assertEquals(chars.toRegex(), expected, predicate.test(codePoint));
+		}
+	}
+	
+}
@@ -1,12 +1,21 @@
 package de.jepfa.regex.components;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.jepfa.regex.RegexBuilder;
 import de.jepfa.regex.RegexBuilder.Flag;
 import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
 import de.jepfa.regex.elements.TestElement;
+import de.jepfa.regex.helper.Changer;
 
 
 
@@ -26,12 +35,33 @@ public class ElementTest {
 		Element clonedElement = element.clone();
 		
 		Assert.assertNotSame(element, clonedElement);
-		Assert.assertNotSame(element.getQuantifier(), clonedElement.getQuantifier());
-		Assert.assertNotSame(element.getFlags(), clonedElement.getFlags());
+		Assert.assertSame(Quantifier.ONE, clonedElement.getQuantifier());
+		Assert.assertSame(Flags.EMPTY, clonedElement.getFlags());
 		Assert.assertEquals("nop", element.toRegex());
 		Assert.assertEquals("nop", clonedElement.toRegex());
 	}
 	
+	@Test
+	public final void testClone_WithFlags() throws Exception {
+		Element flaggedElement = element.switchOn(Flag.IGNORE_CASE_SENSITIVE);
+		
+		Element clonedElement = flaggedElement.clone();
+		
+		Assert.assertNotSame(flaggedElement.getFlags(), clonedElement.getFlags());
+		Assert.assertEquals("(?i:nop)", clonedElement.toRegex());
+	}
+	
+	@Test
+	public final void testFlags_SharedUntilChanged() throws Exception {
+		Element flaggedElement = element.switchOn(Flag.IGNORE_CASE_SENSITIVE);
+		
+		Assert.assertSame(Flags.EMPTY, element.getFlags());
+		Assert.assertNotSame(Flags.EMPTY, flaggedElement.getFlags());
+		Assert.assertTrue(Flags.EMPTY.isEmpty());
+		Assert.assertEquals("(?i:nop)", flaggedElement.toRegex());
+		Assert.assertEquals("nop", element.toRegex());
+	}
+	
 	@Test
 	public final void testStrategy() throws Exception {
 		Element lazyElement = element.strategy(Quantifier.Strategy.LAZY);
@@ -199,6 +229,178 @@ public class ElementTest {
 		Assert.assertFalse(restoredElement.getFlags().getDisabledFlags().contains(Flag.DOTALL));
 	}
 	
+	@Test
+	public final void testToRegex_Cached() throws Exception {
+		Element manyElement = element.many();
+		String regex = manyElement.toRegex();
+		
+		Assert.assertEquals("nop+", regex);
+		Assert.assertSame(regex, manyElement.toRegex());
+		Assert.assertEquals("nop*", manyElement.optional().toRegex());
+		Assert.assertSame(regex, manyElement.toRegex());
+	}
+	
+	@Test
+	public final void testAppendTo_Cached() throws Exception {
+		int[] renderings = {0};
+		Element countingElement = new TestElement() {
+			@Override
+			protected String elementToRegex() {
+				renderings[0]++;
+				return super.elementToRegex();
+			}
+		};
+		RegexBuilder builder = new RegexBuilder(new Group(countingElement.many()), countingElement);
+		
+		Assert.assertEquals("(nop+)nop", builder.toRegex());
+		Assert.assertEquals("(nop+)nop", builder.toRegex());
+		builder.buildPattern();
+		Assert.assertEquals(2, renderings[0]);
+	}
+	
+	@Test
+	public final void testAppendTo_SubElementsNotCached() throws Exception {
+		int[] renderings = {0};
+		Element countingElement = new TestElement() {
+			@Override
+			protected String elementToRegex() {
+				renderings[0]++;
+				return super.elementToRegex();
+			}
+		};
+		Group inner = new Group(countingElement);
+		Group outer = new Group(inner);
+		
+		Assert.assertEquals("((nop))", outer.toRegex());
+		Assert.assertEquals("(nop)", inner.toRegex());
+		Assert.assertEquals(2, renderings[0]);
+		Assert.assertEquals("((nop))", new Group(inner).toRegex());
+		Assert.assertEquals(2, renderings[0]);
+	}
+	
+	@Test
+	public final void testToRegex_ChangedInPlaceElsewhere() throws Exception {
+		int[] renderings = {0};
+		Element countingElement = new TestElement() {
+			@Override
+			protected String elementToRegex() {
+				renderings[0]++;
+				return super.elementToRegex();
+			}
+		};
+		Group group = new Group(countingElement);
+		ChangeableElement other = new TestElement();
+		other.setChangeable();
+		
+		Assert.assertEquals("(nop)", group.toRegex());
+		other.many();
+		new RegexBuilder().add(group);
+		Assert.assertEquals("(nop)", group.toRegex());
+		Assert.assertEquals(1, renderings[0]);
+	}
+	
+	@Test
+	public final void testToRegex_SubElementChangedInPlace() throws Exception {
+		ChangeableElement changeableElement = new TestElement();
+		Group group = new Group(new Group(changeableElement));
+		Assert.assertEquals("((nop))", group.toRegex());
+		
+		changeableElement.setChangeable();
+		changeableElement.many();
+		
+		Assert.assertEquals("((nop+))", group.toRegex());
+	}
+	
+	@Test
+	public final void testToRegex_SharedSubElementChangedInPlace() throws Exception {
+		ChangeableElement changeableElement = new TestElement();
+		Group group = new Group(changeableElement);
+		Group clone = group.add(new TestElement());
+		Chars chars = new Chars('a');
+		Chars union = new Chars('b').union(chars).many();
+		Assert.assertEquals("(nop)", group.toRegex());
+		Assert.assertEquals("(nopnop)", clone.toRegex());
+		Assert.assertEquals("[ab]+", union.toRegex());
+		
+		changeableElement.setChangeable();
+		changeableElement.many();
+		Changer.change(chars, c -> c.range('x', 'z'));
+		
+		Assert.assertEquals("(nop+)", group.toRegex());
+		Assert.assertEquals("(nop+nop)", clone.toRegex());
+		Assert.assertEquals("[abx-z]+", union.toRegex());
+	}
+	
+	@Test
+	public final void testToRegex_SharedSubElementChangedInPlaceAfterGc() throws Exception {
+		Chars chars = new Chars("a");
+		chars.setChangeable();
+		Group intermediate = new Group(chars);
+		WeakReference<Group> ref = new WeakReference<>(intermediate);
+		Group group = intermediate.add(new StringElement("x")).add(new StringElement("y"));
+		intermediate = null;
+		RegexBuilder builder = new RegexBuilder().add(group);
+		Assert.assertEquals("([a]\\Qx\\E\\Qy\\E)", group.toRegex());
+		Assert.assertEquals("([a]\\Qx\\E\\Qy\\E)", builder.toRegex());
+		
+		for (int i = 0; i < 10 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		chars.add("b");
+		
+		Assert.assertEquals("([ab]\\Qx\\E\\Qy\\E)", group.toRegex());
+		Assert.assertEquals("([ab]\\Qx\\E\\Qy\\E)", builder.toRegex());
+	}
 	
+	@Test
+	public final void testAdd_FluentChainDoesNotKeepIntermediates() throws Exception {
+		Chars chars = new Chars("a");
+		chars.setChangeable();
+		Group group = new Group(chars);
+		List<WeakReference<Group>> refs = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			refs.add(new WeakReference<>(group));
+			group = group.add(new StringElement("x"));
+			group.toRegex();
+		}
+		
+		for (int i = 0; i < 10 && refs.stream().anyMatch(ref -> ref.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, refs.stream().filter(ref -> ref.get() != null).count());
+		
+		chars.add("b");
+		Assert.assertTrue(group.toRegex().startsWith("([ab]\\Qx\\E"));
+	}
+	
+	@Test
+	public final void testGetVersion_DeepTree() throws Exception {
+		ChangeableElement changeableElement = new TestElement();
+		Group group = new Group(changeableElement);
+		for (int i = 0; i < 10_000; i++) {
+			group = new Group(group, group);
+		}
+		Assert.assertEquals(0, group.getVersion());
+		
+		changeableElement.setChangeable();
+		changeableElement.many();
+		
+		Assert.assertTrue(group.getVersion() > 0);
+		Assert.assertEquals(changeableElement.getVersion(), group.getVersion());
+	}
+	
+	@Test
+	public final void testToRegex_ChangedInPlace() throws Exception {
+		ChangeableElement changeableElement = new TestElement();
+		Assert.assertEquals("nop", changeableElement.toRegex());
+		
+		changeableElement.setChangeable();
+		changeableElement.many();
+		changeableElement.unsetChangeable();
+		
+		Assert.assertEquals("nop+", changeableElement.toRegex());
+	}
 	
 }
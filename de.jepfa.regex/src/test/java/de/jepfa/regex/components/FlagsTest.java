@@ -6,6 +6,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.jepfa.regex.RegexBuilderException;
 import de.jepfa.regex.RegexBuilder.Flag;
 
 
@@ -99,6 +100,27 @@ public class FlagsTest {
 		Assert.assertEquals("", flags.toRegex());
 	}
 	
+	@Test
+	public final void testSwitchOnOff_SameFlag() throws Exception {
+		flags.switchOn(Flag.DOTALL, Flag.COMMENTS);
+		flags.switchOff(Flag.COMMENTS);
+		
+		Assert.assertEquals("s-x", flags.toRegex());
+		Assert.assertEquals("{DOTALL=true, COMMENTS=false}", flags.toString());
+		Assert.assertEquals(1, flags.getEnabledFlags().size());
+		Assert.assertEquals(1, flags.getDisabledFlags().size());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public final void testGetEnabledFlags_Unmodifiable() throws Exception {
+		flags.getEnabledFlags().add(Flag.DOTALL);
+	}
+	
+	@Test(expected=RegexBuilderException.class)
+	public final void testEmpty_Unchangeable() throws Exception {
+		Flags.EMPTY.switchOn(Flag.DOTALL);
+	}
+	
 
 
 }
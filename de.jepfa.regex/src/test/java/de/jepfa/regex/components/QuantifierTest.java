@@ -17,32 +17,68 @@ public class QuantifierTest {
 	
 	@Before
 	public final void setup() {
-		quantifier = new Quantifier();
+		quantifier = Quantifier.ONE;
 	}
 
 	@Test
 	public final void testClone() throws Exception {
 		Object clonedQuantifier = quantifier.clone();
 		
-		Assert.assertNotSame(quantifier, clonedQuantifier);
+		Assert.assertSame(quantifier, clonedQuantifier);
 		
 	}
 	
 	@Test(expected=RegexBuilderException.class)
 	public final void testMin_Fail() throws Exception {
-		quantifier.setMin(-53);
+		quantifier.withMin(-53);
 		
 	}
 	
 	@Test(expected=RegexBuilderException.class)
 	public final void testMax_Fail() throws Exception {
-		quantifier.setMax(-53);
+		quantifier.withMax(-53);
+	}
+	
+	@Test(expected=RegexBuilderException.class)
+	public final void testUnsupported_Fail() throws Exception {
+		Quantifier.of(0, 0, Strategy.GREEDY).toRegex();
+	}
+	
+	@Test
+	public final void testOf_Shared() throws Exception {
+		Assert.assertSame(Quantifier.ONE, Quantifier.of(1, 1, Strategy.GREEDY));
+		Assert.assertSame(Quantifier.OPTIONAL, quantifier.withMin(0));
+		Assert.assertSame(Quantifier.MANY, quantifier.withMax(Quantifier.UNBOUND));
+		Assert.assertSame(Quantifier.ARBITRARY, Quantifier.OPTIONAL.withMax(Quantifier.UNBOUND));
+		Assert.assertSame(Quantifier.of(3, 3, Strategy.LAZY), Quantifier.of(3, 3, Strategy.LAZY));
+		Assert.assertSame(quantifier.toRegex(), quantifier.toRegex());
+	}
+	
+	@Test
+	public final void testOf_NotShared() throws Exception {
+		Quantifier q1 = Quantifier.of(100, 200, Strategy.POSSESSIVE);
+		Quantifier q2 = Quantifier.of(100, 200, Strategy.POSSESSIVE);
+		
+		Assert.assertEquals(q1, q2);
+		Assert.assertEquals(q1.hashCode(), q2.hashCode());
+		Assert.assertNotEquals(q1, q2.withStrategy(Strategy.LAZY));
+		Assert.assertEquals("{100,200}+", q1.toRegex());
+	}
+	
+	@Test
+	public final void testWith_Immutable() throws Exception {
+		Quantifier lazy = quantifier.withStrategy(Strategy.LAZY);
+		
+		Assert.assertEquals(Strategy.GREEDY, quantifier.getStrategy());
+		Assert.assertEquals(Strategy.LAZY, lazy.getStrategy());
+		Assert.assertEquals("*?", lazy.withMost(Quantifier.UNBOUND).toRegex());
+		Assert.assertEquals("", quantifier.toRegex());
 	}
 	
 	
 	@Test
 	public final void testLeast() throws Exception {
-		quantifier.setLeast(7);
+		quantifier = quantifier.withLeast(7);
 		
 		Assert.assertEquals(7, quantifier.getMin());
 		Assert.assertEquals(Quantifier.UNBOUND, quantifier.getMax());
@@ -51,7 +87,7 @@ public class QuantifierTest {
 	
 	@Test
 	public final void testMost() throws Exception {
-		quantifier.setMost(7);
+		quantifier = quantifier.withMost(7);
 		
 		Assert.assertEquals(0, quantifier.getMin());
 		Assert.assertEquals(7, quantifier.getMax());
@@ -177,9 +213,7 @@ public class QuantifierTest {
 	
 	
 	private void doIt(int min, int max, Strategy type, Object expectedRegex) throws Exception {
-		quantifier.setMin(min);
-		quantifier.setMax(max);
-		quantifier.setStrategy(type);
+		quantifier = Quantifier.of(min, max, type);
 		
 		Assert.assertEquals(min, quantifier.getMin());
 		Assert.assertEquals(max, quantifier.getMax());
@@ -1,10 +1,15 @@
 package de.jepfa.regex.constructs;
 
+import java.util.regex.Matcher;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.jepfa.regex.RegexBuilder;
 import de.jepfa.regex.components.Element;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
 
 
 
@@ -53,6 +58,31 @@ public class WordsTest {
 		Assert.assertEquals(3, addedWords.getElements().size());
 		Assert.assertEquals("(\\B(\\Qnop\\E|\\Qone\\E|\\Qtwo\\E)\\B)", addedWords.toRegex());
 	}
+	
+	@Test
+	public final void testWords_Factorize() throws Exception {
+		Words factorized = words.add("nope", "one").factorize();
+		
+		Assert.assertFalse(words.isFactorized());
+		Assert.assertTrue(factorized.isFactorized());
+		Assert.assertEquals("(\\b(nop(?:|e)|one)\\b)", factorized.toRegex());
+	}
+	
+	@Test
+	public final void testWords_FactorizeKeepsGroupIndexes() throws Exception {
+		Words factorized = new Words("foobar", "foobaz", "qux").factorize();
+		Group after = new Group(new StringElement("!"));
+		RegexBuilder builder = new RegexBuilder().add(factorized, after);
+		
+		Matcher matcher = builder.buildPattern().matcher("a foobaz!");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.groupCount());
+		Assert.assertEquals("foobaz", matcher.group(2));
+		Assert.assertEquals(1, factorized.getIndex().intValue());
+		Assert.assertEquals("!", matcher.group(3));
+		Assert.assertEquals(3, after.getIndex().intValue());
+	}
 
 	
 
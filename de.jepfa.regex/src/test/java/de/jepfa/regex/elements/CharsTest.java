@@ -1,5 +1,10 @@
 package de.jepfa.regex.elements;
 
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -126,7 +131,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[^y]]", addedChars.toRegex());
+		Assert.assertEquals("[a-xz]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -136,7 +141,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[^y]]", addedChars.toRegex());
+		Assert.assertEquals("[a-xz]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -146,7 +151,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[^mno]]", addedChars.toRegex());
+		Assert.assertEquals("[a-lp-z]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -156,7 +161,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[^m-q]]", addedChars.toRegex());
+		Assert.assertEquals("[a-lr-z]", addedChars.toRegex());
 	}
 	
 	
@@ -168,7 +173,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[y]]", addedChars.toRegex());
+		Assert.assertEquals("[y]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -178,7 +183,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[y]]", addedChars.toRegex());
+		Assert.assertEquals("[y]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -188,7 +193,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[mno]]", addedChars.toRegex());
+		Assert.assertEquals("[m-o]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -198,7 +203,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-z&&[m-q]]", addedChars.toRegex());
+		Assert.assertEquals("[m-q]", addedChars.toRegex());
 	}
 	
 	
@@ -209,7 +214,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-f[^e-z]]", addedChars.toRegex());
+		Assert.assertEquals("[^g-z]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -219,7 +224,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-f[e]]", addedChars.toRegex());
+		Assert.assertEquals("[a-f]", addedChars.toRegex());
 	}
 	
 	@Test
@@ -229,7 +234,7 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-f[efg]]", addedChars.toRegex());
+		Assert.assertEquals("[a-g]", addedChars.toRegex());
 	}
 	@Test
 	public final void testUnion_WithRange() throws Exception {
@@ -238,7 +243,122 @@ public class CharsTest {
 		Assert.assertNotSame(chars, addedChars);
 		Assert.assertEquals("", chars.toRegex());
 		
-		Assert.assertEquals("[a-f[e-z]]", addedChars.toRegex());
+		Assert.assertEquals("[a-z]", addedChars.toRegex());
+	}
+	
+	@Test
+	public final void testFlatten_MergesOverlapping() throws Exception {
+		Assert.assertEquals("[a-z]", new Chars('a', 'm').range('k', 'z').add("abc").toRegex());
+		Assert.assertEquals("[a-e]", new Chars("abcde").toRegex());
+		Assert.assertEquals("[cba]", new Chars("cba").toRegex());
+	}
+	
+	@Test
+	public final void testFlatten_KeepsRanges() throws Exception {
+		Chars addedChars = new Chars('a', 'z').subtract("aeiou");
+		
+		Assert.assertEquals("[b-df-hj-np-tv-z]", addedChars.toRegex());
+		Assert.assertEquals("[0-9A-Za-z]", new Chars('a', 'z').union('A', 'Z').union('0', '9').toRegex());
+	}
+	
+	@Test(expected=PatternSyntaxException.class)
+	public final void testFlatten_NotForIllegalRanges() throws Exception {
+		Chars addedChars = new Chars('z', 'a').union('0', '9');
+		
+		Assert.assertEquals("[z-a[0-9]]", addedChars.toRegex());
+		Pattern.compile(addedChars.toRegex());
+	}
+	
+	@Test
+	public final void testFlatten_NotForCharClasses() throws Exception {
+		Chars addedChars = new Chars(Char.LETTER.toCharClass()).subtract('a');
+		
+		Assert.assertEquals("[\\p{L}&&[^a]]", addedChars.toRegex());
+	}
+	
+	@Test
+	public final void testFlatten_NotIfCaseInsensitiveDiffers() throws Exception {
+		Chars addedChars = new Chars('a').subtract('A');
+		
+		Assert.assertEquals("[a&&[^A]]", addedChars.toRegex());
+	}
+	
+	
+	@Test
+	public final void testFlatten_SameAsPattern() throws Exception {
+		Random random = new Random(4711);
+		for (int i = 0; i < 300; i++) {
+			StringBuilder original = new StringBuilder();
+			Chars flattened = randomChars(random, 2, false, original);
+			
+			for (int flags : new int[] {0, Pattern.CASE_INSENSITIVE, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE}) {
+				Matcher expected = Pattern.compile(original.toString(), flags).matcher("");
+				Matcher actual = Pattern.compile(flattened.toRegex(), flags).matcher("");
+				for (int ch = 0; ch <= 0x3000; ch++) {
+					String s = String.valueOf((char) ch);
+					if (expected.reset(s).matches() != actual.reset(s).matches()) {
+						Assert.fail(original + " -> " + flattened.toRegex() + " differs for U+" + Integer.toHexString(ch));
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Creates random Character Sets and renders them without flattening into <code>regex</code>.
+	 */
+	private static Chars randomChars(Random random, int depth, boolean subtracted, StringBuilder regex) {
+		String alphabet = "aeiyzAEIYZ-^[]\\\u00e4\u00c4\u017f\u212a\u0130kKsS09";
+		StringBuilder members = new StringBuilder();
+		Chars chars;
+		if (random.nextBoolean()) {
+			char ch = alphabet.charAt(random.nextInt(alphabet.length()));
+			chars = new Chars(ch);
+			appendQuoted(members, ch);
+		}
+		else {
+			char from = (char) ('a' + random.nextInt(13));
+			char to = (char) ('m' + random.nextInt(13));
+			chars = new Chars(from, to);
+			members.append(from).append('-').append(to);
+		}
+		for (int i = random.nextInt(3); i > 0; i--) {
+			char ch = alphabet.charAt(random.nextInt(alphabet.length()));
+			chars = chars.add(ch);
+			appendQuoted(members, ch);
+		}
+		if (random.nextInt(4) == 0) {
+			chars = chars.not();
+		}
+		
+		regex.append(chars.isNot() || subtracted ? "[^" : "[").append(members);
+		for (int i = depth > 0 ? random.nextInt(3) : 0; i > 0; i--) {
+			int operation = random.nextInt(3);
+			regex.append(operation == 0 ? "" : "&&");
+			Chars other = randomChars(random, depth - 1, operation == 2, regex);
+			switch (operation) {
+			case 0:
+				chars = chars.union(other);
+				break;
+			case 1:
+				chars = chars.intersect(other);
+				break;
+			default:
+				chars = chars.subtract(other);
+			}
+		}
+		regex.append("]");
+		return chars;
+	}
+	
+	private static void appendQuoted(StringBuilder sb, char ch) {
+		if (ch < 128 && Character.isLetterOrDigit(ch)) {
+			sb.append(ch);
+		}
+		else {
+			sb.append('\\').append(ch);
+		}
 	}
 
 }
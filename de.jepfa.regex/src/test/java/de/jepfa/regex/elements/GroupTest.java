@@ -5,6 +5,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.helper.Changer;
 import de.jepfa.regex.helper.Printer;
 
 
@@ -72,6 +74,33 @@ public class GroupTest {
 		Assert.assertEquals("(nopnop)", addedGroup.toRegex());
 	}
 	
+	@Test(timeout = 10000)
+	public final void testAdd_Incremental() throws Exception {
+		Group first = new Group();
+		Group last = first;
+		for (int i = 0; i < 100000; i++) {
+			last = last.add(new TestElement(String.valueOf(i)));
+		}
+		Group other = first.add(new TestElement("other"));
+		
+		Assert.assertEquals(0, first.getElements().size());
+		Assert.assertEquals(100000, last.getElements().size());
+		Assert.assertEquals("99999", last.getElements().get(99999).toRegex());
+		Assert.assertEquals(1, other.getElements().size());
+		Assert.assertEquals("other", other.getElements().get(0).toRegex());
+	}
+	
+	@Test
+	public final void testClear() throws Exception {
+		group = new Group(new TestElement("first")).optional();
+		Group clearedGroup = group.clear();
+		
+		Assert.assertNotSame(group, clearedGroup);
+		Assert.assertEquals("(first)?", group.toRegex());
+		Assert.assertEquals("()?", clearedGroup.toRegex());
+		Assert.assertEquals("(second)?", clearedGroup.add(new TestElement("second")).toRegex());
+	}
+	
 	@Test(expected=RegexBuilderException.class)
 	public final void testAdd_Cycle() {
 		Group group1 = new Group();
@@ -85,6 +114,76 @@ public class GroupTest {
 		
 	}
 	
+	@Test(expected=RegexBuilderException.class)
+	public final void testAdd_CycleDeep() {
+		Group group1 = new Group();
+		group1.setChangeable();
+		
+		Group inner = new Group(group1);
+		for (int i = 0; i < 10000; i++) {
+			inner = new Group(inner, new NonCapturing(inner));
+		}
+		
+		group1.add(inner);
+	}
+	
+	@Test(timeout = 10000)
+	public final void testRunIndexer_LargeTree() {
+		// 100 groups per level, 1000 levels of nesting
+		Group level = new Group(new TestElement("x"));
+		for (int i = 0; i < 1000; i++) {
+			Group[] groups = new Group[100];
+			groups[0] = level;
+			for (int j = 1; j < groups.length; j++) {
+				groups[j] = new Group(new TestElement("x"));
+			}
+			level = new Group(groups);
+		}
+		group = level;
+		group.runIndexer();
+		
+		Group innermost = group;
+		while (innermost.getElements().get(0) instanceof Group) {
+			innermost = (Group) innermost.getElements().get(0);
+		}
+		Assert.assertEquals(Integer.valueOf(1000), innermost.getIndex());
+		Assert.assertEquals(Integer.valueOf(100000), ((Group) group.getElements().get(99)).getIndex());
+	}
+	
+	@Test(timeout = 10000)
+	public final void testGetIndex_OtherTreeIndexed() {
+		Group level = new Group(new TestElement("x"));
+		for (int i = 0; i < 100000; i++) {
+			level = new Group(level);
+		}
+		Group large = new Group(new Group(new TestElement("first")), level);
+		Group first = (Group) large.getElements().get(0);
+		Group small = new Group(new Group(new TestElement("y")));
+		
+		// indexing another tree keeps the indexes of this tree
+		for (int i = 0; i < 10000; i++) {
+			small.runIndexer();
+			Assert.assertEquals(Integer.valueOf(1), first.getIndex());
+		}
+		Assert.assertEquals(Integer.valueOf(2), level.getIndex());
+	}
+	
+	@Test
+	public final void testRunIndexer_SharedGroup() {
+		Group shared = new Group(new TestElement("shared"));
+		Group group1 = new Group(shared);
+		Group group2 = new Group(new Group(), shared);
+		
+		group1.runIndexer();
+		Assert.assertEquals(Integer.valueOf(1), shared.getIndex());
+		
+		group2.runIndexer();
+		Assert.assertEquals(Integer.valueOf(2), shared.getIndex());
+		
+		group1.runIndexer();
+		Assert.assertEquals(Integer.valueOf(1), shared.getIndex());
+	}
+	
 	@Test
 	public final void testIsIndexable() {
 		Assert.assertTrue(group.isIndexable());
@@ -159,5 +258,30 @@ public class GroupTest {
 		Assert.assertEquals(Integer.valueOf(2), group2.getIndex());
 		
 	}
+	
+	@Test
+	public final void testGetIndex_NotChangedByRendering() {
+		Group shared = new Group(new TestElement("shared"));
+		Group other = new Group(new Group(new TestElement("1")), new LineContains(shared));
+		group = new Group(shared);
+		Assert.assertEquals(Integer.valueOf(1), shared.getIndex());
+		
+		Assert.assertEquals("((1)(^.*((shared)).*$))", other.toRegex());
+		
+		Assert.assertEquals(Integer.valueOf(1), shared.getIndex());
+		Assert.assertEquals(4, other.computeIndexes(null).get(shared).intValue());
+		Assert.assertEquals(Integer.valueOf(1), shared.getIndex());
+	}
+	
+	@Test
+	public final void testToRegex_ChildChangedInPlace() {
+		TestElement child = new TestElement("child");
+		group = new Group(new Group(child), new TestElement("other"));
+		Assert.assertEquals("((child)other)", group.toRegex());
+		
+		Changer.change(child, e -> e.optional());
+		
+		Assert.assertEquals("((child?)other)", group.toRegex());
+	}
 
 }
@@ -1,5 +1,11 @@
 package de.jepfa.regex.elements;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -64,6 +70,85 @@ public class StringsTest {
 		Assert.assertEquals("(\\QFirst\\E|\\QSecond\\E)", addedStrings.toRegex());
 	}
 	
+	@Test
+	public final void testFactorize() throws Exception {
+		Strings factorized = new Strings("foobar", "foobaz", "qux").factorize();
+		
+		Assert.assertFalse(new Strings("foobar").isFactorized());
+		Assert.assertTrue(factorized.isFactorized());
+		Assert.assertEquals("(fooba(?:r|z)|qux)", factorized.toRegex());
+	}
+	
+	@Test
+	public final void testFactorize_KeepsOrderOfPrefixes() throws Exception {
+		Assert.assertEquals("(a(?:|b)|b)", new Strings("a", "b", "ab").factorize().toRegex());
+		Assert.assertEquals("(a(?:b||bc))", new Strings("ab", "a", "abc").factorize().toRegex());
+		Assert.assertEquals("(ab||ac)", new Strings("ab", "", "ac").factorize().toRegex());
+		Assert.assertEquals("(ab|Ab|ac)", new Strings("ab", "Ab", "ac").factorize().toRegex());
+		Assert.assertEquals("(ab)", new Strings("ab", "ab").factorize().toRegex());
+		Assert.assertEquals("(\\Qa.\\E(?:b|c))", new Strings("a.b", "a.c").factorize().toRegex());
+	}
+	
+	@Test
+	public final void testFactorize_Surrogates() throws Exception {
+		Assert.assertEquals("(\\Q\ud83d\ude00\\E(?:a|b))", new Strings("\ud83d\ude00a", "\ud83d\ude00b").factorize().toRegex());
+		Assert.assertEquals("(\\Q\ud83d\\E(?:a|b))", new Strings("\ud83da", "\ud83db").factorize().toRegex());
+		Assert.assertEquals("(\\Q\ud83d\\E(?:|a))", new Strings("\ud83d", "\ud83da").factorize().toRegex());
+	}
+	
+	@Test
+	public final void testFactorize_NotPlainStrings() throws Exception {
+		Strings factorized = new Strings(new StringElement("ab"), new StringElement("ac").many()).factorize();
+		
+		Assert.assertEquals("(\\Qab\\E|\\Qac\\E+)", factorized.toRegex());
+	}
+	
+	@Test
+	public final void testFactorize_SameMatches() throws Exception {
+		Random random = new Random(4711);
+		for (int i = 0; i < 500; i++) {
+			List<String> words = new ArrayList<>();
+			int count = random.nextInt(8) + 1;
+			for (int j = 0; j < count; j++) {
+				words.add(randomString(random, 4));
+			}
+			String[] array = words.toArray(new String[count]);
+			String text = randomString(random, 40);
+			
+			for (int flags : new int[] {0, Pattern.CASE_INSENSITIVE}) {
+				Pattern expected = Pattern.compile(new Strings(array).toRegex(), flags);
+				Pattern actual = Pattern.compile(new Strings(array).factorize().toRegex(), flags);
+				Assert.assertEquals(words + " in " + text, findAll(expected, text), findAll(actual, text));
+			}
+		}
+	}
+	
+	@Test
+	public final void testFactorize_WithQuantifier() throws Exception {
+		Strings factorized = new Strings("ab", "ac").factorize().many();
+		
+		Assert.assertEquals("(a(?:b|c))+", factorized.toRegex());
+	}
+	
+	
+	private static String randomString(Random random, int maxLength) {
+		char[] alphabet = {'a', 'b', 'A', '.', '\u00e4', '\u00c4'};
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet[random.nextInt(alphabet.length)]);
+		}
+		return sb.toString();
+	}
+	
+	private static List<String> findAll(Pattern pattern, String text) {
+		List<String> found = new ArrayList<>();
+		Matcher matcher = pattern.matcher(text);
+		while (matcher.find()) {
+			found.add(matcher.start() + ":" + matcher.group());
+		}
+		return found;
+	}
 	
 
 }
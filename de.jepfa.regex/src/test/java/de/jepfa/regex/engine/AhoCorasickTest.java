@@ -0,0 +1,195 @@
+package de.jepfa.regex.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.constructs.Word;
+import de.jepfa.regex.constructs.Words;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.engine.AhoCorasick.MatchKind;
+
+
+
+public class AhoCorasickTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		AhoCorasick engine = AhoCorasick.compile(new RegexBuilder().add("he", "she", "his", "hers"), MatchKind.LEFTMOST_FIRST);
+		EngineMatcher matcher = engine.matcher("ushers say his");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(1, matcher.start());
+		Assert.assertEquals(4, matcher.end());
+		Assert.assertEquals("she", matcher.group());
+		Assert.assertEquals(1, matcher.groupCount());
+		Assert.assertEquals("she", matcher.group(1));
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("his", matcher.group());
+		Assert.assertEquals(11, matcher.start());
+		
+		Assert.assertFalse(matcher.find());
+		Assert.assertFalse(matcher.find());
+	}
+	
+	@Test
+	public final void testFind_LeftmostFirst() throws Exception {
+		AhoCorasick engine = AhoCorasick.compile(MatchKind.LEFTMOST_FIRST, "ab", "abcd", "bcde");
+		
+		Assert.assertEquals(Arrays.asList("0:ab"), findAll(engine.matcher("abcde")));
+	}
+	
+	@Test
+	public final void testFind_LeftmostLongest() throws Exception {
+		AhoCorasick engine = AhoCorasick.compile(MatchKind.LEFTMOST_LONGEST, "ab", "abcd", "bcde");
+		
+		Assert.assertEquals(Arrays.asList("0:abcd"), findAll(engine.matcher("abcde")));
+	}
+	
+	@Test
+	public final void testFind_WithStart() throws Exception {
+		AhoCorasick engine = AhoCorasick.compile(MatchKind.LEFTMOST_FIRST, "a");
+		EngineMatcher matcher = engine.matcher("aaa");
+		
+		Assert.assertTrue(matcher.find(2));
+		Assert.assertEquals(2, matcher.start());
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.reset().find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertTrue(matcher.reset("ba").find());
+		Assert.assertEquals(1, matcher.start());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public final void testGroup_NoMatch() throws Exception {
+		AhoCorasick.compile(MatchKind.LEFTMOST_FIRST, "a").matcher("b").group();
+	}
+	
+	@Test
+	public final void testCompile_Words() throws Exception {
+		RegexBuilder builder = new RegexBuilder().add(new Words("foo", "foobar", "bar"));
+		AhoCorasick engine = AhoCorasick.compile(builder, MatchKind.LEFTMOST_FIRST);
+		EngineMatcher matcher = engine.matcher("foobar foo_ bar");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("foobar", matcher.group());
+		Assert.assertEquals(2, matcher.groupCount());
+		Assert.assertEquals("foobar", matcher.group(2));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("bar", matcher.group());
+		Assert.assertFalse(matcher.find());
+	}
+	
+	@Test
+	public final void testCompile_NestedStrings() throws Exception {
+		RegexBuilder builder = new RegexBuilder().add(new Strings(new StringElement("a"), new Strings("b", "c")));
+		EngineMatcher matcher = AhoCorasick.compile(builder, MatchKind.LEFTMOST_FIRST).matcher("xab");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(2, matcher.groupCount());
+		Assert.assertEquals("a", matcher.group(1));
+		Assert.assertNull(matcher.group(2));
+		Assert.assertEquals(-1, matcher.start(2));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("b", matcher.group(1));
+		Assert.assertEquals("b", matcher.group(2));
+		
+		assertSameAsPattern(builder, "xa b cab");
+		assertSameAsPattern(new RegexBuilder().add(new Word(new Strings(new StringElement("a"), new Strings("b", "c")))), "a b cab");
+	}
+	
+	@Test
+	public final void testCompile_Unsupported() throws Exception {
+		assertUnsupported(new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add("a"));
+		assertUnsupported(new RegexBuilder().add(new Strings("a").many()));
+		assertUnsupported(new RegexBuilder().add(new Strings("a").switchOn(Flag.IGNORE_CASE_SENSITIVE)));
+		assertUnsupported(new RegexBuilder().add(new Strings(new Group(new StringElement("a")))));
+		assertUnsupported(new RegexBuilder().add(new Words("a").not()));
+		assertUnsupported(new RegexBuilder().add("a").add("b"));
+		assertUnsupported(new RegexBuilder().add(""));
+		assertUnsupported(new RegexBuilder().add(new Strings(new String[0])));
+	}
+
+	@Test
+	public final void testFind_SameAsPattern() throws Exception {
+		Random random = new Random(4711);
+		for (int i = 0; i < 1000; i++) {
+			String[] literals = new String[random.nextInt(6) + 1];
+			for (int j = 0; j < literals.length; j++) {
+				literals[j] = randomString(random, 1, 4);
+			}
+			String text = randomString(random, 0, 60);
+			
+			RegexBuilder strings = new RegexBuilder().add(new Strings(literals).factorize());
+			assertSameAsPattern(strings, text);
+			
+			RegexBuilder words = new RegexBuilder().add(new Words(literals));
+			assertSameAsPattern(words, text);
+			
+			RegexBuilder bounded = new RegexBuilder().add(Boundary.WORD, new Strings(literals), Boundary.WORD);
+			assertSameAsPattern(bounded, text);
+			
+			String[] longestFirst = literals.clone();
+			Arrays.sort(longestFirst, Comparator.comparing(String::length).reversed());
+			Pattern longest = Pattern.compile(Arrays.stream(longestFirst).map(Pattern::quote).collect(Collectors.joining("|")));
+			AhoCorasick engine = AhoCorasick.compile(MatchKind.LEFTMOST_LONGEST, literals);
+			Assert.assertEquals(findAll(new PatternEngine(longest).matcher(text)), findAll(engine.matcher(text)));
+		}
+	}
+	
+	
+	private static void assertSameAsPattern(RegexBuilder builder, String text) {
+		List<String> expected = findAll(new PatternEngine(builder.buildPattern()).matcher(text));
+		List<String> actual = findAll(AhoCorasick.compile(builder, MatchKind.LEFTMOST_FIRST).matcher(text));
+		Assert.assertEquals(builder.toRegex() + " in " + text, expected, actual);
+	}
+	
+	private static void assertUnsupported(RegexBuilder builder) {
+		try {
+			AhoCorasick.compile(builder, MatchKind.LEFTMOST_FIRST);
+			Assert.fail("Exception expected for " + builder.toRegex());
+		} catch (RegexBuilderException e) {
+			// expected
+		}
+	}
+	
+	private static String randomString(Random random, int minLength, int maxLength) {
+		char[] alphabet = {'a', 'b', 'c', '_', ' ', '.'};
+		StringBuilder sb = new StringBuilder();
+		int length = minLength + random.nextInt(maxLength - minLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet[random.nextInt(alphabet.length)]);
+		}
+		return sb.toString();
+	}
+	
+	static List<String> findAll(EngineMatcher matcher) {
+		List<String> found = new ArrayList<>();
+		while (matcher.find()) {
+			MatchResult result = matcher;
+			StringBuilder match = new StringBuilder().append(result.start()).append(':').append(result.group());
+			for (int g = 1; g <= result.groupCount(); g++) {
+				match.append(" (").append(result.group(g)).append(')');
+			}
+			found.add(match.toString());
+		}
+		return found;
+	}
+	
+}
@@ -0,0 +1,190 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.Word;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.Lookbehind;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.PlainElement;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class BacktrackingEngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		Group amount = new Group(Char.DIGIT.many());
+		RegexBuilder builder = new RegexBuilder().add(new Lookbehind(new StringElement("$")), amount,
+				new Lookahead(new StringElement(" USD")).not());
+		builder.buildPattern();
+		BacktrackingEngine engine = BacktrackingEngine.compile(builder);
+		EngineMatcher matcher = engine.matcher("$12 USD, $345 EUR, 67");
+
+		Assert.assertEquals(1, engine.getGroupCount());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("1", matcher.group());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("345", matcher.group(amount.getIndex()));
+		Assert.assertEquals(10, matcher.start(1));
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test
+	public final void testSameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "abc", "xABCabcab", "a\r\nb\n\nc\r", "aaa bbb 123 45 ab6",
+				"\ud83d\ude00a\u00df STRASSE stra\u00dfe", "ab ab aab abbb", "x\u2028ab\u0085\rab\n", "ab\r\n", "a\u0301b a_b");
+		RegexBuilder[] builders = {
+				new RegexBuilder().add(new Group(new StringElement("ab").many()), new Group(new StringElement("ab").range(0, 2)
+						.strategy(Strategy.LAZY)), new StringElement("b").optional()),
+				new RegexBuilder().add(new StringElement("ab").arbitrary().strategy(Strategy.POSSESSIVE), new StringElement("b")),
+				new RegexBuilder().add(new Group(new Strings("a", "ab")), new Group(new Chars("bc").arbitrary())),
+				new RegexBuilder().add(new Group(new Choice(new Chars('a').arbitrary(), new StringElement("b"))).many()),
+				new RegexBuilder().add(new Group(new StringElement("a")).range(0, 2), new Group(Char.WORD_CHAR).range(2, 3)),
+				new RegexBuilder().add(Boundary.WORD, new Group(Char.WORD_CHAR.many()), Boundary.WORD),
+				new RegexBuilder().add(new Group(Any.ANY), Boundary.LINE_END),
+				new RegexBuilder().add(new NonCapturing(new Group(new StringElement("a")), new Group(new Chars("ab").arbitrary()))
+						.strategy(Strategy.LAZY), new StringElement("b")),
+				new RegexBuilder().add(new Group(Char.WORD_CHAR.many()), new Lookahead(new Group(new StringElement("b")))),
+				new RegexBuilder().add(Char.WORD_CHAR, new Lookahead(new StringElement("b")).not(), Char.WORD_CHAR),
+				new RegexBuilder().add(new Lookbehind(new Strings("a", "xAB")), new Group(Char.WORD_CHAR.arbitrary())),
+				new RegexBuilder().add(new Lookbehind(new Chars('a').range(2, 3)).not(), new Group(new StringElement("b"))),
+				new RegexBuilder().add(new Lookbehind(new Lookbehind(new StringElement("a")), new StringElement("b")),
+						new Group(Any.ANY_CHAR)),
+				new RegexBuilder().add(new NonCapturing(new Strings("a", "ab")).independent(), new StringElement("b")),
+				new RegexBuilder().add(new Group(new Strings("a", "ab")).many().strategy(Strategy.POSSESSIVE), new StringElement("a")),
+				new RegexBuilder().add(new Group(new Choice(new StringElement("a"), new StringElement("ab"))).range(2, 2)
+						.strategy(Strategy.POSSESSIVE), Any.ANY_CHAR.optional()),
+				new RegexBuilder().add(Char.WORD_CHAR.arbitrary().strategy(Strategy.POSSESSIVE), new StringElement("b")),
+				new RegexBuilder().add(new Group(new Lookahead(new Group(new StringElement("a"))), Char.WORD_CHAR).many()),
+				new RegexBuilder().add(new Group(new NonCapturing(new Chars('a').arbitrary()).independent()).many(),
+						new StringElement("b").optional()),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(new Lookbehind(new StringElement("s")), new Word("tra")),
+		};
+
+		for (RegexBuilder builder : builders) {
+			EngineMatcher actual = BacktrackingEngine.compile(builder).matcher("");
+			for (String input : inputs) {
+				String message = builder.toRegex() + " " + input;
+				Matcher expected = builder.buildPattern().matcher(input);
+				actual.reset(input);
+				while (expected.find()) {
+					Assert.assertTrue(message, actual.find());
+					Assert.assertEquals(message, expected.groupCount(), actual.groupCount());
+					for (int group = 0; group <= expected.groupCount(); group++) {
+						Assert.assertEquals(message + " " + group, expected.start(group), actual.start(group));
+						Assert.assertEquals(message + " " + group, expected.end(group), actual.end(group));
+					}
+				}
+				Assert.assertFalse(message, actual.find());
+			}
+		}
+	}
+
+	@Test
+	public final void testGroups_RepeatedGroup() throws Exception {
+		// the capture of the last iteration, while Matcher keeps group 2 at 1-2 from an iteration given back
+		RegexBuilder builder = new RegexBuilder().add(new Group(new Group(new Chars('a').not()).arbitrary(), Any.ANY_CHAR).count(2));
+		Matcher expected = builder.buildPattern().matcher("bbaAa");
+		EngineMatcher actual = BacktrackingEngine.compile(builder).matcher("bbaAa");
+
+		Assert.assertTrue(expected.find());
+		Assert.assertTrue(actual.find());
+		Assert.assertEquals(expected.start(), actual.start());
+		Assert.assertEquals(expected.end(), actual.end());
+		Assert.assertEquals(expected.start(1), actual.start(1));
+		Assert.assertEquals(expected.end(1), actual.end(1));
+		Assert.assertEquals(3, actual.start(2));
+		Assert.assertEquals(4, actual.end(2));
+		Assert.assertFalse(actual.find());
+	}
+
+	@Test
+	public final void testGroups_EmptyIteration() throws Exception {
+		// Matcher ignores the empty iteration and leaves group 1 unset
+		RegexBuilder builder = new RegexBuilder(Flag.MULTILINE).add(new Group(Boundary.LINE_END).arbitrary());
+		EngineMatcher matcher = BacktrackingEngine.compile(builder).matcher("a\nb");
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertEquals(-1, matcher.start(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(1, matcher.start());
+		Assert.assertEquals(1, matcher.start(1));
+		Assert.assertEquals(1, matcher.end(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(2, matcher.start());
+		Assert.assertEquals(-1, matcher.start(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start());
+		Assert.assertEquals(3, matcher.start(1));
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test
+	public final void testPolynomialTime() throws Exception {
+		// exponential for java.util.regex
+		Group inner = new Group(new Choice(new StringElement("a"), new StringElement("aa")));
+		RegexBuilder builder = new RegexBuilder().add(new Group(inner.many()).many(), new Lookahead(new StringElement("b")));
+		char[] input = new char[10_000];
+		Arrays.fill(input, 'a');
+		EngineMatcher matcher = BacktrackingEngine.compile(builder).matcher(new String(input) + "c");
+
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.reset(new String(input) + "b").find());
+		Assert.assertEquals(input.length, matcher.end());
+		Assert.assertEquals(0, matcher.start(1));
+		Assert.assertEquals(input.length - 1, matcher.start(2));
+	}
+
+	@Test
+	public final void testPolynomialTime_SparseMemo() throws Exception {
+		Group inner = new Group(new Choice(new StringElement("a"), new StringElement("aa")));
+		RegexBuilder builder = new RegexBuilder().add(new Group(inner.many()).many(), new StringElement("b"));
+		Program program = ProgramCompiler.compileForBacktracking(builder.getRenderedElements(), builder.getFlags());
+		char[] input = new char[10_000];
+		Arrays.fill(input, 'a');
+		int[] slots = new int[2 * (program.groupCount + 1)];
+		
+		Backtracker sparse = new Backtracker(program, new CharClasses(program), 0, Backtracker.MAX_SPARSE_MEMO_STATES);
+		sparse.reset(new String(input) + "c");
+		Assert.assertFalse(sparse.search(0, slots));
+		
+		Backtracker bounded = new Backtracker(program, new CharClasses(program), 0, 1000);
+		bounded.reset(new String(input) + "c");
+		try {
+			bounded.search(0, slots);
+			Assert.fail("Exception expected");
+		} catch (RegexBuilderException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = RegexBuilderException.class)
+	public final void testCompile_UnboundedLookbehind() throws Exception {
+		BacktrackingEngine.compile(new RegexBuilder().add(new Lookbehind(new StringElement("a").many()), new StringElement("b")));
+	}
+
+	@Test(expected = RegexBuilderException.class)
+	public final void testCompile_PlainElement() throws Exception {
+		BacktrackingEngine.compile(new RegexBuilder().add(new PlainElement("(a)\\1")));
+	}
+
+}
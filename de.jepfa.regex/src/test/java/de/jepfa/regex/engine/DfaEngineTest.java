@@ -0,0 +1,187 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class DfaEngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		Engine engine = DfaEngine.compile(new RegexBuilder().add(new Strings("ab", "abc", "b"), Char.DIGIT.many()));
+		EngineMatcher matcher = engine.matcher("abc1 ab12 x b3");
+
+		Assert.assertTrue(engine instanceof DfaEngine);
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("abc1", matcher.group());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("ab12", matcher.group());
+		Assert.assertEquals(5, matcher.start());
+		Assert.assertEquals(9, matcher.end());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("b3", matcher.group());
+		Assert.assertFalse(matcher.find());
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.find(6));
+		Assert.assertEquals("b12", matcher.group());
+		Assert.assertEquals(0, matcher.groupCount());
+	}
+
+	@Test
+	public final void testSameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "abc", "xABCabcab", "a\r\nb\n\nc\r", "aaa bbb 123 45 ab6",
+				"\ud83d\ude00a\u00df STRASSE stra\u00dfe", "ab ab aab abbb", "x\u2028ab\u0085\rab\n", "\u212a k K", "a\n",
+				"caa\ncaa\na\n", "\u00e4\ud83d\ude00\n\nx\u00df\n");
+		RegexBuilder[] builders = {
+				new RegexBuilder().add(new StringElement("ab").many(), new StringElement("x\ud83d\ude00").optional(),
+						new StringElement("ab").range(0, 2).strategy(Strategy.LAZY)),
+				new RegexBuilder().add("abc"),
+				new RegexBuilder().add(new Strings("a", "ab", "abc")),
+				new RegexBuilder().add(new Choice(new StringElement("a"), new StringElement("ab")).many(), new StringElement("b")),
+				new RegexBuilder().add(Char.DIGIT.many(), new Chars('a', 'c').range(0, 2)),
+				new RegexBuilder().add(new StringElement("a"), Any.ANY.strategy(Strategy.LAZY), new StringElement("b")),
+				new RegexBuilder().add(new StringElement("a"), Any.ANY, new StringElement("b")),
+				new RegexBuilder(Flag.DOTALL).add(new StringElement("a"), Any.ANY, new StringElement("b")),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(new Strings("abc", "stra\u00dfe", "k")),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE, Flag.UNICODE).add(new Strings("abc", "stra\u00dfe", "k")),
+				new RegexBuilder().add(new StringElement("ab").switchOn(Flag.IGNORE_CASE_SENSITIVE), new Chars("bc").many()),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(new Chars('a', 'c').many(), Char.WORD_CHAR.optional()),
+				new RegexBuilder(Flag.MULTILINE).add(new LineContains(new StringElement("ab"))),
+				new RegexBuilder(Flag.MULTILINE).add(Boundary.LINE_START, Any.ANY_CHAR.optional()),
+				new RegexBuilder(Flag.MULTILINE).add(Any.ANY_CHAR.optional(), Boundary.LINE_END),
+				new RegexBuilder(Flag.MULTILINE, Flag.UNIX_LINES).add(Boundary.LINE_START, Any.ANY, Boundary.LINE_END),
+				new RegexBuilder().add(Boundary.LINE_START, new Chars("ax").many()),
+				new RegexBuilder().add(new Chars('a').arbitrary()),
+				new RegexBuilder().add(new Group(new StringElement("a").optional(), new StringElement("b")).range(2, 3)),
+				new RegexBuilder().add(new NonCapturing(new StringElement("a"), new Chars("ab").arbitrary()).strategy(Strategy.LAZY),
+						new StringElement("b")),
+				new RegexBuilder().add(new Choice(new StringElement("a").arbitrary(), new StringElement("b")).many()),
+				new RegexBuilder().add(new NonCapturing(new Chars('a').arbitrary(), new StringElement("b").optional()).arbitrary(),
+						new StringElement("c").optional()),
+				new RegexBuilder().add(new Group(new Choice(new Chars('a').arbitrary(), new StringElement("b"))).range(2, 3)),
+				new RegexBuilder().add(new Choice(new Chars('a').arbitrary(), new StringElement("ab")).many().strategy(Strategy.LAZY),
+						new StringElement("b")),
+				new RegexBuilder().add(Any.ANY_CHAR, new StringElement("a").range(0, 2), Any.ANY_CHAR),
+				new RegexBuilder().add(new Chars('a', 'z').not().many()),
+				new RegexBuilder(Flag.MULTILINE).add(Any.ANY, Boundary.LINE_END, Any.ANY, Boundary.LINE_END),
+				new RegexBuilder(Flag.MULTILINE).add(new NonCapturing(Boundary.LINE_START, new StringElement("a")).many()),
+		};
+		// boundaries in repetitions that can match the empty String fall back to Pattern
+		RegexBuilder[] anchoredLoops = {
+				new RegexBuilder(Flag.MULTILINE).add(new NonCapturing(Any.ANY, Boundary.LINE_END).count(2)),
+				new RegexBuilder(Flag.MULTILINE).add(new Group(Any.ANY, Boundary.LINE_END, 
+						new Choice(new Chars('a').many().strategy(Strategy.LAZY), Boundary.LINE_START, 
+								new Group(new StringElement("caa")).arbitrary())).range(2, 3).strategy(Strategy.LAZY)),
+				new RegexBuilder(Flag.MULTILINE).add(
+						new Choice(new NonCapturing(Boundary.LINE_START).many(), Any.ANY_CHAR.many()).range(2, 3)),
+				new RegexBuilder().add(new NonCapturing(Boundary.INPUT_START, new StringElement("a").optional()).many()),
+		};
+
+		for (RegexBuilder builder : builders) {
+			Assert.assertTrue(builder.toRegex(), DfaEngine.isSupported(builder));
+			assertSameMatches(builder, inputs);
+		}
+		for (RegexBuilder builder : anchoredLoops) {
+			Assert.assertFalse(builder.toRegex(), DfaEngine.isSupported(builder));
+			assertSameMatches(builder, inputs);
+		}
+	}
+	
+	private static void assertSameMatches(RegexBuilder builder, List<String> inputs) {
+		EngineMatcher actual = DfaEngine.compile(builder).matcher("");
+		for (String input : inputs) {
+			String message = builder.toRegex() + " " + input;
+			Matcher expected = builder.buildPattern().matcher(input);
+			actual.reset(input);
+			while (expected.find()) {
+				Assert.assertTrue(message, actual.find());
+				Assert.assertEquals(message, expected.start(), actual.start());
+				Assert.assertEquals(message, expected.end(), actual.end());
+			}
+			Assert.assertFalse(message, actual.find());
+		}
+	}
+
+	@Test
+	public final void testLinearTime() throws Exception {
+		// exponential for a backtracking engine
+		RegexBuilder builder = new RegexBuilder().add(
+				new Choice(new StringElement("a"), new StringElement("aa")).many(), new StringElement("b"));
+		char[] input = new char[100_000];
+		Arrays.fill(input, 'a');
+		EngineMatcher matcher = DfaEngine.compile(builder).matcher(new String(input));
+
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.reset(new String(input) + "b").find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertEquals(input.length + 1, matcher.end());
+	}
+
+	@Test
+	public final void testFallback() throws Exception {
+		RegexBuilder builder = new RegexBuilder().add(new Group(new StringElement("a")), new Lookahead(new StringElement("b")));
+		Engine engine = DfaEngine.compile(builder);
+		EngineMatcher matcher = engine.matcher("ac ab");
+
+		Assert.assertFalse(DfaEngine.isSupported(builder));
+		Assert.assertTrue(engine instanceof PatternEngine);
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start(1));
+
+		Assert.assertFalse(DfaEngine.isSupported(new RegexBuilder().add(Boundary.WORD, new StringElement("a"))));
+		Assert.assertFalse(DfaEngine.isSupported(new RegexBuilder().add(new StringElement("a"), Boundary.LINE_END)));
+		Assert.assertFalse(DfaEngine.isSupported(new RegexBuilder().add(new StringElement("a").many().strategy(Strategy.POSSESSIVE))));
+		Assert.assertFalse(DfaEngine.isSupported(new RegexBuilder().add(new NonCapturing(new StringElement("a")).independent())));
+		Assert.assertFalse(DfaEngine.isSupported(new RegexBuilder(Flag.LITERAL).add("a")));
+	}
+
+	@Test
+	public final void testLargeClasses() throws Exception {
+		Element letters = Char.LETTER.many();
+		DfaEngine engine = (DfaEngine) DfaEngine.compile(new RegexBuilder().add(letters, Char.DIGIT));
+		EngineMatcher matcher = engine.matcher("12 \u00e4b\u4e2d3 x");
+
+		Assert.assertTrue(engine.getClassCount() < 20);
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("\u00e4b\u4e2d3", matcher.group());
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public final void testGroup_Rejected() throws Exception {
+		EngineMatcher matcher = DfaEngine.compile(new RegexBuilder().add("abc")).matcher("xyz");
+
+		Assert.assertFalse(matcher.find());
+		matcher.group();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public final void testGroup_NoCapturingGroups() throws Exception {
+		EngineMatcher matcher = DfaEngine.compile(new RegexBuilder().add(new Group(new StringElement("a")))).matcher("a");
+
+		Assert.assertTrue(matcher.find());
+		matcher.group(1);
+	}
+
+}
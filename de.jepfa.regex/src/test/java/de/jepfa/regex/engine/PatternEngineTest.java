@@ -0,0 +1,40 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+public class PatternEngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		PatternEngine engine = new PatternEngine(Pattern.compile("a(b)?"));
+		EngineMatcher matcher = engine.matcher("ab a");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("ab", matcher.group());
+		Assert.assertEquals(1, matcher.groupCount());
+		Assert.assertEquals(1, matcher.start(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start());
+		Assert.assertNull(matcher.group(1));
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.find(1));
+		Assert.assertEquals(3, matcher.start());
+	}
+	
+	@Test
+	public final void testReset() throws Exception {
+		PatternEngine engine = new PatternEngine(Pattern.compile("x"));
+		EngineMatcher matcher = engine.matcher("x");
+		
+		Assert.assertTrue(matcher.find());
+		Assert.assertFalse(matcher.find());
+		Assert.assertEquals(Arrays.asList("0:x", "2:x"), AhoCorasickTest.findAll(matcher.reset("x x")));
+	}
+	
+}
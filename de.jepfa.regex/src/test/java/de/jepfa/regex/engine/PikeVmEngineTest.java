@@ -0,0 +1,170 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class PikeVmEngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		Group key = new Group(Char.WORD_CHAR.many());
+		Group value = new Group(Char.DIGIT.many());
+		RegexBuilder builder = new RegexBuilder().add(key, new StringElement("="), value);
+		builder.buildPattern();
+		PikeVmEngine engine = PikeVmEngine.compile(builder);
+		EngineMatcher matcher = engine.matcher("a=1, bc=23, d=x");
+
+		Assert.assertEquals(2, engine.getGroupCount());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("a=1", matcher.group());
+		Assert.assertEquals("a", matcher.group(key.getIndex()));
+		Assert.assertEquals("1", matcher.group(value.getIndex()));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("bc", matcher.group(1));
+		Assert.assertEquals(5, matcher.start(1));
+		Assert.assertEquals(8, matcher.start(2));
+		Assert.assertEquals(10, matcher.end(2));
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test
+	public final void testSameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "abc", "xABCabcab", "a\r\nb\n\nc\r", "aaa bbb 123 45 ab6",
+				"\ud83d\ude00a\u00df STRASSE stra\u00dfe", "ab ab aab abbb", "x\u2028ab\u0085\rab\n", "ab\r\n", "a\u0301b a_b");
+		RegexBuilder[] builders = {
+				new RegexBuilder().add(new Group(new StringElement("ab").many()), new Group(new StringElement("ab").range(0, 2)
+						.strategy(Strategy.LAZY)), new StringElement("b").optional()),
+				new RegexBuilder().add(new Group(new Strings("a", "ab")), new Group(new Chars("bc").arbitrary())),
+				new RegexBuilder().add(new Group(new Group(new StringElement("a")).optional(), new StringElement("b")).many()),
+				new RegexBuilder().add(new Group(new Choice(new Group(new StringElement("a")), new StringElement("b"))).many()),
+				new RegexBuilder().add(new Group(Any.ANY_CHAR).strategy(Strategy.LAZY), new Group(new StringElement("b"))),
+				new RegexBuilder().add(new Group(new Chars('a').arbitrary()).arbitrary(), new Group(new StringElement("b"))),
+				new RegexBuilder().add(new Group(new Choice(new Chars('a').arbitrary(), new StringElement("b"))).many()),
+				new RegexBuilder().add(new Group(new StringElement("a")).range(0, 2), new Group(Char.WORD_CHAR).range(2, 3)),
+				new RegexBuilder(Flag.MULTILINE).add(new LineContains(new Group(new StringElement("ab")))),
+				new RegexBuilder().add(new Group(Any.ANY), Boundary.LINE_END),
+				new RegexBuilder(Flag.UNIX_LINES).add(new Group(Any.ANY), Boundary.INPUT_END),
+				new RegexBuilder().add(Boundary.LINE_START, new Group(Any.ANY_CHAR), Boundary.INPUT_END),
+				new RegexBuilder().add(Boundary.WORD, new Group(Char.WORD_CHAR.many()), Boundary.WORD),
+				new RegexBuilder().add(Boundary.NOT_A_WORD, new Group(Any.ANY_CHAR)),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(new Group(new Strings("abc", "stra\u00dfe")), Char.SPACE_CHAR.optional()),
+				new RegexBuilder().add(new NonCapturing(new Group(new StringElement("a")), new Group(new Chars("ab").arbitrary()))
+						.strategy(Strategy.LAZY), new StringElement("b")),
+		};
+
+		for (RegexBuilder builder : builders) {
+			EngineMatcher actual = PikeVmEngine.compile(builder).matcher("");
+			for (String input : inputs) {
+				String message = builder.toRegex() + " " + input;
+				Matcher expected = builder.buildPattern().matcher(input);
+				actual.reset(input);
+				while (expected.find()) {
+					Assert.assertTrue(message, actual.find());
+					Assert.assertEquals(message, expected.groupCount(), actual.groupCount());
+					for (int group = 0; group <= expected.groupCount(); group++) {
+						Assert.assertEquals(message + " " + group, expected.start(group), actual.start(group));
+						Assert.assertEquals(message + " " + group, expected.end(group), actual.end(group));
+					}
+				}
+				Assert.assertFalse(message, actual.find());
+			}
+		}
+	}
+
+	@Test
+	public final void testGroups_RepeatedGroup() throws Exception {
+		// the capture of the last iteration, while Matcher keeps group 2 at 1-2 from an iteration given back
+		RegexBuilder builder = new RegexBuilder().add(new Group(new Group(new Chars('a').not()).arbitrary(), Any.ANY_CHAR).count(2));
+		Matcher expected = builder.buildPattern().matcher("bbaAa");
+		EngineMatcher actual = PikeVmEngine.compile(builder).matcher("bbaAa");
+
+		Assert.assertTrue(expected.find());
+		Assert.assertTrue(actual.find());
+		Assert.assertEquals(expected.start(), actual.start());
+		Assert.assertEquals(expected.end(), actual.end());
+		Assert.assertEquals(expected.start(1), actual.start(1));
+		Assert.assertEquals(expected.end(1), actual.end(1));
+		Assert.assertEquals(3, actual.start(2));
+		Assert.assertEquals(4, actual.end(2));
+		Assert.assertFalse(actual.find());
+	}
+
+	@Test
+	public final void testGroups_EmptyIteration() throws Exception {
+		// Matcher ignores the empty iteration and leaves group 1 unset
+		RegexBuilder builder = new RegexBuilder(Flag.MULTILINE).add(new Group(Boundary.LINE_END).arbitrary());
+		EngineMatcher matcher = PikeVmEngine.compile(builder).matcher("a\nb");
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertEquals(-1, matcher.start(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(1, matcher.start());
+		Assert.assertEquals(1, matcher.start(1));
+		Assert.assertEquals(1, matcher.end(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(2, matcher.start());
+		Assert.assertEquals(-1, matcher.start(1));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start());
+		Assert.assertEquals(3, matcher.start(1));
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test
+	public final void testLinearTime() throws Exception {
+		// exponential for a backtracking engine
+		Group group = new Group(new Chars('a').arbitrary());
+		RegexBuilder builder = new RegexBuilder().add(group.arbitrary(), new Group(new StringElement("b")));
+		char[] input = new char[100_000];
+		Arrays.fill(input, 'a');
+		EngineMatcher matcher = PikeVmEngine.compile(builder).matcher(new String(input) + "c");
+
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.reset(new String(input) + "b").find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertEquals(input.length, matcher.end(1));
+		Assert.assertEquals("b", matcher.group(2));
+	}
+
+	@Test(expected = RegexBuilderException.class)
+	public final void testCompile_Lookahead() throws Exception {
+		PikeVmEngine.compile(new RegexBuilder().add(new StringElement("a"), new Lookahead(new StringElement("b"))));
+	}
+
+	@Test(expected = RegexBuilderException.class)
+	public final void testCompile_UnicodeWordBoundary() throws Exception {
+		PikeVmEngine.compile(new RegexBuilder(Flag.UNICODE_CHARS).add(Boundary.WORD, new StringElement("a")));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public final void testGroup_Rejected() throws Exception {
+		EngineMatcher matcher = PikeVmEngine.compile(new RegexBuilder().add(new Group(new StringElement("a")))).matcher("b");
+
+		Assert.assertFalse(matcher.find());
+		matcher.group(1);
+	}
+
+}
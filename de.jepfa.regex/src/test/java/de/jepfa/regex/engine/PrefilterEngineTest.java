@@ -0,0 +1,122 @@
+package de.jepfa.regex.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+import de.jepfa.regex.optimizer.Optimizer;
+
+
+
+public class PrefilterEngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		RegexBuilder builder = new RegexBuilder(Flag.MULTILINE).add(new LineContains(new StringElement("ERROR"), Char.DIGIT.many()));
+		PrefilterEngine engine = PrefilterEngine.compile(builder);
+		EngineMatcher matcher = engine.matcher("ok\nERROR1 x\nERROR\nlast ERROR22");
+		
+		Assert.assertEquals(Arrays.asList("ERROR"), engine.getRequiredLiterals());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("ERROR1 x", matcher.group());
+		Assert.assertEquals("ERROR1", matcher.group(2));
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("last ERROR22", matcher.group());
+		Assert.assertEquals(18, matcher.start());
+		Assert.assertFalse(matcher.find());
+		Assert.assertFalse(matcher.find());
+	}
+	
+	@Test
+	public final void testFind_Rejected() throws Exception {
+		PrefilterEngine engine = PrefilterEngine.compile(new RegexBuilder().add(new Strings("WARN", "ERROR"), Char.DIGIT));
+		EngineMatcher matcher = engine.matcher("no warning 1");
+		
+		Assert.assertEquals(Arrays.asList("WARN", "ERROR"), engine.getRequiredLiterals());
+		Assert.assertFalse(matcher.find());
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.reset("a WARN1").find());
+		Assert.assertEquals("WARN1", matcher.group());
+		Assert.assertTrue(matcher.find(0));
+		Assert.assertFalse(matcher.find(3));
+		Assert.assertTrue(matcher.reset().find());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public final void testGroup_Rejected() throws Exception {
+		EngineMatcher matcher = PrefilterEngine.compile(new RegexBuilder().add("abc")).matcher("xyz");
+		
+		Assert.assertFalse(matcher.find());
+		matcher.group();
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public final void testFind_IllegalStart() throws Exception {
+		PrefilterEngine.compile(new RegexBuilder().add("abc")).matcher("abc").find(4);
+	}
+	
+	@Test(expected = RegexBuilderException.class)
+	public final void testEmptyLiteral() throws Exception {
+		new PrefilterEngine(new RegexBuilder().add("abc").buildPattern(), Arrays.asList("a", ""));
+	}
+	
+	@Test
+	public final void testNoLiterals() throws Exception {
+		PrefilterEngine engine = PrefilterEngine.compile(new RegexBuilder().add(Char.DIGIT.many()));
+		EngineMatcher matcher = engine.matcher("ab 12 3");
+		
+		Assert.assertEquals(Collections.emptyList(), engine.getRequiredLiterals());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("12", matcher.group());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("3", matcher.group());
+		Assert.assertFalse(matcher.find());
+	}
+	
+	@Test
+	public final void testSameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "ab", "xab12\nab\n", "cdab\nabab1ab", "ab1 ab2", "AB1\nab",
+				new StringBuilder("ab").reverse().toString());
+		Element[][] builders = {
+				{new StringElement("ab"), Char.DIGIT.optional()},
+				{new LineContains(new StringElement("ab"), Char.DIGIT)},
+				{new Strings("ab", "cd").many(), new Group(new StringElement("1")).optional()},
+				{new Lookahead(Char.DIGIT.arbitrary(), new StringElement("b")), Char.WORD_CHAR.arbitrary()},
+				{new StringElement("")},
+		};
+		
+		for (Element[] elements : builders) {
+			for (Flag[] flags : Arrays.asList(new Flag[0], new Flag[] {Flag.MULTILINE, Flag.IGNORE_CASE_SENSITIVE})) {
+				RegexBuilder builder = new RegexBuilder(flags).add(elements).useOptimizer(Optimizer.DEFAULT);
+				PrefilterEngine engine = PrefilterEngine.compile(builder);
+				for (String input : inputs) {
+					String message = builder.toRegex() + " " + input;
+					Matcher expected = builder.buildPattern().matcher(input);
+					EngineMatcher actual = engine.matcher(input);
+					while (expected.find()) {
+						Assert.assertTrue(message, actual.find());
+						for (int i = 0; i <= expected.groupCount(); i++) {
+							Assert.assertEquals(message, expected.group(i), actual.group(i));
+						}
+					}
+					Assert.assertFalse(message, actual.find());
+				}
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,179 @@
+package de.jepfa.regex.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.Lookahead;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class Utf8EngineTest {
+
+	@Test
+	public final void testFind() throws Exception {
+		Utf8Engine engine = Utf8Engine.compile(new RegexBuilder().add(new Strings("stra\u00dfe", "weg"), Char.DIGIT.many()));
+		ByteMatcher matcher = engine.matcher("\u00e4 stra\u00dfe1, weg23".getBytes(StandardCharsets.UTF_8));
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start());
+		Assert.assertEquals(11, matcher.end());
+		Assert.assertEquals("stra\u00dfe1", matcher.group());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("weg23", matcher.group());
+		Assert.assertEquals(13, matcher.start());
+		Assert.assertFalse(matcher.find());
+		Assert.assertTrue(matcher.find(12));
+		Assert.assertEquals(13, matcher.start());
+	}
+
+	@Test
+	public final void testSameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "abc", "xABCabcab", "a\r\nb\n\nc\r", "aaa bbb 123 45 ab6",
+				"\ud83d\ude00a\u00df STRASSE stra\u00dfe", "ab ab aab abbb", "x\u2028ab\u0085\rab\n", "\u212a k K",
+				"\u00e4\u20acb\ud83d\ude00ab\u00e4", "\u00e4\n\ud83d\ude00\u20ac\n\nx\u00df\n");
+		RegexBuilder[] builders = {
+				new RegexBuilder().add(new StringElement("ab").many(), new StringElement("x\ud83d\ude00").optional(),
+						new StringElement("ab").range(0, 2).strategy(Strategy.LAZY)),
+				new RegexBuilder().add("abc"),
+				new RegexBuilder().add(new Strings("a", "ab", "abc")),
+				new RegexBuilder().add(new Choice(new StringElement("a"), new StringElement("ab")).many(), new StringElement("b")),
+				new RegexBuilder().add(Char.DIGIT.many(), new Chars('a', 'c').range(0, 2)),
+				new RegexBuilder().add(new StringElement("a"), Any.ANY.strategy(Strategy.LAZY), new StringElement("b")),
+				new RegexBuilder().add(Any.ANY_CHAR, new StringElement("b")),
+				new RegexBuilder().add(Any.ANY_CHAR.optional()),
+				new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE, Flag.UNICODE).add(new Strings("abc", "stra\u00dfe", "k")),
+				new RegexBuilder().add(new Chars("\u00e4\u20ac\ud83d\ude00").many()),
+				new RegexBuilder(Flag.MULTILINE).add(new LineContains(new StringElement("ab"))),
+				new RegexBuilder(Flag.MULTILINE).add(Any.ANY_CHAR.optional(), Boundary.LINE_END),
+				new RegexBuilder().add(new Chars('a').arbitrary()),
+				new RegexBuilder(Flag.MULTILINE).add(Boundary.LINE_START, new Chars('a').not().optional(), 
+						Any.ANY_CHAR.arbitrary(), Boundary.LINE_END),
+				new RegexBuilder(Flag.MULTILINE).add(Any.ANY, Boundary.LINE_END, Any.ANY, Boundary.LINE_END),
+				new RegexBuilder(Flag.MULTILINE).add(Boundary.LINE_START, Any.ANY_CHAR.many()),
+		};
+
+		for (RegexBuilder builder : builders) {
+			ByteMatcher actual = Utf8Engine.compile(builder).matcher(new byte[0]);
+			for (String input : inputs) {
+				String message = builder.toRegex() + " " + input;
+				Matcher expected = builder.buildPattern().matcher(input);
+				actual.reset(input.getBytes(StandardCharsets.UTF_8));
+				while (expected.find()) {
+					if (expected.start() > 0 && expected.start() < input.length()
+							&& Character.isSurrogatePair(input.charAt(expected.start() - 1), input.charAt(expected.start()))) {
+						// empty match between the chars of a surrogate pair, there are no such bytes
+						continue;
+					}
+					Assert.assertTrue(message, actual.find());
+					Assert.assertEquals(message, byteIndex(input, expected.start()), actual.start());
+					Assert.assertEquals(message, byteIndex(input, expected.end()), actual.end());
+					Assert.assertEquals(message, expected.group(), actual.group());
+				}
+				Assert.assertFalse(message, actual.find());
+			}
+		}
+	}
+
+	@Test
+	public final void testFind_BoundaryAfterPreviousMatch() throws Exception {
+		ByteMatcher matcher = Utf8Engine.compile(new RegexBuilder(Flag.MULTILINE).add(Boundary.LINE_START, 
+				new Chars('a').not().optional(), Any.ANY_CHAR.arbitrary(), Boundary.LINE_END)).matcher("bc\nd".getBytes(StandardCharsets.UTF_8));
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(0, matcher.start());
+		Assert.assertEquals(2, matcher.end());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(3, matcher.start());
+		Assert.assertEquals(4, matcher.end());
+		Assert.assertFalse(matcher.find());
+		
+		matcher = Utf8Engine.compile(new RegexBuilder(Flag.MULTILINE).add(Boundary.LINE_START, new StringElement("b")))
+				.matcher("ab\nb".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(matcher.find(1));
+		Assert.assertEquals(3, matcher.start());
+	}
+
+	@Test
+	public final void testByteBuffer() throws Exception {
+		byte[] bytes = "ab1 ab2 ab3".getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).position(2).limit(9);
+		ByteMatcher matcher = Utf8Engine.compile(new RegexBuilder().add(new StringElement("ab"), Char.DIGIT)).matcher(buffer);
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(4, matcher.start());
+		Assert.assertEquals(7, matcher.end());
+		Assert.assertFalse(matcher.find());
+		Assert.assertEquals(2, buffer.position());
+		Assert.assertEquals(9, buffer.limit());
+	}
+
+	@Test
+	public final void testMalformed() throws Exception {
+		byte[] bytes = {'a', (byte) 0xc3, 'b', (byte) 0xe2, (byte) 0x82, (byte) 0xac, (byte) 0x82, 'c'};
+		ByteMatcher matcher = Utf8Engine.compile(new RegexBuilder().add(Char.NOT_A_WORD_CHAR)).matcher(bytes);
+
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(1, matcher.start());
+		Assert.assertEquals(2, matcher.end());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals("\u20ac", matcher.group());
+		Assert.assertTrue(matcher.find());
+		Assert.assertEquals(6, matcher.start());
+		Assert.assertEquals(7, matcher.end());
+		Assert.assertFalse(matcher.find());
+	}
+
+	@Test(expected = RegexBuilderException.class)
+	public final void testCompile_Lookahead() throws Exception {
+		Utf8Engine.compile(new RegexBuilder().add(new StringElement("a"), new Lookahead(new StringElement("b"))));
+	}
+
+	@Test
+	public final void testCompile_BoundaryInEmptyIteration() throws Exception {
+		RegexBuilder[] builders = {
+				new RegexBuilder(Flag.MULTILINE).add(
+						new Choice(new NonCapturing(Boundary.LINE_START).many(), Any.ANY_CHAR.many()).range(2, 3)),
+				new RegexBuilder(Flag.MULTILINE).add(new NonCapturing(Any.ANY, Boundary.LINE_END).count(2)),
+				new RegexBuilder(Flag.MULTILINE).add(new Group(Any.ANY, Boundary.LINE_END, 
+						new Choice(new Chars('a').many().strategy(Strategy.LAZY), Boundary.LINE_START, 
+								new Group(new StringElement("caa")).arbitrary())).range(2, 3).strategy(Strategy.LAZY)),
+		};
+
+		for (RegexBuilder builder : builders) {
+			try {
+				Utf8Engine.compile(builder);
+				Assert.fail(builder.toRegex());
+			}
+			catch (RegexBuilderException e) {
+				Assert.assertFalse(DfaEngine.isSupported(builder));
+			}
+		}
+	}
+
+
+	private static int byteIndex(String input, int charIndex) {
+		return input.substring(0, charIndex).getBytes(StandardCharsets.UTF_8).length;
+	}
+
+}
@@ -0,0 +1,97 @@
+package de.jepfa.regex.helper;
+
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilderException;
+
+
+
+public class PatternCacheTest {
+	
+	private PatternCache cache;
+	
+	@Before
+	public final void setup() {
+		cache = new PatternCache(2);
+	}
+
+	
+	@Test
+	public final void testCompile_Hit() throws Exception {
+		Pattern first = cache.compile("a+", 0);
+		Pattern second = cache.compile("a+", 0);
+		
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public final void testCompile_DifferentFlags() throws Exception {
+		Pattern first = cache.compile("a+", 0);
+		Pattern second = cache.compile("a+", Pattern.CASE_INSENSITIVE);
+		
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(Pattern.CASE_INSENSITIVE, second.flags());
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+	
+	@Test
+	public final void testCompile_EvictsLeastRecentlyUsed() throws Exception {
+		Pattern a = cache.compile("a", 0);
+		cache.compile("b", 0);
+		cache.compile("a", 0); // now "b" is the least recently used one
+		cache.compile("c", 0);
+		
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertSame(a, cache.compile("a", 0));
+		
+		cache.compile("b", 0);
+		Assert.assertEquals(4, cache.getMissCount());
+	}
+	
+	@Test
+	public final void testCompile_Disabled() throws Exception {
+		cache = new PatternCache(0);
+		
+		Assert.assertNotSame(cache.compile("a", 0), cache.compile("a", 0));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+	
+	@Test
+	public final void testSetMaxSize() throws Exception {
+		cache.compile("a", 0);
+		cache.compile("b", 0);
+		
+		cache.setMaxSize(1);
+		
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+	
+	@Test
+	public final void testClear() throws Exception {
+		cache.compile("a", 0);
+		cache.compile("a", 0);
+		
+		cache.clear();
+		
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getHitCount());
+		Assert.assertEquals(0, cache.getMissCount());
+	}
+	
+	@Test(expected=RegexBuilderException.class)
+	public final void testNegativeMaxSize() throws Exception {
+		new PatternCache(-1);
+	}
+
+}
@@ -0,0 +1,108 @@
+package de.jepfa.regex.helper;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+public class SharedListTest {
+
+	@Test
+	public final void testCopyOf() throws Exception {
+		List<String> list = new SharedList<>();
+		list.addAll(Arrays.asList("a", "b"));
+		
+		List<String> copy = SharedList.copyOf(list);
+		copy.add("c");
+		
+		Assert.assertEquals(Arrays.asList("a", "b"), list);
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), copy);
+	}
+	
+	@Test
+	public final void testCopyOf_BothAdd() throws Exception {
+		List<String> list = new SharedList<>();
+		list.add("a");
+		List<String> first = SharedList.copyOf(list);
+		List<String> second = SharedList.copyOf(list);
+		
+		first.add("b");
+		second.add("c");
+		list.add("d");
+		
+		Assert.assertEquals(Arrays.asList("a", "d"), list);
+		Assert.assertEquals(Arrays.asList("a", "b"), first);
+		Assert.assertEquals(Arrays.asList("a", "c"), second);
+	}
+	
+	@Test
+	public final void testCopyOf_Grows() throws Exception {
+		List<Integer> list = new SharedList<>();
+		List<Integer> copy = list;
+		for (int i = 0; i < 1000; i++) {
+			list = copy;
+			copy = SharedList.copyOf(list);
+			copy.add(i);
+		}
+		
+		Assert.assertEquals(999, list.size());
+		Assert.assertEquals(1000, copy.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i, copy.get(i).intValue());
+		}
+	}
+	
+	@Test
+	public final void testCopyOf_OtherList() throws Exception {
+		List<String> copy = SharedList.copyOf(Arrays.asList("a", "b"));
+		
+		Assert.assertEquals(Arrays.asList("a", "b"), copy);
+	}
+	
+	@Test
+	public final void testChanges() throws Exception {
+		List<String> list = new SharedList<>();
+		list.addAll(Arrays.asList("a", "b", "c"));
+		List<String> copy = SharedList.copyOf(list);
+		
+		copy.set(0, "x");
+		copy.remove(1);
+		copy.add(0, "y");
+		
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), list);
+		Assert.assertEquals(Arrays.asList("y", "x", "c"), copy);
+		
+		list.clear();
+		Assert.assertTrue(list.isEmpty());
+		Assert.assertEquals(Arrays.asList("y", "x", "c"), copy);
+	}
+	
+	@Test
+	public final void testChanges_OriginalAfterCopy() throws Exception {
+		List<String> list = new SharedList<>();
+		list.addAll(Arrays.asList("a", "b", "c"));
+		list.set(0, "x");
+		list.remove(2);
+		List<String> copy = SharedList.copyOf(list);
+		
+		list.set(0, "y");
+		list.add(0, "z");
+		list.remove(2);
+		
+		Assert.assertEquals(Arrays.asList("z", "y"), list);
+		Assert.assertEquals(Arrays.asList("x", "b"), copy);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public final void testGet_OutOfBounds() throws Exception {
+		List<String> list = new SharedList<>();
+		list.add("a");
+		SharedList.copyOf(list).add("b");
+		
+		list.get(1);
+	}
+	
+}
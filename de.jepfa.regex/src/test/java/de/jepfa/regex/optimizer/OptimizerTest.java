@@ -0,0 +1,489 @@
+package de.jepfa.regex.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.CompiledRegex;
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.components.Element;
+import de.jepfa.regex.components.Quantifier.Strategy;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.constructs.LineEndsWith;
+import de.jepfa.regex.constructs.LineStartsWith;
+import de.jepfa.regex.elements.Any;
+import de.jepfa.regex.elements.Boundary;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Chars;
+import de.jepfa.regex.elements.Choice;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.NonCapturing;
+import de.jepfa.regex.elements.PlainElement;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.elements.Strings;
+
+
+
+public class OptimizerTest {
+	
+	@Test
+	public final void testSingleChars() throws Exception {
+		Choice choice = new Choice(new StringElement("a"), new StringElement("b"), new StringElement("c"));
+		
+		Element optimized = Optimizer.DEFAULT.optimize(choice);
+		
+		Assert.assertEquals("([abc])", optimized.toRegex());
+		Assert.assertEquals("(\\Qa\\E|\\Qb\\E|\\Qc\\E)", choice.toRegex());
+	}
+	
+	@Test
+	public final void testSingleChars_Strings() throws Exception {
+		Strings strings = new Strings("a", "-", "]").switchOn(Flag.IGNORE_CASE_SENSITIVE);
+		
+		Element optimized = Optimizer.DEFAULT.optimize(strings);
+		
+		Assert.assertEquals("(?i:([a\\-\\]]))", optimized.toRegex());
+	}
+	
+	@Test
+	public final void testSingleChars_NotForStrings() throws Exception {
+		Strings strings = new Strings("a", "bc");
+		
+		Assert.assertSame(strings, Optimizer.DEFAULT.optimize(strings));
+	}
+	
+	@Test
+	public final void testSingleChars_NotWithQuantifier() throws Exception {
+		Choice choice = new Choice(new StringElement("a"), new StringElement("b").optional());
+		
+		Assert.assertSame(choice, Optimizer.DEFAULT.optimize(choice));
+	}
+	
+	@Test
+	public final void testSingleChars_NotIfRepeated() throws Exception {
+		Choice choice = new Choice(new StringElement("a"), new StringElement("b"));
+		Element repeated = choice.range(0, 2);
+		Element enclosed = new NonCapturing(new Group(choice)).arbitrary();
+		
+		Assert.assertSame(repeated, Optimizer.DEFAULT.optimize(repeated));
+		Assert.assertEquals("(?:((\\Qa\\E|\\Qb\\E)))*", Optimizer.DEFAULT.optimize(enclosed).toRegex());
+		Assert.assertSame(choice, StandardRule.SINGLE_CHARS.apply(choice));
+		Assert.assertEquals("([ab])", StandardRule.SINGLE_CHARS.apply(choice, Rule.Context.of(null)).toRegex());
+	}
+	
+	@Test
+	public final void testSingleChars_SameGroups() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "b", "aaa", "ab", "bab", "AbA", "aab\nb", "bbba");
+		List<Element[]> trees = new ArrayList<>();
+		trees.add(new Element[] {new NonCapturing(new Choice(new StringElement("a"), new StringElement("b")).range(0, 2)).many()});
+		trees.add(new Element[] {new NonCapturing(new NonCapturing(new Choice(new StringElement("a"), new StringElement("b"))))
+				.arbitrary().switchOn(Flag.IGNORE_CASE_SENSITIVE), Boundary.LINE_START, Any.ANY});
+		Random random = new Random(4711);
+		for (int i = 0; i < 1000; i++) {
+			trees.add(new Element[] {randomElement(random, 3), randomElement(random, 3)});
+		}
+		
+		for (Element[] elements : trees) {
+			for (Flag[] flags : Arrays.asList(new Flag[0], new Flag[] {Flag.IGNORE_CASE_SENSITIVE})) {
+				RegexBuilder plain = new RegexBuilder(flags).add(elements);
+				RegexBuilder optimized = new RegexBuilder(flags).add(elements).useOptimizer(Optimizer.DEFAULT);
+				Pattern expectedPattern = plain.buildPattern();
+				Pattern actualPattern = optimized.buildPattern();
+				
+				for (String input : inputs) {
+					String message = plain.toRegex() + " -> " + optimized.toRegex() + " " + input;
+					Matcher expected = expectedPattern.matcher(input);
+					Matcher actual = actualPattern.matcher(input);
+					Assert.assertEquals(message, expected.groupCount(), actual.groupCount());
+					while (expected.find()) {
+						Assert.assertTrue(message, actual.find());
+						for (int group = 0; group <= expected.groupCount(); group++) {
+							Assert.assertEquals(message + " " + group, expected.start(group), actual.start(group));
+							Assert.assertEquals(message + " " + group, expected.end(group), actual.end(group));
+						}
+					}
+					Assert.assertFalse(message, actual.find());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public final void testSingleAlternative() throws Exception {
+		Choice choice = new Choice(new NonCapturing(new StringElement("a"), new Chars("bc"))).optional();
+		
+		Element optimized = Optimizer.DEFAULT.optimize(choice);
+		
+		Assert.assertEquals(Group.class, optimized.getClass());
+		Assert.assertEquals("(\\Qa\\E[bc])?", optimized.toRegex());
+	}
+	
+	@Test
+	public final void testFlattenNonCapturing() throws Exception {
+		Group group = new Group(new StringElement("a"), new NonCapturing(new StringElement("b"), new Group(new StringElement("c"))), 
+				new NonCapturing(), new StringElement("d"));
+		
+		Element optimized = Optimizer.DEFAULT.optimize(group);
+		
+		Assert.assertEquals("(\\Qa\\E\\Qb\\E(\\Qc\\E)\\Qd\\E)", optimized.toRegex());
+		Assert.assertEquals(4, group.getElements().size());
+	}
+	
+	@Test
+	public final void testFlattenNonCapturing_NotIfNotPlain() throws Exception {
+		Group group = new Group(new StringElement("a"), 
+				new NonCapturing(new StringElement("b"), new StringElement("c")).optional(), 
+				new NonCapturing(new StringElement("b"), new StringElement("c")).switchOn(Flag.COMMENTS), 
+				new NonCapturing(new StringElement("b"), new StringElement("c")).independent(), 
+				new NonCapturing(new PlainElement("b|c"), new StringElement("d")));
+		
+		Assert.assertSame(group, Optimizer.DEFAULT.optimize(group));
+	}
+	
+	@Test
+	public final void testUnwrapNonCapturing() throws Exception {
+		Choice choice = new Choice(new NonCapturing(new NonCapturing(new Chars("ab"))), new StringElement("cd"));
+		
+		Element optimized = Optimizer.DEFAULT.optimize(choice);
+		
+		Assert.assertEquals("([ab]|\\Qcd\\E)", optimized.toRegex());
+	}
+	
+	@Test
+	public final void testUnwrapNonCapturing_NotForPlainElements() throws Exception {
+		Group group = new Group(new StringElement("a"), new NonCapturing(new PlainElement("b|c")));
+		
+		Assert.assertSame(group, Optimizer.DEFAULT.optimize(group));
+	}
+	
+	@Test
+	public final void testAutoAtomic() throws Exception {
+		Group group = new Group(Char.DIGIT.many(), new Chars(","), Char.SPACE_CHAR.arbitrary(), new StringElement("x"));
+		
+		Element optimized = Optimizer.DEFAULT.optimize(group);
+		
+		Assert.assertEquals("((?>\\d+)[\\,](?>\\s*)\\Qx\\E)", optimized.toRegex());
+		Assert.assertEquals("(\\d+[\\,]\\s*\\Qx\\E)", group.toRegex());
+	}
+	
+	@Test
+	public final void testAutoAtomic_NotIfOverlapping() throws Exception {
+		Group group = new Group(new Chars('a', 'z').many(), new StringElement("K"), 
+				Char.WORD_CHAR.arbitrary(), Char.DIGIT, 
+				Char.DIGIT.many().strategy(Strategy.LAZY), new StringElement(","), 
+				Char.DIGIT.count(3), new StringElement(","), 
+				new StringElement("x").many(), new StringElement("xy"));
+		
+		Assert.assertSame(group, Optimizer.DEFAULT.optimize(group));
+	}
+	
+	@Test
+	public final void testAutoAtomic_NotIfNegatedOverlapping() throws Exception {
+		Group negated = new Group(new Chars("a").not().many(), new StringElement("A"));
+		Group repeated = new Group(new Chars("a-").not().many(), new StringElement("A")).arbitrary();
+		
+		Assert.assertSame(negated, Optimizer.DEFAULT.optimize(negated));
+		Assert.assertSame(repeated, Optimizer.DEFAULT.optimize(repeated));
+		Matcher matcher = new RegexBuilder().add(repeated).useOptimizer(Optimizer.DEFAULT).buildPattern().matcher("bb1-\nbAb-1");
+		Assert.assertTrue(matcher.find(4));
+		Assert.assertEquals(4, matcher.start());
+		Assert.assertEquals(7, matcher.end());
+	}
+	
+	@Test
+	public final void testAutoAtomic_NotIfFollowerUnknown() throws Exception {
+		Group nullable = new Group(Char.DIGIT.many(), new StringElement(",").optional());
+		Group plain = new Group(Char.DIGIT.many(), new PlainElement("a|1"));
+		Group last = new Group(new StringElement(","), Char.DIGIT.many());
+		
+		Assert.assertSame(nullable, Optimizer.DEFAULT.optimize(nullable));
+		Assert.assertSame(plain, Optimizer.DEFAULT.optimize(plain));
+		Assert.assertSame(last, Optimizer.DEFAULT.optimize(last));
+	}
+	
+	@Test
+	public final void testAutoAtomic_ChangeableNotChanged() throws Exception {
+		Chars digits = new Chars('0', '9').many();
+		digits.setChangeable();
+		Group group = new Group(digits, new StringElement(";"));
+		
+		Element optimized = Optimizer.DEFAULT.optimize(group);
+		
+		Assert.assertEquals("((?>[0-9]+)\\Q;\\E)", optimized.toRegex());
+		Assert.assertEquals(Strategy.GREEDY, digits.getQuantifier().getStrategy());
+	}
+	
+	@Test
+	public final void testAutoAtomic_Builder() throws Exception {
+		Element[] elements = {Char.WORD_CHAR.many(), new StringElement("="), 
+				new Chars('0', '9').many(), new Chars(",;"), new Strings("ab", "cd").optional(), Boundary.LINE_END};
+		RegexBuilder plain = new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(elements);
+		RegexBuilder optimized = new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(elements).useOptimizer(Optimizer.DEFAULT);
+		
+		Assert.assertEquals("(?>\\w+)\\Q=\\E(?>[0-9]+)[\\,\\;](\\Qab\\E|\\Qcd\\E)?$", optimized.toRegex());
+		for (String input : Arrays.asList("a=1,", "key=12;ab", "key=12;AB", "k=1;x", "k=1;ab x", "=1;", "a=b;", "x=12,CD")) {
+			Assert.assertEquals(input, plain.buildPattern().matcher(input).find(), optimized.buildPattern().matcher(input).find());
+		}
+	}
+	
+	@Test
+	public final void testLineConstructs() throws Exception {
+		LineContains contains = new LineContains(new StringElement("ab"), Char.DIGIT.optional());
+		LineContains notContains = new LineContains(new StringElement("ab")).not().switchOff(Flag.DOTALL);
+		LineEndsWith notEndsWith = new LineEndsWith(new StringElement("ab")).not();
+		
+		Assert.assertSame(contains, Optimizer.DEFAULT.optimize(contains));
+		Assert.assertEquals("(?-s:(^(?!.*\\Qab\\E)(?:.*(.))?$))", Optimizer.DEFAULT.optimize(notContains).toRegex());
+		Assert.assertEquals("(^.*$(?<!\\Qab\\E))", Optimizer.DEFAULT.optimize(notEndsWith).toRegex());
+		Assert.assertEquals("(^.*(\\Qab\\E\\d?).*$)", contains.toRegex());
+	}
+	
+	@Test
+	public final void testLineConstructs_NotIfUnsafe() throws Exception {
+		List<Element> elements = Arrays.asList(
+				new LineContains(new Group(new StringElement("a"))), 
+				new LineContains(new PlainElement("a|b")),
+				new LineContains(new StringElement("ab")).not(),
+				new LineContains(new Group(new StringElement("ab"))).not().switchOff(Flag.DOTALL),
+				new LineContains(new StringElement("\n")).not().switchOff(Flag.DOTALL),
+				new LineContains(new StringElement("ab").optional()).not().switchOff(Flag.DOTALL),
+				new LineEndsWith(new StringElement("ab")),
+				new LineEndsWith(new Choice(new StringElement("a"), new StringElement("ab"))).not(),
+				new LineStartsWith(new StringElement("ab")).not());
+		
+		for (Element element : elements) {
+			Assert.assertSame(element.toRegex(), element, Optimizer.DEFAULT.optimize(element));
+		}
+	}
+	
+	@Test
+	public final void testLineConstructs_BuilderFlags() throws Exception {
+		LineContains notContains = new LineContains(new StringElement("ab")).not();
+		
+		Assert.assertEquals("(^(?!.*\\Qab\\E)(?:.*(.))?$)", 
+				new RegexBuilder().add(notContains).useOptimizer(Optimizer.DEFAULT).toRegex());
+		Assert.assertEquals("(^((?!\\Qab\\E).)*$)", 
+				new RegexBuilder(Flag.DOTALL).add(notContains).useOptimizer(Optimizer.DEFAULT).toRegex());
+		Assert.assertEquals("(?s:(?:(^((?!\\Qab\\E).)*$)))", 
+				new RegexBuilder().add(new NonCapturing(notContains).switchOn(Flag.DOTALL)).useOptimizer(Optimizer.DEFAULT).toRegex());
+	}
+	
+	@Test
+	public final void testLineConstructs_SameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "ab", "xaby\nab\n", "x\r\nyab1\r\nab", "abab1ab\nzz\n", 
+				"ab\u2028cd\rab", "\n\nAb\n", "ba\nxx", "a\nb", "ab\nb");
+		Element notEndsWithGroup = new LineEndsWith(new Choice(new StringElement("a"), new StringElement("ab"))).not();
+		Element[] elements = {
+				new LineContains(new StringElement("ab")).not(),
+				new LineContains(new StringElement("ab")).not().switchOff(Flag.DOTALL),
+				new LineContains(new Chars("ab").many()).not().switchOff(Flag.DOTALL).optional(),
+				new LineEndsWith(new StringElement("ab")).not(),
+				new LineEndsWith(new StringElement("b"), Boundary.LINE_END, new Chars("\n\r")).not(),
+				notEndsWithGroup,
+		};
+		List<Flag[]> flagCombinations = Arrays.asList(new Flag[0], new Flag[] {Flag.MULTILINE}, 
+				new Flag[] {Flag.MULTILINE, Flag.DOTALL}, new Flag[] {Flag.MULTILINE, Flag.UNIX_LINES}, 
+				new Flag[] {Flag.MULTILINE, Flag.IGNORE_CASE_SENSITIVE});
+		
+		for (Flag[] flags : flagCombinations) {
+			for (Element element : elements) {
+				RegexBuilder plain = new RegexBuilder(flags).add(element);
+				RegexBuilder optimized = new RegexBuilder(flags).add(element).useOptimizer(Optimizer.DEFAULT);
+				if (element == notEndsWithGroup || element == elements[0] && Arrays.asList(flags).contains(Flag.DOTALL)) {
+					Assert.assertEquals(plain.toRegex(), optimized.toRegex());
+				}
+				else {
+					Assert.assertNotEquals(plain.toRegex(), optimized.toRegex());
+				}
+				
+				for (String input : inputs) {
+					String message = optimized.toRegex() + " " + Arrays.toString(flags) + " " + input;
+					Matcher expected = plain.buildPattern().matcher(input);
+					Matcher actual = optimized.buildPattern().matcher(input);
+					Assert.assertEquals(expected.groupCount(), actual.groupCount());
+					while (expected.find()) {
+						Assert.assertTrue(message, actual.find());
+						for (int i = 0; i <= expected.groupCount(); i++) {
+							Assert.assertEquals(message, expected.group(i), actual.group(i));
+						}
+					}
+					Assert.assertFalse(message, actual.find());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public final void testRuleSwitches() throws Exception {
+		Optimizer optimizer = Optimizer.DEFAULT.without(StandardRule.SINGLE_CHARS);
+		Choice choice = new Choice(new StringElement("a"), new StringElement("b"));
+		
+		Assert.assertFalse(optimizer.isEnabled(StandardRule.SINGLE_CHARS));
+		Assert.assertTrue(optimizer.isEnabled(StandardRule.FLATTEN_NON_CAPTURING));
+		Assert.assertTrue(Optimizer.DEFAULT.isEnabled(StandardRule.SINGLE_CHARS));
+		Assert.assertSame(choice, optimizer.optimize(choice));
+		Assert.assertEquals("([ab])", optimizer.with(StandardRule.SINGLE_CHARS).optimize(choice).toRegex());
+		Assert.assertSame(choice, new Optimizer().optimize(choice));
+	}
+	
+	@Test
+	public final void testCustomRule() throws Exception {
+		Rule upperCase = e -> e instanceof StringElement 
+				? new StringElement(((StringElement) e).getString().toUpperCase()) : e;
+		RegexBuilder builder = new RegexBuilder(new Group(new StringElement("a"), new NonCapturing(new StringElement("b"))))
+				.useOptimizer(Optimizer.DEFAULT.with(upperCase));
+		
+		Assert.assertEquals("(\\QA\\E\\QB\\E)", builder.toRegex());
+	}
+	
+	@Test(expected=RegexBuilderException.class)
+	public final void testCustomRule_ChangesGroups() throws Exception {
+		Rule removeGroups = e -> e instanceof Group ? new StringElement("x") : e;
+		
+		new RegexBuilder(new Group(new StringElement("a"))).useOptimizer(new Optimizer(removeGroups)).toRegex();
+	}
+	
+	@Test
+	public final void testBuilder_TopLevel() throws Exception {
+		RegexBuilder builder = new RegexBuilder(new NonCapturing(new StringElement("a"), new StringElement("b")), 
+				new NonCapturing(new PlainElement("c|d")));
+		
+		Assert.assertEquals("(?:\\Qa\\E\\Qb\\E)(?:c|d)", builder.toRegex());
+		
+		builder.useOptimizer(Optimizer.DEFAULT);
+		
+		Assert.assertEquals("\\Qa\\E\\Qb\\E(?:c|d)", builder.toRegex());
+		Assert.assertEquals(3, builder.getRenderedElements().size());
+		Assert.assertEquals(2, builder.getElements().size());
+	}
+	
+	@Test
+	public final void testBuilder_KeepsGroupIndexes() throws Exception {
+		Group first = new Group(new StringElement("a"));
+		Group second = new Group(new NonCapturing(new StringElement("b")), new Strings("c", "d"));
+		Group third = new Group(new Choice(new NonCapturing(new StringElement("e"))));
+		RegexBuilder builder = new RegexBuilder(new NonCapturing(first, second), third).useOptimizer(Optimizer.DEFAULT);
+		
+		Assert.assertEquals("(\\Qa\\E)(\\Qb\\E([cd]))((\\Qe\\E))", builder.toRegex());
+		
+		Matcher matcher = builder.buildPattern().matcher("abde");
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals("a", matcher.group(first.getIndex()));
+		Assert.assertEquals("bd", matcher.group(second.getIndex()));
+		Assert.assertEquals("e", matcher.group(third.getIndex()));
+		
+		CompiledRegex compiled = builder.build();
+		matcher = compiled.matcher("abde");
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals("bd", compiled.group(matcher, second));
+		Assert.assertEquals("e", compiled.group(matcher, third));
+		
+		compiled = builder.buildCapturing(second);
+		matcher = compiled.matcher("abce");
+		Assert.assertEquals("(?:\\Qa\\E)(\\Qb\\E(?:[cd]))(?:(?:\\Qe\\E))", compiled.getPattern().pattern());
+		Assert.assertTrue(matcher.matches());
+		Assert.assertEquals(1, matcher.groupCount());
+		Assert.assertEquals("bc", compiled.group(matcher, second));
+	}
+	
+	@Test
+	public final void testBuilder_ChangedInPlace() throws Exception {
+		Group group = new Group(new NonCapturing(new StringElement("a")));
+		group.setChangeable();
+		RegexBuilder builder = new RegexBuilder(group).useOptimizer(Optimizer.DEFAULT);
+		
+		Assert.assertEquals("(\\Qa\\E)", builder.toRegex());
+		
+		group.add(new NonCapturing(new StringElement("b")));
+		
+		Assert.assertEquals("(\\Qa\\E\\Qb\\E)", builder.toRegex());
+		Assert.assertEquals(2, group.getElements().size());
+		Assert.assertTrue(group.getElements().get(1) instanceof NonCapturing);
+	}
+	
+	@Test
+	public final void testBuilder_SameMatches() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "ab", "abc", "xbcd", "aaxbb", "ab-ab", "AB", "b-a-c");
+		Element[] elements = {
+				new NonCapturing(new Strings("a", "b").arbitrary(), new NonCapturing(new StringElement("-"))).optional(),
+				new Choice(new NonCapturing(new Strings("x", "b", "c")), new StringElement("a")).many(),
+				new Group(new NonCapturing(new Choice(new StringElement("c"))), new NonCapturing()).optional(),
+		};
+		RegexBuilder plain = new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(elements);
+		RegexBuilder optimized = new RegexBuilder(Flag.IGNORE_CASE_SENSITIVE).add(elements).useOptimizer(Optimizer.DEFAULT);
+		
+		Assert.assertNotEquals(plain.toRegex(), optimized.toRegex());
+		for (String input : inputs) {
+			Matcher expected = plain.buildPattern().matcher(input);
+			Matcher actual = optimized.buildPattern().matcher(input);
+			Assert.assertEquals(expected.groupCount(), actual.groupCount());
+			while (expected.find()) {
+				Assert.assertTrue(input, actual.find());
+				for (int i = 0; i <= expected.groupCount(); i++) {
+					Assert.assertEquals(input, expected.group(i), actual.group(i));
+				}
+			}
+			Assert.assertFalse(input, actual.find());
+		}
+	}
+	
+	
+	/**
+	 * Creates a random tree of Choices of single characters in capturing and non-capturing groups 
+	 * with random quantifiers.
+	 */
+	private static Element randomElement(Random random, int depth) {
+		Element element;
+		switch (random.nextInt(depth > 0 ? 6 : 3)) {
+			case 0:
+				element = new StringElement(random.nextBoolean() ? "a" : "b");
+				break;
+			case 1:
+				element = new Chars(random.nextBoolean() ? "a" : "ab");
+				break;
+			case 2:
+				element = Boundary.LINE_START;
+				break;
+			case 3:
+				Element[] alternatives = new Element[random.nextInt(3) + 1];
+				for (int i = 0; i < alternatives.length; i++) {
+					alternatives[i] = random.nextInt(3) == 0 ? randomElement(random, depth - 1) 
+							: new StringElement(String.valueOf("abAB".charAt(random.nextInt(4))));
+				}
+				element = new Choice(alternatives);
+				break;
+			default:
+				Element[] elements = new Element[random.nextInt(3) + 1];
+				for (int i = 0; i < elements.length; i++) {
+					elements[i] = randomElement(random, depth - 1);
+				}
+				element = random.nextBoolean() ? new Group(elements) : new NonCapturing(elements);
+				if (random.nextInt(4) == 0) {
+					element = element.switchOn(Flag.IGNORE_CASE_SENSITIVE);
+				}
+		}
+		switch (random.nextInt(8)) {
+			case 0:
+				return element.optional();
+			case 1:
+				return element.many();
+			case 2:
+				return element.arbitrary();
+			case 3:
+				return element.range(0, 2);
+			case 4:
+				return element.arbitrary().strategy(Strategy.LAZY);
+			default:
+				return element;
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package de.jepfa.regex.scan;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.constructs.LineEndsWith;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.StringElement;
+import de.jepfa.regex.engine.PatternEngine;
+
+
+
+public class LineScannerTest {
+
+	@Test
+	public final void testScan() throws Exception {
+		Path file = createFile("ok\r\nERROR1 x\n\u00e4 ERROR\n\nlast ERROR2");
+		try {
+			RegexBuilder builder = new RegexBuilder().add(new LineContains(new StringElement("ERROR"), Char.DIGIT));
+			List<LineMatch> matches = LineScanner.compile(builder).withSegmentSize(3).scan(file);
+			
+			Assert.assertEquals(2, matches.size());
+			Assert.assertEquals(2L, matches.get(0).getLineNumber());
+			Assert.assertEquals(4L, matches.get(0).getOffset());
+			Assert.assertEquals("ERROR1 x", matches.get(0).getLine());
+			Assert.assertEquals("ERROR1", matches.get(0).group(2));
+			Assert.assertEquals(0, matches.get(0).start(2));
+			Assert.assertEquals(5L, matches.get(1).getLineNumber());
+			Assert.assertEquals(23L, matches.get(1).getOffset());
+			Assert.assertEquals("last ERROR2", matches.get(1).group());
+			Assert.assertEquals(5, matches.get(1).start(2));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public final void testScan_SameAsLines() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			sb.append("line ").append(i).append(i % 7 == 0 ? " ends with x" : " y").append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+		Path file = createFile(sb.toString());
+		try {
+			RegexBuilder builder = new RegexBuilder(Flag.MULTILINE).add(new LineEndsWith(new StringElement("x")));
+			Pattern pattern = builder.buildPattern();
+			List<String> expected = new ArrayList<>();
+			String[] lines = sb.toString().split("\r?\n");
+			for (int i = 0; i < lines.length; i++) {
+				Matcher matcher = pattern.matcher(lines[i]);
+				if (matcher.find()) {
+					expected.add((i + 1) + ":" + matcher.group());
+				}
+			}
+			
+			for (int segmentSize : new int[] {1, 100, 4096, 1 << 20}) {
+				List<String> actual = new ArrayList<>();
+				LineScanner scanner = new LineScanner(new PatternEngine(pattern)).withSegmentSize(segmentSize)
+						.withPool(new ForkJoinPool(3));
+				for (LineMatch match : scanner.scan(file)) {
+					actual.add(match.getLineNumber() + ":" + match.group());
+				}
+				Assert.assertEquals(expected, actual);
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public final void testScan_Empty() throws Exception {
+		Path file = createFile("");
+		try {
+			Assert.assertTrue(LineScanner.compile(new RegexBuilder().add("a")).scan(file).isEmpty());
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test(expected = RegexBuilderException.class)
+	public final void testCharset_NotSupported() throws Exception {
+		LineScanner.compile(new RegexBuilder().add("a")).withCharset(StandardCharsets.UTF_16);
+	}
+	
+	
+	private static Path createFile(String content) throws Exception {
+		File file = File.createTempFile("LineScannerTest", ".log");
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.toPath();
+	}
+}
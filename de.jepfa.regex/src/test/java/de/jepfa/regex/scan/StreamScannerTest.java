@@ -0,0 +1,166 @@
+package de.jepfa.regex.scan;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.jepfa.regex.RegexBuilder;
+import de.jepfa.regex.RegexBuilder.Flag;
+import de.jepfa.regex.RegexBuilderException;
+import de.jepfa.regex.constructs.LineContains;
+import de.jepfa.regex.elements.Char;
+import de.jepfa.regex.elements.Group;
+import de.jepfa.regex.elements.StringElement;
+
+
+
+public class StreamScannerTest {
+
+	@Test
+	public final void testScan() throws Exception {
+		RegexBuilder builder = new RegexBuilder(Flag.MULTILINE).add(new LineContains(new StringElement("ERROR"), Char.DIGIT));
+		List<StreamMatch> matches = new ArrayList<>();
+		
+		long count = StreamScanner.compile(builder).withBufferSize(4).withMaxMatchLength(16)
+				.scan(new StringReader("ok\nERROR1 x\nERROR\nlast ERROR2"), matches::add);
+		
+		Assert.assertEquals(2, count);
+		Assert.assertEquals("ERROR1 x", matches.get(0).group());
+		Assert.assertEquals(3L, matches.get(0).start());
+		Assert.assertEquals(11L, matches.get(0).end());
+		Assert.assertEquals("ERROR1", matches.get(0).group(2));
+		Assert.assertEquals(3L, matches.get(0).start(2));
+		Assert.assertEquals("last ERROR2", matches.get(1).group());
+		Assert.assertEquals(18L, matches.get(1).start());
+		Assert.assertEquals(2, matches.get(1).groupCount());
+	}
+	
+	@Test
+	public final void testScan_SameAsFind() throws Exception {
+		List<String> inputs = Arrays.asList("", "a", "xyy 12 foo,bar\nab\r\ncd foo\n\nxy 3", "abc,abbc,ac,,foo1foo 123",
+				"cd\nab\nfoo\nxxyyyyx y\n");
+		List<String> regexes = Arrays.asList("\\d+", "^\\w+", "(?m)^ab|cd$", "\\bfoo\\b", "(?<=x)y+", "x*", "a(b)?c", 
+				"$", "(?m)$", "[^,\\s]*,", "(?m)^$", "\\Gx|y", "\\z", "(?s).");
+		
+		for (String regex : regexes) {
+			Pattern pattern = Pattern.compile(regex);
+			for (String input : inputs) {
+				List<String> expected = new ArrayList<>();
+				Matcher matcher = pattern.matcher(input);
+				while (matcher.find()) {
+					expected.add(matcher.start() + ":" + matcher.group() + ":" + matcher.start(matcher.groupCount()));
+				}
+				for (int bufferSize = 1; bufferSize < 6; bufferSize++) {
+					List<String> actual = new ArrayList<>();
+					new StreamScanner(pattern).withBufferSize(bufferSize).withMaxMatchLength(8)
+							.scan(new StringReader(input), m -> actual.add(m.start() + ":" + m.group() + ":" + m.start(m.groupCount())));
+					Assert.assertEquals(regex + " " + bufferSize + " " + input, expected, actual);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public final void testScan_Channel() throws Exception {
+		byte[] bytes = "\u00e4\u00f6 12 \u00fc 345".getBytes(StandardCharsets.UTF_8);
+		List<StreamMatch> matches = new ArrayList<>();
+		
+		new StreamScanner(Pattern.compile("\\d+")).withBufferSize(2)
+				.scan(Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8, matches::add);
+		
+		Assert.assertEquals(2, matches.size());
+		Assert.assertEquals("12", matches.get(0).group());
+		Assert.assertEquals(3L, matches.get(0).start());
+		Assert.assertEquals("345", matches.get(1).group());
+		Assert.assertEquals(8L, matches.get(1).start());
+	}
+	
+	@Test
+	public final void testScan_Large() throws Exception {
+		long size = 20_000_000;
+		Reader reader = new Reader() {
+			private long position = 0;
+			
+			@Override
+			public int read(char[] buffer, int offset, int length) {
+				if (position >= size) {
+					return -1;
+				}
+				int count = (int) Math.min(length, size - position);
+				for (int i = 0; i < count; i++, position++) {
+					buffer[offset + i] = position % 1_000_000 < 5 ? "12345".charAt((int) (position % 1_000_000)) : 'x';
+				}
+				return count;
+			}
+			
+			@Override
+			public void close() {
+			}
+		};
+		List<StreamMatch> matches = new ArrayList<>();
+		
+		new StreamScanner(new RegexBuilder().add(new Group(Char.DIGIT.many())).buildPattern()).scan(reader, matches::add);
+		
+		Assert.assertEquals(20, matches.size());
+		Assert.assertEquals(19_000_000L, matches.get(19).start());
+		Assert.assertEquals(19_000_005L, matches.get(19).end(1));
+		Assert.assertEquals("12345", matches.get(19).group(1));
+	}
+	
+	@Test(expected = RegexBuilderException.class)
+	public final void testScan_MatchTooLong() throws Exception {
+		new StreamScanner(Pattern.compile("\\d+")).withBufferSize(2).withMaxMatchLength(4)
+				.scan(new StringReader("a 1234567890 b"), m -> {});
+	}
+	
+	@Test
+	public final void testScan_MatchLongerThanWindow() throws Exception {
+		StringBuilder input = new StringBuilder("x");
+		for (int i = 0; i < 10_000; i++) {
+			input.append('a');
+		}
+		input.append('b');
+		
+		assertTooLong(new StreamScanner(Pattern.compile("a+b")).withBufferSize(1024).withMaxMatchLength(1024), input.toString());
+		assertTooLong(new StreamScanner(Pattern.compile("a+b")).withBufferSize(1).withMaxMatchLength(1), "xaab");
+		assertTooLong(new StreamScanner(Pattern.compile("a(?=.*z)|b")).withBufferSize(1).withMaxMatchLength(2), "xaaaaab");
+		assertTooLong(new StreamScanner(Pattern.compile("[^,]*,")).withBufferSize(1).withMaxMatchLength(8), "abc,foo1foo 123");
+		
+		List<StreamMatch> matches = new ArrayList<>();
+		new StreamScanner(Pattern.compile("a+b")).withBufferSize(1).withMaxMatchLength(3).scan(new StringReader("xaab"), matches::add);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1L, matches.get(0).start());
+	}
+	
+	private static void assertTooLong(StreamScanner scanner, String input) throws Exception {
+		try {
+			scanner.scan(new StringReader(input), m -> Assert.assertTrue(m.end() - m.start() <= scanner.getMaxMatchLength()));
+			Assert.fail("Expected a RegexBuilderException");
+		} catch (RegexBuilderException e) {
+			// expected
+		}
+	}
+	
+	@Test(expected = RegexBuilderException.class)
+	public final void testIllegalBufferSize() throws Exception {
+		new StreamScanner(Pattern.compile("a")).withBufferSize(0);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public final void testGroup_Illegal() throws Exception {
+		List<StreamMatch> matches = new ArrayList<>();
+		new StreamScanner(Pattern.compile("a")).scan(new StringReader("a"), matches::add);
+		
+		matches.get(0).group(1);
+	}
+}